@@ -2,20 +2,29 @@ package net.ssehub.sparkyservice.api.auth;
 
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.ldap.AuthenticationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -26,7 +35,11 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import net.ssehub.sparkyservice.api.auth.jwt.JwksDto;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtCodec;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenReadException;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
 import net.ssehub.sparkyservice.api.conf.ControllerPath;
 import net.ssehub.sparkyservice.api.user.dto.CredentialsDto;
 import net.ssehub.sparkyservice.api.user.dto.ErrorDto;
@@ -47,6 +60,10 @@ public class AuthController {
     private ServletContext servletContext;
     @Autowired
     private AuthenticationService authService;
+    @Autowired
+    private JwtCodec jwtCodec;
+    @Autowired
+    private JwtSettings jwtConf;
 
     /**
      * This method does nothing. The method header is important to let swagger list
@@ -79,6 +96,7 @@ public class AuthController {
      * @param auth - Injected through spring if the user is logged in - holds
      *               authentication information
      * @param request - Provided by Spring
+     * @param ifNoneMatch - ETag of a previous response, see {@link #verifyTokenValidity(String, String)}
      * @return user information which are stored in the JWT token
      * @throws UserNotFoundException
      * @throws MissingDataException
@@ -96,9 +114,20 @@ public class AuthController {
             @ApiResponse(responseCode = "401", description = "Not authenticated",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = ErrorDto.class))) })
-    public AuthenticationInfoDto checkTokenAuthenticationStatus(@Nullable Authentication auth,
-            HttpServletRequest request) throws JwtTokenReadException {
-        return authService.checkAuthenticationStatus(auth, notNull(request));
+    public ResponseEntity<AuthenticationInfoDto> checkTokenAuthenticationStatus(@Nullable Authentication auth,
+            HttpServletRequest request, 
+            @Nullable @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) 
+            throws JwtTokenReadException {
+        var authInfo = authService.checkAuthenticationStatus(auth, notNull(request));
+        String jwtString = request.getHeader(jwtConf.getHeader());
+        ResponseEntity<AuthenticationInfoDto> response;
+        if (jwtString == null) { // authenticated without a token
+            response = ResponseEntity.ok(authInfo);
+        } else {
+            // the token is sent in a header, shared caches must not reuse the response for other clients
+            response = introspectionResponse(authService.readJwtToken(jwtString), ifNoneMatch, true, authInfo);
+        }
+        return response;
     }
 
     /*
@@ -111,7 +140,12 @@ public class AuthController {
      * which are necessary to proceed with it in the application. When the token is valid, it can be used as 
      * authentication token for the whole application.
      * 
+     * The response can be cached until the token expires or {@link JwtSettings#getIntrospectionMaxAge()} passed. 
+     * Clients which send the ETag of a previous response in <code>If-None-Match</code> get 304 as long as the 
+     * token is valid and the returned information didn't change.
+     * 
      * @param jwtToken - The token which should be verified
+     * @param ifNoneMatch - ETag of a previous response
      * @return The stored information in the token
      * @throws MissingDataException - Is thrown when the data of the token is not complete
      * @throws JwtTokenReadException 
@@ -119,10 +153,140 @@ public class AuthController {
     @Operation(description = "Prints the validity status of a given token",
             security = { @SecurityRequirement(name = "bearer-key") })
     @GetMapping(value = ControllerPath.AUTHENTICATION_VERIFY)
-    public AuthenticationInfoDto verifyTokenValidity(@NotNull @Nonnull String jwtToken) throws JwtTokenReadException {
-        return authService.verifyJwtToken(jwtToken);
+    @ApiResponses(value = { 
+            @ApiResponse(responseCode = "200", description = "Token is valid"),
+            @ApiResponse(responseCode = "304", description = "Token is still valid, the given ETag matches"),
+            @ApiResponse(responseCode = "403", description = "Token is not valid",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorDto.class))) })
+    public ResponseEntity<AuthenticationInfoDto> verifyTokenValidity(@NotNull @Nonnull String jwtToken,
+            @Nullable @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) 
+            throws JwtTokenReadException {
+        JwtToken token = authService.readJwtToken(jwtToken);
+        AuthenticationInfoDto authInfo = authService.verifyJwtToken(jwtToken);
+        return introspectionResponse(token, ifNoneMatch, false, authInfo);
+    }
+
+    /**
+     * Creates a cacheable response for a verified token. When the client already has the current version 
+     * (<code>If-None-Match</code>), the body is omitted and 304 is returned.
+     * 
+     * @param token - The verified token
+     * @param ifNoneMatch - Value of the <code>If-None-Match</code> header
+     * @param privateCache - <code>true</code> when only the client itself may cache the response
+     * @param authInfo - The body; the entity tag is derived from it
+     * @return Response with <code>ETag</code> and <code>Cache-Control</code> headers
+     */
+    private ResponseEntity<AuthenticationInfoDto> introspectionResponse(JwtToken token, @Nullable String ifNoneMatch,
+            boolean privateCache, AuthenticationInfoDto authInfo) {
+        String etag = authService.createIntrospectionTag(token, authInfo);
+        long maxAge = authService.getIntrospectionMaxAge(token);
+        var cacheControl = maxAge > 0 ? CacheControl.maxAge(maxAge, TimeUnit.SECONDS) : CacheControl.noCache();
+        cacheControl = privateCache ? cacheControl.cachePrivate() : cacheControl;
+        boolean notModified = matchesETag(etag, ifNoneMatch);
+        var builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+            .cacheControl(cacheControl)
+            .eTag(etag);
+        if (privateCache) {
+            builder.varyBy(jwtConf.getHeader());
+        }
+        return notModified ? builder.build() : builder.body(authInfo);
+    }
+
+    /**
+     * Checks if an entity tag is listed in an <code>If-None-Match</code> header.
+     * 
+     * @param etag - Quoted entity tag
+     * @param ifNoneMatch - Header value; may contain a list of tags or <code>*</code>
+     * @return <code>true</code> when the tag matches
+     */
+    private static boolean matchesETag(String etag, @Nullable String ifNoneMatch) {
+        boolean matches = false;
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                matches |= "*".equals(tag) || etag.equals(tag) || etag.equals(tag.replaceFirst("^W/", ""));
+            }
+        }
+        return matches;
     }
     
+    /**
+     * Verifies several tokens with a single request. Other than {@link #verifyTokenValidity(String, String)},
+     * invalid tokens don't cause an error response but are reported with their status.
+     * 
+     * @param jwtTokens - The tokens which should be verified
+     * @return One result per token in the same order; 413 when more than {@link JwtSettings#getMaxBatchSize()} 
+     *         tokens are given
+     */
+    @Operation(summary = "Batch token verification", 
+            description = "Prints the validity status and the owner of each given token")
+    @PostMapping(value = ControllerPath.AUTHENTICATION_VERIFY_BATCH)
+    @ApiResponses(value = { 
+            @ApiResponse(responseCode = "200", description = "One result per token in the same order"),
+            @ApiResponse(responseCode = "413", description = "Too many tokens in a single request")
+    })
+    public ResponseEntity<List<TokenVerificationDto>> verifyTokensValidity(
+            @RequestBody @NotNull @Nonnull List<String> jwtTokens) {
+        ResponseEntity<List<TokenVerificationDto>> response;
+        if (jwtTokens.size() > jwtConf.getMaxBatchSize()) {
+            response = ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } else {
+            response = ResponseEntity.ok(authService.verifyJwtTokens(jwtTokens));
+        }
+        return response;
+    }
+
+    /**
+     * Exchanges a valid token for a new one with a later expiration date. The old token stays valid until it expires
+     * but can't be refreshed again. 
+     * 
+     * @param request - Provided by Spring
+     * @param response - Provided by Spring, receives the new token in the authorization header
+     * @return User information and the new token
+     * @throws JwtTokenReadException When the token is invalid, locked or can't be refreshed anymore
+     */
+    @Operation(summary = "Token refresh", 
+            description = "Exchanges the token of the authorization header for a new one without a new login",
+            security = { @SecurityRequirement(name = "bearer-key") })
+    @PostMapping(value = ControllerPath.AUTHENTICATION_REFRESH)
+    @ApiResponses(value = { 
+            @ApiResponse(responseCode = "200", description = "New token was created"),
+            @ApiResponse(responseCode = "403", description = "Token can't be refreshed", 
+                content = @Content(mediaType = "application/json", 
+                schema = @Schema(implementation = ErrorDto.class)))
+    })
+    public AuthenticationInfoDto refreshToken(HttpServletRequest request, HttpServletResponse response) 
+            throws JwtTokenReadException {
+        var authInfo = authService.refreshJwtToken(notNull(request));
+        response.addHeader(jwtConf.getHeader(), jwtConf.getPrefix() + " " + authInfo.token.token);
+        return authInfo;
+    }
+
+    /**
+     * Publishes the public keys which are used to sign JWT tokens. Other services can verify tokens locally with 
+     * them and only need to ask again when a token has an unknown key id. 
+     * 
+     * @param ifNoneMatch - Entity tag of a key set which is already known by the client
+     * @return Key set; empty when tokens are only signed with a shared secret
+     */
+    @Operation(summary = "JSON Web Key Set", 
+            description = "Public keys which can be used to verify the signature of JWT tokens")
+    @GetMapping(value = ControllerPath.AUTHENTICATION_JWKS)
+    @ApiResponses(value = { 
+            @ApiResponse(responseCode = "200", description = "Current key set"),
+            @ApiResponse(responseCode = "304", description = "Key set is unchanged")
+    })
+    public ResponseEntity<JwksDto> getJsonWebKeySet(
+            @Nullable @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = jwtCodec.getJsonWebKeySetTag();
+        var cacheControl = CacheControl.maxAge(jwtConf.getJwksMaxAge(), TimeUnit.SECONDS).cachePublic();
+        if (matchesETag(etag, ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).eTag(etag).body(jwtCodec.getJsonWebKeySet());
+    }
+
     /**
      * Exception and Error handler for this Controller Class. It produces a new informational ErrorDto based
      * on the thrown exception.
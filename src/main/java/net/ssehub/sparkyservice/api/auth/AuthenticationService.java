@@ -1,34 +1,79 @@
 package net.ssehub.sparkyservice.api.auth;
 
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.ldap.AuthenticationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenReadException;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.jwt.TokenStatus;
+import net.ssehub.sparkyservice.api.auth.jwt.TokenVerification;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
 import net.ssehub.sparkyservice.api.user.dto.TokenDto;
 import net.ssehub.sparkyservice.api.user.extraction.UserExtractionService;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+import net.ssehub.sparkyservice.api.util.DateUtil;
 
 @Service
 @ParametersAreNonnullByDefault
 public class AuthenticationService {
 
+    /**
+     * Serializes response bodies for their entity tag; writers are immutable and thread safe.
+     */
+    private static final ObjectWriter INTROSPECTION_WRITER = Jackson2ObjectMapperBuilder.json().build()
+        .writerFor(AuthenticationInfoDto.class);
+
+    private static final int TAG_HASH_BYTES = 16;
+
     @Nonnull
     private final UserExtractionService userExtractor;
 
     @Nonnull
     private final JwtTokenService jwtService;
 
+    @Nonnull
+    private final UserStorageService storageService;
+
+    /**
+     * Service for authentication related operations.
+     * 
+     * @param jwtService
+     * @param userExtractor
+     * @param storageService
+     */
     @Autowired
-    public AuthenticationService(JwtTokenService jwtService, UserExtractionService userExtractor) {
+    public AuthenticationService(JwtTokenService jwtService, UserExtractionService userExtractor, 
+            UserStorageService storageService) {
         this.jwtService = jwtService;
         this.userExtractor = userExtractor;
+        this.storageService = storageService;
     }
 
     public AuthenticationInfoDto checkAuthenticationStatus(@Nullable Authentication auth, HttpServletRequest request) 
@@ -63,6 +108,58 @@ public class AuthenticationService {
         return dto;
     }
 
+    /**
+     * Reads and validates a token without loading its owner from a storage.
+     * 
+     * @param jwtString - JWT token as string
+     * @return The decoded token
+     * @throws JwtTokenReadException When the token isn't valid
+     */
+    @Nonnull
+    public JwtToken readJwtToken(@Nullable String jwtString) throws JwtTokenReadException {
+        return jwtService.readJwtToken(jwtString);
+    }
+
+    /**
+     * Creates a strong entity tag for a token verification response. It is derived from the JTI of the token and a
+     * hash of the response body, so it changes when the returned information changes while the token is valid (like
+     * the full name of the user). Locked tokens don't need to be covered, they are rejected before.
+     * 
+     * @param token - A valid token
+     * @param body - The response for this token
+     * @return Quoted entity tag
+     */
+    @Nonnull
+    public String createIntrospectionTag(JwtToken token, AuthenticationInfoDto body) {
+        byte[] json;
+        try {
+            json = INTROSPECTION_WRITER.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the authentication information", e);
+        }
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(json);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        String version = Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, TAG_HASH_BYTES));
+        return "\"" + token.getJti() + "-" + version + "\"";
+    }
+
+    /**
+     * Calculates how long a verification response of the given token may be reused. This is bound by the 
+     * remaining lifetime of the token and {@link JwtSettings#getIntrospectionMaxAge()}.
+     * 
+     * @param token - A valid token
+     * @return Maximum age in seconds, never negative
+     */
+    public long getIntrospectionMaxAge(JwtToken token) {
+        long remainingSeconds = (token.getExpirationDate().getTime() - System.currentTimeMillis()) / 1000;
+        long maxAge = Math.min(remainingSeconds, jwtService.getJwtConf().getIntrospectionMaxAge());
+        return Math.max(0, maxAge);
+    }
+
     /**
      * Verifies the status of a token.
      * 
@@ -74,4 +171,82 @@ public class AuthenticationService {
         var auth = jwtService.readRefreshToAuthentication(jwtString, userExtractor);
         return createAuthenticationInfoDto(auth);
     }
-}
\ No newline at end of file
+
+    /**
+     * Exchanges the token of the request for a new one.
+     * 
+     * @param request - Holds the token in the configured authorization header
+     * @return Authentication information with the new token
+     * @throws JwtTokenReadException When the token is invalid or can't be refreshed
+     * @see JwtTokenService#refresh(String, UserExtractionService)
+     */
+    public AuthenticationInfoDto refreshJwtToken(HttpServletRequest request) throws JwtTokenReadException {
+        var jwtToken = request.getHeader(jwtService.getJwtConf().getHeader());
+        String newToken = jwtService.refresh(jwtToken, userExtractor);
+        var auth = jwtService.readRefreshToAuthentication(newToken, userExtractor);
+        return createAuthenticationInfoDto(auth);
+    }
+
+    /**
+     * Verifies several tokens at once. The owners of all valid tokens are loaded with a single storage query.
+     * Owners which aren't in the storage (like memory users) are described with the information of the token.
+     * 
+     * @param jwtStrings - Tokens to verify
+     * @return One result per token in the same order
+     */
+    @Nonnull
+    public List<TokenVerificationDto> verifyJwtTokens(List<String> jwtStrings) {
+        List<TokenVerification> verifications = jwtService.verifyAll(jwtStrings);
+        Set<String> usernames = verifications.stream()
+            .filter(v -> v.getStatus() == TokenStatus.VALID)
+            .flatMap(v -> v.getToken().stream())
+            .map(token -> token.getUserInfo().getName())
+            .collect(Collectors.toSet());
+        Map<String, SparkyUser> storedUsers = new HashMap<>();
+        if (!usernames.isEmpty()) {
+            storageService.findUsersByUsernames(usernames)
+                .forEach(user -> storedUsers.put(userKey(user.getUsername(), user.getRealm()), user));
+        }
+        return notNull(verifications.stream()
+            .map(v -> createTokenVerificationDto(v, storedUsers))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Creates the DTO for a single verification result.
+     * 
+     * @param verification
+     * @param storedUsers - Owners of the valid tokens which are in the storage
+     * @return Verification DTO; contains the owner when the token is valid
+     */
+    private TokenVerificationDto createTokenVerificationDto(TokenVerification verification, 
+            Map<String, SparkyUser> storedUsers) {
+        var dto = new TokenVerificationDto();
+        dto.status = verification.getStatus();
+        verification.getToken().ifPresent(token -> {
+            dto.expiration = DateUtil.toString(token.getExpirationDate());
+            if (verification.getStatus() == TokenStatus.VALID) {
+                var principal = token.getUserInfo();
+                SparkyUser user = storedUsers.get(userKey(principal.getName(), principal.getRealm()));
+                if (user == null) {
+                    var auth = new UsernamePasswordAuthenticationToken(principal, null, 
+                        token.getTokenPermissionRoles());
+                    user = userExtractor.extract(auth);
+                }
+                dto.user = user.ownDto();
+            }
+        });
+        return dto;
+    }
+
+    /**
+     * Key of a user which is unique over all realms.
+     * 
+     * @param username
+     * @param realm
+     * @return Case insensitive key
+     */
+    private static String userKey(String username, UserRealm realm) {
+        return username.toLowerCase() + "@" + realm;
+    }
+}
@@ -0,0 +1,191 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+
+/**
+ * Password encoder which runs the (slow) hash functions of another encoder on a dedicated thread pool with a bounded
+ * queue. At most one hash per thread is computed at the same time; when the queue is full, further requests are
+ * rejected immediately with a {@link PasswordHashingRejectedException} instead of occupying request threads of the
+ * web server. Callers still wait for their own hash, but only behind a bounded number of other hashes.
+ *
+ * @author marcel
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class BoundedPasswordEncoder implements PasswordEncoder, MetricsProvider, DisposableBean {
+
+    @Nonnull
+    private final PasswordEncoder delegate;
+
+    @Nonnull
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Encoder with a pool of the given size.
+     *
+     * @param delegate - Computes the hashes
+     * @param threads - Number of hashes which are computed in parallel; <code>0</code> uses the number of processors
+     * @param queueSize - Number of hashes which may wait for a thread
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueSize) {
+        this.delegate = delegate;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        var threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                var thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(@Nullable CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(@Nullable CharSequence rawPassword, @Nullable String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(@Nullable String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Wraps another encoder, whose hashes are computed on the pool of this encoder. Both encoders share the threads,
+     * the queue and the rejection of new hashes when the queue is full.
+     *
+     * @param other - Computes the hashes, for example with another strength
+     * @return Encoder which may throw {@link PasswordHashingRejectedException}
+     */
+    @Nonnull
+    public PasswordEncoder bound(PasswordEncoder other) {
+        return new PasswordEncoder() {
+
+            @Override
+            public String encode(@Nullable CharSequence rawPassword) {
+                return run(() -> other.encode(rawPassword));
+            }
+
+            @Override
+            public boolean matches(@Nullable CharSequence rawPassword, @Nullable String encodedPassword) {
+                return run(() -> other.matches(rawPassword, encodedPassword));
+            }
+
+            @Override
+            public boolean upgradeEncoding(@Nullable String encodedPassword) {
+                return other.upgradeEncoding(encodedPassword);
+            }
+        };
+    }
+
+    /**
+     * Runs a hash function on the pool and waits for the result.
+     *
+     * @param <T> - Result type
+     * @param hashFunction
+     * @return Result of the function
+     * @throws PasswordHashingRejectedException When the queue is full
+     */
+    private <T> T run(Callable<T> hashFunction) {
+        long submitted = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                long started = System.nanoTime();
+                waitNanos.add(started - submitted);
+                try {
+                    return hashFunction.call();
+                } finally {
+                    hashNanos.add(System.nanoTime() - started);
+                    hashes.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException(getRetryAfterSeconds());
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    /**
+     * Estimates how long it takes until the queue has room again: The time to hash the full queue with all threads.
+     *
+     * @return Seconds, at least 1
+     */
+    public long getRetryAfterSeconds() {
+        long count = hashes.sum();
+        long averageNanos = count == 0 ? 0 : hashNanos.sum() / count;
+        long queueNanos = averageNanos * executor.getQueue().size() / executor.getMaximumPoolSize();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(queueNanos) + 1);
+    }
+
+    /**
+     * Stops the threads of the pool.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "password";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        long count = hashes.sum();
+        var metrics = new HashMap<String, Number>();
+        metrics.put("hashing.threads", executor.getMaximumPoolSize());
+        metrics.put("hashing.active", executor.getActiveCount());
+        metrics.put("hashing.queue.depth", executor.getQueue().size());
+        metrics.put("hashing.count", count);
+        metrics.put("hashing.rejected", rejected.sum());
+        metrics.put("hashing.latency.avg.ms", count == 0 ? 0 : hashNanos.sum() / count / 1_000_000.0);
+        metrics.put("hashing.wait.avg.ms", count == 0 ? 0 : waitNanos.sum() / count / 1_000_000.0);
+        return metrics;
+    }
+}
@@ -0,0 +1,117 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder with a known strength (work factor). Only hashes which are weaker than the strength minus a
+ * tolerance are outdated; stronger hashes are kept. Otherwise nodes with different calibrated strengths (or a
+ * calibration which ends up on another strength after a restart) would re-encode the same passwords back and forth
+ * on every login. <br>
+ * Use {@link #calibrate(long, int)} to find the strength for the current hardware.
+ *
+ * @author marcel
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    public static final int DEFAULT_STRENGTH = 10;
+
+    static final int MIN_STRENGTH = 4;
+
+    static final int MAX_STRENGTH = 31;
+
+    private static final Logger LOG = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_STRENGTH = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$.{53}");
+
+    private static final String SAMPLE_PASSWORD = "calibration-sample";
+
+    /**
+     * Tolerance for calibrated strengths: The timing of the calibration is noisy, so a hash one step below the
+     * calibrated strength is still up to date.
+     */
+    public static final int CALIBRATION_TOLERANCE = 1;
+
+    private static final int PROBES = 2;
+
+    private final int strength;
+
+    private final int tolerance;
+
+    /**
+     * Encoder with a fixed strength; every weaker hash is outdated.
+     *
+     * @param strength - Work factor between 4 and 31, each step doubles the time of a hash
+     */
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        this(strength, 0);
+    }
+
+    /**
+     * Encoder with a fixed strength which accepts slightly weaker hashes.
+     *
+     * @param strength - Work factor between 4 and 31, each step doubles the time of a hash
+     * @param tolerance - Number of strength steps a hash may be below <code>strength</code> without being outdated
+     */
+    public CalibratedBCryptPasswordEncoder(int strength, int tolerance) {
+        super(strength);
+        this.strength = strength;
+        this.tolerance = Math.max(0, tolerance);
+    }
+
+    /**
+     * The work factor of new hashes.
+     *
+     * @return Strength between 4 and 31
+     */
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * {@inheritDoc} A hash must be re-encoded when its strength is more than the tolerance below the strength of
+     * this encoder. Stronger hashes are never re-encoded.
+     */
+    @Override
+    public boolean upgradeEncoding(@Nullable String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        var matcher = BCRYPT_STRENGTH.matcher(encodedPassword);
+        return matcher.matches() && Integer.parseInt(matcher.group(1)) < strength - tolerance;
+    }
+
+    /**
+     * Measures the time of a hash on the current hardware and returns the highest strength which still meets the
+     * target. The strength is only measured once, higher strengths are extrapolated (each step doubles the time).
+     *
+     * @param targetMillis - Maximum time for one hash
+     * @param minStrength - Strength which is used even when it misses the target
+     * @return Strength between <code>minStrength</code> and 31
+     */
+    public static int calibrate(long targetMillis, int minStrength) {
+        int calibrated = Math.max(MIN_STRENGTH, Math.min(MAX_STRENGTH, minStrength));
+        new BCryptPasswordEncoder(MIN_STRENGTH).encode(SAMPLE_PASSWORD); // warm up
+        var probe = new BCryptPasswordEncoder(calibrated);
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < PROBES; i++) {
+            long start = System.nanoTime();
+            probe.encode(SAMPLE_PASSWORD);
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        while (calibrated < MAX_STRENGTH && nanos * 2 <= targetNanos) {
+            calibrated++;
+            nanos *= 2;
+        }
+        LOG.info("BCrypt strength {} takes about {} ms per hash (target {} ms)", calibrated,
+            TimeUnit.NANOSECONDS.toMillis(nanos), targetMillis);
+        return calibrated;
+    }
+}
@@ -3,7 +3,6 @@ package net.ssehub.sparkyservice.api.auth;
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.Optional;
 
 import javax.annotation.Nonnull;
@@ -13,15 +12,20 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.exc.MismatchedInputException;
 
-import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenReadException;
+import net.ssehub.sparkyservice.api.auth.jwt.IssuedJwt;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
 import net.ssehub.sparkyservice.api.conf.ConfigurationValues;
 import net.ssehub.sparkyservice.api.user.SparkyUser;
@@ -34,11 +38,16 @@ import net.ssehub.sparkyservice.api.util.DateUtil;
  */
 public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilter {
     
-    private ObjectMapper jacksonObjectMapper;
+    /**
+     * Reads the credentials of the request body. Readers are immutable and thread safe, so all requests share it.
+     */
+    private static final ObjectReader CREDENTIALS_READER = new ObjectMapper().readerFor(CredentialsDto.class);
 
     private static final Logger LOG = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
+    private final ObjectWriter authInfoWriter;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenService jwtService;
+    private final LoginThrottle loginThrottle;
 
     /**
      * Constructor for the general Authentication filter. In most cases filters are set in the spring security 
@@ -46,15 +55,18 @@ public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilte
      * 
      * @param authenticationManager
      * @param jwtService
-     * @param springOM The JSON object mapper used by spring for the REST interfaces.
+     * @param springOM The JSON object mapper used by spring for the REST interfaces. The response is written with its
+     *        configuration.
+     * @param loginThrottle Limits the login attempts before the credentials are checked
      */
     public JwtAuthenticationFilter(AuthenticationManager authenticationManager, JwtTokenService jwtService,
-        ObjectMapper springOM) {
+        ObjectMapper springOM, LoginThrottle loginThrottle) {
         
         this.authenticationManager = authenticationManager;
         setFilterProcessesUrl(ConfigurationValues.AUTH_LOGIN_URL);
         this.jwtService = jwtService;
-        this.jacksonObjectMapper = springOM;
+        this.authInfoWriter = springOM.writerFor(AuthenticationInfoDto.class);
+        this.loginThrottle = loginThrottle;
     }
 
     /**
@@ -63,11 +75,47 @@ public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilte
     @Override
     public Authentication attemptAuthentication(HttpServletRequest request, HttpServletResponse response) {
         var userDetails = extractCredentialsFromHttpRequest(request);
-        var authentication = authenticationManager.authenticate(userDetails);
+        Authentication authentication;
+        try {
+            loginThrottle.acquire((String) userDetails.getPrincipal(), notNull(request.getRemoteAddr()));
+            authentication = authenticationManager.authenticate(userDetails);
+        } catch (LoginThrottledException e) {
+            rejectOverload(response, HttpStatus.TOO_MANY_REQUESTS, e.getMessage(), e.getRetryAfterSeconds());
+            return null;
+        } catch (PasswordHashingRejectedException e) {
+            rejectOverload(response, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e.getRetryAfterSeconds());
+            return null;
+        } catch (InternalAuthenticationServiceException e) {
+            if (e.getCause() instanceof PasswordHashingRejectedException) {
+                var cause = (PasswordHashingRejectedException) e.getCause();
+                rejectOverload(response, HttpStatus.SERVICE_UNAVAILABLE, cause.getMessage(),
+                    cause.getRetryAfterSeconds());
+                return null;
+            }
+            throw e;
+        }
         assertSparkyUser(authentication);
         return authentication;
     }
 
+    /**
+     * Rejects a login whose password wasn't checked: <code>429 Too Many Requests</code> when the user or client
+     * tried too many logins, <code>503 Service Unavailable</code> when too many other logins are waiting for their
+     * hash (the same status as other requests which are rejected by the hashing pool). Returning no authentication
+     * afterwards ends the request without calling the failure handler.
+     * 
+     * @param response
+     * @param status - Status of the response
+     * @param reason - Logged reason of the rejection
+     * @param retryAfterSeconds - Time until logins are accepted again
+     */
+    private static void rejectOverload(HttpServletResponse response, HttpStatus status, String reason,
+            long retryAfterSeconds) {
+        LOG.info("Login rejected: {}", reason);
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+
     /**
      * {@inheritDoc}.
      * The principal (accessible through {@link Authentication#getPrincipal()} of this authentication always contains 
@@ -87,29 +135,25 @@ public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilte
 
     /**
      * Creates an DTO which holds all information of the user the given (authenticated) user and generates an JWT
-     * token for this user. The generated token can be used for authorization. 
+     * token for this user. The generated token can be used for authorization. The expiration date is taken from the
+     * issued token, it isn't parsed again.
      * 
      * @param user
      * @return DTO with user information and generated JWT token
      */
     @Nonnull
     private AuthenticationInfoDto createTokenAndInfo(@Nonnull SparkyUser user) {
-        String jwt = jwtService.createFor(user);
-        Date expDate;
-        try {
-            expDate = jwtService.readJwtToken(jwt).getExpirationDate();
-        } catch (JwtTokenReadException e) {
-            throw new RuntimeException(e);
-        }
+        IssuedJwt jwt = jwtService.issueFor(user);
         var authDto = new AuthenticationInfoDto();
-        authDto.token.token = jwt;
-        authDto.token.expiration = DateUtil.toString(expDate);
+        authDto.token.token = jwt.getEncoded();
+        authDto.token.expiration = DateUtil.toString(jwt.getExpirationDate());
         authDto.user = user.ownDto();
         return authDto;
     }
     
     /**
-     * Writes the given authentication information into the http response as JSON. 
+     * Writes the given authentication information into the http response as JSON. The JSON is streamed into the
+     * response (encoded as UTF-8 by Jackson) without an intermediate string.
      * 
      * @param response The targeted response
      * @param authDto Information which will be the return content
@@ -119,10 +163,8 @@ public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilte
         String jwtPrefix = jwtService.getJwtConf().getPrefix();
         response.addHeader(httpHeader, jwtPrefix + " " + authDto.token.token);
         response.setContentType("application/json; charset=UTF-8"); 
-        try (var responseWriter = response.getWriter()) {
-            String bodyDtoString = jacksonObjectMapper.writeValueAsString(authDto);
-            responseWriter.write(bodyDtoString);
-            responseWriter.flush();
+        try (var responseStream = response.getOutputStream()) {
+            authInfoWriter.writeValue(responseStream, authDto);
         } catch (IOException e) {
             LOG.warn("Authentication Header not written: Invalid json format.");
         }
@@ -158,7 +200,7 @@ public class JwtAuthenticationFilter extends UsernamePasswordAuthenticationFilte
         LOG.debug("[HTTP Parameter] Username: " + username + " | Password available: " + passwordAvailable);
         if (username == null && password == null) {
             try {
-                CredentialsDto cred = new ObjectMapper().readValue(request.getInputStream(), CredentialsDto.class);
+                CredentialsDto cred = CREDENTIALS_READER.readValue(request.getInputStream());
                 username = cred.username.trim();
                 password = cred.password;
                 boolean avail = password != null && !password.isBlank();
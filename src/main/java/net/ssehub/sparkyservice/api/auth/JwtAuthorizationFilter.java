@@ -12,6 +12,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,6 +21,7 @@ import org.springframework.security.web.authentication.www.BasicAuthenticationFi
 import net.ssehub.sparkyservice.api.auth.jwt.JwtAuthTools;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenReadException;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
 import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
 
 /**
@@ -30,6 +32,11 @@ import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
 public class JwtAuthorizationFilter extends BasicAuthenticationFilter {
 
     private static final Logger LOG = LoggerFactory.getLogger(JwtAuthorizationFilter.class);
+
+    /**
+     * Time clients should wait when tokens can't be checked during startup.
+     */
+    private static final String RETRY_AFTER_SECONDS = "5";
     private final JwtTokenService jwtService;
 
     /**
@@ -50,6 +57,11 @@ public class JwtAuthorizationFilter extends BasicAuthenticationFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws IOException, ServletException {
         LOG.debug("Requested URI: {}", request.getRequestURI());
+        if (!JwtCache.getInstance().isReady() && request.getHeader(jwtService.getJwtConf().getHeader()) != null) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Locked tokens are not loaded yet");
+            return;
+        }
         var authentication = getAuthentication(request);
         if (authentication == null) {
             filterChain.doFilter(request, response);
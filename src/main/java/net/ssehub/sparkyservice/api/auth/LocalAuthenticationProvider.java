@@ -0,0 +1,89 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import net.ssehub.sparkyservice.api.user.LocalUserDetails;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Authenticates users of the {@link net.ssehub.sparkyservice.api.user.UserRealm#LOCAL} realm. The stored password is
+ * checked with the algorithm of its entity (see {@link PasswordHashing}). After a successful login, a password with
+ * an outdated algorithm or strength is hashed again and saved.
+ *
+ * @author marcel
+ */
+public class LocalAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final Logger log = LoggerFactory.getLogger(LocalAuthenticationProvider.class);
+
+    private final UserStorageService storageService;
+
+    /**
+     * Provider for local users.
+     *
+     * @param detailsService - Loads the local users
+     * @param passwordEncoder - Encoder for <code>{algorithm}hash</code> values, see {@link PasswordHashing}
+     * @param storageService - Saves rehashed passwords
+     */
+    public LocalAuthenticationProvider(UserDetailsService detailsService, PasswordEncoder passwordEncoder,
+        UserStorageService storageService) {
+        setUserDetailsService(detailsService);
+        setPasswordEncoder(passwordEncoder);
+        this.storageService = storageService;
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+        UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+        if (!(userDetails instanceof LocalUserDetails)) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+        var user = (LocalUserDetails) userDetails;
+        Object credentials = authentication.getCredentials();
+        String storedPassword = PasswordHashing.toEncoded(user.getPasswordEntity());
+        if (credentials == null || !getPasswordEncoder().matches(credentials.toString(), storedPassword)) {
+            log.debug("Authentication failed: password does not match stored value");
+            throw new BadCredentialsException(messages.getMessage(
+                "AbstractUserDetailsAuthenticationProvider.badCredentials", "Bad credentials"));
+        }
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+        UserDetails user) {
+        if (user instanceof LocalUserDetails) {
+            rehash((LocalUserDetails) user, authentication.getCredentials().toString());
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+
+    /**
+     * Hashes and saves an outdated password. Failures only postpone the rehash to the next login.
+     *
+     * @param user - Successfully authenticated user
+     * @param rawPassword - The checked password
+     */
+    private void rehash(LocalUserDetails user, String rawPassword) {
+        try {
+            user.setEncoder(getPasswordEncoder());
+            if (user.rehashIfOutdated(rawPassword)) {
+                storageService.commit(user);
+                log.info("Rehashed outdated password of {}@{}", user.getUsername(), user.getRealm());
+            }
+        } catch (PasswordHashingRejectedException | DataAccessException e) {
+            log.warn("Outdated password of {}@{} not rehashed: {}", user.getUsername(), user.getRealm(),
+                e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+
+/**
+ * Limits the password attempts per username and per client IP before the credentials are checked, so a burst of
+ * guessed passwords doesn't turn into password hashes and LDAP binds. Each attempt takes a token of both buckets
+ * (see {@link TokenBucketLimiter}); an attempt is rejected when one of them is empty. <br>
+ * The IP is the remote address of the request. Behind a proxy all clients share the address of the proxy, so the IP
+ * limit must be raised (or disabled with a capacity of <code>0</code>) in that case.
+ *
+ * @author marcel
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class LoginThrottle implements MetricsProvider {
+
+    @Nonnull
+    private final TokenBucketLimiter userLimiter;
+
+    @Nonnull
+    private final TokenBucketLimiter ipLimiter;
+
+    private final LongAdder rejectedByUser = new LongAdder();
+    private final LongAdder rejectedByIp = new LongAdder();
+
+    /**
+     * Throttle with the given limiters.
+     *
+     * @param userLimiter - Buckets per username
+     * @param ipLimiter - Buckets per client IP
+     */
+    public LoginThrottle(TokenBucketLimiter userLimiter, TokenBucketLimiter ipLimiter) {
+        this.userLimiter = userLimiter;
+        this.ipLimiter = ipLimiter;
+    }
+
+    /**
+     * Takes a token for a login attempt.
+     *
+     * @param username - Submitted username, the attempt is only limited by IP without a username
+     * @param clientIp - Remote address of the request
+     * @throws LoginThrottledException When the user or the client has no tokens left
+     */
+    public void acquire(@Nullable String username, String clientIp) {
+        long ipWait = ipLimiter.tryAcquire(clientIp);
+        if (ipWait > 0) {
+            rejectedByIp.increment();
+            throw new LoginThrottledException("from " + clientIp, toSeconds(ipWait));
+        }
+        if (username != null && !username.isBlank()) {
+            long userWait = userLimiter.tryAcquire(username.trim().toLowerCase(Locale.ROOT));
+            if (userWait > 0) {
+                rejectedByUser.increment();
+                throw new LoginThrottledException("for " + username, toSeconds(userWait));
+            }
+        }
+    }
+
+    /**
+     * Rounds a waiting time up to seconds.
+     *
+     * @param millis
+     * @return Seconds, at least <code>1</code>
+     */
+    private static long toSeconds(long millis) {
+        return Math.max(1, (millis + TimeUnit.SECONDS.toMillis(1) - 1) / TimeUnit.SECONDS.toMillis(1));
+    }
+
+    /**
+     * Removes the buckets of users and clients which didn't try to log in for a while.
+     */
+    @Scheduled(fixedDelayString = "${login.throttle.expire-interval-ms:60000}")
+    public void expireIdle() {
+        userLimiter.expireIdle();
+        ipLimiter.expireIdle();
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "login";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        var metrics = new HashMap<String, Number>();
+        metrics.put("throttle.rejected.user", rejectedByUser.sum());
+        metrics.put("throttle.rejected.ip", rejectedByIp.sum());
+        metrics.put("throttle.buckets.user", userLimiter.size());
+        metrics.put("throttle.buckets.ip", ipLimiter.size());
+        metrics.put("throttle.untracked", userLimiter.getUntracked() + ipLimiter.getUntracked());
+        return metrics;
+    }
+}
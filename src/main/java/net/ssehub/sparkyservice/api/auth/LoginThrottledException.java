@@ -0,0 +1,34 @@
+package net.ssehub.sparkyservice.api.auth;
+
+/**
+ * Thrown when a login is rejected because the user or the client tried too many logins in a short time (see
+ * {@link LoginThrottle}). The request should be repeated later.
+ *
+ * @author marcel
+ */
+public class LoginThrottledException extends RuntimeException {
+
+    private static final long serialVersionUID = 5160423385839218342L;
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Exception with a hint when the login can be repeated.
+     *
+     * @param reason - Which limit was exceeded
+     * @param retryAfterSeconds - Time until the next login is accepted
+     */
+    public LoginThrottledException(String reason, long retryAfterSeconds) {
+        super("Too many logins " + reason + ", retry in " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Time until the next login is accepted.
+     *
+     * @return Seconds for the <code>Retry-After</code> header
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,137 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.RecoverySettings;
+import net.ssehub.sparkyservice.api.jpa.user.Password;
+import net.ssehub.sparkyservice.api.user.LocalUserDetails;
+import net.ssehub.sparkyservice.api.user.MemoryUser;
+import net.ssehub.sparkyservice.api.user.MemoryUserFactory;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Configured accounts of the {@link UserRealm#MEMORY} realm. The passwords are hashed once when the registry is
+ * created, lookups don't hash anything. The accounts are held in an immutable map; every lookup returns a new
+ * {@link MemoryUser} so changes of one login don't leak into another.
+ *
+ * @author marcel
+ */
+@Component
+@Immutable
+@ParametersAreNonnullByDefault
+public class MemoryUserRegistry {
+
+    /**
+     * A memory account with its hashed password.
+     */
+    private static final class Account {
+        private final Password password;
+        private final UserRole role;
+
+        /**
+         * Account with a hashed password.
+         *
+         * @param password
+         * @param role
+         */
+        private Account(Password password, UserRole role) {
+            this.password = password;
+            this.role = role;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryUserRegistry.class);
+
+    private static final MemoryUserFactory FACTORY = new MemoryUserFactory();
+
+    private final boolean enabled;
+
+    @Nonnull
+    private final Map<String, Account> accounts;
+
+    /**
+     * Hashes the passwords of all configured accounts. Accounts without password are skipped.
+     *
+     * @param settings - Configured accounts
+     * @param encoder - Hashes the passwords
+     */
+    @Autowired
+    public MemoryUserRegistry(RecoverySettings settings, PasswordEncoder encoder) {
+        this.enabled = settings.isEnabled();
+        var hashed = new HashMap<String, Account>();
+        if (enabled) {
+            settings.getUsers().forEach((name, account) -> add(hashed, encoder, name, account.getPassword(),
+                account.getRole()));
+            add(hashed, encoder, settings.getUser(), settings.getPassword(), UserRole.ADMIN);
+        }
+        this.accounts = notNull(Map.copyOf(hashed));
+        LOG.debug("{} memory accounts configured", accounts.size());
+    }
+
+    /**
+     * Hashes the password of an account and adds it to the map.
+     *
+     * @param hashed - Target map
+     * @param encoder
+     * @param name
+     * @param rawPassword - Plain text password, accounts with an empty password are skipped
+     * @param role
+     */
+    private static void add(Map<String, Account> hashed, PasswordEncoder encoder, @Nullable String name,
+        @Nullable String rawPassword, @Nullable UserRole role) {
+        if (name != null && !name.isBlank() && rawPassword != null && !rawPassword.isEmpty()) {
+            // keeps the {algorithm} prefix: memory users aren't stored and are checked by a DaoAuthenticationProvider
+            var password = new Password(notNull(encoder.encode(rawPassword)), LocalUserDetails.DEFAULT_ALGO);
+            hashed.put(name, new Account(password, role == null ? UserRole.ADMIN : role));
+        }
+    }
+
+    /**
+     * Whether memory logins are enabled.
+     *
+     * @return <code>true</code> if the accounts can be used
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The names of all usable accounts.
+     *
+     * @return Immutable set of usernames, empty when memory logins are disabled
+     */
+    public @Nonnull Set<String> getUsernames() {
+        return notNull(accounts.keySet());
+    }
+
+    /**
+     * Looks up a memory account.
+     *
+     * @param username
+     * @return New user instance of the account or empty if no account has this name
+     */
+    public @Nonnull Optional<MemoryUser> find(@Nullable String username) {
+        if (username == null) {
+            return notNull(Optional.empty());
+        }
+        return notNull(Optional.ofNullable(accounts.get(username))
+            .map(account -> FACTORY.create(username, account.password, account.role, true)));
+    }
+}
@@ -0,0 +1,148 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import net.ssehub.sparkyservice.api.jpa.user.Password;
+import net.ssehub.sparkyservice.api.user.LocalUserDetails;
+
+/**
+ * Hashes passwords with the algorithm stored in {@link Password#getHashAlgorithm()}. The encoder is a
+ * {@link DelegatingPasswordEncoder} keyed on that column: A {@link Password} is passed as <code>{algorithm}hash</code>
+ * and new hashes are split into the column and the hash again. New hashes always use
+ * {@link LocalUserDetails#DEFAULT_ALGO}; {@link #needsRehash(Password)} tells if a hash uses another algorithm or
+ * strength.<br>
+ * The methods take the encoder which is used; the configured bean is defined in
+ * {@link net.ssehub.sparkyservice.api.conf.SpringConfig}. {@link #defaultEncoder()} is meant for code which has no
+ * access to the bean, its hashes are replaced by the next login (see {@link LocalAuthenticationProvider}).
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+public final class PasswordHashing {
+
+    /**
+     * Label of BCrypt hashes which were stored without their algorithm. Such rows carry the default of
+     * {@link Password} in upper case (<code>PLAIN</code>); labels are compared case-insensitively.
+     */
+    public static final String LEGACY_ALGORITHM = "plain";
+
+    private static final String PREFIX = "{";
+
+    private static final String SUFFIX = "}";
+
+    @Nonnull
+    private static final PasswordEncoder DEFAULT_ENCODER = createEncoder(
+        CalibratedBCryptPasswordEncoder.DEFAULT_STRENGTH);
+
+    /**
+     * Disabled.
+     */
+    private PasswordHashing() {
+    }
+
+    /**
+     * Creates an encoder for all known algorithms which hashes new passwords with BCrypt.
+     *
+     * @param bcryptStrength - Strength of new BCrypt hashes
+     * @return Encoder for <code>{algorithm}hash</code> values
+     */
+    public static @Nonnull PasswordEncoder createEncoder(int bcryptStrength) {
+        return createEncoder(bcryptStrength, 0);
+    }
+
+    /**
+     * Creates an encoder for all known algorithms which hashes new passwords with BCrypt and keeps slightly weaker
+     * BCrypt hashes, see {@link CalibratedBCryptPasswordEncoder#CALIBRATION_TOLERANCE}.
+     *
+     * @param bcryptStrength - Strength of new BCrypt hashes
+     * @param tolerance - Strength steps a stored hash may be below <code>bcryptStrength</code> without a rehash
+     * @return Encoder for <code>{algorithm}hash</code> values
+     */
+    public static @Nonnull PasswordEncoder createEncoder(int bcryptStrength, int tolerance) {
+        var bcrypt = new CalibratedBCryptPasswordEncoder(bcryptStrength, tolerance);
+        var encoders = new HashMap<String, PasswordEncoder>();
+        encoders.put(LocalUserDetails.DEFAULT_ALGO, bcrypt);
+        encoders.put(LEGACY_ALGORITHM, bcrypt);
+        return new DelegatingPasswordEncoder(LocalUserDetails.DEFAULT_ALGO, encoders);
+    }
+
+    /**
+     * Encoder with the default strength, which doesn't depend on the configuration.
+     *
+     * @return Encoder for <code>{algorithm}hash</code> values
+     */
+    public static @Nonnull PasswordEncoder defaultEncoder() {
+        return DEFAULT_ENCODER;
+    }
+
+    /**
+     * Hashes a password with the current algorithm.
+     *
+     * @param encoder - Encoder for <code>{algorithm}hash</code> values
+     * @param rawPassword - Plain text password
+     * @return Hash with its algorithm
+     * @throws PasswordHashingRejectedException When the encoder is a full {@link BoundedPasswordEncoder}
+     */
+    public static @Nonnull Password encode(PasswordEncoder encoder, String rawPassword) {
+        return toPassword(notNull(encoder.encode(rawPassword)));
+    }
+
+    /**
+     * Checks a plain text password against a stored one.
+     *
+     * @param encoder - Encoder for <code>{algorithm}hash</code> values
+     * @param rawPassword - Plain text password
+     * @param password - Stored hash with its algorithm
+     * @return <code>true</code> if the password matches
+     * @throws PasswordHashingRejectedException When the encoder is a full {@link BoundedPasswordEncoder}
+     */
+    public static boolean matches(PasswordEncoder encoder, @Nullable String rawPassword, Password password) {
+        return rawPassword != null && encoder.matches(rawPassword, toEncoded(password));
+    }
+
+    /**
+     * Checks if a stored password uses an outdated algorithm or strength and should be hashed again.
+     *
+     * @param encoder - Encoder for <code>{algorithm}hash</code> values
+     * @param password - Stored hash with its algorithm
+     * @return <code>true</code> if the hash is outdated
+     */
+    public static boolean needsRehash(PasswordEncoder encoder, Password password) {
+        return encoder.upgradeEncoding(toEncoded(password));
+    }
+
+    /**
+     * Joins the algorithm and the hash of a stored password into the format of the {@link DelegatingPasswordEncoder}.
+     * The algorithm is lower cased, because the delegating encoder looks it up case-sensitively.
+     *
+     * @param password
+     * @return <code>{algorithm}hash</code>
+     */
+    public static @Nonnull String toEncoded(Password password) {
+        return PREFIX + password.getHashAlgorithm().toLowerCase(Locale.ROOT) + SUFFIX + password.getPasswordString();
+    }
+
+    /**
+     * Splits a value of the {@link DelegatingPasswordEncoder} into a password entity.
+     *
+     * @param encoded - <code>{algorithm}hash</code>
+     * @return Hash with its algorithm
+     */
+    public static @Nonnull Password toPassword(String encoded) {
+        int end = encoded.indexOf(SUFFIX);
+        if (!encoded.startsWith(PREFIX) || end < 0) {
+            throw new IllegalArgumentException("Encoded password has no algorithm");
+        }
+        return new Password(notNull(encoded.substring(end + 1)), encoded.substring(PREFIX.length(), end));
+    }
+}
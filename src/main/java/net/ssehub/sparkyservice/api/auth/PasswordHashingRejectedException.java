@@ -0,0 +1,33 @@
+package net.ssehub.sparkyservice.api.auth;
+
+/**
+ * Thrown when a password can't be hashed because too many hashes are waiting already (see
+ * {@link BoundedPasswordEncoder}). The request should be repeated later.
+ *
+ * @author marcel
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = -2938510674423561784L;
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Exception with a hint when the request can be repeated.
+     *
+     * @param retryAfterSeconds - Estimated time until hashes are accepted again
+     */
+    public PasswordHashingRejectedException(long retryAfterSeconds) {
+        super("Too many concurrent password checks, retry in " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Estimated time until hashes are accepted again.
+     *
+     * @return Seconds for the <code>Retry-After</code> header
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,203 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * In-memory token buckets, one per key (like a username or an IP address). Each bucket holds up to
+ * <code>capacity</code> tokens and is refilled continuously; every request takes one token. <br>
+ * The buckets are distributed over a fixed number of stripes, each with its own lock, so requests of different keys
+ * rarely wait for each other. A bucket which is full again carries no information and is removed (when its stripe
+ * runs full and by {@link #expireIdle()}). When a stripe is still full after that, the bucket which wasn't used for
+ * the longest time is dropped (and counted as untracked) instead of growing the memory. New keys are always limited,
+ * so many distinct keys can't switch the limiter off.
+ *
+ * @author marcel
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class TokenBucketLimiter {
+
+    private static final int STRIPES = 64;
+
+    /**
+     * Current state of a single bucket. Guarded by the lock of its stripe.
+     */
+    private static final class Bucket {
+        private double tokens;
+        private long updated;
+    }
+
+    private final Map<String, Bucket>[] stripes;
+
+    private final LongSupplier clock;
+
+    private final int capacity;
+
+    private final double tokensPerMilli;
+
+    private final int maxEntriesPerStripe;
+
+    private final LongAdder untracked = new LongAdder();
+
+    /**
+     * Limiter with the system clock.
+     *
+     * @param capacity - Number of requests which are allowed at once, <code>0</code> disables the limiter
+     * @param refillPerMinute - Number of tokens which are added per minute
+     * @param maxEntries - Upper limit of buckets held in memory
+     */
+    public TokenBucketLimiter(int capacity, int refillPerMinute, int maxEntries) {
+        this(capacity, refillPerMinute, maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * Limiter with its own clock.
+     *
+     * @param capacity - Number of requests which are allowed at once, <code>0</code> disables the limiter
+     * @param refillPerMinute - Number of tokens which are added per minute
+     * @param maxEntries - Upper limit of buckets held in memory
+     * @param clock - Current time in milliseconds
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TokenBucketLimiter(int capacity, int refillPerMinute, int maxEntries, LongSupplier clock) {
+        this.capacity = Math.max(0, capacity);
+        this.tokensPerMilli = Math.max(1, refillPerMinute) / (double) TimeUnit.MINUTES.toMillis(1);
+        this.maxEntriesPerStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        this.clock = clock;
+        this.stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            // access order: the first entry is the least recently used bucket
+            stripes[i] = new LinkedHashMap<>(16, 0.75f, true);
+        }
+    }
+
+    /**
+     * Whether requests are limited at all.
+     *
+     * @return <code>true</code> if the capacity is positive
+     */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Takes a token from the bucket of the key.
+     *
+     * @param key - Identifies the bucket
+     * @return <code>0</code> if the request is allowed, otherwise the milliseconds until the next token is available
+     */
+    public long tryAcquire(String key) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        var stripe = stripeOf(key);
+        synchronized (stripe) {
+            long now = clock.getAsLong();
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                if (stripe.size() >= maxEntriesPerStripe) {
+                    expireIdle(stripe, now);
+                }
+                if (stripe.size() >= maxEntriesPerStripe) {
+                    var eldest = stripe.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    untracked.increment();
+                }
+                bucket = new Bucket();
+                bucket.tokens = capacity;
+                bucket.updated = now;
+                stripe.put(key, bucket);
+            } else {
+                refill(bucket, now);
+            }
+            long waitMillis = 0;
+            if (bucket.tokens >= 1) {
+                bucket.tokens--;
+            } else {
+                waitMillis = Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerMilli));
+            }
+            return waitMillis;
+        }
+    }
+
+    /**
+     * Removes all buckets which are full again.
+     */
+    public void expireIdle() {
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                expireIdle(stripe, clock.getAsLong());
+            }
+        }
+    }
+
+    /**
+     * Removes the full buckets of a stripe. The caller must hold the lock of the stripe.
+     *
+     * @param stripe
+     * @param now - Current time in milliseconds
+     */
+    private void expireIdle(Map<String, Bucket> stripe, long now) {
+        stripe.values().removeIf(bucket -> {
+            refill(bucket, now);
+            return bucket.tokens >= capacity;
+        });
+    }
+
+    /**
+     * Adds the tokens since the last update. The caller must hold the lock of the stripe.
+     *
+     * @param bucket
+     * @param now - Current time in milliseconds
+     */
+    private void refill(Bucket bucket, long now) {
+        if (now > bucket.updated) {
+            bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updated) * tokensPerMilli);
+            bucket.updated = now;
+        }
+    }
+
+    /**
+     * Selects the stripe of a key.
+     *
+     * @param key
+     * @return The stripe which holds the bucket of the key
+     */
+    private Map<String, Bucket> stripeOf(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Number of buckets in memory.
+     *
+     * @return Current number of buckets
+     */
+    public int size() {
+        int size = 0;
+        for (var stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Number of buckets which were dropped before they were full again, because their stripe was full. The next
+     * request of such a key starts with a full bucket.
+     *
+     * @return Counter since startup
+     */
+    public long getUntracked() {
+        return untracked.sum();
+    }
+}
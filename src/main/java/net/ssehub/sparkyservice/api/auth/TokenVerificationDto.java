@@ -0,0 +1,24 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import net.ssehub.sparkyservice.api.auth.jwt.TokenStatus;
+import net.ssehub.sparkyservice.api.user.dto.UserDto;
+
+/**
+ * DTO for the verification result of a single token in a batch verification.
+ * 
+ * @author marcel
+ */
+//checkstyle: stop visibility modifier check
+public class TokenVerificationDto {
+    public TokenStatus status;
+
+    /**
+     * Only present when the token could be decoded.
+     */
+    public String expiration;
+
+    /**
+     * Only present for valid tokens.
+     */
+    public UserDto user;
+}
@@ -0,0 +1,194 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Compact encoding of the Sparky specific claims. Instead of a list of role names, the realm name and a UUID string,
+ * compact tokens contain:
+ * <ul>
+ * <li><code>rbm</code> - Bitmask of the roles, see {@link #ROLE_BITS}</li>
+ * <li><code>rlm</code> - One character realm code, see {@link #REALM_CODES}</li>
+ * <li><code>jti</code> - The 16 bytes of the UUID, base64url encoded</li>
+ * </ul>
+ * The bits and codes are part of the token format. Existing entries must never be changed or reordered - new roles
+ * and realms are appended.
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+final class CompactClaims {
+
+    static final String ROLE_MASK = "rbm";
+    static final String REALM = "rlm";
+
+    /**
+     * Role of each bit; bit <code>i</code> stands for <code>ROLE_BITS[i]</code>.
+     */
+    private static final UserRole[] ROLE_BITS = {UserRole.DEFAULT, UserRole.ADMIN, UserRole.SERVICE};
+
+    /**
+     * Code of each realm; the realm at index <code>i</code> has the code <code>REALM_CODES.charAt(i)</code>.
+     */
+    private static final String REALM_CODES = "ldmu";
+    private static final UserRealm[] REALMS = {UserRealm.LOCAL, UserRealm.LDAP, UserRealm.MEMORY, UserRealm.UNKNOWN};
+
+    /**
+     * Precomputed unmodifiable role list for every possible bitmask.
+     */
+    private static final List<List<UserRole>> ROLES_BY_MASK;
+
+    private static final int UUID_BYTES = 16;
+    private static final int ENCODED_UUID_LENGTH = 22;
+
+    static {
+        int combinations = 1 << ROLE_BITS.length;
+        var table = new ArrayList<List<UserRole>>(combinations);
+        for (int mask = 0; mask < combinations; mask++) {
+            var roles = new ArrayList<UserRole>();
+            for (int bit = 0; bit < ROLE_BITS.length; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    roles.add(ROLE_BITS[bit]);
+                }
+            }
+            table.add(Collections.unmodifiableList(roles));
+        }
+        ROLES_BY_MASK = Collections.unmodifiableList(table);
+    }
+
+    /**
+     * Disabled.
+     */
+    private CompactClaims() {
+    }
+
+    /**
+     * Encodes roles as bitmask.
+     *
+     * @param roles
+     * @return Bitmask for the <code>rbm</code> claim
+     */
+    static int encodeRoles(Collection<UserRole> roles) {
+        int mask = 0;
+        for (UserRole role : roles) {
+            int bit = roleBit(role);
+            if (bit < 0) {
+                throw new IllegalArgumentException("Role has no compact bit: " + role);
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the bit of a role in the <code>rbm</code> claim.
+     *
+     * @param role
+     * @return Bit index; <code>-1</code> when the role has no bit
+     */
+    static int roleBit(UserRole role) {
+        for (int bit = 0; bit < ROLE_BITS.length; bit++) {
+            if (ROLE_BITS[bit] == role) {
+                return bit;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a role bitmask.
+     *
+     * @param mask - Value of the <code>rbm</code> claim
+     * @return Shared unmodifiable list of the roles
+     * @throws IllegalArgumentException When unknown bits are set
+     */
+    @Nonnull
+    static List<UserRole> decodeRoles(int mask) {
+        if (mask < 0 || mask >= ROLES_BY_MASK.size()) {
+            throw new IllegalArgumentException("Unknown role bits in token: " + mask);
+        }
+        return notNull(ROLES_BY_MASK.get(mask));
+    }
+
+    /**
+     * Encodes a realm as one character code.
+     *
+     * @param realm
+     * @return Code for the <code>rlm</code> claim
+     */
+    @Nonnull
+    static String encodeRealm(UserRealm realm) {
+        for (int i = 0; i < REALMS.length; i++) {
+            if (REALMS[i] == realm) {
+                return notNull(REALM_CODES.substring(i, i + 1));
+            }
+        }
+        throw new IllegalArgumentException("Realm has no compact code: " + realm);
+    }
+
+    /**
+     * Decodes a realm code.
+     *
+     * @param code - Value of the <code>rlm</code> claim
+     * @return The realm; {@link UserRealm#UNKNOWN} for unknown codes
+     */
+    @Nonnull
+    static UserRealm decodeRealm(@Nullable String code) {
+        return code != null && code.length() == 1 ? decodeRealm(code.charAt(0)) : UserRealm.UNKNOWN;
+    }
+
+    /**
+     * Decodes a realm code.
+     *
+     * @param code - Single character of the <code>rlm</code> claim
+     * @return The realm; {@link UserRealm#UNKNOWN} for unknown codes
+     */
+    @Nonnull
+    static UserRealm decodeRealm(char code) {
+        int index = REALM_CODES.indexOf(code);
+        return index < 0 ? UserRealm.UNKNOWN : notNull(REALMS[index]);
+    }
+
+    /**
+     * Encodes a UUID as base64url string of its 16 bytes.
+     *
+     * @param jti
+     * @return 22 character string
+     */
+    @Nonnull
+    static String encodeJti(UUID jti) {
+        ByteBuffer buffer = ByteBuffer.allocate(UUID_BYTES);
+        buffer.putLong(jti.getMostSignificantBits());
+        buffer.putLong(jti.getLeastSignificantBits());
+        return notNull(Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array()));
+    }
+
+    /**
+     * Decodes a JTI in compact or in UUID string format.
+     *
+     * @param jti - Value of the <code>jti</code> claim
+     * @return The UUID
+     */
+    @Nonnull
+    static UUID decodeJti(String jti) {
+        if (jti.length() == ENCODED_UUID_LENGTH) {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(jti));
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        return notNull(UUID.fromString(jti));
+    }
+}
@@ -0,0 +1,659 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Verifier for HS512 tokens which were issued by this application. It works on reused per thread buffers instead of
+ * a generic claims map: The token is split without regular expressions, header and payload are base64url decoded into
+ * byte buffers and only the known claims are read. The <code>exp</code> claim is checked before the signature, so
+ * expired tokens are rejected without computing a HMAC. <br>
+ * Everything which is not exactly in the format of self issued tokens (other algorithms, unknown header fields or
+ * claims, escaped strings, ...) is not handled here; {@link #verify(String)} returns <code>null</code> and the caller
+ * must use the full jjwt parser instead.
+ *
+ * @author marcel
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+final class FastJwtVerifier {
+
+    /**
+     * Larger tokens are left to jjwt, so the per thread buffers stay small.
+     */
+    static final int MAX_TOKEN_LENGTH = 4096;
+
+    private static final String MAC_ALGORITHM = "HmacSHA512";
+    private static final int SIGNATURE_LENGTH = 64;
+
+    private static final byte[] ALG = ascii("alg");
+    private static final byte[] HS512 = ascii("HS512");
+    private static final byte[] KID = ascii("kid");
+    private static final byte[] TYP = ascii("typ");
+
+    private static final byte[] SUB = ascii("sub");
+    private static final byte[] EXP = ascii("exp");
+    private static final byte[] JTI = ascii("jti");
+    private static final byte[] ISS = ascii("iss");
+    private static final byte[] AUD = ascii("aud");
+    private static final byte[] ROL = ascii("rol");
+    private static final byte[] REALM = ascii("realm");
+    private static final byte[] RBM = ascii(CompactClaims.ROLE_MASK);
+    private static final byte[] RLM = ascii(CompactClaims.REALM);
+    private static final byte[] GEN = ascii(JwtAuthTools.TOKEN_GENERATION);
+
+    private static final byte[] BASE64_URL_TABLE = new byte[128];
+
+    private static final UserRole[] ROLES = UserRole.values();
+    private static final byte[][] ROLE_NAMES = new byte[ROLES.length][];
+    private static final byte[][] ROLE_AUTHORITIES = new byte[ROLES.length][];
+
+    private static final UserRealm[] REALMS = UserRealm.values();
+    private static final byte[][] REALM_NAMES = new byte[REALMS.length][];
+
+    static {
+        Arrays.fill(BASE64_URL_TABLE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_URL_TABLE[alphabet.charAt(i)] = (byte) i;
+        }
+        for (int i = 0; i < ROLES.length; i++) {
+            ROLE_NAMES[i] = ascii(ROLES[i].name());
+            ROLE_AUTHORITIES[i] = ascii(ROLES[i].getAuthority());
+        }
+        for (int i = 0; i < REALMS.length; i++) {
+            REALM_NAMES[i] = ascii(REALMS[i].name());
+        }
+    }
+
+    /**
+     * Buffers and parse results of one thread. Positions point into {@link #header} or {@link #payload}.
+     */
+    private static final class State {
+        private final byte[] input = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] header = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] payload = new byte[MAX_TOKEN_LENGTH];
+        private final byte[] signature = new byte[SIGNATURE_LENGTH];
+        private final byte[] computed = new byte[SIGNATURE_LENGTH];
+        private final byte[] jtiBytes = new byte[16];
+
+        @Nullable
+        private Mac mac;
+        @Nullable
+        private Key macKey;
+
+        private int pos;
+        private boolean firstMember;
+        private int strStart;
+        private int strEnd;
+        private long number;
+
+        private int kidStart;
+        private int kidEnd;
+        private int subStart;
+        private int subEnd;
+        private int jtiStart;
+        private int jtiEnd;
+        private int realmStart;
+        private int realmEnd;
+        private int rlmStart;
+        private int rlmEnd;
+        private long exp;
+        private long roleMask;
+        private long generation;
+
+        /**
+         * Forgets the results of the last token.
+         */
+        private void reset() {
+            kidStart = -1;
+            subStart = -1;
+            jtiStart = -1;
+            realmStart = -1;
+            rlmStart = -1;
+            exp = -1;
+            roleMask = -1;
+            generation = 0;
+        }
+    }
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    @Nonnull
+    private final Function<String, Key> keyResolver;
+
+    /**
+     * Verifier which uses the given keys.
+     *
+     * @param keyResolver - Returns the key of a <code>kid</code> (<code>null</code> for tokens without one) or throws
+     *     {@link SignatureException} for unknown ids
+     */
+    FastJwtVerifier(Function<String, Key> keyResolver) {
+        this.keyResolver = keyResolver;
+    }
+
+    /**
+     * Verifies a self issued token and reads its information.
+     *
+     * @param token - Compact JWS without bearer keyword
+     * @return The token information; <code>null</code> when the token can't be handled here
+     * @throws ExpiredJwtException When the token is expired (checked before the signature)
+     * @throws SignatureException When the signature doesn't match or the key is unknown
+     */
+    @Nullable
+    JwtToken verify(String token) {
+        int length = token.length();
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (length > MAX_TOKEN_LENGTH || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+        State state = STATE.get();
+        state.reset();
+        int headerLength = decodeBase64Url(token, 0, firstDot, state.header);
+        if (headerLength < 0 || !parseHeader(state, headerLength)) {
+            return null;
+        }
+        int payloadLength = decodeBase64Url(token, firstDot + 1, secondDot, state.payload);
+        if (payloadLength < 0 || !parsePayload(state, payloadLength) || state.exp < 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (now > state.exp * 1000) {
+            throw new ExpiredJwtException(null, null, "JWT expired at " + new Date(state.exp * 1000)
+                + ". Current time: " + new Date(now));
+        }
+        String kid = state.kidStart < 0 ? null
+            : new String(state.header, state.kidStart, state.kidEnd - state.kidStart, StandardCharsets.UTF_8);
+        Key key = keyResolver.apply(kid);
+        if (!(key instanceof SecretKey)
+                || decodeBase64Url(token, secondDot + 1, length, state.signature) != SIGNATURE_LENGTH) {
+            return null;
+        }
+        if (!checkSignature(state, token, secondDot, key)) {
+            throw new SignatureException("JWT signature does not match locally computed signature.");
+        }
+        return createToken(state);
+    }
+
+    /**
+     * Computes the HMAC of the signing input and compares it in constant time with the token signature.
+     *
+     * @param state
+     * @param token
+     * @param signingInputLength - Length of "header.payload"
+     * @param key - HMAC key
+     * @return <code>true</code> when the signature is valid
+     */
+    private static boolean checkSignature(State state, String token, int signingInputLength, Key key) {
+        byte[] input = state.input;
+        for (int i = 0; i < signingInputLength; i++) {
+            input[i] = (byte) token.charAt(i);
+        }
+        try {
+            Mac mac = state.mac;
+            if (mac == null) {
+                mac = Mac.getInstance(MAC_ALGORITHM);
+                state.mac = mac;
+            }
+            if (state.macKey != key) {
+                mac.init(key);
+                state.macKey = key;
+            }
+            mac.update(input, 0, signingInputLength);
+            mac.doFinal(state.computed, 0);
+        } catch (GeneralSecurityException e) {
+            state.macKey = null;
+            throw new SignatureException("Could not compute the JWT signature", e);
+        }
+        int diff = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            diff |= state.computed[i] ^ state.signature[i];
+        }
+        return diff == 0;
+    }
+
+    /**
+     * Creates the token object from the parsed claims.
+     *
+     * @param state - With parsed payload
+     * @return Token; <code>null</code> when required claims are missing or unknown
+     */
+    @Nullable
+    private static JwtToken createToken(State state) {
+        byte[] payload = state.payload;
+        if (state.roleMask < 0 || state.roleMask >= 1 << ROLES.length || state.subStart < 0 
+                || state.generation > Integer.MAX_VALUE) {
+            return null;
+        }
+        List<UserRole> roles = CompactClaims.decodeRoles((int) state.roleMask);
+        UserRealm realm;
+        if (state.rlmStart >= 0) {
+            realm = state.rlmEnd - state.rlmStart == 1 ? CompactClaims.decodeRealm((char) payload[state.rlmStart])
+                : UserRealm.UNKNOWN;
+        } else if (state.realmStart >= 0) {
+            realm = UserRealm.UNKNOWN;
+            for (int i = 0; i < REALMS.length; i++) {
+                if (equalsAscii(payload, state.realmStart, state.realmEnd, REALM_NAMES[i])) {
+                    realm = REALMS[i];
+                }
+            }
+        } else {
+            return null;
+        }
+        UUID jti = state.jtiStart < 0 ? null : parseJti(state);
+        if (jti == null) {
+            return null;
+        }
+        String username = new String(payload, state.subStart, state.subEnd - state.subStart, StandardCharsets.UTF_8);
+        var principal = new AuthPrincipalImpl(realm, username);
+        var token = new JwtToken(jti, new Date(state.exp * 1000), principal, roles);
+        return state.generation > 0 ? token.withTokenGeneration((int) state.generation) : token;
+    }
+
+    /**
+     * Parses the JTI in compact (base64url) or UUID string format.
+     *
+     * @param state
+     * @return The JTI; <code>null</code> when the format is unknown
+     */
+    @Nullable
+    private static UUID parseJti(State state) {
+        byte[] payload = state.payload;
+        int start = state.jtiStart;
+        int length = state.jtiEnd - start;
+        long msb = 0;
+        long lsb = 0;
+        if (length == 22) {
+            if (decodeBase64Url(payload, start, state.jtiEnd, state.jtiBytes) != 16) {
+                return null;
+            }
+            for (int i = 0; i < 8; i++) {
+                msb = (msb << 8) | (state.jtiBytes[i] & 0xff);
+                lsb = (lsb << 8) | (state.jtiBytes[i + 8] & 0xff);
+            }
+        } else if (length == 36) {
+            int digits = 0;
+            for (int i = start; i < state.jtiEnd; i++) {
+                int offset = i - start;
+                if (offset == 8 || offset == 13 || offset == 18 || offset == 23) {
+                    if (payload[i] != '-') {
+                        return null;
+                    }
+                    continue;
+                }
+                int value = Character.digit(payload[i], 16);
+                if (value < 0) {
+                    return null;
+                }
+                if (digits < 16) {
+                    msb = (msb << 4) | value;
+                } else {
+                    lsb = (lsb << 4) | value;
+                }
+                digits++;
+            }
+        } else {
+            return null;
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Reads the header. Only <code>alg</code> (must be HS512), <code>typ</code> and <code>kid</code> are allowed.
+     *
+     * @param state
+     * @param length - Decoded length of the header
+     * @return <code>false</code> when the header can't be handled here
+     */
+    private static boolean parseHeader(State state, int length) {
+        byte[] json = state.header;
+        boolean hs512 = false;
+        state.pos = 0;
+        if (!startObject(state, json, length)) {
+            return false;
+        }
+        while (nextMember(state, json, length)) {
+            int keyStart = state.strStart;
+            int keyEnd = state.strEnd;
+            if (!readString(state, json, length)) {
+                return false;
+            }
+            if (equalsAscii(json, keyStart, keyEnd, ALG)) {
+                hs512 = equalsAscii(json, state.strStart, state.strEnd, HS512);
+            } else if (equalsAscii(json, keyStart, keyEnd, KID)) {
+                state.kidStart = state.strStart;
+                state.kidEnd = state.strEnd;
+            } else if (!equalsAscii(json, keyStart, keyEnd, TYP)) {
+                return false;
+            }
+        }
+        return hs512 && state.pos == length;
+    }
+
+    /**
+     * Reads the claims of the payload. Unknown claims are not allowed.
+     *
+     * @param state
+     * @param length - Decoded length of the payload
+     * @return <code>false</code> when the payload can't be handled here
+     */
+    private static boolean parsePayload(State state, int length) {
+        byte[] json = state.payload;
+        state.pos = 0;
+        if (!startObject(state, json, length)) {
+            return false;
+        }
+        while (nextMember(state, json, length)) {
+            int keyStart = state.strStart;
+            int keyEnd = state.strEnd;
+            boolean valid;
+            if (equalsAscii(json, keyStart, keyEnd, EXP)) {
+                valid = readNumber(state, json, length);
+                state.exp = state.number;
+            } else if (equalsAscii(json, keyStart, keyEnd, RBM)) {
+                valid = readNumber(state, json, length);
+                state.roleMask = state.number;
+            } else if (equalsAscii(json, keyStart, keyEnd, GEN)) {
+                valid = readNumber(state, json, length);
+                state.generation = state.number;
+            } else if (equalsAscii(json, keyStart, keyEnd, ROL)) {
+                valid = readRoles(state, json, length);
+            } else {
+                valid = readString(state, json, length);
+                if (equalsAscii(json, keyStart, keyEnd, SUB)) {
+                    state.subStart = state.strStart;
+                    state.subEnd = state.strEnd;
+                } else if (equalsAscii(json, keyStart, keyEnd, JTI)) {
+                    state.jtiStart = state.strStart;
+                    state.jtiEnd = state.strEnd;
+                } else if (equalsAscii(json, keyStart, keyEnd, REALM)) {
+                    state.realmStart = state.strStart;
+                    state.realmEnd = state.strEnd;
+                } else if (equalsAscii(json, keyStart, keyEnd, RLM)) {
+                    state.rlmStart = state.strStart;
+                    state.rlmEnd = state.strEnd;
+                } else if (!equalsAscii(json, keyStart, keyEnd, ISS) && !equalsAscii(json, keyStart, keyEnd, AUD)) {
+                    valid = false;
+                }
+            }
+            if (!valid) {
+                return false;
+            }
+        }
+        return state.pos == length;
+    }
+
+    /**
+     * Reads an array of role names and stores them as bitmask.
+     *
+     * @param state
+     * @param json
+     * @param length
+     * @return <code>false</code> on unknown roles or syntax
+     */
+    private static boolean readRoles(State state, byte[] json, int length) {
+        long mask = 0;
+        skipWhitespace(state, json, length);
+        if (state.pos >= length || json[state.pos] != '[') {
+            return false;
+        }
+        state.pos++;
+        skipWhitespace(state, json, length);
+        boolean first = true;
+        while (state.pos < length && json[state.pos] != ']') {
+            if (!first) {
+                if (json[state.pos] != ',') {
+                    return false;
+                }
+                state.pos++;
+            }
+            first = false;
+            if (!readString(state, json, length)) {
+                return false;
+            }
+            int bit = -1;
+            for (int i = 0; i < ROLES.length && bit < 0; i++) {
+                if (equalsAscii(json, state.strStart, state.strEnd, ROLE_NAMES[i])
+                        || equalsAscii(json, state.strStart, state.strEnd, ROLE_AUTHORITIES[i])) {
+                    bit = CompactClaims.roleBit(ROLES[i]);
+                }
+            }
+            if (bit < 0) {
+                return false;
+            }
+            mask |= 1L << bit;
+            skipWhitespace(state, json, length);
+        }
+        if (state.pos >= length) {
+            return false;
+        }
+        state.pos++;
+        state.roleMask = mask;
+        return true;
+    }
+
+    /**
+     * Reads the opening brace of an object.
+     *
+     * @param state
+     * @param json
+     * @param length
+     * @return <code>false</code> when the input doesn't start with an object
+     */
+    private static boolean startObject(State state, byte[] json, int length) {
+        skipWhitespace(state, json, length);
+        if (state.pos < length && json[state.pos] == '{') {
+            state.pos++;
+            state.firstMember = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the next member of an object and reads its name and the colon. At the end of the object, the closing
+     * brace is consumed. On syntax errors the position is set to <code>-1</code>, so callers notice that the input
+     * wasn't consumed completely.
+     *
+     * @param state - The member name is stored as current string
+     * @param json
+     * @param length
+     * @return <code>true</code> when a member follows
+     */
+    private static boolean nextMember(State state, byte[] json, int length) {
+        skipWhitespace(state, json, length);
+        if (state.pos < length && json[state.pos] == '}') {
+            state.pos++;
+            skipWhitespace(state, json, length);
+            return false;
+        }
+        boolean valid = true;
+        if (!state.firstMember) {
+            valid = state.pos < length && json[state.pos] == ',';
+            state.pos++;
+        }
+        state.firstMember = false;
+        valid = valid && readString(state, json, length);
+        if (valid) {
+            skipWhitespace(state, json, length);
+            valid = state.pos < length && json[state.pos] == ':';
+            state.pos++;
+        }
+        if (!valid) {
+            state.pos = -1;
+        }
+        return valid;
+    }
+
+    /**
+     * Reads a string without escape sequences.
+     *
+     * @param state - Bounds of the content are stored as current string
+     * @param json
+     * @param length
+     * @return <code>false</code> when there is no string or it contains escapes
+     */
+    private static boolean readString(State state, byte[] json, int length) {
+        skipWhitespace(state, json, length);
+        if (state.pos >= length || json[state.pos] != '"') {
+            return false;
+        }
+        int start = ++state.pos;
+        while (state.pos < length && json[state.pos] != '"') {
+            if (json[state.pos] == '\\' || (json[state.pos] >= 0 && json[state.pos] < 0x20)) {
+                return false;
+            }
+            state.pos++;
+        }
+        if (state.pos >= length) {
+            return false;
+        }
+        state.strStart = start;
+        state.strEnd = state.pos++;
+        return true;
+    }
+
+    /**
+     * Reads a non negative integer.
+     *
+     * @param state - The value is stored as current number
+     * @param json
+     * @param length
+     * @return <code>false</code> when there is no such number
+     */
+    private static boolean readNumber(State state, byte[] json, int length) {
+        skipWhitespace(state, json, length);
+        long value = 0;
+        int start = state.pos;
+        while (state.pos < length && json[state.pos] >= '0' && json[state.pos] <= '9') {
+            if (state.pos - start >= 15) {
+                return false;
+            }
+            value = value * 10 + json[state.pos] - '0';
+            state.pos++;
+        }
+        state.number = value;
+        return state.pos > start;
+    }
+
+    /**
+     * Skips JSON whitespaces.
+     *
+     * @param state
+     * @param json
+     * @param length
+     */
+    private static void skipWhitespace(State state, byte[] json, int length) {
+        while (state.pos < length && (json[state.pos] == ' ' || json[state.pos] == '\t' || json[state.pos] == '\n'
+                || json[state.pos] == '\r')) {
+            state.pos++;
+        }
+    }
+
+    /**
+     * Compares a part of a buffer with an ASCII constant.
+     *
+     * @param buffer
+     * @param start - inclusive
+     * @param end - exclusive
+     * @param expected
+     * @return <code>true</code> when the bytes are equal
+     */
+    private static boolean equalsAscii(byte[] buffer, int start, int end, byte[] expected) {
+        return Arrays.equals(buffer, start, end, expected, 0, expected.length);
+    }
+
+    /**
+     * Decodes base64url (without padding) from a part of a string.
+     *
+     * @param src
+     * @param from - inclusive
+     * @param to - exclusive
+     * @param dst - Must be large enough
+     * @return Number of decoded bytes; <code>-1</code> on invalid input
+     */
+    private static int decodeBase64Url(CharSequence src, int from, int to, byte[] dst) {
+        if ((to - from) % 4 == 1 || (to - from) * 3 / 4 > dst.length) {
+            return -1;
+        }
+        int accumulator = 0;
+        int bits = 0;
+        int out = 0;
+        for (int i = from; i < to; i++) {
+            char c = src.charAt(i);
+            int value = c < 128 ? BASE64_URL_TABLE[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                dst[out++] = (byte) (accumulator >> bits);
+                accumulator &= (1 << bits) - 1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Decodes base64url (without padding) from a part of a buffer.
+     *
+     * @param src
+     * @param from - inclusive
+     * @param to - exclusive
+     * @param dst - Must be large enough
+     * @return Number of decoded bytes; <code>-1</code> on invalid input
+     */
+    private static int decodeBase64Url(byte[] src, int from, int to, byte[] dst) {
+        if ((to - from) % 4 == 1 || (to - from) * 3 / 4 > dst.length) {
+            return -1;
+        }
+        int accumulator = 0;
+        int bits = 0;
+        int out = 0;
+        for (int i = from; i < to; i++) {
+            int value = src[i] >= 0 ? BASE64_URL_TABLE[src[i]] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                dst[out++] = (byte) (accumulator >> bits);
+                accumulator &= (1 << bits) - 1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * ASCII bytes of a constant.
+     *
+     * @param value
+     * @return Bytes of the value
+     */
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,65 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.util.Date;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A newly created JWT token: The signed string together with the content it was created from. Callers which need
+ * the content (like the expiration date) don't have to parse and verify the token they just created.
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+public final class IssuedJwt {
+
+    @Nonnull
+    private final String encoded;
+
+    @Nonnull
+    private final JwtToken token;
+
+    /**
+     * Result of an issuance.
+     *
+     * @param encoded - Signed token
+     * @param token - Content of the signed token
+     */
+    IssuedJwt(String encoded, JwtToken token) {
+        this.encoded = encoded;
+        this.token = token;
+    }
+
+    /**
+     * The signed token which is handed out to the client.
+     *
+     * @return Compact JWT string
+     */
+    @Nonnull
+    public String getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * The content of the signed token.
+     *
+     * @return Token object with the same values as {@link #getEncoded()}
+     */
+    @Nonnull
+    public JwtToken getToken() {
+        return token;
+    }
+
+    /**
+     * Expiration date of the token.
+     *
+     * @return Same as {@link JwtToken#getExpirationDate()}, issued tokens always expire
+     */
+    @Nonnull
+    public Date getExpirationDate() {
+        return notNull(token.getExpirationDate());
+    }
+}
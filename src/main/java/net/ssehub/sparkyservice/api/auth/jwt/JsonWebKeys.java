@@ -0,0 +1,228 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.SignatureException;
+
+/**
+ * Helper methods for asymmetric signing keys: Reading them from the configuration and publishing public keys as
+ * JSON Web Keys (RFC 7517).
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+public final class JsonWebKeys {
+
+    private static final Base64.Encoder BASE64_URL = notNull(Base64.getUrlEncoder().withoutPadding());
+
+    /**
+     * Disabled.
+     */
+    private JsonWebKeys() {
+    }
+
+    /**
+     * Returns the asymmetric signature algorithm with the given name.
+     *
+     * @param name - Like "RS256" or "ES256"
+     * @return The algorithm
+     * @throws IllegalArgumentException When the algorithm is unknown or not supported for asymmetric signing
+     */
+    @Nonnull
+    public static SignatureAlgorithm asymmetricAlgorithm(String name) {
+        if ("EdDSA".equalsIgnoreCase(name)) {
+            throw new IllegalArgumentException("EdDSA is not supported by the used JWT library");
+        }
+        SignatureAlgorithm algorithm;
+        try {
+            algorithm = SignatureAlgorithm.forName(name);
+        } catch (SignatureException e) {
+            throw new IllegalArgumentException("Unknown signature algorithm: " + name, e);
+        }
+        if (algorithm != SignatureAlgorithm.RS256 && algorithm != SignatureAlgorithm.ES256) {
+            throw new IllegalArgumentException("Only RS256 and ES256 are supported as asymmetric algorithm: " + name);
+        }
+        return algorithm;
+    }
+
+    /**
+     * Reads a PKCS#8 private key.
+     *
+     * @param encoded - PEM or plain base64 encoded key
+     * @param algorithm - RS256 or ES256
+     * @return The private key
+     */
+    @Nonnull
+    public static PrivateKey readPrivateKey(String encoded, SignatureAlgorithm algorithm) {
+        try {
+            return notNull(keyFactory(algorithm).generatePrivate(new PKCS8EncodedKeySpec(decodePem(encoded))));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid private key for " + algorithm.getValue(), e);
+        }
+    }
+
+    /**
+     * Reads a X.509 (SubjectPublicKeyInfo) public key.
+     *
+     * @param encoded - PEM or plain base64 encoded key
+     * @param algorithm - RS256 or ES256
+     * @return The public key
+     */
+    @Nonnull
+    public static PublicKey readPublicKey(String encoded, SignatureAlgorithm algorithm) {
+        try {
+            return notNull(keyFactory(algorithm).generatePublic(new X509EncodedKeySpec(decodePem(encoded))));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid public key for " + algorithm.getValue(), e);
+        }
+    }
+
+    /**
+     * Key factory for the family of the given algorithm.
+     *
+     * @param algorithm
+     * @return RSA or EC key factory
+     * @throws GeneralSecurityException
+     */
+    private static KeyFactory keyFactory(SignatureAlgorithm algorithm) throws GeneralSecurityException {
+        return KeyFactory.getInstance(algorithm.isRsa() ? "RSA" : "EC");
+    }
+
+    /**
+     * Removes PEM armor and whitespaces and decodes the remaining base64 string.
+     *
+     * @param encoded
+     * @return DER encoded key
+     */
+    private static byte[] decodePem(String encoded) {
+        String base64 = encoded.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+
+    /**
+     * Creates the JSON Web Key of a public key.
+     *
+     * @param kid - Key id
+     * @param key - RSA or EC (P-256) public key
+     * @return Members of the JWK
+     */
+    @Nonnull
+    public static Map<String, String> toJwk(String kid, PublicKey key) {
+        var jwk = new LinkedHashMap<String, String>();
+        jwk.putAll(requiredMembers(key));
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithmOf(key).getValue());
+        return jwk;
+    }
+
+    /**
+     * Computes the JWK thumbprint (RFC 7638) of a public key which is used as key id.
+     *
+     * @param key - RSA or EC (P-256) public key
+     * @return base64url encoded SHA-256 thumbprint
+     */
+    @Nonnull
+    public static String thumbprint(PublicKey key) {
+        var json = new StringBuilder("{");
+        // members are already in lexicographic order
+        requiredMembers(key).forEach((name, value) -> {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(name).append("\":\"").append(value).append('"');
+        });
+        json.append('}');
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json.toString().getBytes(StandardCharsets.UTF_8));
+            return notNull(BASE64_URL.encodeToString(hash));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Signature algorithm which is used with the given key.
+     *
+     * @param key - RSA or EC public key
+     * @return RS256 or ES256
+     */
+    @Nonnull
+    public static SignatureAlgorithm algorithmOf(PublicKey key) {
+        if (key instanceof RSAPublicKey) {
+            return SignatureAlgorithm.RS256;
+        } else if (key instanceof ECPublicKey) {
+            return SignatureAlgorithm.ES256;
+        }
+        throw new IllegalArgumentException("Unsupported key type: " + key.getAlgorithm());
+    }
+
+    /**
+     * The required members of a JWK (RFC 7638 3.2) in lexicographic order.
+     *
+     * @param key
+     * @return Member names and values
+     */
+    private static Map<String, String> requiredMembers(PublicKey key) {
+        var members = new LinkedHashMap<String, String>();
+        if (key instanceof RSAPublicKey) {
+            var rsaKey = (RSAPublicKey) key;
+            members.put("e", encodeUnsigned(rsaKey.getPublicExponent(), 0));
+            members.put("kty", "RSA");
+            members.put("n", encodeUnsigned(rsaKey.getModulus(), 0));
+        } else if (key instanceof ECPublicKey) {
+            var ecKey = (ECPublicKey) key;
+            int fieldSize = ecKey.getParams().getCurve().getField().getFieldSize();
+            if (fieldSize != 256) {
+                throw new IllegalArgumentException("Only P-256 keys are supported for ES256");
+            }
+            members.put("crv", "P-256");
+            members.put("kty", "EC");
+            members.put("x", encodeUnsigned(ecKey.getW().getAffineX(), 32));
+            members.put("y", encodeUnsigned(ecKey.getW().getAffineY(), 32));
+        } else {
+            throw new IllegalArgumentException("Unsupported key type: " + key.getAlgorithm());
+        }
+        return members;
+    }
+
+    /**
+     * Encodes a positive number as base64url of its big endian bytes without sign byte.
+     *
+     * @param value
+     * @param length - Fixed length in bytes; <code>0</code> for the minimal length
+     * @return base64url encoded number
+     */
+    private static String encodeUnsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (length > bytes.length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return notNull(BASE64_URL.encodeToString(bytes));
+    }
+}
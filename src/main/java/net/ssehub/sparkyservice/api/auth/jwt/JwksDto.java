@@ -0,0 +1,24 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON Web Key Set (RFC 7517 5) with the public keys which are used to sign JWT tokens.
+ * 
+ * @author marcel
+ */
+//checkstyle: stop visibility modifier check
+public class JwksDto {
+    public final List<Map<String, String>> keys;
+
+    /**
+     * Key set with the given keys.
+     * 
+     * @param keys - JSON Web Keys
+     */
+    public JwksDto(List<Map<String, String>> keys) {
+        this.keys = Collections.unmodifiableList(keys);
+    }
+}
@@ -2,6 +2,7 @@ package net.ssehub.sparkyservice.api.auth.jwt;
 
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
@@ -13,6 +14,7 @@ import javax.annotation.Nonnull;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -31,39 +33,79 @@ public class JwtAuthTools {
 
     public static final int TOKEN_EXPIRE_TIME_MS = 86_400_000; // 24 hours
 
+    /**
+     * Claim with the token generation of the owner. Only present when the generation is greater than 0.
+     */
+    static final String TOKEN_GENERATION = "gen";
+
     /**
      * Disabled.
      */
     private JwtAuthTools() {
     }
 
+    /**
+     * Converts a secret into the bytes of its HMAC key. Always UTF-8, independent of the default charset of the JVM,
+     * so all nodes derive the same key from the same secret.
+     * 
+     * @param secret
+     * @return Key material for HS512
+     */
+    @Nonnull
+    static byte[] secretBytes(String secret) {
+        return notNull(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * Decodes information present in a JWT token. 
      * 
      * @param token
      * @param jwtSecret
      * @return Object with fields from the decoded JWT token.
+     * @see JwtCodec#decode(String)
      */
     @Nonnull
     public static JwtToken decodeAndExtract(String token, String jwtSecret) {
-        var signingKey = jwtSecret.getBytes();
+        var signingKey = secretBytes(jwtSecret);
         Jws<Claims> parsedToken = Jwts.parser().setSigningKey(signingKey).parseClaimsJws(token.replace("Bearer ", ""));
-        String username = parsedToken.getBody().getSubject();
-        var rolList = (List<?>) parsedToken.getBody().get("rol");
-        List<UserRole> authorities = rolList.stream()
-                .map(String.class::cast)
-                .map(UserRole::getEnum)
-                .collect(Collectors.toList());
-        Date expiration = parsedToken.getBody().getExpiration();
-        String realmName = (String) parsedToken.getBody().get("realm");
-        var jtiString = (String) parsedToken.getBody().get("jti");
-        var jti = UUID.fromString(jtiString);
-        SparkysAuthPrincipal sparkyPrincipal = new AuthPrincipalImpl(realmName, username);
+        return extract(notNull(parsedToken.getBody()));
+    }
+
+    /**
+     * Creates a token object from the claims of an already verified JWT token. Compact tokens 
+     * (see {@link CompactClaims}) and tokens with full role and realm names are supported.
+     * 
+     * @param claims - Body of a JWT token with a valid signature
+     * @return Object with fields from the claims
+     */
+    @Nonnull
+    static JwtToken extract(Claims claims) {
+        String username = claims.getSubject();
+        List<UserRole> authorities;
+        SparkysAuthPrincipal sparkyPrincipal;
+        Object roleMask = claims.get(CompactClaims.ROLE_MASK);
+        if (roleMask instanceof Number) {
+            authorities = CompactClaims.decodeRoles(((Number) roleMask).intValue());
+            var realm = CompactClaims.decodeRealm((String) claims.get(CompactClaims.REALM));
+            sparkyPrincipal = new AuthPrincipalImpl(realm, notNull(username));
+        } else {
+            var rolList = (List<?>) claims.get("rol");
+            authorities = rolList.stream()
+                    .map(String.class::cast)
+                    .map(UserRole::getEnum)
+                    .collect(Collectors.toList());
+            String realmName = (String) claims.get("realm");
+            sparkyPrincipal = new AuthPrincipalImpl(realmName, username);
+        }
+        Date expiration = claims.getExpiration();
+        var jtiString = claims.getId();
+        var jti = jtiString == null ? null : CompactClaims.decodeJti(jtiString);
         
+        Object generation = claims.get(TOKEN_GENERATION);
         if (jti != null && expiration != null && authorities != null) {
             var tokenObj = new JwtToken(jti, expiration, sparkyPrincipal, authorities);
-            tokenObj.setTokenPermissionRoles(authorities);
-            return tokenObj;
+            return generation instanceof Number ? tokenObj.withTokenGeneration(((Number) generation).intValue()) 
+                : tokenObj;
         } else {
             throw new RuntimeException("The JWT token has invalid fields but it has the right signature. Probably the"
                     + " encoding method is wrong");
@@ -76,25 +118,48 @@ public class JwtAuthTools {
      * @param tokenObj 
      * @param jwtConf - Essential settings like secrets and the used issuer and audience
      * @return plain encoded JWT token as string (without bearer keyword)
+     * @see JwtCodec#encode(JwtToken)
      */
     @Nonnull
     public static String encode(JwtToken tokenObj, JwtSettings jwtConf) {
-        byte[] signingKey = jwtConf.getSecret().getBytes();
+        byte[] signingKey = secretBytes(jwtConf.getSecret());
+        JwtBuilder builder = Jwts.builder()
+            .signWith(Keys.hmacShaKeyFor(signingKey), SignatureAlgorithm.HS512)
+            .setHeaderParam("typ", jwtConf.getType())
+            .setIssuer(jwtConf.getIssuer())
+            .setAudience(jwtConf.getAudience());
         return notNull(
-            Jwts.builder()
-                .signWith(Keys.hmacShaKeyFor(signingKey), SignatureAlgorithm.HS512)
-                .setHeaderParam("typ", jwtConf.getType())
-                .setIssuer(jwtConf.getIssuer())
-                .setAudience(jwtConf.getAudience())
-                .setSubject(tokenObj.getUserInfo().getName())
-                .setExpiration(tokenObj.getExpirationDate())
-                .claim("rol", tokenObj.getTokenPermissionRoles())
-                .claim("realm", tokenObj.getUserInfo().getRealm())
-                .setId(tokenObj.getJti().toString())
-                .compact()
+            applyClaims(builder, tokenObj, jwtConf.isCompactClaims()).compact()
         );
     }
 
+    /**
+     * Sets the user specific claims of a token to the given builder. 
+     * 
+     * @param builder - Builder which already holds the header and signing key
+     * @param tokenObj - Holds the values for the claims
+     * @param compact - <code>true</code> for the compact format of {@link CompactClaims}
+     * @return The given builder
+     */
+    @Nonnull
+    static JwtBuilder applyClaims(JwtBuilder builder, JwtToken tokenObj, boolean compact) {
+        builder.setSubject(tokenObj.getUserInfo().getName())
+            .setExpiration(tokenObj.getExpirationDate());
+        if (compact) {
+            builder.claim(CompactClaims.ROLE_MASK, CompactClaims.encodeRoles(tokenObj.getTokenPermissionRoles()))
+                .claim(CompactClaims.REALM, CompactClaims.encodeRealm(tokenObj.getUserInfo().getRealm()))
+                .setId(CompactClaims.encodeJti(tokenObj.getJti()));
+        } else {
+            builder.claim("rol", tokenObj.getTokenPermissionRoles())
+                .claim("realm", tokenObj.getUserInfo().getRealm())
+                .setId(tokenObj.getJti().toString());
+        }
+        if (tokenObj.getTokenGeneration() > 0) {
+            builder.claim(TOKEN_GENERATION, tokenObj.getTokenGeneration());
+        }
+        return builder;
+    }
+
     /**
      * Returns a date where a JWT token of user should expire. 
      * 
@@ -0,0 +1,421 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.crypto.SecretKey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+
+/**
+ * Encodes and decodes JWT tokens with signing keys, parser and header templates which are created only once from
+ * {@link JwtSettings}. <br>
+ * The codec holds a key ring: Tokens are verified with the key named by their <code>kid</code> header; tokens without
+ * a <code>kid</code> are verified with the configured {@link JwtSettings#getSecret() secret}. New tokens are signed
+ * with the active key. Keys can be added, activated and removed at runtime, so secrets can be rotated without a
+ * restart. <br>
+ * Besides HMAC secrets, the ring can hold RSA (RS256) and EC (ES256) key pairs. Their public keys are published with
+ * {@link #getJsonWebKeySet()}, so other services can verify tokens without knowing any secret.
+ *
+ * @author marcel
+ */
+@ThreadSafe
+@Component
+@ParametersAreNonnullByDefault
+public class JwtCodec {
+
+    private final Logger log = LoggerFactory.getLogger(JwtCodec.class);
+
+    @Nonnull
+    private final JwtSettings jwtConf;
+
+    @Nonnull
+    private final JwtParser parser;
+
+    @Nonnull
+    private final FastJwtVerifier fastVerifier;
+
+    /**
+     * Replaced as a whole on every change, readers never see a half modified ring.
+     */
+    @Nonnull
+    private volatile KeyRing keyRing;
+
+    /**
+     * Immutable snapshot of all usable keys together with the precomputed signing information and key set.
+     */
+    @Immutable
+    private static final class KeyRing {
+        @Nonnull
+        private final SecretKey defaultKey;
+
+        /**
+         * Verification keys by id: HMAC secrets or public keys.
+         */
+        @Nonnull
+        private final Map<String, Key> keys;
+
+        /**
+         * Private keys by id, only present for asymmetric keys.
+         */
+        @Nonnull
+        private final Map<String, PrivateKey> privateKeys;
+
+        @Nullable
+        private final String activeKeyId;
+
+        @Nonnull
+        private final Key signingKey;
+
+        @Nonnull
+        private final SignatureAlgorithm algorithm;
+
+        @Nonnull
+        private final Map<String, Object> header;
+
+        @Nonnull
+        private final JwksDto jwks;
+
+        @Nonnull
+        private final String jwksTag;
+
+        /**
+         * Incremented with every change of the ring.
+         */
+        private final long version;
+
+        /**
+         * Key ring with precomputed signing information.
+         *
+         * @param defaultKey - Key for tokens without a <code>kid</code>
+         * @param keys - Verification keys by their id, this map must not be changed afterwards
+         * @param privateKeys - Private keys by their id, this map must not be changed afterwards
+         * @param activeKeyId - Id of the key which signs new tokens; <code>null</code> for the default key
+         * @param type - Value of the <code>typ</code> header
+         * @param version - Version of this ring
+         */
+        private KeyRing(SecretKey defaultKey, Map<String, Key> keys, Map<String, PrivateKey> privateKeys,
+                @Nullable String activeKeyId, @Nullable String type, long version) {
+            this.defaultKey = defaultKey;
+            this.version = version;
+            this.keys = keys;
+            this.privateKeys = privateKeys;
+            this.activeKeyId = activeKeyId;
+            var headerMap = new HashMap<String, Object>();
+            if (type != null) {
+                headerMap.put(JwsHeader.TYPE, type);
+            }
+            if (activeKeyId == null) {
+                this.signingKey = defaultKey;
+                this.algorithm = SignatureAlgorithm.HS512;
+            } else {
+                Key activeKey = keys.get(activeKeyId);
+                if (activeKey == null) {
+                    throw new IllegalArgumentException("The key " + activeKeyId + " is not part of the key ring");
+                }
+                if (activeKey instanceof PublicKey) {
+                    this.signingKey = notNull(privateKeys.get(activeKeyId));
+                    this.algorithm = JsonWebKeys.algorithmOf((PublicKey) activeKey);
+                } else {
+                    this.signingKey = activeKey;
+                    this.algorithm = SignatureAlgorithm.HS512;
+                }
+                headerMap.put(JwsHeader.KEY_ID, activeKeyId);
+            }
+            this.header = notNull(Collections.unmodifiableMap(headerMap));
+            var jwkList = new ArrayList<Map<String, String>>();
+            var publicKids = new StringBuilder();
+            new TreeMap<>(keys).forEach((kid, key) -> {
+                if (key instanceof PublicKey) {
+                    jwkList.add(JsonWebKeys.toJwk(notNull(kid), (PublicKey) key));
+                    publicKids.append(kid).append(' ');
+                }
+            });
+            this.jwks = new JwksDto(jwkList);
+            // key ids are thumbprints of the public keys, so they identify the whole set
+            this.jwksTag = "\"" + Integer.toHexString(publicKids.toString().hashCode()) + "\"";
+        }
+
+        /**
+         * Creates a new ring with changed keys, the same default key and the next version.
+         *
+         * @param newKeys
+         * @param newPrivateKeys
+         * @param newActiveKeyId
+         * @param type
+         * @return New key ring
+         */
+        private KeyRing with(Map<String, Key> newKeys, Map<String, PrivateKey> newPrivateKeys,
+                @Nullable String newActiveKeyId, @Nullable String type) {
+            return new KeyRing(defaultKey, notNull(Collections.unmodifiableMap(newKeys)),
+                    notNull(Collections.unmodifiableMap(newPrivateKeys)), newActiveKeyId, type, version + 1);
+        }
+    }
+
+    /**
+     * Codec which uses the secret and the additional keys of the given configuration. When an asymmetric
+     * {@link JwtSettings#getAlgorithm() algorithm} is configured, the configured key pair signs new tokens.
+     *
+     * @param jwtConf - Contains the secret and optional additional keys
+     */
+    @Autowired
+    public JwtCodec(JwtSettings jwtConf) {
+        this.jwtConf = jwtConf;
+        var keys = new HashMap<String, Key>();
+        var privateKeys = new HashMap<String, PrivateKey>();
+        jwtConf.getKeys().forEach((kid, secret) -> keys.put(kid, toKey(notNull(secret))));
+        String activeKeyId = jwtConf.getActiveKeyId();
+        if (!SignatureAlgorithm.HS512.getValue().equals(jwtConf.getAlgorithm())) {
+            var algorithm = JsonWebKeys.asymmetricAlgorithm(jwtConf.getAlgorithm());
+            String privateKey = jwtConf.getPrivateKey();
+            String publicKey = jwtConf.getPublicKey();
+            if (privateKey == null || publicKey == null) {
+                throw new RuntimeException("The JWT algorithm " + algorithm.getValue() 
+                    + " needs a private and a public key");
+            }
+            PublicKey pubKey = JsonWebKeys.readPublicKey(publicKey, algorithm);
+            String kid = JsonWebKeys.thumbprint(pubKey);
+            keys.put(kid, pubKey);
+            privateKeys.put(kid, JsonWebKeys.readPrivateKey(privateKey, algorithm));
+            if (activeKeyId == null) {
+                activeKeyId = kid;
+            }
+            log.info("JWT tokens are signed with {} key {}", algorithm.getValue(), kid);
+        }
+        this.keyRing = new KeyRing(toKey(jwtConf.getSecret()), notNull(Collections.unmodifiableMap(keys)),
+                notNull(Collections.unmodifiableMap(privateKeys)), activeKeyId, jwtConf.getType(), 0);
+        this.parser = notNull(Jwts.parser().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            @SuppressWarnings("rawtypes") // the resolver API of the JWT library uses the raw header type
+            public Key resolveSigningKey(@Nullable JwsHeader header, @Nullable Claims claims) {
+                return lookupKey(header == null ? null : header.getKeyId());
+            }
+        }));
+        this.fastVerifier = new FastJwtVerifier(this::lookupKey);
+    }
+
+    /**
+     * Derives a HMAC key from a secret, see {@link JwtAuthTools#secretBytes(String)}.
+     *
+     * @param secret
+     * @return Key which can be used for HS512
+     */
+    @Nonnull
+    private static SecretKey toKey(String secret) {
+        return notNull(Keys.hmacShaKeyFor(JwtAuthTools.secretBytes(secret)));
+    }
+
+    /**
+     * Returns the key for the given key id.
+     *
+     * @param kid - Id from the token header; <code>null</code> for tokens without an id
+     * @return The matching key
+     * @throws SignatureException When the key is unknown (or was removed)
+     */
+    @Nonnull
+    private Key lookupKey(@Nullable String kid) {
+        KeyRing ring = keyRing;
+        if (kid == null) {
+            return ring.defaultKey;
+        }
+        Key key = ring.keys.get(kid);
+        if (key == null) {
+            throw new SignatureException("Unknown signing key: " + kid);
+        }
+        return key;
+    }
+
+    /**
+     * Creates a signed JWT token from the given object. The token is signed with the active key.
+     *
+     * @param tokenObj
+     * @return plain encoded JWT token as string (without bearer keyword)
+     */
+    @Nonnull
+    public String encode(JwtToken tokenObj) {
+        KeyRing ring = keyRing;
+        var builder = Jwts.builder()
+            .setHeader(ring.header)
+            .signWith(ring.signingKey, ring.algorithm)
+            .setIssuer(jwtConf.getIssuer())
+            .setAudience(jwtConf.getAudience());
+        return notNull(
+            JwtAuthTools.applyClaims(builder, tokenObj, jwtConf.isCompactClaims()).compact()
+        );
+    }
+
+    /**
+     * Verifies the signature of a JWT token and decodes its information. Self issued HS512 tokens are handled by
+     * {@link FastJwtVerifier}, all others by the jjwt parser.
+     *
+     * @param token - JWT token; a leading "Bearer " is ignored
+     * @return Object with fields from the decoded JWT token
+     */
+    @Nonnull
+    public JwtToken decode(String token) {
+        String plainToken = token.startsWith("Bearer ") ? token.substring("Bearer ".length()) : token;
+        JwtToken tokenObj = fastVerifier.verify(plainToken);
+        if (tokenObj == null) {
+            tokenObj = decodeWithParser(plainToken);
+        }
+        return tokenObj;
+    }
+
+    /**
+     * Verifies and decodes a JWT token with the jjwt parser only.
+     *
+     * @param token - JWT token without bearer keyword
+     * @return Object with fields from the decoded JWT token
+     */
+    @Nonnull
+    JwtToken decodeWithParser(String token) {
+        return JwtAuthTools.extract(notNull(parser.parseClaimsJws(token).getBody()));
+    }
+
+    /**
+     * Adds a key to the ring or replaces an existing key with the same id. Tokens with this id in their header are
+     * verified with the new key from now on.
+     *
+     * @param kid - Id of the key, written to the <code>kid</code> header of tokens signed with it
+     * @param secret - Secret of the key (at least 512 bits for HS512)
+     */
+    public synchronized void addKey(String kid, String secret) {
+        KeyRing ring = keyRing;
+        var keys = new HashMap<>(ring.keys);
+        var privateKeys = new HashMap<>(ring.privateKeys);
+        keys.put(kid, toKey(secret));
+        privateKeys.remove(kid);
+        keyRing = ring.with(keys, privateKeys, ring.activeKeyId, jwtConf.getType());
+        log.info("Added JWT signing key {}", kid);
+    }
+
+    /**
+     * Adds an asymmetric key pair to the ring. The public key is published with {@link #getJsonWebKeySet()}.
+     *
+     * @param keyPair - RSA (at least 2048 bits) or EC P-256 key pair
+     * @return Id of the key (JWK thumbprint of the public key)
+     */
+    @Nonnull
+    public synchronized String addKeyPair(KeyPair keyPair) {
+        PublicKey publicKey = notNull(keyPair.getPublic());
+        String kid = JsonWebKeys.thumbprint(publicKey);
+        KeyRing ring = keyRing;
+        var keys = new HashMap<>(ring.keys);
+        var privateKeys = new HashMap<>(ring.privateKeys);
+        keys.put(kid, publicKey);
+        privateKeys.put(kid, keyPair.getPrivate());
+        keyRing = ring.with(keys, privateKeys, ring.activeKeyId, jwtConf.getType());
+        log.info("Added JWT signing key pair {}", kid);
+        return kid;
+    }
+
+    /**
+     * Signs all new tokens with the given key.
+     *
+     * @param kid - Id of a key which was added before; <code>null</code> uses the configured secret again
+     */
+    public synchronized void setActiveKey(@Nullable String kid) {
+        KeyRing ring = keyRing;
+        keyRing = ring.with(ring.keys, ring.privateKeys, kid, jwtConf.getType());
+        log.info("JWT tokens are now signed with key {}", kid == null ? "<default>" : kid);
+    }
+
+    /**
+     * Removes a key from the ring. Tokens which were signed with this key are rejected from now on; caches of verified
+     * tokens must compare {@link #getKeyRingVersion()} to notice this.
+     *
+     * @param kid - Id of the key
+     */
+    public synchronized void removeKey(String kid) {
+        KeyRing ring = keyRing;
+        if (kid.equals(ring.activeKeyId)) {
+            throw new IllegalArgumentException("The active signing key can't be removed");
+        }
+        var keys = new HashMap<>(ring.keys);
+        var privateKeys = new HashMap<>(ring.privateKeys);
+        privateKeys.remove(kid);
+        if (keys.remove(kid) != null) {
+            keyRing = ring.with(keys, privateKeys, ring.activeKeyId, jwtConf.getType());
+            log.info("Removed JWT signing key {}", kid);
+        }
+    }
+
+    /**
+     * Version of the key ring, which changes whenever a key is added, activated or removed. Tokens which were
+     * verified with another version must be verified again.
+     *
+     * @return Current version
+     */
+    public long getKeyRingVersion() {
+        return keyRing.version;
+    }
+
+    /**
+     * Ids of all keys in the ring (without the default key).
+     *
+     * @return Unmodifiable set of key ids
+     */
+    @Nonnull
+    public Set<String> getKeyIds() {
+        return notNull(keyRing.keys.keySet());
+    }
+
+    /**
+     * Id of the key which signs new tokens.
+     *
+     * @return Key id; <code>null</code> when the configured secret is used
+     */
+    @Nullable
+    public String getActiveKeyId() {
+        return keyRing.activeKeyId;
+    }
+
+    /**
+     * The public keys of the ring as JSON Web Key Set (RFC 7517). HMAC secrets are never part of it. 
+     * The set is created once per key change and must not be modified.
+     *
+     * @return All public keys which are used to verify tokens
+     */
+    @Nonnull
+    public JwksDto getJsonWebKeySet() {
+        return keyRing.jwks;
+    }
+
+    /**
+     * Entity tag of {@link #getJsonWebKeySet()}. It changes whenever a public key is added or removed.
+     * 
+     * @return Quoted entity tag
+     */
+    @Nonnull
+    public String getJsonWebKeySetTag() {
+        return keyRing.jwksTag;
+    }
+}
@@ -2,9 +2,9 @@ package net.ssehub.sparkyservice.api.auth.jwt;
 
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nonnull;
@@ -14,157 +14,179 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import net.ssehub.sparkyservice.api.auth.SparkysAuthPrincipal;
 import net.ssehub.sparkyservice.api.jpa.token.JpaJwtToken;
 import net.ssehub.sparkyservice.api.jpa.user.User;
-import net.ssehub.sparkyservice.api.user.UserRealm;
 import net.ssehub.sparkyservice.api.user.UserRole;
 import net.ssehub.sparkyservice.api.user.storage.UserNotFoundException;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
 
+/**
+ * Immutable value object of a JWT token. Changes create a new object (see {@link #withLocked(boolean)}, 
+ * {@link #withRemainingRefreshes(int)} and {@link #withTokenGeneration(int)}), so tokens can be shared between 
+ * threads without copying them.
+ * 
+ * @author marcel
+ */
 @ParametersAreNonnullByDefault
-public class JwtToken {
+public final class JwtToken {
 
-    private int remainingRefreshes;
-    private boolean locked;
+    private final int remainingRefreshes;
+    private final boolean locked;
+    private final int tokenGeneration;
     @Nullable
-    private Date expirationDate;
+    private final Date expirationDate;
     @Nonnull
-    private SparkysAuthPrincipal userInfo;
+    private final SparkysAuthPrincipal userInfo;
     @Nonnull
-    private Collection<UserRole> tokenPermissionRoles;
+    private final Collection<UserRole> tokenPermissionRoles;
     @Nonnull
-    private UUID jti;
+    private final UUID jti;
 
     public JwtToken(final UUID jti, final Date expirationDate, final SparkysAuthPrincipal userInfo,
             UserRole permission) {
-        this(jti, expirationDate, userInfo, notNull(Arrays.asList(permission)));
+        this(jti, expirationDate, userInfo, notNull(List.of(permission)));
     }
 
     public JwtToken(final UUID jit, final Date expirationDate, final SparkysAuthPrincipal userInfo, 
             Collection<UserRole> permissionRoles) {
-        super();
-        this.expirationDate = expirationDate;
-        this.userInfo = userInfo;
-        this.jti = jit;
-        remainingRefreshes = 0;
-        locked = false;
-        tokenPermissionRoles = permissionRoles;
+        this(jit, expirationDate, userInfo, permissionRoles, 0, false, 0);
     }
 
     /**
-     * Copy constructor.
-     * @param copyMe
+     * Token with all values.
+     * 
+     * @param jti
+     * @param expirationDate
+     * @param userInfo
+     * @param permissionRoles
+     * @param remainingRefreshes
+     * @param locked
+     * @param tokenGeneration
      */
-    public JwtToken(JwtToken copyMe) {
-        super();
-        this.remainingRefreshes = copyMe.remainingRefreshes;
-        this.locked = copyMe.locked;
-        this.expirationDate = copyMe.expirationDate;
-        this.userInfo = copyMe.userInfo;
-        this.tokenPermissionRoles = copyMe.tokenPermissionRoles;
-        this.jti = copyMe.jti;
+    private JwtToken(UUID jti, @Nullable Date expirationDate, SparkysAuthPrincipal userInfo, 
+            Collection<UserRole> permissionRoles, int remainingRefreshes, boolean locked, int tokenGeneration) {
+        this.jti = jti;
+        this.expirationDate = expirationDate == null ? null : new Date(expirationDate.getTime());
+        this.userInfo = userInfo;
+        this.tokenPermissionRoles = notNull(List.copyOf(permissionRoles));
+        this.remainingRefreshes = remainingRefreshes;
+        this.locked = locked;
+        this.tokenGeneration = tokenGeneration;
     }
 
+    /**
+     * Token with the stored values of a JPA object. The values are read immediately. 
+     * 
+     * @param jpaTokenObj
+     */
     public JwtToken(final JpaJwtToken jpaTokenObj) {
-        super();
-        this.userInfo = new SparkysAuthPrincipal() {
-            
-            @Override
-            @Nonnull
-            public UserRealm getRealm() {
-                return jpaTokenObj.getUser().getRealm();
-            }
-            
-            @Override
-            @Nonnull
-            public String getName() {
-                return jpaTokenObj.getUser().getUserName();
-            }
-
-            @Override
-            @Nonnull
-            public String asString() {
-                return jpaTokenObj.getUser().getUserName() + "@" + jpaTokenObj.getUser().getRealm();
-            }
-        };
-        this.remainingRefreshes = jpaTokenObj.getRemainingRefreshes();
-        this.locked = jpaTokenObj.isLocked();
-        this.jti = notNull(
-            UUID.fromString(jpaTokenObj.getJti())
-        );
-        var role = jpaTokenObj.getUser().getRole();
-        this.tokenPermissionRoles = notNull(Arrays.asList(role)); // does not represents the actual value in the token
+        this(notNull(UUID.fromString(jpaTokenObj.getJti())), jpaTokenObj.getExpirationDate(), 
+            new AuthPrincipalImpl(jpaTokenObj.getUser().getRealm(), jpaTokenObj.getUser().getUserName()), 
+            // does not represents the actual value in the token
+            notNull(List.of(jpaTokenObj.getUser().getRole())), 
+            jpaTokenObj.getRemainingRefreshes(), jpaTokenObj.isLocked(), 0);
     }
 
     public JpaJwtToken getJpa(UserStorageService service) throws UserNotFoundException {
         var user = service.findUserByNameAndRealm(userInfo.getName(), userInfo.getRealm());
-        return new JpaJwtToken(notNull(jti.toString()), remainingRefreshes, locked, user.getJpa());
+        return new JpaJwtToken(notNull(jti.toString()), remainingRefreshes, locked, user.getJpa(), expirationDate);
     }
 
     public JpaJwtToken getJpa(User user) {
-        return new JpaJwtToken(notNull(jti.toString()), remainingRefreshes, locked, user);
+        return new JpaJwtToken(notNull(jti.toString()), remainingRefreshes, locked, user, expirationDate);
     }
 
     public int getRemainingRefreshes() {
         return remainingRefreshes;
     }
 
-    public void setRemainingRefreshes(int remainingRefreshes) {
-        this.remainingRefreshes = remainingRefreshes;
+    /**
+     * Same token with other remaining refreshes.
+     * 
+     * @param remainingRefreshes
+     * @return New token object
+     */
+    @Nonnull
+    public JwtToken withRemainingRefreshes(int remainingRefreshes) {
+        return new JwtToken(jti, expirationDate, userInfo, tokenPermissionRoles, remainingRefreshes, locked, 
+            tokenGeneration);
     }
 
     public boolean isLocked() {
         return locked;
     }
 
-    public void setLocked(boolean locked) {
-        this.locked = locked;
+    /**
+     * Same token with another lock state.
+     * 
+     * @param locked
+     * @return New token object
+     */
+    @Nonnull
+    public JwtToken withLocked(boolean locked) {
+        return new JwtToken(jti, expirationDate, userInfo, tokenPermissionRoles, remainingRefreshes, locked, 
+            tokenGeneration);
+    }
+
+    /**
+     * The token generation of the owner when the token was issued. The token is rejected when the generation of the 
+     * owner was increased afterwards.
+     * 
+     * @return Generation; <code>0</code> for tokens without a generation claim
+     */
+    public int getTokenGeneration() {
+        return tokenGeneration;
+    }
+
+    /**
+     * Same token with another token generation.
+     * 
+     * @param tokenGeneration
+     * @return New token object
+     */
+    @Nonnull
+    public JwtToken withTokenGeneration(int tokenGeneration) {
+        return new JwtToken(jti, expirationDate, userInfo, tokenPermissionRoles, remainingRefreshes, locked, 
+            tokenGeneration);
     }
 
+    /**
+     * The expiration date of the token. 
+     * 
+     * @return Copy of the date; <code>null</code> for stored tokens which were saved without one
+     */
     @Nullable
-    public java.util.Date getExpirationDate() {
-        return expirationDate;
+    public Date getExpirationDate() {
+        Date date = expirationDate;
+        return date == null ? null : new Date(date.getTime());
     }
 
-    public void setExpirationDate(java.util.Date expirationDate) {
-        this.expirationDate = expirationDate;
+    /**
+     * Checks the expiration date without creating a new date object.
+     * 
+     * @param now - Time in milliseconds
+     * @return <code>true</code> when the token is expired at the given time or has no expiration date
+     */
+    public boolean isExpiredAt(long now) {
+        Date date = expirationDate;
+        return date == null || date.getTime() <= now;
     }
 
     public SparkysAuthPrincipal getUserInfo() {
         return userInfo;
     }
 
-    public void setUserInfo(SparkysAuthPrincipal userInfo) {
-        this.userInfo = userInfo;
-    }
-
     public Collection<UserRole> getTokenPermissionRoles() {
         return tokenPermissionRoles;
     }
 
-    public void setTokenPermissionRoles(Collection<UserRole> tokenPermissionRoles) {
-        this.tokenPermissionRoles = tokenPermissionRoles;
-    }
-
-    public void setTokenPermissionRoles(UserRole tokenPermissionRole) {
-        this.tokenPermissionRoles = notNull(Arrays.asList(tokenPermissionRole));
-    }
-
     @Nonnull
     public UUID getJti() {
         return jti;
     }
 
-    public void setJti(UUID jti) {
-        this.jti = jti;
-    }
-
     @Override
     public String toString() {
-        return "JwtToken [remainingRefreshes=" + remainingRefreshes + ", locked=" + locked + ", expirationDate="
-            + expirationDate + ", userInfo=" + userInfo + ", tokenPermissionRoles=" + tokenPermissionRoles
-            + ", jti=" + jti + "]";
-    }
-
-    public JwtToken copy() {
-        return new JwtToken(this);
+        return "JwtToken [remainingRefreshes=" + remainingRefreshes + ", locked=" + locked + ", tokenGeneration="
+            + tokenGeneration + ", expirationDate=" + expirationDate + ", userInfo=" + userInfo 
+            + ", tokenPermissionRoles=" + tokenPermissionRoles + ", jti=" + jti + "]";
     }
-}
\ No newline at end of file
+}
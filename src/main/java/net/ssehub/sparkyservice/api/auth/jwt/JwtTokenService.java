@@ -2,9 +2,12 @@ package net.ssehub.sparkyservice.api.auth.jwt;
 
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nonnull;
@@ -14,17 +17,21 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.SignatureException;
 import net.ssehub.sparkyservice.api.auth.SparkysAuthPrincipal;
 import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
+import net.ssehub.sparkyservice.api.auth.storage.RevocationSet;
 import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
 import net.ssehub.sparkyservice.api.user.SparkyUser;
 import net.ssehub.sparkyservice.api.user.UserRole;
 import net.ssehub.sparkyservice.api.user.dto.TokenDto;
@@ -39,11 +46,17 @@ import net.ssehub.sparkyservice.api.util.DateUtil;
  */
 @Service
 @ParametersAreNonnullByDefault
-public class JwtTokenService {
+public class JwtTokenService implements MetricsProvider {
 
     @Nonnull
     private final JwtSettings jwtConf;
 
+    @Nonnull
+    private final JwtCodec codec;
+
+    @Nonnull
+    private final VerifiedTokenCache verifiedTokens;
+
     private final Logger log = LoggerFactory.getLogger(JwtTokenService.class);
 
     /**
@@ -51,13 +64,25 @@ public class JwtTokenService {
      * 
      * @param jwtConf - Contains configuration like secret - not allowed to be null
      */
-    @Autowired
     public JwtTokenService(@Nullable JwtSettings jwtConf) {
-        if (jwtConf == null) {
+        this(jwtConf, jwtConf == null ? null : new JwtCodec(jwtConf));
+    }
+
+    /**
+     * Service class for dealing with concrete jwt tokens which uses a shared codec.
+     * 
+     * @param jwtConf - Contains configuration like secret - not allowed to be null
+     * @param codec - Encodes and decodes the tokens - not allowed to be null
+     */
+    @Autowired
+    public JwtTokenService(@Nullable JwtSettings jwtConf, @Nullable JwtCodec codec) {
+        if (jwtConf == null || codec == null) {
             // do this because spring technically would inject null when configuration is not made
             throw new RuntimeException("Try to inject null as jwt configuration into service");
         }
         this.jwtConf = jwtConf;
+        this.codec = codec;
+        this.verifiedTokens = new VerifiedTokenCache(jwtConf.getVerifiedCacheSize());
     }
 
     /**
@@ -66,13 +91,7 @@ public class JwtTokenService {
      * @param jit Identifier
      */
     public void disable(UUID... jit) {
-        for (var singleJit : jit) {
-            Optional<JwtToken> token = JwtCache.getInstance().getCachedToken(singleJit);
-            token.ifPresent(cacheToken -> {
-                cacheToken.setLocked(true);
-                JwtCache.getInstance().storeAndSave(cacheToken);
-            });
-        }
+        JwtCache.getInstance().revoke(notNull(Arrays.asList(jit)));
     }
 
     /**
@@ -81,10 +100,18 @@ public class JwtTokenService {
      * @param user
      */
     public void disableAllFrom(SparkyUser user) {
-        Set<JwtToken> tokensFromCache = JwtCache.getInstance().getCachedTokens();
-        tokensFromCache.forEach(token -> token.setLocked(true));
-        JwtToken[] jwtArray = notNull(tokensFromCache.toArray(JwtToken[]::new));
-        JwtCache.getInstance().storeAndSave(jwtArray);
+        JwtCache.getInstance().revokeAllFrom(user);
+    }
+
+    /**
+     * Invalidates all JWT token of a specific user (including tokens which were never stored) by increasing the token
+     * generation of the user. This is a single write, independent from the number of tokens.
+     * 
+     * @param user
+     */
+    public void invalidateAllFrom(SparkyUser user) {
+        int generation = JwtCache.getInstance().invalidateAllFrom(user);
+        log.debug("Token generation of {}@{} is now {}", user.getUsername(), user.getRealm(), generation);
     }
 
     /**
@@ -126,8 +153,11 @@ public class JwtTokenService {
             if (jwtString == null) {
                 throw new IllegalArgumentException("Couldn't decode JWT Token with given information");
             } else {
-                JwtToken tokenObj = JwtAuthTools.decodeAndExtract(jwtString, jwtConf.getSecret());
-                if (isJitNonLocked(tokenObj.getJti())) {
+                JwtToken tokenObj = decode(jwtString);
+                if (JwtCache.getInstance().isOutdated(tokenObj)) {
+                    log.debug("Token {} has an old generation", tokenObj.getJti());
+                    throw new JwtTokenReadException("The token with jit " + tokenObj.getJti() + " was invalidated");
+                } else if (isJitNonLocked(tokenObj.getJti())) {
                     return tokenObj;
                 } else {
                     log.debug("Token {} is locked. User: {}@{}" + tokenObj.getJti(), tokenObj.getUserInfo().getName(),
@@ -153,6 +183,63 @@ public class JwtTokenService {
         }
     }
 
+    /**
+     * Verifies several tokens at once. All tokens are checked against the same snapshot of locked tokens. 
+     * In contrast to {@link #readJwtToken(String)}, invalid tokens don't abort the verification.
+     * 
+     * @param jwtStrings - JWT tokens as strings
+     * @return One result per token in the same order
+     */
+    @Nonnull
+    public List<TokenVerification> verifyAll(List<String> jwtStrings) {
+        JwtCache cache = JwtCache.getInstance();
+        boolean ready = cache.isReady();
+        RevocationSet lockedJtis = cache.getRevocations();
+        var results = new ArrayList<TokenVerification>(jwtStrings.size());
+        for (String jwtString : jwtStrings) {
+            TokenVerification result;
+            try {
+                if (jwtString == null) {
+                    throw new IllegalArgumentException("Couldn't decode JWT Token with given information");
+                }
+                JwtToken tokenObj = decode(jwtString);
+                boolean locked = !ready || lockedJtis.contains(tokenObj.getJti()) || cache.isOutdated(tokenObj);
+                var status = locked ? TokenStatus.LOCKED : TokenStatus.VALID;
+                result = new TokenVerification(status, tokenObj);
+            } catch (ExpiredJwtException exception) {
+                result = new TokenVerification(TokenStatus.EXPIRED, null);
+            } catch (SignatureException exception) {
+                result = new TokenVerification(TokenStatus.INVALID_SIGNATURE, null);
+            } catch (JwtException | IllegalArgumentException exception) {
+                log.debug("Batch verification of invalid JWT failed : {}", exception.getMessage());
+                result = new TokenVerification(TokenStatus.INVALID, null);
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Decodes a JWT token. Tokens which were already verified are taken from {@link VerifiedTokenCache} without 
+     * checking the signature again, as long as the keys of the codec didn't change since. The lock state is not
+     * checked here.
+     * 
+     * @param jwtString - JWT token as string
+     * @return Decoded token
+     */
+    @Nonnull
+    private JwtToken decode(String jwtString) {
+        String key = VerifiedTokenCache.digest(jwtString);
+        long keyVersion = codec.getKeyRingVersion();
+        Optional<JwtToken> cachedToken = verifiedTokens.get(key, keyVersion);
+        if (cachedToken.isPresent()) {
+            return notNull(cachedToken.get());
+        }
+        JwtToken tokenObj = codec.decode(jwtString);
+        verifiedTokens.put(key, tokenObj, keyVersion);
+        return tokenObj;
+    }
+
     /**
      * Reads information out of the given JWT token and tries to refreshes them with information from a storage
      * to make sure the given information are valid.
@@ -185,37 +272,76 @@ public class JwtTokenService {
     }
 
     /**
-     * Creates a JWT token for the given user.
+     * Creates a JWT token for the given user. The token can be refreshed {@link JwtSettings#getMaxRefreshes()} times.
      * 
      * @param user Jwt token will hold information from this user
      * @return Signed jwt token
      */
     public String createFor(SparkyUser user) {
-        UUID jit = UUID.randomUUID();
-        log.trace("Created JWT token with jit {}", jit.toString());
-        var userInfo = new AuthPrincipalImpl(user.getRealm(), user.getUsername());
-        Date expDate = JwtAuthTools.createJwtExpirationDate(user);
-        var tokenObj = new JwtToken(jit, expDate, userInfo, user.getRole());
-        tokenObj.setRemainingRefreshes(0 /*TODO*/);
-        String tokenString = JwtAuthTools.encode(tokenObj, jwtConf);
-        JwtCache.getInstance().storeAndSave(tokenObj);
-        return tokenString;
+        return issueFor(user).getEncoded();
     }
 
     /**
-     * Todo.
-     * @param token
+     * Creates a JWT token for the given user like {@link #createFor(SparkyUser)}, but also returns the content of the
+     * token, so it doesn't have to be read again.
+     * 
+     * @param user Jwt token will hold information from this user
+     * @return Signed jwt token with its content
      */
-    public void refresh(JwtToken token) {
-        // TODO implement a refresh system? 
+    @Nonnull
+    public IssuedJwt issueFor(SparkyUser user) {
+        return issue(user, jwtConf.getMaxRefreshes());
     }
 
     /**
-     * Todo.
-     * @param jwtString
+     * Creates a JWT token for the given user.
+     * 
+     * @param user Jwt token will hold information from this user
+     * @param remainingRefreshes - How often the token can be refreshed
+     * @return Signed jwt token with its content
      */
-    public void refresh(String jwtString) {
-        // TODO implement a refresh system ? 
+    @Nonnull
+    private IssuedJwt issue(SparkyUser user, int remainingRefreshes) {
+        UUID jit = UUID.randomUUID();
+        log.trace("Created JWT token with jit {}", jit.toString());
+        var userInfo = new AuthPrincipalImpl(user.getRealm(), user.getUsername());
+        Date expDate = JwtAuthTools.createJwtExpirationDate(user);
+        var tokenObj = new JwtToken(jit, expDate, userInfo, user.getRole())
+            .withRemainingRefreshes(Math.max(0, remainingRefreshes))
+            .withTokenGeneration(JwtCache.getInstance().getTokenGenerationForNewToken(user.getUsername(),
+                user.getRealm(), jwtConf.getRevocationPollInterval()));
+        String tokenString = codec.encode(tokenObj);
+        JwtCache.getInstance().storeNew(tokenObj);
+        return new IssuedJwt(tokenString, tokenObj);
+    }
+
+    /**
+     * Exchanges a valid and unlocked token for a new one without a new login. The new token gets a new expiration 
+     * date (sliding expiry) and the current role of the user, but one refresh less than the given token. 
+     * Each token can only be refreshed once; it stays valid until it expires.
+     * 
+     * @param jwtString - JWT token as string
+     * @param service - Used to load the current state of the token owner
+     * @return New signed jwt token
+     * @throws JwtTokenReadException When the token is invalid, can't be refreshed or its owner is disabled or
+     *         doesn't exist anymore
+     */
+    @Nonnull
+    public String refresh(@Nullable String jwtString, UserExtractionService service) throws JwtTokenReadException {
+        JwtToken tokenObj = readJwtToken(jwtString);
+        SparkyUser user;
+        try {
+            user = service.extendAndRefresh(tokenObj.getUserInfo());
+        } catch (UserNotFoundException e) {
+            throw new JwtTokenReadException("The owner of the token doesn't exist");
+        }
+        if (!user.isEnabled()) {
+            throw new JwtTokenReadException("The owner of the token is disabled");
+        }
+        JwtToken claimed = JwtCache.getInstance().claimRefresh(tokenObj.getJti())
+            .orElseThrow(() -> new JwtTokenReadException("The token can't be refreshed"));
+        log.debug("Refresh token {} of {}", claimed.getJti(), tokenObj.getUserInfo().asString());
+        return issue(user, claimed.getRemainingRefreshes() - 1).getEncoded();
     }
 
     /**
@@ -227,6 +353,47 @@ public class JwtTokenService {
         return this.jwtConf;
     }
 
+    /**
+     * Codec which is used in this service class. Can be used to rotate signing keys.
+     * 
+     * @return Codec for JWT tokens
+     */
+    @Nonnull
+    public JwtCodec getCodec() {
+        return this.codec;
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "jwt";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        return notNull(
+            Map.of(
+                "verifiedCache.hits", verifiedTokens.getHitCount(),
+                "verifiedCache.misses", verifiedTokens.getMissCount(),
+                "verifiedCache.size", verifiedTokens.size(),
+                "revocations.size", JwtCache.getInstance().getRevocations().size(),
+                "revocations.evicted", JwtCache.getInstance().getEvictionCount()
+            )
+        );
+    }
+
+    /**
+     * Removes expired tokens from the revoked tokens in {@link JwtCache}. Runs periodically.
+     */
+    @Scheduled(fixedDelay = JwtCache.EVICTION_INTERVAL_MS)
+    public void evictExpiredTokens() {
+        int evicted = JwtCache.getInstance().evictExpired(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.debug("Evicted {} expired token from the revocations", evicted);
+        }
+    }
+
     /**
      * Searches a list of all locked jwt tokens for the given one. 
      * 
@@ -234,7 +401,6 @@ public class JwtTokenService {
      * @return <code> true </code> when the JIT is valid an not locked for authorization
      */
     public boolean isJitNonLocked(UUID jit) {
-        Optional<JwtToken> token = JwtCache.getInstance().getCachedToken(jit);
-        return !token.map(JwtToken::isLocked).orElse(false);
+        return !JwtCache.getInstance().isLocked(jit);
     }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+/**
+ * Result of a token verification.
+ * 
+ * @author marcel
+ */
+public enum TokenStatus {
+    VALID,
+    EXPIRED,
+    LOCKED,
+    INVALID_SIGNATURE,
+    INVALID;
+}
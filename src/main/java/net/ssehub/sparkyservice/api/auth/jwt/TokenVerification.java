@@ -0,0 +1,51 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Verification result of a single token from {@link JwtTokenService#verifyAll(java.util.List)}.
+ * 
+ * @author marcel
+ */
+public final class TokenVerification {
+
+    @Nonnull
+    private final TokenStatus status;
+
+    @Nullable
+    private final JwtToken token;
+
+    /**
+     * Verification result.
+     * 
+     * @param status
+     * @param token - The decoded token; <code>null</code> when it couldn't be decoded
+     */
+    TokenVerification(TokenStatus status, @Nullable JwtToken token) {
+        this.status = status;
+        this.token = token;
+    }
+
+    /**
+     * The status of the token.
+     * 
+     * @return Verification status
+     */
+    @Nonnull
+    public TokenStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * The decoded token. Present for {@link TokenStatus#VALID} and {@link TokenStatus#LOCKED} tokens.
+     * 
+     * @return Optional decoded token
+     */
+    @Nonnull
+    public Optional<JwtToken> getToken() {
+        return Optional.ofNullable(token);
+    }
+}
@@ -0,0 +1,217 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Bounded cache of JWT tokens which already passed the signature check. Entries are identified by a SHA-256 digest of
+ * the raw token string, so a token which arrives again can skip signature verification and claim parsing.
+ * An entry is dropped as soon as the expiration date of its token has passed or when it was verified with another
+ * version of the keys (see {@link JwtCodec#getKeyRingVersion()}), e.g. after the signing key was removed. <br>
+ * The lock state of a token is <b>not</b> part of this cache - it must be checked on every hit.
+ *
+ * @author marcel
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public class VerifiedTokenCache {
+
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not supported by this JVM", e);
+        }
+    });
+
+    /**
+     * A verified token together with the version of the keys which verified it.
+     */
+    private static final class Entry {
+        @Nonnull
+        private final JwtToken token;
+        private final long keyVersion;
+
+        /**
+         * Immutable entry.
+         *
+         * @param token
+         * @param keyVersion
+         */
+        private Entry(JwtToken token, long keyVersion) {
+            this.token = token;
+            this.keyVersion = keyVersion;
+        }
+    }
+
+    @Nonnull
+    private final Map<String, Entry> store = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Cache which holds at most the given amount of tokens.
+     *
+     * @param maxSize - Maximum number of cached tokens; <code>0</code> disables the cache
+     */
+    public VerifiedTokenCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("The size of the cache can't be negative");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates the key which identifies a raw token string in this cache.
+     *
+     * @param jwtString - Raw token as it was received
+     * @return SHA-256 digest of the token (base64 encoded)
+     */
+    @Nonnull
+    public static String digest(String jwtString) {
+        byte[] hash = DIGEST.get().digest(jwtString.getBytes(StandardCharsets.US_ASCII));
+        return notNull(Base64.getEncoder().encodeToString(hash));
+    }
+
+    /**
+     * Returns an already verified token.
+     *
+     * @param key - Created with {@link #digest(String)}
+     * @return Verified token; empty when the token is unknown or expired
+     */
+    @Nonnull
+    public Optional<JwtToken> get(String key) {
+        return get(key, 0);
+    }
+
+    /**
+     * Returns a token which was verified with the given version of the keys.
+     *
+     * @param key - Created with {@link #digest(String)}
+     * @param keyVersion - Current version of the keys
+     * @return Verified token; empty when the token is unknown, expired or was verified with other keys
+     */
+    @Nonnull
+    public Optional<JwtToken> get(String key, long keyVersion) {
+        Entry cached = store.get(key);
+        boolean outdated = cached != null && cached.keyVersion != keyVersion;
+        if (cached != null && (outdated || isExpired(cached.token, System.currentTimeMillis()))) {
+            store.remove(key, cached);
+            cached = null;
+        }
+        JwtToken token = null;
+        if (cached == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+            token = cached.token;
+        }
+        return notNull(Optional.ofNullable(token));
+    }
+
+    /**
+     * Stores a token which passed the signature check.
+     *
+     * @param key - Created with {@link #digest(String)}
+     * @param token - The verified token
+     */
+    public void put(String key, JwtToken token) {
+        put(key, token, 0);
+    }
+
+    /**
+     * Stores a token which passed the signature check.
+     *
+     * @param key - Created with {@link #digest(String)}
+     * @param token - The verified token
+     * @param keyVersion - Version of the keys which verified the token, read <b>before</b> the verification
+     */
+    public void put(String key, JwtToken token, long keyVersion) {
+        if (maxSize > 0 && !isExpired(token, System.currentTimeMillis())) {
+            if (store.size() >= maxSize) {
+                evict();
+            }
+            store.put(key, new Entry(token, keyVersion));
+        }
+    }
+
+    /**
+     * Removes expired tokens. When this is not enough, arbitrary entries are removed until a tenth of the cache is
+     * free again. Only one thread evicts at a time; others continue without waiting.
+     */
+    private void evict() {
+        if (evictionLock.tryLock()) {
+            try {
+                long now = System.currentTimeMillis();
+                store.values().removeIf(entry -> isExpired(entry.token, now));
+                int target = maxSize - Math.max(1, maxSize / 10);
+                Iterator<String> keys = store.keySet().iterator();
+                while (store.size() > target && keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Checks the expiration date of a token.
+     *
+     * @param token
+     * @param now - Current time in milliseconds
+     * @return <code>true</code> when the token must not be used anymore
+     */
+    private static boolean isExpired(JwtToken token, long now) {
+        return token.isExpiredAt(now);
+    }
+
+    /**
+     * Number of lookups which found a verified token.
+     *
+     * @return Cache hits since creation
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of lookups which had to verify the token.
+     *
+     * @return Cache misses since creation
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Current number of cached tokens (may contain expired ones which weren't evicted yet).
+     *
+     * @return Number of entries
+     */
+    public int size() {
+        return store.size();
+    }
+}
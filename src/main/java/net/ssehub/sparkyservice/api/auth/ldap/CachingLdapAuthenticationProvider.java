@@ -0,0 +1,101 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.storage.UserNotFoundException;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * LDAP provider which skips the bind when the same user logged in with the same password a short time ago (see
+ * {@link LdapBindCache}). The user is loaded from the storage in this case, so locked or expired users are still
+ * checked by the LDAP provider. Failed logins remove the cached bind.
+ *
+ * @author marcel
+ */
+public class CachingLdapAuthenticationProvider implements AuthenticationProvider {
+
+    private final Logger log = LoggerFactory.getLogger(CachingLdapAuthenticationProvider.class);
+
+    private final AuthenticationProvider delegate;
+
+    private final LdapBindCache cache;
+
+    private final UserStorageService storageService;
+
+    /**
+     * Provider with a bind cache.
+     *
+     * @param delegate - Authenticates against the LDAP server
+     * @param cache - Successful binds
+     * @param storageService - Provides the users of cached binds
+     */
+    public CachingLdapAuthenticationProvider(AuthenticationProvider delegate, LdapBindCache cache,
+        UserStorageService storageService) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.storageService = storageService;
+    }
+
+    @Override
+    @Nullable
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        String password = credentials instanceof String ? (String) credentials : null;
+        if (username == null || password == null || password.isEmpty()) {
+            return delegate.authenticate(authentication);
+        }
+        if (cache.matches(username, password)) {
+            var cached = loadCachedUser(username);
+            if (cached != null) {
+                log.debug("LDAP bind of {} taken from the cache", username);
+                return new UsernamePasswordAuthenticationToken(cached, password, cached.getAuthorities());
+            }
+        }
+        Authentication result;
+        try {
+            result = delegate.authenticate(authentication);
+        } catch (AuthenticationException e) {
+            cache.evict(username);
+            throw e;
+        }
+        if (result != null && result.getPrincipal() instanceof SparkyUser) {
+            cache.put(username, password);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the user of a cached bind from the storage.
+     *
+     * @param username
+     * @return The stored user or <code>null</code> if the LDAP server must decide
+     */
+    @Nullable
+    private SparkyUser loadCachedUser(String username) {
+        try {
+            SparkyUser user = storageService.findUserByNameAndRealm(username, UserRealm.LDAP);
+            if (user.isEnabled() && user.isAccountNonExpired()) {
+                return user;
+            }
+        } catch (UserNotFoundException e) {
+            log.debug("User of a cached LDAP bind not found: {}", username);
+        }
+        cache.evict(username);
+        return null;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+}
@@ -0,0 +1,180 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import net.ssehub.sparkyservice.api.auth.BoundedPasswordEncoder;
+import net.ssehub.sparkyservice.api.auth.PasswordHashingRejectedException;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+
+/**
+ * Short-lived cache of successful LDAP binds. A bind is remembered with a BCrypt verifier of the submitted password,
+ * never with the password itself. A later login of the same user with the same password within the TTL doesn't need
+ * the LDAP server. The verifiers are computed on the pool of the {@link BoundedPasswordEncoder}; when the pool
+ * rejects a hash, the cache is skipped and the LDAP server decides. <br>
+ * The cache is disabled when <code>ldap.cache.ttl-seconds</code> is <code>0</code>.
+ *
+ * @author marcel
+ */
+@Component
+@ParametersAreNonnullByDefault
+public class LdapBindCache implements MetricsProvider {
+
+    /**
+     * A cached bind.
+     */
+    private static final class Entry {
+        private final String verifier;
+        private final long expiresAt;
+
+        /**
+         * Cached bind.
+         *
+         * @param verifier - Hash of the password
+         * @param expiresAt - Expiration time in milliseconds
+         */
+        private Entry(String verifier, long expiresAt) {
+            this.verifier = verifier;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Nonnull
+    private final PasswordEncoder verifierEncoder;
+
+    @Nonnull
+    private final LongSupplier clock;
+
+    private final long ttlMillis;
+
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Cache with the configured TTL and size.
+     *
+     * @param settings - Provides <code>ldap.cache.*</code>
+     * @param passwordEncoder - Pool which computes the verifiers
+     */
+    @Autowired
+    public LdapBindCache(LdapSettings settings, BoundedPasswordEncoder passwordEncoder) {
+        this(settings.getCache(), passwordEncoder, System::currentTimeMillis);
+    }
+
+    /**
+     * Cache with its own clock.
+     *
+     * @param settings - Cache configuration
+     * @param passwordEncoder - Pool which computes the verifiers
+     * @param clock - Current time in milliseconds
+     */
+    LdapBindCache(LdapSettings.BindCache settings, BoundedPasswordEncoder passwordEncoder, LongSupplier clock) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, settings.getTtlSeconds()));
+        this.maxSize = settings.getMaxSize();
+        this.verifierEncoder = passwordEncoder.bound(new BCryptPasswordEncoder(settings.getStrength()));
+        this.clock = clock;
+    }
+
+    /**
+     * Whether binds are cached at all.
+     *
+     * @return <code>true</code> if the TTL is positive
+     */
+    public boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    /**
+     * Checks if the user had a successful bind with this password within the TTL.
+     *
+     * @param username - Name of the login
+     * @param rawPassword - Submitted password
+     * @return <code>true</code> if the bind can be skipped; <code>false</code> as well when the hashing pool is full
+     */
+    public boolean matches(String username, @Nullable String rawPassword) {
+        Entry entry = entries.get(username);
+        boolean hit;
+        try {
+            hit = entry != null && entry.expiresAt > clock.getAsLong() && rawPassword != null
+                && verifierEncoder.matches(rawPassword, entry.verifier);
+        } catch (PasswordHashingRejectedException e) {
+            rejected.increment();
+            hit = false;
+        }
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+
+    /**
+     * Remembers a successful bind. Nothing is cached when the cache is disabled or full, or when the hashing pool is
+     * full.
+     *
+     * @param username - Name of the login
+     * @param rawPassword - Password of the successful bind
+     */
+    public void put(String username, String rawPassword) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            long now = clock.getAsLong();
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        if (entries.size() < maxSize || entries.containsKey(username)) {
+            try {
+                entries.put(username, new Entry(verifierEncoder.encode(rawPassword), clock.getAsLong() + ttlMillis));
+            } catch (PasswordHashingRejectedException e) {
+                rejected.increment();
+            }
+        }
+    }
+
+    /**
+     * Forgets the bind of a user, for example after a failed login.
+     *
+     * @param username - Name of the login
+     */
+    public void evict(String username) {
+        entries.remove(username);
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "ldap";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        var metrics = new HashMap<String, Number>();
+        metrics.put("cache.size", entries.size());
+        metrics.put("cache.hits", hits.sum());
+        metrics.put("cache.misses", misses.sum());
+        metrics.put("cache.rejected", rejected.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,204 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.SearchControls;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ldap.control.PagedResultsDirContextProcessor;
+import org.springframework.ldap.core.ContextMapper;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.DirContextOperations;
+import org.springframework.ldap.core.LdapOperations;
+import org.springframework.ldap.core.support.SingleContextSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+import net.ssehub.sparkyservice.api.user.LdapUser;
+import net.ssehub.sparkyservice.api.user.LdapUserFactory;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Synchronizes the users of the LDAP directory into the user storage, so they exist before their first login and
+ * the login doesn't need to write them. The directory is read with the paged results control on a single
+ * connection, which isn't taken from the pool of the login (pooled connections don't support request controls).
+ * Each page is mapped like a login (see {@link LdapInformationExtractor}) and written with one batch of
+ * {@link UserStorageService#upsertAll(java.util.Collection)}, which skips unchanged users. <br>
+ * After each page the progress is kept as checkpoint (pages and entries which are already written). The page cookie
+ * is bound to the connection, so a failed run starts again with the first page; the pages before the checkpoint are
+ * only read and compared then.
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+public class LdapDirectorySync implements MetricsProvider {
+
+    private final Logger log = LoggerFactory.getLogger(LdapDirectorySync.class);
+
+    @Nonnull
+    private final ContextSource contextSource;
+
+    @Nonnull
+    private final UserStorageService storageService;
+
+    @Nonnull
+    private final LdapSettings.Sync settings;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile int checkpointPages;
+    private volatile int checkpointEntries;
+    private volatile int lastEntries;
+    private volatile int lastWritten;
+    private volatile long lastDurationMs;
+    private volatile long lastSuccess;
+
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Synchronization job.
+     *
+     * @param contextSource - Connections to the directory, must not be pooled
+     * @param storageService - Stores the users
+     * @param settings - Search and page size
+     */
+    public LdapDirectorySync(ContextSource contextSource, UserStorageService storageService,
+        LdapSettings.Sync settings) {
+        this.contextSource = contextSource;
+        this.storageService = storageService;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the synchronization periodically. Failures are logged, the next run starts from the beginning.
+     */
+    @Scheduled(initialDelayString = "${ldap.sync.initial-delay-ms:60000}",
+        fixedDelayString = "${ldap.sync.interval-ms:3600000}")
+    public void scheduledSync() {
+        try {
+            synchronize();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("LDAP sync failed after page {} ({} entries): {}", checkpointPages, checkpointEntries,
+                e.getMessage());
+        }
+    }
+
+    /**
+     * Reads all users of the directory and writes the changed ones.
+     *
+     * @return Number of written users or <code>-1</code> if another synchronization is still running
+     */
+    public int synchronize() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("LDAP sync skipped, the previous run is still running");
+            return -1;
+        }
+        try {
+            checkpointPages = 0;
+            checkpointEntries = 0;
+            long start = System.nanoTime();
+            // read only, ignores the referrals of AD servers
+            int written = SingleContextSource.doWithSingleContext(contextSource, this::synchronizePages, true, true,
+                false);
+            long durationMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            lastEntries = checkpointEntries;
+            lastWritten = written;
+            lastDurationMs = durationMs;
+            lastSuccess = System.currentTimeMillis();
+            log.info("LDAP sync read {} entries in {} pages and wrote {} users in {} ms ({} entries/s)",
+                checkpointEntries, checkpointPages, written, durationMs, checkpointEntries * 1000L / durationMs);
+            return written;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Walks through the pages of the search on one connection.
+     *
+     * @param operations - Bound to a single connection
+     * @return Number of written users
+     */
+    private int synchronizePages(LdapOperations operations) {
+        var controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        controls.setReturningAttributes(new String[] {settings.getUsernameAttribute(), "displayName", "mail"});
+        var processor = new PagedResultsDirContextProcessor(settings.getPageSize());
+        ContextMapper<LdapUser> mapper = ctx -> toUser((DirContextOperations) ctx);
+        int written = 0;
+        do {
+            List<LdapUser> page = operations.search(settings.getBase(), settings.getFilter(), controls, mapper,
+                processor);
+            page.removeIf(user -> user == null);
+            written += storageService.upsertAll(page);
+            checkpointPages++;
+            checkpointEntries += page.size();
+            log.debug("LDAP sync checkpoint: page {} written, {} entries so far", checkpointPages, checkpointEntries);
+        } while (processor.hasMore());
+        return written;
+    }
+
+    /**
+     * Maps a directory entry like the LDAP login does.
+     *
+     * @param ctx - Entry of a user
+     * @return The user or <code>null</code> if the entry has no username
+     */
+    @Nullable
+    private LdapUser toUser(DirContextOperations ctx) {
+        String username = null;
+        Attribute usernameAttribute = ctx.getAttributes().get(settings.getUsernameAttribute());
+        try {
+            if (usernameAttribute != null) {
+                username = (String) usernameAttribute.get();
+            }
+        } catch (NamingException e) {
+            log.debug("Username of {} not readable: {}", ctx.getDn(), e.getMessage());
+        }
+        LdapUser user = null;
+        if (username != null && !username.isBlank()) {
+            var ldapInfoExtractor = new LdapInformationExtractor(ctx);
+            user = new LdapUserFactory().create(username, null, UserRole.DEFAULT, true);
+            user.setExpireDate(ldapInfoExtractor.getExpirationDate());
+            user.setFullname(ldapInfoExtractor.getFullname());
+            user.getSettings().setEmail_address(ldapInfoExtractor.getEmail());
+        }
+        return user;
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "ldap";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        var metrics = new HashMap<String, Number>();
+        metrics.put("sync.running", running.get() ? 1 : 0);
+        metrics.put("sync.checkpoint.pages", checkpointPages);
+        metrics.put("sync.checkpoint.entries", checkpointEntries);
+        metrics.put("sync.last.entries", lastEntries);
+        metrics.put("sync.last.written", lastWritten);
+        metrics.put("sync.last.duration.ms", lastDurationMs);
+        metrics.put("sync.last.entries.per.second", lastDurationMs == 0 ? 0 : lastEntries * 1000L / lastDurationMs);
+        metrics.put("sync.last.success", lastSuccess);
+        metrics.put("sync.failures", failures.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,159 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.naming.directory.DirContext;
+import javax.naming.ldap.LdapName;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
+import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.ldap.pool2.factory.PooledContextSource;
+import org.springframework.ldap.pool2.validation.DefaultDirContextValidator;
+import org.springframework.security.ldap.DefaultSpringSecurityContextSource;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+
+/**
+ * LDAP context source which keeps the connections of the manager (used to search users and groups) in a pool. A
+ * pooled connection is validated with a search before it is used and closed after it was idle for a while. <br>
+ * Binds with the credentials of a user (the actual login) can't be pooled: They always open a new connection.
+ *
+ * @author marcel
+ */
+public class PooledLdapContextSource implements BaseLdapPathContextSource, DisposableBean, MetricsProvider {
+
+    @Nonnull
+    private final LdapContextSource target;
+
+    @Nonnull
+    private final PooledContextSource pool;
+
+    /**
+     * Creates the pool. Connections are opened on demand.
+     *
+     * @param url - Server URL with the base DN, like <code>ldap://localhost:389/dc=example,dc=com</code>
+     * @param managerDn - DN which is used for searches, empty for anonymous searches
+     * @param managerPassword - Password of the manager DN
+     * @param settings - Pool configuration
+     */
+    public PooledLdapContextSource(String url, @Nullable String managerDn, @Nullable String managerPassword,
+        LdapSettings.Pool settings) {
+        var contextSource = new DefaultSpringSecurityContextSource(url);
+        if (managerDn != null) {
+            contextSource.setUserDn(managerDn);
+        }
+        if (managerPassword != null) {
+            contextSource.setPassword(managerPassword);
+        }
+        contextSource.setPooled(false); // no JNDI pooling below the pool
+        contextSource.afterPropertiesSet();
+        this.target = contextSource;
+        this.pool = new PooledContextSource(createPoolConfig(settings));
+        pool.setContextSource(contextSource);
+        if (settings.isValidate()) {
+            pool.setDirContextValidator(new DefaultDirContextValidator());
+        }
+    }
+
+    /**
+     * Translates the settings into a configuration of the pool.
+     *
+     * @param settings
+     * @return Pool configuration
+     */
+    private static PoolConfig createPoolConfig(LdapSettings.Pool settings) {
+        var config = new PoolConfig();
+        config.setMaxTotal(settings.getMaxActive());
+        config.setMaxTotalPerKey(settings.getMaxActive());
+        config.setMaxIdlePerKey(settings.getMaxActive());
+        config.setMinIdlePerKey(settings.getMinIdle());
+        config.setMaxWaitMillis(settings.getMaxWaitMs());
+        config.setBlockWhenExhausted(true);
+        config.setTestOnBorrow(settings.isValidate());
+        config.setTestWhileIdle(settings.isValidate());
+        config.setTimeBetweenEvictionRunsMillis(settings.getEvictionIntervalMs());
+        config.setMinEvictableIdleTimeMillis(settings.getIdleTimeMs());
+        return config;
+    }
+
+    /**
+     * {@inheritDoc} The context comes from the pool, closing it returns it to the pool.
+     */
+    @Override
+    public DirContext getReadOnlyContext() {
+        return pool.getReadOnlyContext();
+    }
+
+    /**
+     * {@inheritDoc} The context comes from the pool, closing it returns it to the pool.
+     */
+    @Override
+    public DirContext getReadWriteContext() {
+        return pool.getReadWriteContext();
+    }
+
+    /**
+     * {@inheritDoc} Always opens a new connection which is bound with the given credentials.
+     */
+    @Override
+    public DirContext getContext(String principal, String credentials) {
+        return target.getContext(principal, credentials);
+    }
+
+    /**
+     * The connections below the pool. Needed for request controls (like paged results), which can't be set on
+     * pooled connections.
+     * 
+     * @return Context source which opens a new connection for every context
+     */
+    public @Nonnull BaseLdapPathContextSource getUnpooledContextSource() {
+        return target;
+    }
+
+    @Override
+    @Deprecated
+    public DistinguishedName getBaseLdapPath() {
+        return target.getBaseLdapPath();
+    }
+
+    @Override
+    public LdapName getBaseLdapName() {
+        return target.getBaseLdapName();
+    }
+
+    @Override
+    public String getBaseLdapPathAsString() {
+        return target.getBaseLdapPathAsString();
+    }
+
+    /**
+     * Closes all pooled connections.
+     */
+    @Override
+    public void destroy() throws Exception {
+        pool.destroy();
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "ldap";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        var metrics = new HashMap<String, Number>();
+        metrics.put("pool.active", pool.getNumActive());
+        metrics.put("pool.idle", pool.getNumIdle());
+        metrics.put("pool.waiters", pool.getNumWaiters());
+        return metrics;
+    }
+}
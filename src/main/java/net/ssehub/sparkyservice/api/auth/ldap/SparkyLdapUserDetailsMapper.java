@@ -49,12 +49,7 @@ public final class SparkyLdapUserDetailsMapper implements UserDetailsContextMapp
             ldapUser.setFullname(ldapInfoExtractor.getFullname());
             ldapUser.getSettings().setEmail_address(ldapInfoExtractor.getEmail());
         }
-        if (storageService.isUserInStorage(ldapUser)) {
-            ldapUser = (LdapUser) storageService.refresh(ldapUser);
-        } else {
-            storageService.commit(ldapUser);
-        } 
-        return ldapUser;
+        return storageService.upsert(ldapUser);
     }
 
     /**
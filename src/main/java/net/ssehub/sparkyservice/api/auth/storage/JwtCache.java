@@ -3,14 +3,21 @@ package net.ssehub.sparkyservice.api.auth.storage;
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
@@ -19,10 +26,19 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import javax.annotation.concurrent.ThreadSafe;
 
 import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
-import net.ssehub.sparkyservice.api.util.SparkyUtil;
+import net.ssehub.sparkyservice.api.jpa.token.JpaRevocationEvent;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
 
 /**
- * Provides a thread safe cache for {@link JwtToken}.
+ * Provides a thread safe cache of revoked (locked) {@link JwtToken}. <br>
+ * Only the JTIs of locked tokens are kept in memory (see {@link RevocationSet}), all other token information is 
+ * held by the storage. Reads never block; the revocation set is immutable and replaced on changes. <br>
+ * Revoked tokens are evicted after they expired ({@link #evictExpired(long)}), as expired tokens are rejected anyway. 
+ * For this, the revocations are indexed by their expiration in buckets of {@link #EVICTION_INTERVAL_MS}. Revoked 
+ * tokens with an unknown expiration date are never evicted. <br>
+ * Additionally, the cache knows the token generation of each user whose generation was increased 
+ * ({@link #invalidateAllFrom(SparkyUser)}). Tokens of an older generation are rejected, no matter if they are stored.
  * 
  * @author marcel
  */
@@ -30,126 +46,497 @@ import net.ssehub.sparkyservice.api.util.SparkyUtil;
 @ParametersAreNonnullByDefault
 public class JwtCache {
 
-    private static volatile JwtCache instance = new JwtCache(null);
+    /**
+     * Width of the expiration buckets in milliseconds. Tokens are evicted at most this time after they expired. 
+     */
+    public static final long EVICTION_INTERVAL_MS = 60_000;
+
+    /**
+     * Number of tokens per query when the locked tokens are read from the storage.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * How long missing versions of the revocation feed are expected to show up. A transaction which writes an event
+     * must be committed within this time.
+     */
+    public static final long MISSING_VERSION_TIMEOUT_MS = 60_000;
+
+    /**
+     * Upper limit of tracked missing versions per read event.
+     */
+    private static final int MAX_MISSING_VERSIONS = 1000;
+
+    private static volatile JwtCache instance = new JwtCache(null, false, true);
     
     @Nonnull
-    private Map<UUID, JwtToken> tokenStore = new ConcurrentHashMap<UUID, JwtToken>();
+    private volatile RevocationSet revoked;
+
+    /**
+     * Revoked JTIs by the bucket of their expiration time. Guarded by <code>this</code>.
+     */
+    @Nonnull
+    private final TreeMap<Long, List<UUID>> expirationIndex = new TreeMap<>();
+
+    private volatile long evictionCount;
+
+    /**
+     * <code>false</code> as long as the revocations of the storage are not loaded.
+     */
+    private volatile boolean ready;
+
+    /**
+     * Guards the position in the revocation feed.
+     */
+    private final Object feedLock = new Object();
+
+    /**
+     * Newest version of the revocation feed which was read.
+     */
+    private long feedVersion;
+
+    /**
+     * Versions below {@link #feedVersion} which weren't read yet, with the time they were first missed.
+     */
+    private final Map<Long, Long> missingVersions = new HashMap<>();
+
+    /**
+     * Time when the revocation feed was read completely for the last time; <code>0</code> when it was never read.
+     * Only written while holding {@link #feedLock}, but read without it.
+     */
+    private volatile long feedReadAt;
+
+    /**
+     * <code>true</code> while versions of the revocation feed are missing. Only written while holding 
+     * {@link #feedLock}, but read without it.
+     */
+    private volatile boolean feedIncomplete;
+
+    /**
+     * Token generations greater than 0 by realm and username. The map of each realm is created once, so lookups don't
+     * need a composed key.
+     */
+    @Nonnull
+    private final Map<UserRealm, Map<String, Integer>> generations = new EnumMap<>(UserRealm.class);
+
     @Nonnull
     private final Optional<JwtStorageService> storage;
 
-    
     /**
-     * Cache with an empty store.
+     * Cache without revoked tokens.
      * 
      * @param storage The storage service which is used for storage operation
+     * @param withBloomFilter - Decides if the revocation set uses a Bloom filter
+     * @param ready - <code>false</code> when the revocations still have to be loaded from the storage
      */
-    private JwtCache(@Nullable JwtStorageService storage) {
-        this(new ConcurrentHashMap<UUID, JwtToken>(), storage);
+    private JwtCache(@Nullable JwtStorageService storage, boolean withBloomFilter, boolean ready) {
+        this.storage = notNull(Optional.ofNullable(storage));
+        this.revoked = RevocationSet.empty(withBloomFilter);
+        this.ready = ready;
+        for (UserRealm realm : UserRealm.values()) {
+            generations.put(realm, new ConcurrentHashMap<>());
+        }
     }
 
     /**
-     * Cache with start values.
+     * Stores new or updated token objects in a storage. Locked tokens are revoked.
      * 
-     * @param tokenStore should be a thread safe implementation
-     * @param storage
+     * @param jpaTokens New or updated object
      */
-    private JwtCache(Map<UUID, JwtToken> tokenStore, @Nullable JwtStorageService storage) {
-        this.storage = notNull(Optional.ofNullable(storage));
-        this.tokenStore = tokenStore;
+    public void storeAndSave(JwtToken... jpaTokens) {
+        List<JwtToken> locked = Arrays.stream(jpaTokens)
+            .filter(JwtToken::isLocked)
+            .collect(Collectors.toList());
+        addRevocations(notNull(locked));
+        storage.ifPresent(s -> s.commit(jpaTokens));
     }
 
     /**
-     * Stores a new token object to the cache and stores it in a storage (thread safe).
+     * Stores a newly issued token. Unlocked tokens are written in the background, so this doesn't wait for the 
+     * storage.
      * 
-     * @param jpaTokens New or updated object
+     * @param token - New token which isn't in the storage yet
      */
-    public synchronized void storeAndSave(JwtToken... jpaTokens) {
-        for (final JwtToken singleToken : jpaTokens) {
-            tokenStore.put(singleToken.getJti(), singleToken);
+    public void storeNew(JwtToken token) {
+        if (token.isLocked()) {
+            storeAndSave(token);
+        } else {
+            storage.ifPresent(s -> s.commitNew(token));
         }
-        storage.ifPresent(s -> s.commit(jpaTokens));
     }
 
     /**
-     * Refreshed the current cache with values from a storage (when a storage is present).
+     * Locks tokens. They are rejected immediately, the storage is updated afterwards. Every revoked token is indexed
+     * with the expiration which the storage published. Tokens which aren't stored yet have an unknown expiration; 
+     * they are indexed when the storage republishes their revocation with the stored expiration (see 
+     * {@link JwtStorageService#confirmRevocationExpirations()}) and this cache polls it.
+     * 
+     * @param jtis - Identifiers of the tokens to lock
      */
-    public synchronized void refreshFromStorage() {
-        tokenStore = notNull(
-            storage.map(JwtStorageService::findAll)
-                .orElseGet(ArrayList::new)
-                .stream()
-                .collect(
-                    Collectors.toMap(JwtToken::getJti, Function.identity())
-                )
-        );
+    public void revoke(Collection<UUID> jtis) {
+        synchronized (this) {
+            revoked = revoked.with(jtis);
+        }
+        storage.ifPresent(s -> applyLocked(s.lock(jtis)));
     }
 
     /**
-     * Refreshes the cache with a given strategy. 
+     * Adds locked tokens of the storage to the revocation set. 
      * 
-     * @param refreshStrategy strategy to refresh cache; should not return null
+     * @param locked
      */
-    public synchronized void refreshFromStorage(Supplier<? extends Map<UUID, JwtToken>> refreshStrategy) {
-        Map<UUID, JwtToken> newStore = refreshStrategy.get();
-        if (newStore == null) {
-            throw new RuntimeException("Store supplier in cache provided null");
+    private synchronized void applyLocked(List<? extends TokenExpiration> locked) {
+        if (!locked.isEmpty()) {
+            revoked = revoked.with(toJtis(locked));
+            locked.forEach(t -> indexExpiration(notNull(UUID.fromString(t.getJti())), t.getExpirationDate()));
         }
-        tokenStore = newStore;
     }
 
+    /**
+     * Adds tokens to the revocation set. 
+     * 
+     * @param tokens
+     */
+    private synchronized void addRevocations(Collection<JwtToken> tokens) {
+        if (!tokens.isEmpty()) {
+            revoked = revoked.with(notNull(tokens.stream().map(JwtToken::getJti).collect(Collectors.toList())));
+            tokens.forEach(token -> indexExpiration(token.getJti(), token.getExpirationDate()));
+        }
+    }
 
     /**
-     * A set of disabled JITs. 
+     * Adds a revoked JTI to the expiration index. Must be called while holding the lock of this cache.
      * 
-     * @return disbaled jits
+     * @param jti
+     * @param expirationDate - Nothing happens when <code>null</code>
      */
-    public Set<UUID> getLockedJits() {
-        return SparkyUtil.toSet(tokenStore)
-            .stream()
-            .filter(JwtToken::isLocked)
-            .map(JwtToken::getJti)
-            .collect(Collectors.toSet());
+    private void indexExpiration(UUID jti, @Nullable Date expirationDate) {
+        indexExpiration(expirationIndex, jti, expirationDate);
     }
 
     /**
-     * Returns a JwtToken object from the cache store if present.
+     * Adds a revoked JTI to an expiration index.
      * 
-     * @param jit The desired cached token
-     * @return Optional token; empty when the token with given jit is not in store
+     * @param index - Revoked JTIs by the bucket of their expiration time
+     * @param jti
+     * @param expirationDate - Nothing happens when <code>null</code>
      */
-    public synchronized Optional<JwtToken> getCachedToken(@Nullable UUID jit) {
-        JwtToken tokenCopy = tokenStore.get(jit);
-        if (tokenCopy != null) {
-            tokenCopy = tokenCopy.copy();
-        } else {
-//            storage.ifPresent(s -> s.findBJit(jit.toString()));
+    private static void indexExpiration(Map<Long, List<UUID>> index, UUID jti, @Nullable Date expirationDate) {
+        if (expirationDate != null) {
+            long bucket = Math.floorDiv(expirationDate.getTime(), EVICTION_INTERVAL_MS);
+            index.computeIfAbsent(bucket, b -> new ArrayList<>()).add(jti);
         }
-        return Optional.ofNullable(tokenCopy);
     }
-    
+
     /**
-     * Returns a copy of the currently locked token.
+     * Removes all revoked tokens which expired before the given time. Tokens which expire within the current bucket 
+     * are kept until the next one.
      * 
-     * @return copy of currently locked token objects
+     * @param now - Time in milliseconds
+     * @return Number of evicted tokens
      */
-    public Set<JwtToken> getLockedTokenObjects() {
-        return SparkyUtil.toSet(tokenStore)
-            .stream()
-            .filter(JwtToken::isLocked)
-            .map(JwtToken::copy)
-            .collect(Collectors.toSet());
+    public synchronized int evictExpired(long now) {
+        SortedMap<Long, List<UUID>> expired = expirationIndex.headMap(Math.floorDiv(now, EVICTION_INTERVAL_MS));
+        int evicted = 0;
+        if (!expired.isEmpty()) {
+            var jtis = new ArrayList<UUID>();
+            expired.values().forEach(jtis::addAll);
+            expired.clear();
+            int sizeBefore = revoked.size();
+            revoked = revoked.without(jtis);
+            evicted = sizeBefore - revoked.size();
+            evictionCount += evicted;
+        }
+        return evicted;
+    }
+
+    /**
+     * Locks all tokens of a user which are known to the storage. Only the unlocked tokens of this user are read and
+     * added to the revocation set.
+     * 
+     * @param user - Owner of the tokens
+     */
+    public void revokeAllFrom(SparkyUser user) {
+        storage.ifPresent(s -> applyLocked(s.lockAllFrom(user)));
+    }
+
+    /**
+     * Invalidates all tokens of a user at once by increasing the token generation of the user. In contrast to 
+     * {@link #revokeAllFrom(SparkyUser)}, no token is read or written; tokens which were issued before are rejected
+     * because of their older generation.
+     * 
+     * @param user - Owner of the tokens
+     * @return The new generation of the user
+     */
+    public int invalidateAllFrom(SparkyUser user) {
+        String name = user.getUsername();
+        UserRealm realm = user.getRealm();
+        int generation = storage.map(s -> s.incrementTokenGeneration(user)).orElse(0);
+        if (generation == 0) {
+            // not stored: only known to this node
+            generation = getTokenGeneration(name, realm) + 1;
+        }
+        applyGeneration(name, realm, generation);
+        return generation;
+    }
+
+    /**
+     * Raises the known token generation of a user. Lower generations (from older events) are ignored.
+     * 
+     * @param name
+     * @param realm
+     * @param generation
+     */
+    private void applyGeneration(String name, UserRealm realm, int generation) {
+        if (generation > 0) {
+            notNull(generations.get(realm)).merge(name, generation, Math::max);
+        }
+    }
+
+    /**
+     * The current token generation of a user. New tokens of the user must have this generation.
+     * 
+     * @param name - Name of the user
+     * @param realm - Realm of the user
+     * @return Generation; <code>0</code> when it was never increased
+     */
+    public int getTokenGeneration(String name, UserRealm realm) {
+        Integer generation = notNull(generations.get(realm)).get(name);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * The token generation for a new token of a user. Usually this is the generation known from the revocation feed,
+     * so no storage access is needed. Only when the feed is stale (it wasn't read within the given time or versions 
+     * of it are missing), another node may have increased the generation unnoticed. Then the stored generation is 
+     * read and the higher of the stored and the known generation is used (and kept).
+     * 
+     * @param name - Name of the user
+     * @param realm - Realm of the user
+     * @param maxFeedAge - Milliseconds after the last read of the feed until it is stale, usually the poll interval
+     * @return Generation; <code>0</code> when it was never increased
+     */
+    public int getTokenGenerationForNewToken(String name, UserRealm realm, long maxFeedAge) {
+        if (feedIncomplete || System.currentTimeMillis() - feedReadAt > maxFeedAge) {
+            storage.ifPresent(s -> applyGeneration(name, realm, s.findTokenGeneration(name, realm)));
+        }
+        return getTokenGeneration(name, realm);
+    }
+
+    /**
+     * Checks if a token was issued before the token generation of its owner was increased. Needs one map lookup.
+     * 
+     * @param token
+     * @return <code>true</code> when the token must be rejected
+     */
+    public boolean isOutdated(JwtToken token) {
+        return token.getTokenGeneration() < getTokenGeneration(token.getUserInfo().getName(), 
+            token.getUserInfo().getRealm());
+    }
+
+    /**
+     * Claims the right to refresh a token. This happens atomically in the storage: A token can only be refreshed 
+     * once, further attempts with the same token fail. The claimed token stays valid until it expires or is locked.
+     * 
+     * @param jti - Identifier of the token which should be refreshed
+     * @return The token as it was before the claim; empty when the token is unknown, locked or has no 
+     *         remaining refreshes
+     */
+    public Optional<JwtToken> claimRefresh(UUID jti) {
+        Optional<JwtToken> claimed = Optional.empty();
+        if (!revoked.contains(jti)) {
+            claimed = storage.flatMap(s -> s.findByJti(jti)
+                .filter(token -> !token.isLocked() && token.getRemainingRefreshes() > 0)
+                .filter(token -> s.claimRefresh(jti, token.getRemainingRefreshes())));
+        }
+        return notNull(claimed);
+    }
+
+    /**
+     * Loads a token from the storage.
+     * 
+     * @param jti
+     * @return The stored token; empty when there is no storage or the token is unknown
+     */
+    public Optional<JwtToken> findToken(UUID jti) {
+        return notNull(storage.flatMap(s -> s.findByJti(jti)));
+    }
+
+    /**
+     * Loads the token generations and the locked and not expired tokens of the storage and marks this cache as ready.
+     * Each page of locked tokens is added when it is read, so the tokens are never held all at once. Tokens which are 
+     * revoked in the meantime are kept. Revocations can be added while the storage is read. <br>
+     * When the storage fails, the exception is passed on and the cache stays not ready; the load can be repeated.
+     * 
+     * @param pageSize - Number of tokens per query
+     * @return Number of loaded tokens
+     */
+    public int loadFromStorage(int pageSize) {
+        int loaded = storage.map(s -> {
+            synchronized (feedLock) {
+                feedVersion = s.findLatestRevocationVersion();
+                missingVersions.clear();
+                feedIncomplete = false;
+                feedReadAt = System.currentTimeMillis();
+            }
+            s.findTokenGenerations().forEach(g -> applyGeneration(g.getUserName(), g.getRealm(), 
+                g.getTokenGeneration()));
+            return forEachLockedPage(s, pageSize, this::applyLocked);
+        }).orElse(0);
+        ready = true;
+        return loaded;
+    }
+
+    /**
+     * Replaces the revoked tokens with the locked and not expired tokens of the storage (when a storage is present).
+     * Token generations of the storage are added; generations never decrease.
+     */
+    public synchronized void refreshFromStorage() {
+        storage.ifPresent(s -> {
+            synchronized (feedLock) {
+                feedVersion = s.findLatestRevocationVersion();
+                missingVersions.clear();
+                feedIncomplete = false;
+                feedReadAt = System.currentTimeMillis();
+            }
+            s.findTokenGenerations().forEach(g -> applyGeneration(g.getUserName(), g.getRealm(), 
+                g.getTokenGeneration()));
+            // built aside, so the current revocations stay in use until the new ones are complete
+            var loaded = new AtomicReference<>(RevocationSet.empty(revoked.hasBloomFilter()));
+            var index = new TreeMap<Long, List<UUID>>();
+            forEachLockedPage(s, DEFAULT_PAGE_SIZE, page -> {
+                loaded.updateAndGet(set -> set.with(toJtis(page)));
+                page.forEach(t -> indexExpiration(index, notNull(UUID.fromString(t.getJti())), t.getExpirationDate()));
+            });
+            expirationIndex.clear();
+            expirationIndex.putAll(index);
+            revoked = notNull(loaded.get());
+        });
+        ready = true;
     }
 
     /**
-     * Returns a copy of the stored tokens.
+     * Reads all locked and not expired tokens page by page and passes each page on as soon as it is read.
      * 
-     * @return Set of tokens in the cache
+     * @param storage
+     * @param pageSize - Number of tokens per query
+     * @param action - Consumes one page
+     * @return Number of read tokens
      */
-    public Set<JwtToken> getCachedTokens() {
-        return SparkyUtil.toSet(tokenStore)
-            .stream()
-            .map(JwtToken::copy)
-            .collect(Collectors.toSet());
+    private static int forEachLockedPage(JwtStorageService storage, int pageSize, 
+            Consumer<List<TokenExpiration>> action) {
+        int read = 0;
+        List<TokenExpiration> page;
+        String lastJti = null;
+        do {
+            page = storage.findLockedExpirations(lastJti, pageSize);
+            action.accept(page);
+            read += page.size();
+            lastJti = page.isEmpty() ? lastJti : page.get(page.size() - 1).getJti();
+        } while (page.size() >= pageSize);
+        return read;
+    }
+
+    /**
+     * The JTIs of the given tokens.
+     * 
+     * @param tokens
+     * @return UUIDs in the same order
+     */
+    private static List<UUID> toJtis(List<? extends TokenExpiration> tokens) {
+        return notNull(tokens.stream().map(t -> UUID.fromString(t.getJti())).collect(Collectors.toList()));
+    }
+
+    /**
+     * Applies the revocations of other nodes: Reads the events of the revocation feed which are new to this cache. 
+     * Events with a version below the newest read version may show up later when their transaction took longer; these
+     * versions are asked for again until {@link #MISSING_VERSION_TIMEOUT_MS} passed. Does nothing until the cache is 
+     * ready.
+     * 
+     * @param pageSize - Maximum number of events per query
+     * @return Number of applied events
+     */
+    public int pollRevocations(int pageSize) {
+        int applied = 0;
+        JwtStorageService s = storage.orElse(null);
+        if (s != null && ready) {
+            synchronized (feedLock) {
+                long now = System.currentTimeMillis();
+                missingVersions.values().removeIf(since -> now - since > MISSING_VERSION_TIMEOUT_MS);
+                List<JpaRevocationEvent> events;
+                do {
+                    events = s.findRevocationEvents(feedVersion, notNull(missingVersions.keySet()), pageSize);
+                    applyLocked(notNull(events.stream()
+                        .filter(event -> !event.isGenerationChange())
+                        .collect(Collectors.toList())));
+                    applied += events.size();
+                    for (JpaRevocationEvent event : events) {
+                        String userName = event.getUserName();
+                        UserRealm realm = event.getRealm();
+                        if (userName != null && realm != null) {
+                            applyGeneration(userName, realm, event.getTokenGeneration());
+                        }
+                        missingVersions.remove(event.getVersion());
+                        long gapEnd = Math.min(event.getVersion(), feedVersion + 1 + MAX_MISSING_VERSIONS);
+                        for (long version = feedVersion + 1; version < gapEnd; version++) {
+                            missingVersions.put(version, now);
+                        }
+                        feedVersion = Math.max(feedVersion, event.getVersion());
+                    }
+                } while (events.size() >= pageSize);
+                feedIncomplete = !missingVersions.isEmpty();
+                feedReadAt = now;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Checks if the revocations of the storage are loaded. Until then, all tokens are treated as locked.
+     * 
+     * @return <code>true</code> when the cache is ready to check tokens
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Snapshot of the revoked JTIs. Further revocations don't change the returned set.
+     * 
+     * @return Current revocations
+     */
+    @Nonnull
+    public RevocationSet getRevocations() {
+        return revoked;
+    }
+
+    /**
+     * A set of disabled JITs. 
+     * 
+     * @return disbaled jits
+     */
+    public Set<UUID> getLockedJits() {
+        return revoked.toSet();
+    }
+
+    /**
+     * Number of revoked tokens which were evicted since this cache was created.
+     * 
+     * @return Eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Checks the lock state of a token without waiting or allocating. Every token is locked as long as the cache is
+     * not ready (see {@link #isReady()}).
+     * 
+     * @param jit
+     * @return <code>true</code> when the token is locked
+     */
+    public boolean isLocked(@Nullable UUID jit) {
+        return !ready || jit != null && revoked.contains(jit);
     }
 
 // STATIC METHODS 
@@ -159,7 +546,7 @@ public class JwtCache {
      * 
      * @return Thread safe instance
      */
-    public static synchronized JwtCache getInstance() {
+    public static JwtCache getInstance() {
         return instance;
     }
 
@@ -168,18 +555,43 @@ public class JwtCache {
      * Note: This haven't to be done for the first start. Use this only when a complete new cache is desired.
      */
     public static void initNewCache() {
-        instance = new JwtCache(null);
+        instance = new JwtCache(null, false, true);
+    }
+
+    /**
+     * Initialize a new cache for a storage. The cache isn't ready until the locked tokens are loaded with
+     * {@link #loadFromStorage(int)} or {@link #refreshFromStorage()}.
+     * 
+     * @param storage - Is used to sync revocations to a storage - should be immutable or thread safe
+     * @param withBloomFilter - Decides if the revocation set uses a Bloom filter
+     */
+    public static void initNewCache(JwtStorageService storage, boolean withBloomFilter) {
+        instance = create(storage, withBloomFilter);
+    }
+
+    /**
+     * Creates a cache for a storage without making it the instance. Each cache acts like a separate node: It only 
+     * learns about revocations of other caches through {@link #pollRevocations(int)}.
+     * 
+     * @param storage - Is used to sync revocations to a storage - should be immutable or thread safe
+     * @param withBloomFilter - Decides if the revocation set uses a Bloom filter
+     * @return New cache which isn't ready yet
+     */
+    static JwtCache create(JwtStorageService storage, boolean withBloomFilter) {
+        return new JwtCache(storage, withBloomFilter, false);
     }
 
     /**
      * Initialize a new cache with existing values and a storage implementation.
      * 
-     * @param cacheStore - Cache entry to start with 
-     * @param storage - Is used to sync current cached items to a storage - should be immutable or thread safe
+     * @param cacheStore - Tokens to start with; only locked ones are kept
+     * @param storage - Is used to sync revocations to a storage - should be immutable or thread safe
      */
     public static void initNewCache(Collection<JwtToken>  cacheStore, @Nullable JwtStorageService storage) {
-        Map<UUID, JwtToken> cacheMap = new ConcurrentHashMap<UUID, JwtToken>();
-        cacheStore.forEach(jwt -> cacheMap.put(jwt.getJti(), jwt));
-        instance = new JwtCache(cacheMap, storage);
+        var cache = new JwtCache(storage, false, true);
+        cache.addRevocations(notNull(cacheStore.stream()
+            .filter(JwtToken::isLocked)
+            .collect(Collectors.toList())));
+        instance = cache;
     }
 }
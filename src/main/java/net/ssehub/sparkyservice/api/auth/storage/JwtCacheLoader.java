@@ -0,0 +1,166 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+
+/**
+ * Loads the locked tokens into the {@link JwtCache} after the application (and the web server) started. Until the
+ * loading is done, the cache isn't ready and tokens are rejected, so startup time doesn't depend on the size of the 
+ * token table. When the loading fails (e.g. the database isn't reachable yet), it is repeated by the scheduled poll
+ * with a growing delay (up to {@link #MAX_LOAD_BACKOFF_MS}) until it succeeds. <br>
+ * Afterwards, the revocation feed is polled every <code>jwt.revocation-poll-interval</code> milliseconds (default 5
+ * seconds), so tokens which are locked by other nodes are rejected after this delay.
+ * 
+ * @author marcel
+ */
+@Component
+public class JwtCacheLoader implements MetricsProvider {
+
+    /**
+     * Upper limit of the delay between two failed attempts to load the locked tokens.
+     */
+    public static final long MAX_LOAD_BACKOFF_MS = 60_000;
+
+    private static final long MIN_LOAD_BACKOFF_MS = 1_000;
+
+    private static final long PRUNE_INTERVAL_MS = 3_600_000;
+
+    private final Logger log = LoggerFactory.getLogger(JwtCacheLoader.class);
+
+    @Nonnull
+    private final JwtSettings jwtConf;
+
+    @Nonnull
+    private final JwtStorageService storageService;
+
+    @Nonnull
+    private final LongSupplier clock;
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    /**
+     * Delay after the last failed load. Guarded by <code>this</code>.
+     */
+    private long loadBackoff;
+
+    /**
+     * Time of the next attempt to load the locked tokens; none is planned before the first load failed. Guarded by 
+     * <code>this</code>.
+     */
+    private long nextLoadAttempt = Long.MAX_VALUE;
+
+    /**
+     * Constructor for dependency injection.
+     * 
+     * @param jwtConf - Provides the page size
+     * @param storageService - Storage of the revocation feed
+     */
+    @Autowired
+    public JwtCacheLoader(@Nonnull JwtSettings jwtConf, @Nonnull JwtStorageService storageService) {
+        this(jwtConf, storageService, System::currentTimeMillis);
+    }
+
+    /**
+     * Loader with its own clock.
+     * 
+     * @param jwtConf - Provides the page size
+     * @param storageService - Storage of the revocation feed
+     * @param clock - Current time in milliseconds
+     */
+    JwtCacheLoader(@Nonnull JwtSettings jwtConf, @Nonnull JwtStorageService storageService, 
+            @Nonnull LongSupplier clock) {
+        this.jwtConf = jwtConf;
+        this.storageService = storageService;
+        this.clock = clock;
+    }
+
+    /**
+     * Loads the locked tokens of the storage in pages. When this fails, the next attempt is planned after a delay 
+     * which doubles with each failure.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void loadRevocations() {
+        long start = System.nanoTime();
+        try {
+            int loaded = JwtCache.getInstance().loadFromStorage(jwtConf.getRevocationPageSize());
+            loadBackoff = 0;
+            nextLoadAttempt = Long.MAX_VALUE;
+            log.info("Loaded {} locked token into the JWT cache in {} ms", loaded, 
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            loadBackoff = Math.min(MAX_LOAD_BACKOFF_MS, Math.max(MIN_LOAD_BACKOFF_MS, 2 * loadBackoff));
+            nextLoadAttempt = clock.getAsLong() + loadBackoff;
+            log.error("Could not load the locked token into the JWT cache, retrying in {} ms", loadBackoff, e);
+        }
+    }
+
+    /**
+     * Applies the revocations of other nodes. While the cache isn't ready because the loading failed, the loading is 
+     * repeated instead.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation-poll-interval:5000}")
+    public void pollRevocations() {
+        JwtCache cache = JwtCache.getInstance();
+        if (cache.isReady()) {
+            int applied = cache.pollRevocations(jwtConf.getRevocationPageSize());
+            if (applied > 0) {
+                log.debug("Applied {} revocations from the feed", applied);
+            }
+        } else {
+            retryLoad();
+        }
+    }
+
+    /**
+     * Loads the locked tokens again when the cache still isn't ready and the delay after the last failure passed.
+     */
+    private synchronized void retryLoad() {
+        if (!JwtCache.getInstance().isReady() && clock.getAsLong() >= nextLoadAttempt) {
+            loadRevocations();
+        }
+    }
+
+    /**
+     * Republishes revocations of tokens which were stored after they were revoked with their expiration date and 
+     * removes revocation events of expired tokens from the storage.
+     */
+    @Scheduled(fixedDelay = PRUNE_INTERVAL_MS)
+    public void pruneRevocationEvents() {
+        int confirmed = storageService.confirmRevocationExpirations();
+        if (confirmed > 0) {
+            log.debug("Republished {} revocations with the expiration of the stored token", confirmed);
+        }
+        int removed = storageService.deleteExpiredRevocationEvents();
+        log.debug("Removed {} revocation events of expired token", removed);
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "jwt";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        return notNull(Map.of("revocations.loadFailures", loadFailures.sum()));
+    }
+}
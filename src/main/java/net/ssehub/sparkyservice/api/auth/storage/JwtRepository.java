@@ -1,13 +1,22 @@
 package net.ssehub.sparkyservice.api.auth.storage;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import net.ssehub.sparkyservice.api.jpa.token.JpaJwtToken;
 import net.ssehub.sparkyservice.api.jpa.user.User;
+import net.ssehub.sparkyservice.api.user.UserRealm;
 
 @Repository
 public interface JwtRepository extends CrudRepository<JpaJwtToken, String> {
@@ -16,4 +25,107 @@ public interface JwtRepository extends CrudRepository<JpaJwtToken, String> {
     List<JpaJwtToken> findByUser(User user);
 
     Set<JpaJwtToken> findByLocked(boolean nonLocked);
+
+    /**
+     * Identifiers and expiration dates of the locked tokens which are not expired yet. The tokens are ordered by their
+     * JTI, a page starts after the given JTI (keyset pagination).
+     * 
+     * @param afterJti - Last JTI of the previous page; an empty string for the first page
+     * @param now - Current time
+     * @param page - Limits the number of results, the page number must be 0
+     * @return Locked tokens which are still valid or have no expiration date
+     */
+    @Query("select t.jti as jti, t.expirationDate as expirationDate from JpaJwtToken t where t.locked = true "
+        + "and (t.expirationDate is null or t.expirationDate > :now) and t.jti > :afterJti order by t.jti")
+    List<TokenExpiration> findLockedExpirations(@Param("afterJti") String afterJti, @Param("now") Date now, 
+        Pageable page);
+
+    /**
+     * Stored tokens which have a revocation event with an unknown expiration date, because they were revoked before
+     * their row was written.
+     * 
+     * @param page - Limits the number of results, the page number must be 0
+     * @return Identifiers and expiration dates of the stored tokens
+     */
+    @Query("select distinct t.jti as jti, t.expirationDate as expirationDate from JpaJwtToken t, JpaRevocationEvent e "
+        + "where e.jti = t.jti and e.expirationDate is null and t.expirationDate is not null")
+    List<TokenExpiration> findUnconfirmedRevocations(Pageable page);
+
+    /**
+     * Identifiers and expiration dates of the given tokens.
+     * 
+     * @param jtis
+     * @return Stored tokens of the given JTIs
+     */
+    @Query("select t.jti as jti, t.expirationDate as expirationDate from JpaJwtToken t where t.jti in :jtis")
+    List<TokenExpiration> findExpirations(@Param("jtis") Collection<String> jtis);
+
+    /**
+     * Finds the identifiers and expiration dates of the unlocked tokens of a user. Uses the index on the user column, 
+     * so only the tokens of the user are read.
+     * 
+     * @param name - Name of the owner
+     * @param realm - Realm of the owner
+     * @return Unlocked tokens of the user
+     */
+    @Query("select t.jti as jti, t.expirationDate as expirationDate from JpaJwtToken t join t.user u "
+        + "where u.userName = :name and u.realm = :realm and t.locked = false")
+    List<TokenExpiration> findUnlockedExpirationsByUser(@Param("name") String name, @Param("realm") UserRealm realm);
+
+    /**
+     * Locks all given tokens with a single statement.
+     * 
+     * @param jtis
+     * @return Number of changed tokens
+     */
+    @Modifying
+    @Transactional
+    @Query("update JpaJwtToken t set t.locked = true where t.jti in :jtis")
+    int lockAll(@Param("jtis") Collection<String> jtis);
+
+    /**
+     * Sets the remaining refreshes of a token to 0 if the token is still unlocked and has the expected number of 
+     * remaining refreshes. 
+     * 
+     * @param jti
+     * @param expected - The remaining refreshes the caller has read before
+     * @return <code>1</code> when the refresh was claimed, <code>0</code> otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("update JpaJwtToken t set t.remainingRefreshes = 0 where t.jti = :jti and t.locked = false "
+        + "and t.remainingRefreshes = :expected and t.remainingRefreshes > 0")
+    int claimRefresh(@Param("jti") String jti, @Param("expected") int expected);
+
+    /**
+     * Increases the token generation of a user with a single statement.
+     * 
+     * @param name - Name of the user
+     * @param realm - Realm of the user
+     * @return Number of changed users; <code>0</code> when the user isn't stored
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.tokenGeneration = u.tokenGeneration + 1 where u.userName = :name and u.realm = :realm")
+    int incrementTokenGeneration(@Param("name") String name, @Param("realm") UserRealm realm);
+
+    /**
+     * Finds the token generation of a user.
+     * 
+     * @param name - Name of the user
+     * @param realm - Realm of the user
+     * @return Generation of the user; empty when the user isn't stored
+     */
+    @Query("select u.userName as userName, u.realm as realm, u.tokenGeneration as tokenGeneration from User u "
+        + "where u.userName = :name and u.realm = :realm")
+    Optional<TokenGeneration> findTokenGeneration(@Param("name") String name, @Param("realm") UserRealm realm);
+
+    /**
+     * Finds the users whose token generation was increased at least once.
+     * 
+     * @return Generations greater than 0
+     */
+    @Query("select u.userName as userName, u.realm as realm, u.tokenGeneration as tokenGeneration from User u "
+        + "where u.tokenGeneration > 0")
+    List<TokenGeneration> findTokenGenerations();
 }
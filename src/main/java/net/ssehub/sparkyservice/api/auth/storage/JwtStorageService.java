@@ -4,20 +4,29 @@ import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import net.ssehub.sparkyservice.api.auth.jwt.JwtAuthTools;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
 import net.ssehub.sparkyservice.api.jpa.token.JpaJwtToken;
+import net.ssehub.sparkyservice.api.jpa.token.JpaRevocationEvent;
 import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
 import net.ssehub.sparkyservice.api.user.storage.NoTransactionUnitException;
 import net.ssehub.sparkyservice.api.user.storage.UserNotFoundException;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
@@ -31,6 +40,8 @@ import net.ssehub.sparkyservice.api.util.SparkyUtil;
 @Service
 public class JwtStorageService {
 
+    private static final int CONFIRM_PAGE_SIZE = 1000;
+
     private final Logger log = LoggerFactory.getLogger(JwtStorageService.class);
 
     @Nonnull
@@ -38,18 +49,39 @@ public class JwtStorageService {
 
     @Nonnull
     private final UserStorageService userStorageService;
+
+    @Nonnull
+    private final RevocationEventRepository eventRepo;
+
+    @Nullable
+    private final TokenWriteQueue writeQueue;
     
     /**
      * Constructor for dependency injection. 
      * 
      * @param repo
      * @param userStorageService
+     * @param eventRepo - Stores the revocation feed
+     * @param writeQueue - Writes new tokens in batches; <code>null</code> when new tokens should be written directly
      */
     @Autowired 
-    public JwtStorageService(@Nonnull JwtRepository repo, @Nonnull UserStorageService userStorageService) {
+    public JwtStorageService(@Nonnull JwtRepository repo, @Nonnull UserStorageService userStorageService,
+            @Nonnull RevocationEventRepository eventRepo, @Nullable TokenWriteQueue writeQueue) {
         super();
         this.repo = repo;
         this.userStorageService = userStorageService;
+        this.eventRepo = eventRepo;
+        this.writeQueue = writeQueue;
+    }
+
+    /**
+     * Writes the queued new tokens, so the following query sees them.
+     */
+    private void flushPending() {
+        TokenWriteQueue queue = writeQueue;
+        if (queue != null) {
+            queue.flush();
+        }
     }
 
     /**
@@ -58,6 +90,7 @@ public class JwtStorageService {
      * @return list of all stored tokens
      */
     public List<JwtToken> findAll() {
+        flushPending();
         List<JpaJwtToken> jpaList = SparkyUtil.toList(notNull(repo.findAll()));
         return jpaList.stream().map(JwtToken::new).collect(Collectors.toList());
     }
@@ -69,16 +102,37 @@ public class JwtStorageService {
      * @param jwt - Desired tokens to saved. Each token will be saved successively
      */
     public void commit(JwtToken... jwt) {
+        flushPending();
         try {
             List<JpaJwtToken> list = Arrays.stream(jwt)
                     .map(obj -> obj.getJpa(userStorageService))
                     .collect(Collectors.toList());
             repo.saveAll(list);
+            List<JpaRevocationEvent> events = Arrays.stream(jwt)
+                .filter(JwtToken::isLocked)
+                .map(token -> new JpaRevocationEvent(notNull(token.getJti().toString()), token.getExpirationDate()))
+                .collect(Collectors.toList());
+            eventRepo.saveAll(events);
         } catch (UserNotFoundException e) {
             log.debug("Don't safe JWT token to storage for user.");
         }
     }
 
+    /**
+     * Saves a new token in the background (write-behind). The token must not be in the storage yet. Queries of this
+     * service wait until the token is written.
+     * 
+     * @param jwt - New token, the owner is taken from its principal
+     */
+    public void commitNew(JwtToken jwt) {
+        TokenWriteQueue queue = writeQueue;
+        if (queue != null) {
+            queue.add(jwt);
+        } else {
+            commit(jwt);
+        }
+    }
+
     /**
      * Finds all JWT token from a storage which the given user owns. 
      * 
@@ -86,6 +140,7 @@ public class JwtStorageService {
      * @return JWT token of a user
      */
     public List<JwtToken> findAllByUser(SparkyUser user) {
+        flushPending();
         List<JpaJwtToken> list;
         try {
             list = repo.findByUser(user.getJpa());  
@@ -101,7 +156,216 @@ public class JwtStorageService {
      * @return locked Token from a storage 
      */
     public Set<JwtToken> findAllLocked() {
+        flushPending();
         var tokenSet = repo.findByLocked(true);
         return tokenSet.stream().map(JwtToken::new).collect(Collectors.toSet());
     }
+
+    /**
+     * Finds a single token.
+     * 
+     * @param jti
+     * @return The stored token; empty when the token isn't in the storage
+     */
+    public Optional<JwtToken> findByJti(UUID jti) {
+        flushPending();
+        return notNull(repo.findById(notNull(jti.toString())).map(JwtToken::new));
+    }
+
+    /**
+     * Finds the identifiers and expiration dates of locked and not expired token without loading the tokens. 
+     * The results are ordered by the JTI; pass the last JTI of a page to get the next page.
+     * 
+     * @param afterJti - Last JTI of the previous page; <code>null</code> for the first page
+     * @param pageSize - Maximum number of results
+     * @return Locked token; less than <code>pageSize</code> entries on the last page
+     */
+    public List<TokenExpiration> findLockedExpirations(@Nullable String afterJti, int pageSize) {
+        String after = afterJti == null ? "" : afterJti;
+        return notNull(repo.findLockedExpirations(after, new Date(), PageRequest.of(0, pageSize)));
+    }
+
+    /**
+     * Finds the expiration dates of the given tokens. Unknown tokens are skipped.
+     * 
+     * @param jtis
+     * @return Stored tokens of the given JTIs
+     */
+    public List<TokenExpiration> findExpirations(Collection<UUID> jtis) {
+        if (jtis.isEmpty()) {
+            return new ArrayList<>();
+        }
+        flushPending();
+        return notNull(repo.findExpirations(notNull(jtis.stream().map(UUID::toString).collect(Collectors.toList()))));
+    }
+
+    /**
+     * Locks the given tokens in the storage and adds all of them to the revocation feed. Tokens which aren't stored
+     * yet (for example, because they still wait in the write queue of another node) are published as well, with an
+     * unknown expiration: Such events are neither pruned nor evicted by the nodes until
+     * {@link #confirmRevocationExpirations()} found the stored row. When the row is written later, it is inserted as
+     * locked.
+     * 
+     * @param jtis
+     * @return The expiration dates of all given tokens as published; <code>null</code> for tokens which aren't stored
+     */
+    public List<TokenExpiration> lock(Collection<UUID> jtis) {
+        List<TokenExpiration> locked = new ArrayList<>(findExpirations(jtis));
+        lockAndPublish(locked);
+        Set<String> found = locked.stream().map(TokenExpiration::getJti).collect(Collectors.toSet());
+        List<JpaRevocationEvent> unknown = jtis.stream()
+            .map(UUID::toString)
+            .filter(jti -> !found.contains(jti))
+            .distinct()
+            .map(jti -> new JpaRevocationEvent(notNull(jti), null))
+            .collect(Collectors.toList());
+        if (!unknown.isEmpty()) {
+            eventRepo.saveAll(unknown);
+            locked.addAll(unknown);
+        }
+        return locked;
+    }
+
+    /**
+     * Republishes the revocation events with an unknown expiration (see {@link #lock(Collection)}) whose token was
+     * stored in the meantime: A new event with the expiration of the stored token replaces the old one, so the nodes
+     * can evict the revocation after the token expired and the event can be pruned. Tokens which are never stored
+     * (like the tokens of memory users) stay revoked.
+     * 
+     * @return Number of republished events
+     */
+    public int confirmRevocationExpirations() {
+        flushPending();
+        int confirmed = 0;
+        List<TokenExpiration> stored;
+        do {
+            stored = notNull(repo.findUnconfirmedRevocations(PageRequest.of(0, CONFIRM_PAGE_SIZE)));
+            if (!stored.isEmpty()) {
+                eventRepo.saveAll(stored.stream()
+                    .map(token -> new JpaRevocationEvent(token.getJti(), token.getExpirationDate()))
+                    .collect(Collectors.toList()));
+                eventRepo.deleteUnconfirmed(notNull(stored.stream()
+                    .map(TokenExpiration::getJti)
+                    .collect(Collectors.toList())));
+                confirmed += stored.size();
+            }
+        } while (stored.size() >= CONFIRM_PAGE_SIZE);
+        return confirmed;
+    }
+
+    /**
+     * Locks the unlocked tokens of a user in the storage and adds them to the revocation feed. Only the tokens of 
+     * the user are read and updated (one query and one bulk update). 
+     * 
+     * @param user - Owner of the tokens; doesn't need to be loaded from the storage
+     * @return The expiration dates of the locked tokens
+     */
+    public List<TokenExpiration> lockAllFrom(SparkyUser user) {
+        flushPending();
+        List<TokenExpiration> locked = notNull(repo.findUnlockedExpirationsByUser(user.getUsername(), 
+            user.getRealm()));
+        lockAndPublish(locked);
+        return locked;
+    }
+
+    /**
+     * Locks stored tokens with a single update and writes their revocation events.
+     * 
+     * @param locked - Stored tokens
+     */
+    private void lockAndPublish(List<TokenExpiration> locked) {
+        if (!locked.isEmpty()) {
+            repo.lockAll(notNull(locked.stream().map(TokenExpiration::getJti).collect(Collectors.toList())));
+            eventRepo.saveAll(locked.stream()
+                .map(token -> new JpaRevocationEvent(token.getJti(), token.getExpirationDate()))
+                .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Increases the token generation of a user with a single update and adds it to the revocation feed. 
+     * 
+     * @param user - Doesn't need to be loaded from the storage
+     * @return The new generation; <code>0</code> when the user isn't stored
+     */
+    public int incrementTokenGeneration(SparkyUser user) {
+        String name = user.getUsername();
+        UserRealm realm = user.getRealm();
+        int generation = 0;
+        if (repo.incrementTokenGeneration(name, realm) > 0) {
+            generation = findTokenGeneration(name, realm);
+            // nodes load the generations of the users when they start, so the event is only needed for a while
+            var expiration = new Date(System.currentTimeMillis() + JwtAuthTools.TOKEN_EXPIRE_TIME_MS);
+            eventRepo.save(new JpaRevocationEvent(name, realm, generation, expiration));
+        }
+        return generation;
+    }
+
+    /**
+     * Reads the stored token generation of a single user.
+     * 
+     * @param name - Name of the user
+     * @param realm - Realm of the user
+     * @return Stored generation; <code>0</code> when the user isn't stored
+     */
+    public int findTokenGeneration(String name, UserRealm realm) {
+        return repo.findTokenGeneration(name, realm).map(TokenGeneration::getTokenGeneration).orElse(0);
+    }
+
+    /**
+     * Finds the token generations of all users whose generation was increased.
+     * 
+     * @return Generations greater than 0
+     */
+    public List<TokenGeneration> findTokenGenerations() {
+        return notNull(repo.findTokenGenerations());
+    }
+
+    /**
+     * The version of the newest event of the revocation feed.
+     * 
+     * @return Highest version; <code>0</code> when the feed is empty
+     */
+    public long findLatestRevocationVersion() {
+        return eventRepo.findLatestVersion();
+    }
+
+    /**
+     * Reads events of the revocation feed ordered by their version.
+     * 
+     * @param afterVersion - Newest version which was read before
+     * @param missingVersions - Older versions which weren't read yet (for example, because their transaction wasn't
+     *        committed when newer events were read)
+     * @param limit - Maximum number of results
+     * @return Events
+     */
+    public List<JpaRevocationEvent> findRevocationEvents(long afterVersion, Collection<Long> missingVersions, 
+            int limit) {
+        // an empty IN list isn't valid SQL, 0 is never used as version
+        Collection<Long> versions = missingVersions.isEmpty() ? notNull(List.of(0L)) : missingVersions;
+        return notNull(eventRepo.findEvents(afterVersion, versions, PageRequest.of(0, limit)));
+    }
+
+    /**
+     * Removes the revocation events of expired tokens. Expired tokens are rejected anyway, so nodes don't need to
+     * know about their revocation.
+     * 
+     * @return Number of removed events
+     */
+    public int deleteExpiredRevocationEvents() {
+        return eventRepo.deleteExpired(new Date());
+    }
+
+    /**
+     * Atomically claims the refresh of a token: The remaining refreshes are set to 0 if the token is unlocked and 
+     * still has the expected number of remaining refreshes.
+     * 
+     * @param jti
+     * @param expectedRefreshes - Remaining refreshes of the token as read before 
+     * @return <code>true</code> when this call claimed the refresh
+     */
+    public boolean claimRefresh(UUID jti, int expectedRefreshes) {
+        flushPending();
+        return repo.claimRefresh(notNull(jti.toString()), expectedRefreshes) == 1;
+    }
 }
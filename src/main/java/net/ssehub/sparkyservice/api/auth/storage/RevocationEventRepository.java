@@ -0,0 +1,62 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.ssehub.sparkyservice.api.jpa.token.JpaRevocationEvent;
+
+@Repository
+public interface RevocationEventRepository extends CrudRepository<JpaRevocationEvent, Long> {
+
+    /**
+     * The version of the newest event.
+     * 
+     * @return Highest version; <code>0</code> when there are no events
+     */
+    @Query("select coalesce(max(e.version), 0) from JpaRevocationEvent e")
+    long findLatestVersion();
+
+    /**
+     * Events which are newer than the given version or have one of the given versions, ordered by their version.
+     * 
+     * @param afterVersion - Newest version which was read before
+     * @param versions - Older versions which are still expected
+     * @param page - Limits the number of results, the page number must be 0
+     * @return Events
+     */
+    @Query("select e from JpaRevocationEvent e where e.version > :afterVersion or e.version in :versions "
+        + "order by e.version")
+    List<JpaRevocationEvent> findEvents(@Param("afterVersion") long afterVersion, 
+        @Param("versions") Collection<Long> versions, Pageable page);
+
+    /**
+     * Removes the events of expired tokens.
+     * 
+     * @param now - Current time
+     * @return Number of removed events
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from JpaRevocationEvent e where e.expirationDate < :now")
+    int deleteExpired(@Param("now") Date now);
+
+    /**
+     * Removes the events with an unknown expiration date of the given tokens.
+     * 
+     * @param jtis - Tokens whose events were republished with their expiration date
+     * @return Number of removed events
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from JpaRevocationEvent e where e.expirationDate is null and e.jti in :jtis")
+    int deleteUnconfirmed(@Param("jtis") Collection<String> jtis);
+}
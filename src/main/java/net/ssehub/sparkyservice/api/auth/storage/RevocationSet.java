@@ -0,0 +1,336 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Immutable set of revoked (locked) JTIs. Each UUID is stored as two <code>long</code> values in an open addressing
+ * table with linear probing, so a lookup needs no objects and usually one or two array reads. Optionally, a
+ * blocked Bloom filter is checked first: It uses three bits of a single <code>long</code> and answers most lookups of
+ * non revoked tokens with one array read. <br>
+ * Changes create a new set ({@link #with(Collection)}, {@link #without(Collection)}), so the current set can be
+ * shared between threads.
+ *
+ * @author marcel
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class RevocationSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Bloom filter bits per slot of the table. With a maximum load of 50% these are 16 bits per entry.
+     */
+    private static final int BLOOM_BITS_PER_SLOT = 8;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Two entries per slot: most and least significant bits of the UUID. <code>(0, 0)</code> marks an empty slot.
+     */
+    private final long[] table;
+    private final int mask;
+    private final int size;
+
+    /**
+     * The UUID <code>(0, 0)</code> can't be stored in the table as it is the empty marker.
+     */
+    private final boolean containsZero;
+
+    /**
+     * <code>null</code> when the set has no Bloom filter.
+     */
+    private final long[] bloom;
+    private final int bloomMask;
+
+    /**
+     * Creates a set with the given content.
+     *
+     * @param table - Filled table, the length is two times a power of two
+     * @param size - Number of entries in the table and <code>containsZero</code>
+     * @param containsZero
+     * @param withBloomFilter
+     */
+    private RevocationSet(long[] table, int size, boolean containsZero, boolean withBloomFilter) {
+        this.table = table;
+        this.mask = table.length / 2 - 1;
+        this.size = size;
+        this.containsZero = containsZero;
+        if (withBloomFilter) {
+            int words = Math.max(1, table.length / 2 * BLOOM_BITS_PER_SLOT / Long.SIZE);
+            this.bloom = new long[words];
+            this.bloomMask = words - 1;
+            for (int slot = 0; slot <= mask; slot++) {
+                long msb = table[2 * slot];
+                long lsb = table[2 * slot + 1];
+                if (msb != 0 || lsb != 0) {
+                    long hash = hash(msb, lsb);
+                    bloom[bloomWord(hash)] |= bloomBits(hash);
+                }
+            }
+        } else {
+            this.bloom = null;
+            this.bloomMask = 0;
+        }
+    }
+
+    /**
+     * An empty set.
+     *
+     * @param withBloomFilter - <code>true</code> when lookups should check a Bloom filter first
+     * @return Empty set
+     */
+    @Nonnull
+    public static RevocationSet empty(boolean withBloomFilter) {
+        return new RevocationSet(new long[2 * MIN_CAPACITY], 0, false, withBloomFilter);
+    }
+
+    /**
+     * Checks if a JTI is revoked.
+     *
+     * @param jti
+     * @return <code>true</code> when the JTI is in this set
+     */
+    public boolean contains(UUID jti) {
+        return contains(jti.getMostSignificantBits(), jti.getLeastSignificantBits());
+    }
+
+    /**
+     * Checks if a JTI is revoked.
+     *
+     * @param msb - Most significant bits of the JTI
+     * @param lsb - Least significant bits of the JTI
+     * @return <code>true</code> when the JTI is in this set
+     */
+    public boolean contains(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            return containsZero;
+        }
+        long hash = hash(msb, lsb);
+        long[] filter = bloom;
+        if (filter != null) {
+            long bits = bloomBits(hash);
+            if ((filter[bloomWord(hash)] & bits) != bits) {
+                return false;
+            }
+        }
+        int slot = (int) hash & mask;
+        while (true) {
+            long slotMsb = table[2 * slot];
+            long slotLsb = table[2 * slot + 1];
+            if (slotMsb == msb && slotLsb == lsb) {
+                return true;
+            } else if (slotMsb == 0 && slotLsb == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Creates a new set with the entries of this set and the given JTIs.
+     *
+     * @param jtis - JTIs to add
+     * @return New set; this set when all JTIs are already contained
+     */
+    @Nonnull
+    public RevocationSet with(Collection<UUID> jtis) {
+        boolean changed = false;
+        for (UUID jti : jtis) {
+            changed |= !contains(jti);
+        }
+        if (!changed) {
+            return this;
+        }
+        int capacity = table.length / 2;
+        while ((size + jtis.size()) * 2 > capacity) {
+            capacity *= 2;
+        }
+        long[] newTable = capacity == table.length / 2 ? table.clone() : rehash(capacity);
+        int newSize = size;
+        boolean newContainsZero = containsZero;
+        for (UUID jti : jtis) {
+            long msb = jti.getMostSignificantBits();
+            long lsb = jti.getLeastSignificantBits();
+            if (msb == 0 && lsb == 0) {
+                newSize += newContainsZero ? 0 : 1;
+                newContainsZero = true;
+            } else if (insert(newTable, msb, lsb)) {
+                newSize++;
+            }
+        }
+        return new RevocationSet(newTable, newSize, newContainsZero, bloom != null);
+    }
+
+    /**
+     * Creates a new set with the entries of this set except the given JTIs. The table shrinks when it gets sparse.
+     *
+     * @param jtis - JTIs to remove
+     * @return New set; this set when none of the JTIs is contained
+     */
+    @Nonnull
+    public RevocationSet without(Collection<UUID> jtis) {
+        boolean changed = false;
+        for (UUID jti : jtis) {
+            changed |= contains(jti);
+        }
+        if (!changed) {
+            return this;
+        }
+        RevocationSet removed = empty(false).with(jtis);
+        int capacity = MIN_CAPACITY;
+        while (size * 2 > capacity) {
+            capacity *= 2;
+        }
+        long[] newTable = new long[2 * capacity];
+        int newSize = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            long msb = table[2 * slot];
+            long lsb = table[2 * slot + 1];
+            if ((msb != 0 || lsb != 0) && !removed.contains(msb, lsb)) {
+                insert(newTable, msb, lsb);
+                newSize++;
+            }
+        }
+        boolean newContainsZero = containsZero && !removed.containsZero;
+        if (newContainsZero) {
+            newSize++;
+        }
+        return new RevocationSet(newTable, newSize, newContainsZero, bloom != null);
+    }
+
+    /**
+     * Copies the entries of this table into a larger table.
+     *
+     * @param capacity - Number of slots of the new table, a power of two
+     * @return New table
+     */
+    private long[] rehash(int capacity) {
+        long[] newTable = new long[2 * capacity];
+        for (int slot = 0; slot <= mask; slot++) {
+            long msb = table[2 * slot];
+            long lsb = table[2 * slot + 1];
+            if (msb != 0 || lsb != 0) {
+                insert(newTable, msb, lsb);
+            }
+        }
+        return newTable;
+    }
+
+    /**
+     * Inserts a non zero UUID into a table.
+     *
+     * @param target - Table with at least one empty slot
+     * @param msb
+     * @param lsb
+     * @return <code>false</code> when the UUID was already in the table
+     */
+    private static boolean insert(long[] target, long msb, long lsb) {
+        int targetMask = target.length / 2 - 1;
+        int slot = (int) hash(msb, lsb) & targetMask;
+        while (true) {
+            long slotMsb = target[2 * slot];
+            long slotLsb = target[2 * slot + 1];
+            if (slotMsb == msb && slotLsb == lsb) {
+                return false;
+            } else if (slotMsb == 0 && slotLsb == 0) {
+                target[2 * slot] = msb;
+                target[2 * slot + 1] = lsb;
+                return true;
+            }
+            slot = (slot + 1) & targetMask;
+        }
+    }
+
+    /**
+     * Mixes the bits of a UUID (SplitMix64 finalizer).
+     *
+     * @param msb
+     * @param lsb
+     * @return Hash value
+     */
+    private static long hash(long msb, long lsb) {
+        long hash = msb * GOLDEN_GAMMA ^ lsb;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * The Bloom filter word of a hash. Uses the upper half of the hash, the bits inside the word are taken from the
+     * lower half.
+     *
+     * @param hash
+     * @return Index in {@link #bloom}
+     */
+    private int bloomWord(long hash) {
+        return (int) (hash >>> 32) & bloomMask;
+    }
+
+    /**
+     * The three Bloom filter bits of a hash inside its word. A shift only uses the lowest 6 bits of its distance,
+     * so each shift selects one of the 64 bits.
+     *
+     * @param hash
+     * @return Bit mask
+     */
+    private static long bloomBits(long hash) {
+        return (1L << hash) | (1L << (hash >>> 6)) | (1L << (hash >>> 12));
+    }
+
+    /**
+     * Passes each JTI of this set to the given consumer.
+     *
+     * @param action
+     */
+    public void forEach(Consumer<UUID> action) {
+        if (containsZero) {
+            action.accept(new UUID(0, 0));
+        }
+        for (int slot = 0; slot <= mask; slot++) {
+            long msb = table[2 * slot];
+            long lsb = table[2 * slot + 1];
+            if (msb != 0 || lsb != 0) {
+                action.accept(new UUID(msb, lsb));
+            }
+        }
+    }
+
+    /**
+     * The JTIs of this set as Java set.
+     *
+     * @return New modifiable set
+     */
+    @Nonnull
+    public Set<UUID> toSet() {
+        var set = new HashSet<UUID>(size * 2);
+        forEach(set::add);
+        return set;
+    }
+
+    /**
+     * Number of revoked JTIs.
+     *
+     * @return Size of the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the set uses a Bloom filter.
+     *
+     * @return <code>true</code> when lookups check a Bloom filter first
+     */
+    public boolean hasBloomFilter() {
+        return bloom != null;
+    }
+}
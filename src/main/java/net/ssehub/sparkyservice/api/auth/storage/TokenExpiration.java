@@ -0,0 +1,29 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+/**
+ * Projection of a stored token to its identifier and expiration date. Used to load revocations without loading the
+ * tokens and their users.
+ * 
+ * @author marcel
+ */
+public interface TokenExpiration {
+
+    /**
+     * The identifier of the token.
+     * 
+     * @return JTI as string
+     */
+    String getJti();
+
+    /**
+     * The time the token expires.
+     * 
+     * @return Expiration date; <code>null</code> for tokens which were stored without one
+     */
+    @Nullable
+    Date getExpirationDate();
+}
@@ -0,0 +1,35 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import javax.annotation.Nonnull;
+
+import net.ssehub.sparkyservice.api.user.UserRealm;
+
+/**
+ * The token generation of a user without the other values of the user. JWT tokens of an older generation are 
+ * rejected.
+ * 
+ * @author marcel
+ */
+public interface TokenGeneration {
+
+    /**
+     * Name of the user.
+     * 
+     * @return Username
+     */
+    @Nonnull String getUserName();
+
+    /**
+     * Realm of the user.
+     * 
+     * @return Realm
+     */
+    @Nonnull UserRealm getRealm();
+
+    /**
+     * The current generation of the user.
+     * 
+     * @return Token generation
+     */
+    int getTokenGeneration();
+}
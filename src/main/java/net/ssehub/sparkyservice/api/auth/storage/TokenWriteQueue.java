@@ -0,0 +1,262 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+
+/**
+ * Write-behind queue for new JWT tokens. Logins only add their token to a bounded queue; a background thread writes
+ * the queued tokens with one JDBC batch insert per {@link JwtSettings#getWriteBatchSize()} tokens. The foreign key
+ * of the owner is resolved inside the insert statement from the name and realm of the token principal, so no user
+ * is loaded. Tokens of users which aren't stored (like memory users) insert no row. A token which was revoked before
+ * its row was written (for example by another node) is inserted as locked, because the revocation feed already
+ * contains its JTI. Tokens which are already stored are skipped, so writing a token again has no effect. <br>
+ * When the queue is full (the database lags behind), the caller writes a batch itself and is slowed down by the
+ * database. Readers of the token table call {@link #flush()} first; the queue is flushed on shutdown.
+ *
+ * @author marcel
+ */
+@Component
+@ParametersAreNonnullByDefault
+public class TokenWriteQueue implements DisposableBean, MetricsProvider {
+
+    static final String INSERT_SQL = "insert into jwt_issued_token "
+        + "(jti, remaining_refreshes, locked, expiration_date, id) "
+        + "select ?, ?, ? or exists (select 1 from jwt_revocation_event e where e.jti = ?), ?, u.id "
+        + "from user_stored u where u.user_name = ? and u.realm = ? "
+        + "and not exists (select 1 from jwt_issued_token t where t.jti = ?)";
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private static final long FLUSH_TIMEOUT_MS = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(TokenWriteQueue.class);
+
+    @Nonnull
+    private final JdbcTemplate jdbcTemplate;
+
+    @Nonnull
+    private final BlockingQueue<JwtToken> queue;
+
+    private final int batchSize;
+
+    /**
+     * Held while a batch is written; {@link #flush()} waits on it for batches of the writer thread.
+     */
+    private final Object writeLock = new Object();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callerWrites = new AtomicLong();
+
+    @Nonnull
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates the queue and starts its writer thread.
+     *
+     * @param jdbcTemplate - Connection to the token table
+     * @param jwtConf - Provides the queue and batch sizes
+     */
+    @Autowired
+    public TokenWriteQueue(@Nonnull JdbcTemplate jdbcTemplate, @Nonnull JwtSettings jwtConf) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, jwtConf.getWriteQueueSize()));
+        this.batchSize = Math.max(1, jwtConf.getWriteBatchSize());
+        this.writer = new Thread(this::writeLoop, "jwt-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a new token. When the queue is full or already shut down, the token is written by the calling thread
+     * together with other queued tokens.
+     *
+     * @param token - New token, it must not be in the storage yet
+     */
+    public void add(JwtToken token) {
+        enqueued.incrementAndGet();
+        if (!running || !queue.offer(token)) {
+            callerWrites.incrementAndGet();
+            var batch = new ArrayList<JwtToken>(batchSize);
+            batch.add(token);
+            synchronized (writeLock) {
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            }
+        }
+    }
+
+    /**
+     * Writes all tokens which were queued before this call. Returns immediately when nothing is pending.
+     */
+    public void flush() {
+        long target = enqueued.get();
+        if (written.get() >= target) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+        synchronized (writeLock) {
+            var batch = new ArrayList<JwtToken>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+            }
+            // the writer thread may hold a token which it took before this call
+            long remaining = deadline - System.currentTimeMillis();
+            while (written.get() < target && remaining > 0) {
+                try {
+                    writeLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Takes tokens from the queue and writes them in batches until the queue is shut down and empty.
+     */
+    private void writeLoop() {
+        var batch = new ArrayList<JwtToken>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                JwtToken first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    synchronized (writeLock) {
+                        queue.drainTo(batch, batchSize - 1);
+                        write(batch);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch of tokens with one JDBC batch. Must be called while holding {@link #writeLock}.
+     * When the batch fails, the tokens are inserted one by one, so a single bad row doesn't drop the whole batch.
+     * Rows which the failed batch wrote anyway are skipped by the insert.
+     * Only tokens which fail on their own are logged and dropped: They stay valid, but can't be refreshed in the
+     * storage.
+     *
+     * @param batch
+     */
+    private void write(List<JwtToken> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), TokenWriteQueue::setValues);
+        } catch (DataAccessException e) {
+            log.debug("Batch insert of {} JWT token failed, inserting them one by one: {}", batch.size(),
+                e.getMessage());
+            batch.forEach(this::writeSingle);
+        } finally {
+            written.addAndGet(batch.size());
+            writeLock.notifyAll();
+        }
+    }
+
+    /**
+     * Inserts a single token. Must be called while holding {@link #writeLock}.
+     *
+     * @param token
+     */
+    private void writeSingle(JwtToken token) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, ps -> setValues(ps, token));
+        } catch (DataAccessException e) {
+            failed.incrementAndGet();
+            log.warn("Could not write JWT token {} to the storage: {}", token.getJti(), e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the parameters of {@link #INSERT_SQL}.
+     *
+     * @param ps
+     * @param token
+     * @throws SQLException
+     */
+    private static void setValues(PreparedStatement ps, JwtToken token) throws SQLException {
+        String jti = token.getJti().toString();
+        ps.setString(1, jti);
+        ps.setInt(2, token.getRemainingRefreshes());
+        ps.setBoolean(3, token.isLocked());
+        ps.setString(4, jti);
+        ps.setTimestamp(5, new Timestamp(token.getExpirationDate().getTime()));
+        ps.setString(6, token.getUserInfo().getName());
+        ps.setString(7, token.getUserInfo().getRealm().name());
+        ps.setString(8, jti);
+    }
+
+    /**
+     * Number of tokens which are queued but not written yet.
+     *
+     * @return Pending tokens
+     */
+    public long getPendingCount() {
+        return enqueued.get() - written.get();
+    }
+
+    /**
+     * Stops the writer thread after it wrote all queued tokens.
+     */
+    @Override
+    public void destroy() {
+        running = false;
+        flush();
+        try {
+            writer.join(FLUSH_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "jwt";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        var metrics = new HashMap<String, Number>();
+        metrics.put("writes.pending", getPendingCount());
+        metrics.put("writes.written", written.get());
+        metrics.put("writes.failed", failed.get());
+        metrics.put("writes.caller", callerWrites.get());
+        return metrics;
+    }
+}
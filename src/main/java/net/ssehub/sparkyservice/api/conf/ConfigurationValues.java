@@ -1,16 +1,20 @@
 package net.ssehub.sparkyservice.api.conf;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import net.ssehub.sparkyservice.api.user.UserRole;
+
 /**
  * Provides configuration bean definition loaded from property files through spring.
  * 
@@ -79,6 +83,22 @@ public class ConfigurationValues {
         private String issuer;
         private String prefix;
         private String audience;
+        private int verifiedCacheSize = 10_000;
+        private Map<String, String> keys = new HashMap<>();
+        private String activeKeyId;
+        private String algorithm = "HS512";
+        private String privateKey;
+        private String publicKey;
+        private long jwksMaxAge = 3600;
+        private boolean compactClaims;
+        private int maxRefreshes = 30;
+        private int maxBatchSize = 500;
+        private long introspectionMaxAge;
+        private boolean revocationBloomFilter = true;
+        private int revocationPageSize = 1000;
+        private long revocationPollInterval = 5000;
+        private int writeQueueSize = 10_000;
+        private int writeBatchSize = 100;
 
         /**
          * .
@@ -191,6 +211,785 @@ public class ConfigurationValues {
         public void setSecret(String secret) {
             this.secret = secret;
         }
+
+        /**
+         * Maximum number of already verified tokens which are kept in memory. Repeated tokens are not verified again
+         * as long as they are cached.
+         * 
+         * @return Maximum cache size; <code>0</code> disables the cache
+         */
+        public int getVerifiedCacheSize() {
+            return verifiedCacheSize;
+        }
+
+        /**
+         * See {@link #getVerifiedCacheSize()}.
+         * 
+         * @param verifiedCacheSize
+         */
+        public void setVerifiedCacheSize(int verifiedCacheSize) {
+            this.verifiedCacheSize = verifiedCacheSize;
+        }
+
+        /**
+         * Additional signing keys by their id (<code>kid</code>). Tokens with a <code>kid</code> header are verified
+         * with the matching key, tokens without one with {@link #getSecret()}.
+         * 
+         * @return Secrets by key id
+         */
+        public @Nonnull Map<String, String> getKeys() {
+            final Map<String, String> keys2 = keys;
+            return keys2 != null ? keys2 : new HashMap<>();
+        }
+
+        /**
+         * See {@link #getKeys()}.
+         * 
+         * @param keys
+         */
+        public void setKeys(Map<String, String> keys) {
+            this.keys = keys;
+        }
+
+        /**
+         * Id of the key from {@link #getKeys()} which signs new tokens. 
+         * 
+         * @return Key id; <code>null</code> when new tokens are signed with {@link #getSecret()}
+         */
+        public @Nullable String getActiveKeyId() {
+            return activeKeyId;
+        }
+
+        /**
+         * See {@link #getActiveKeyId()}.
+         * 
+         * @param activeKeyId
+         */
+        public void setActiveKeyId(String activeKeyId) {
+            this.activeKeyId = activeKeyId;
+        }
+
+        /**
+         * Algorithm which signs new tokens. With "RS256" or "ES256" tokens are signed with {@link #getPrivateKey()}
+         * and can be verified by other services with the published public key. Tokens signed with
+         * {@link #getSecret()} are still accepted.
+         * 
+         * @return "HS512" (default), "RS256" or "ES256"
+         */
+        public @Nonnull String getAlgorithm() {
+            final String algorithm2 = algorithm;
+            return algorithm2 != null ? algorithm2 : "HS512";
+        }
+
+        /**
+         * See {@link #getAlgorithm()}.
+         * 
+         * @param algorithm
+         */
+        public void setAlgorithm(String algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * Private key for asymmetric signing algorithms. Keep this secret!
+         * 
+         * @return PKCS#8 key - PEM or base64 encoded; <code>null</code> when not configured
+         */
+        public @Nullable String getPrivateKey() {
+            return privateKey;
+        }
+
+        /**
+         * See {@link #getPrivateKey()}.
+         * 
+         * @param privateKey
+         */
+        public void setPrivateKey(String privateKey) {
+            this.privateKey = privateKey;
+        }
+
+        /**
+         * Public key which belongs to {@link #getPrivateKey()}. 
+         * 
+         * @return X.509 key - PEM or base64 encoded; <code>null</code> when not configured
+         */
+        public @Nullable String getPublicKey() {
+            return publicKey;
+        }
+
+        /**
+         * See {@link #getPublicKey()}.
+         * 
+         * @param publicKey
+         */
+        public void setPublicKey(String publicKey) {
+            this.publicKey = publicKey;
+        }
+
+        /**
+         * How long clients may cache the published public keys before asking again.
+         * 
+         * @return Max age in seconds
+         */
+        public long getJwksMaxAge() {
+            return jwksMaxAge;
+        }
+
+        /**
+         * See {@link #getJwksMaxAge()}.
+         * 
+         * @param jwksMaxAge
+         */
+        public void setJwksMaxAge(long jwksMaxAge) {
+            this.jwksMaxAge = jwksMaxAge;
+        }
+
+        /**
+         * Whether new tokens are issued in the compact format (role bitmask, realm code and a binary JTI). Tokens 
+         * in both formats are always accepted, so this can be switched without invalidating issued tokens. 
+         * Other services which read the claims must understand the compact format before it is enabled.
+         * 
+         * @return <code>true</code> when new tokens use compact claims
+         */
+        public boolean isCompactClaims() {
+            return compactClaims;
+        }
+
+        /**
+         * See {@link #isCompactClaims()}.
+         * 
+         * @param compactClaims
+         */
+        public void setCompactClaims(boolean compactClaims) {
+            this.compactClaims = compactClaims;
+        }
+
+        /**
+         * How often a token and its successors can be exchanged for a new token without a new login. Each refresh
+         * moves the expiration date forward, so with a 24 hour validity a user stays logged in for this number of
+         * days when the client refreshes at least once a day.
+         * 
+         * @return Maximum number of refreshes; <code>0</code> disables refreshing
+         */
+        public int getMaxRefreshes() {
+            return maxRefreshes;
+        }
+
+        /**
+         * See {@link #getMaxRefreshes()}.
+         * 
+         * @param maxRefreshes
+         */
+        public void setMaxRefreshes(int maxRefreshes) {
+            this.maxRefreshes = maxRefreshes;
+        }
+
+        /**
+         * Maximum number of tokens which can be verified with a single batch request.
+         * 
+         * @return Maximum batch size
+         */
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /**
+         * See {@link #getMaxBatchSize()}.
+         * 
+         * @param maxBatchSize
+         */
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        /**
+         * How long (in seconds) clients and HTTP caches may reuse a token verification without asking again. 
+         * This is the time a locked token may still be accepted by them. The responses are never cached longer 
+         * than the token is valid.
+         * 
+         * @return Maximum age of verification responses; <code>0</code> forces a revalidation for every request
+         */
+        public long getIntrospectionMaxAge() {
+            return introspectionMaxAge;
+        }
+
+        /**
+         * See {@link #getIntrospectionMaxAge()}.
+         * 
+         * @param introspectionMaxAge
+         */
+        public void setIntrospectionMaxAge(long introspectionMaxAge) {
+            this.introspectionMaxAge = introspectionMaxAge;
+        }
+
+        /**
+         * Decides if lookups in the set of revoked tokens check a Bloom filter first. This speeds up the checks of 
+         * valid tokens for large revocation sets at the cost of 16 bits per revoked token.
+         * 
+         * @return <code>true</code> when the revocation set uses a Bloom filter
+         */
+        public boolean isRevocationBloomFilter() {
+            return revocationBloomFilter;
+        }
+
+        /**
+         * See {@link #isRevocationBloomFilter()}.
+         * 
+         * @param revocationBloomFilter
+         */
+        public void setRevocationBloomFilter(boolean revocationBloomFilter) {
+            this.revocationBloomFilter = revocationBloomFilter;
+        }
+
+        /**
+         * Number of locked tokens which are read with one query when the revocations are loaded at startup.
+         * 
+         * @return Page size
+         */
+        public int getRevocationPageSize() {
+            return revocationPageSize;
+        }
+
+        /**
+         * See {@link #getRevocationPageSize()}.
+         * 
+         * @param revocationPageSize
+         */
+        public void setRevocationPageSize(int revocationPageSize) {
+            this.revocationPageSize = revocationPageSize;
+        }
+
+        /**
+         * Milliseconds between two reads of the revocation feed. When the feed wasn't read for longer, the token 
+         * generation of a new token is read from the storage.
+         * 
+         * @return Poll interval
+         */
+        public long getRevocationPollInterval() {
+            return revocationPollInterval;
+        }
+
+        /**
+         * See {@link #getRevocationPollInterval()}.
+         * 
+         * @param revocationPollInterval
+         */
+        public void setRevocationPollInterval(long revocationPollInterval) {
+            this.revocationPollInterval = revocationPollInterval;
+        }
+
+        /**
+         * Maximum number of new tokens which wait to be written to the storage. When the queue is full, logins
+         * write the tokens themselves.
+         * 
+         * @return Capacity of the write-behind queue
+         */
+        public int getWriteQueueSize() {
+            return writeQueueSize;
+        }
+
+        /**
+         * See {@link #getWriteQueueSize()}.
+         * 
+         * @param writeQueueSize
+         */
+        public void setWriteQueueSize(int writeQueueSize) {
+            this.writeQueueSize = writeQueueSize;
+        }
+
+        /**
+         * Maximum number of new tokens which are written with one batch insert.
+         * 
+         * @return Batch size
+         */
+        public int getWriteBatchSize() {
+            return writeBatchSize;
+        }
+
+        /**
+         * See {@link #getWriteBatchSize()}.
+         * 
+         * @param writeBatchSize
+         */
+        public void setWriteBatchSize(int writeBatchSize) {
+            this.writeBatchSize = writeBatchSize;
+        }
+    }
+
+    /**
+     * Provides the connection pool, bind cache and synchronization configuration of the LDAP login. The connection
+     * itself is configured with the <code>ldap.*</code> values in {@link SecurityConfig}.
+     * 
+     * @author marcel
+     */
+    @Configuration
+    @ConfigurationProperties(prefix = "ldap")
+    public static class LdapSettings {
+        private Pool pool = new Pool();
+        private BindCache cache = new BindCache();
+        private Sync sync = new Sync();
+
+        /**
+         * Pool of the connections which search users and groups (<code>ldap.pool.*</code>).
+         * 
+         * @author marcel
+         */
+        public static class Pool {
+            private int minIdle;
+            private int maxActive = 8;
+            private long maxWaitMs = 5_000;
+            private boolean validate = true;
+            private long evictionIntervalMs = 60_000;
+            private long idleTimeMs = 300_000;
+
+            /**
+             * Number of idle connections which are kept open by the eviction run.
+             * 
+             * @return Minimum idle connections
+             */
+            public int getMinIdle() {
+                return minIdle;
+            }
+
+            /**
+             * See {@link #getMinIdle()}.
+             * 
+             * @param minIdle
+             */
+            public void setMinIdle(int minIdle) {
+                this.minIdle = minIdle;
+            }
+
+            /**
+             * Maximum number of open connections.
+             * 
+             * @return Maximum connections
+             */
+            public int getMaxActive() {
+                return maxActive;
+            }
+
+            /**
+             * See {@link #getMaxActive()}.
+             * 
+             * @param maxActive
+             */
+            public void setMaxActive(int maxActive) {
+                this.maxActive = maxActive;
+            }
+
+            /**
+             * Time a login waits for a connection when all connections are in use.
+             * 
+             * @return Milliseconds
+             */
+            public long getMaxWaitMs() {
+                return maxWaitMs;
+            }
+
+            /**
+             * See {@link #getMaxWaitMs()}.
+             * 
+             * @param maxWaitMs
+             */
+            public void setMaxWaitMs(long maxWaitMs) {
+                this.maxWaitMs = maxWaitMs;
+            }
+
+            /**
+             * Whether connections are validated (with a search) when they are borrowed and while they are idle.
+             * 
+             * @return <code>true</code> if connections are validated
+             */
+            public boolean isValidate() {
+                return validate;
+            }
+
+            /**
+             * See {@link #isValidate()}.
+             * 
+             * @param validate
+             */
+            public void setValidate(boolean validate) {
+                this.validate = validate;
+            }
+
+            /**
+             * Time between two runs which close idle connections.
+             * 
+             * @return Milliseconds, not positive disables the eviction
+             */
+            public long getEvictionIntervalMs() {
+                return evictionIntervalMs;
+            }
+
+            /**
+             * See {@link #getEvictionIntervalMs()}.
+             * 
+             * @param evictionIntervalMs
+             */
+            public void setEvictionIntervalMs(long evictionIntervalMs) {
+                this.evictionIntervalMs = evictionIntervalMs;
+            }
+
+            /**
+             * Time after which an idle connection is closed.
+             * 
+             * @return Milliseconds
+             */
+            public long getIdleTimeMs() {
+                return idleTimeMs;
+            }
+
+            /**
+             * See {@link #getIdleTimeMs()}.
+             * 
+             * @param idleTimeMs
+             */
+            public void setIdleTimeMs(long idleTimeMs) {
+                this.idleTimeMs = idleTimeMs;
+            }
+        }
+
+        /**
+         * Cache of successful binds (<code>ldap.cache.*</code>).
+         * 
+         * @author marcel
+         */
+        public static class BindCache {
+            private long ttlSeconds;
+            private int maxSize = 10_000;
+            private int strength = 8;
+
+            /**
+             * Time a successful bind is reused for further logins of the same user.
+             * 
+             * @return Seconds, <code>0</code> disables the cache
+             */
+            public long getTtlSeconds() {
+                return ttlSeconds;
+            }
+
+            /**
+             * See {@link #getTtlSeconds()}.
+             * 
+             * @param ttlSeconds
+             */
+            public void setTtlSeconds(long ttlSeconds) {
+                this.ttlSeconds = ttlSeconds;
+            }
+
+            /**
+             * Maximum number of cached binds.
+             * 
+             * @return Maximum entries
+             */
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            /**
+             * See {@link #getMaxSize()}.
+             * 
+             * @param maxSize
+             */
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            /**
+             * BCrypt strength of the password verifiers in the cache.
+             * 
+             * @return Strength between 4 and 31
+             */
+            public int getStrength() {
+                return strength;
+            }
+
+            /**
+             * See {@link #getStrength()}.
+             * 
+             * @param strength
+             */
+            public void setStrength(int strength) {
+                this.strength = strength;
+            }
+        }
+
+        /**
+         * Background synchronization of the directory into the user storage (<code>ldap.sync.*</code>). The job runs
+         * when <code>ldap.sync.enabled</code> is set, every <code>ldap.sync.interval-ms</code> milliseconds (default
+         * one hour) after a delay of <code>ldap.sync.initial-delay-ms</code> (default one minute).
+         * 
+         * @author marcel
+         */
+        public static class Sync {
+            private String base = "";
+            private String filter = "(objectClass=person)";
+            private String usernameAttribute = "uid";
+            private int pageSize = 500;
+
+            /**
+             * Search base relative to the base DN of the LDAP connection.
+             * 
+             * @return Relative DN, empty for the whole directory
+             */
+            public String getBase() {
+                return base;
+            }
+
+            /**
+             * See {@link #getBase()}.
+             * 
+             * @param base
+             */
+            public void setBase(String base) {
+                this.base = base;
+            }
+
+            /**
+             * Filter which matches the entries of all users.
+             * 
+             * @return LDAP filter
+             */
+            public String getFilter() {
+                return filter;
+            }
+
+            /**
+             * See {@link #getFilter()}.
+             * 
+             * @param filter
+             */
+            public void setFilter(String filter) {
+                this.filter = filter;
+            }
+
+            /**
+             * Attribute which holds the login name of a user (like <code>sAMAccountName</code> for AD schemas).
+             * 
+             * @return Attribute name
+             */
+            public String getUsernameAttribute() {
+                return usernameAttribute;
+            }
+
+            /**
+             * See {@link #getUsernameAttribute()}.
+             * 
+             * @param usernameAttribute
+             */
+            public void setUsernameAttribute(String usernameAttribute) {
+                this.usernameAttribute = usernameAttribute;
+            }
+
+            /**
+             * Number of entries which are requested with one page of the search. Each page is written with one
+             * batch.
+             * 
+             * @return Entries per page
+             */
+            public int getPageSize() {
+                return pageSize;
+            }
+
+            /**
+             * See {@link #getPageSize()}.
+             * 
+             * @param pageSize
+             */
+            public void setPageSize(int pageSize) {
+                this.pageSize = pageSize;
+            }
+        }
+
+        /**
+         * See {@link Pool}.
+         * 
+         * @return Pool settings
+         */
+        public Pool getPool() {
+            return pool;
+        }
+
+        /**
+         * See {@link #getPool()}.
+         * 
+         * @param pool
+         */
+        public void setPool(Pool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * See {@link BindCache}.
+         * 
+         * @return Cache settings
+         */
+        public BindCache getCache() {
+            return cache;
+        }
+
+        /**
+         * See {@link #getCache()}.
+         * 
+         * @param cache
+         */
+        public void setCache(BindCache cache) {
+            this.cache = cache;
+        }
+
+        /**
+         * See {@link Sync}.
+         * 
+         * @return Synchronization settings
+         */
+        public Sync getSync() {
+            return sync;
+        }
+
+        /**
+         * See {@link #getSync()}.
+         * 
+         * @param sync
+         */
+        public void setSync(Sync sync) {
+            this.sync = sync;
+        }
+    }
+
+    /**
+     * Provides the accounts of the {@link net.ssehub.sparkyservice.api.user.UserRealm#MEMORY} realm. The recovery
+     * account is configured with <code>recovery.user</code> and <code>recovery.password</code>, further accounts with
+     * <code>recovery.users.&lt;name&gt;.password</code> and <code>recovery.users.&lt;name&gt;.role</code>.
+     * 
+     * @author marcel
+     */
+    @Configuration
+    @ConfigurationProperties(prefix = "recovery")
+    public static class RecoverySettings {
+        private boolean enabled;
+        private String user = "user";
+        private String password = "";
+        private Map<String, MemoryAccount> users = new HashMap<>();
+
+        /**
+         * Credentials of a single memory account.
+         * 
+         * @author marcel
+         */
+        public static class MemoryAccount {
+            private String password = "";
+            private UserRole role = UserRole.ADMIN;
+
+            /**
+             * Plain text password of the account.
+             * 
+             * @return Password, may be empty
+             */
+            public String getPassword() {
+                return password;
+            }
+
+            /**
+             * See {@link #getPassword()}.
+             * 
+             * @param password
+             */
+            public void setPassword(String password) {
+                this.password = password;
+            }
+
+            /**
+             * Role of the account, {@link UserRole#ADMIN} by default.
+             * 
+             * @return Permission role
+             */
+            public UserRole getRole() {
+                return role;
+            }
+
+            /**
+             * See {@link #getRole()}.
+             * 
+             * @param role
+             */
+            public void setRole(UserRole role) {
+                this.role = role;
+            }
+        }
+
+        /**
+         * Whether the memory accounts can be used for logins.
+         * 
+         * @return <code>true</code> if memory logins are enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * See {@link #isEnabled()}.
+         * 
+         * @param enabled
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * Name of the recovery account (an administrator).
+         * 
+         * @return Username, "user" by default
+         */
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * See {@link #getUser()}.
+         * 
+         * @param user
+         */
+        public void setUser(String user) {
+            this.user = user;
+        }
+
+        /**
+         * Plain text password of the recovery account. The account isn't available without a password.
+         * 
+         * @return Password, may be empty
+         */
+        public String getPassword() {
+            return password;
+        }
+
+        /**
+         * See {@link #getPassword()}.
+         * 
+         * @param password
+         */
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        /**
+         * Further memory accounts by their name.
+         * 
+         * @return Accounts by username
+         */
+        public Map<String, MemoryAccount> getUsers() {
+            return users;
+        }
+
+        /**
+         * See {@link #getUsers()}.
+         * 
+         * @param users
+         */
+        public void setUsers(Map<String, MemoryAccount> users) {
+            this.users = users;
+        }
     }
 
 }
\ No newline at end of file
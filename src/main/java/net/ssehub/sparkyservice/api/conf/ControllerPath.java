@@ -12,6 +12,8 @@ public final class ControllerPath {
     public static final String SWAGGER = "swagger-ui.html";
 
     public static final String MANAGEMENT_PREFIX = GLOBAL_PREFIX + "/management";
+    public static final String MANAGEMENT_METRICS = MANAGEMENT_PREFIX + "/metrics";
+    public static final String MANAGEMENT_READY = MANAGEMENT_PREFIX + "/ready";
 
     public static final String USERS_PREFIX = GLOBAL_PREFIX + "/users";
     public static final String USERS_PATCH = USERS_PREFIX;
@@ -23,5 +25,8 @@ public final class ControllerPath {
     public static final String AUTHENTICATION_AUTH = GLOBAL_PREFIX + "/authenticate";
     public static final String AUTHENTICATION_CHECK = AUTHENTICATION_AUTH + "/check";
     public static final String AUTHENTICATION_VERIFY = AUTHENTICATION_AUTH + "/verify";
+    public static final String AUTHENTICATION_VERIFY_BATCH = AUTHENTICATION_VERIFY + "/batch";
+    public static final String AUTHENTICATION_JWKS = AUTHENTICATION_AUTH + "/jwks";
+    public static final String AUTHENTICATION_REFRESH = AUTHENTICATION_AUTH + "/refresh";
        
 }
@@ -1,12 +1,13 @@
 package net.ssehub.sparkyservice.api.conf;
 
-import java.util.List;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -14,19 +15,31 @@ import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.ldap.authentication.BindAuthenticator;
+import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
 import org.springframework.security.ldap.authentication.ad.ActiveDirectoryLdapAuthenticationProvider;
+import org.springframework.security.ldap.userdetails.DefaultLdapAuthoritiesPopulator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import net.ssehub.sparkyservice.api.auth.JwtAuthenticationFilter;
 import net.ssehub.sparkyservice.api.auth.JwtAuthorizationFilter;
+import net.ssehub.sparkyservice.api.auth.LocalAuthenticationProvider;
 import net.ssehub.sparkyservice.api.auth.LocalLoginDetailsMapper;
+import net.ssehub.sparkyservice.api.auth.LoginThrottle;
 import net.ssehub.sparkyservice.api.auth.MemoryLoginDetailsService;
-import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
+import net.ssehub.sparkyservice.api.auth.MemoryUserRegistry;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.ldap.CachingLdapAuthenticationProvider;
+import net.ssehub.sparkyservice.api.auth.ldap.LdapBindCache;
+import net.ssehub.sparkyservice.api.auth.ldap.LdapDirectorySync;
+import net.ssehub.sparkyservice.api.auth.ldap.PooledLdapContextSource;
 import net.ssehub.sparkyservice.api.auth.ldap.SparkyLdapUserDetailsMapper;
 import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCacheLoader;
 import net.ssehub.sparkyservice.api.auth.storage.JwtStorageService;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
 
 /**
@@ -63,15 +76,6 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Value("${ldap.ad:false}")
     private boolean ldapAd;
 
-    @Value("${recovery.enabled:false}")
-    private boolean inMemoryEnabled;
-    
-    @Value("${recovery.password:}")
-    private String inMemoryPassword;
-    
-    @Value("${recovery.user:user}")
-    private String inMemoryUser;
-    
     @Autowired
     private LocalLoginDetailsMapper localDetailsMapper;
 
@@ -86,6 +90,21 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Autowired
     private MemoryLoginDetailsService memoryDetailsService;
+
+    @Autowired
+    private MemoryUserRegistry memoryUserRegistry;
+
+    @Autowired
+    private LdapSettings ldapSettings;
+
+    @Autowired
+    private LdapBindCache ldapBindCache;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
     
     /**
      * JwtAuthenticationFilter requires ObjectMapper of REST framework, but cannot obtain it via autowiring as it is no
@@ -108,10 +127,15 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
             .antMatchers(ControllerPath.SWAGGER).permitAll()
             .antMatchers(ControllerPath.AUTHENTICATION_AUTH).permitAll()
             .antMatchers(ControllerPath.AUTHENTICATION_VERIFY).permitAll()
-            .antMatchers(ControllerPath.HEARTBEAT).permitAll()            
+            .antMatchers(ControllerPath.AUTHENTICATION_VERIFY_BATCH).permitAll()
+            .antMatchers(ControllerPath.AUTHENTICATION_JWKS).permitAll()
+            .antMatchers(ControllerPath.AUTHENTICATION_REFRESH).permitAll()
+            .antMatchers(ControllerPath.HEARTBEAT).permitAll()
+            .antMatchers(ControllerPath.MANAGEMENT_READY).permitAll()            
             .antMatchers(ControllerPath.AUTHENTICATION_CHECK).authenticated()
             .and()
-                .addFilter(new JwtAuthenticationFilter(authenticationManager(), jwtService, jacksonObjectMapper))
+                .addFilter(new JwtAuthenticationFilter(authenticationManager(), jwtService, jacksonObjectMapper,
+                    loginThrottle))
                 .addFilter(new JwtAuthorizationFilter(authenticationManager(), jwtService))
                 .sessionManagement()
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS);
@@ -119,13 +143,11 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     }
 
     /**
-     * Fills the {@link JwtCache} with initial values from the database. It stores all JWT token.
+     * Creates an empty {@link JwtCache} for the database. The locked tokens are loaded after startup by
+     * {@link JwtCacheLoader}.
      */
     private void fillJwtCache() {
-        final List<JwtToken> lockedJwtToken = jwtStorageService.findAll();
-        if (lockedJwtToken != null) {
-            JwtCache.initNewCache(lockedJwtToken, jwtStorageService);
-        }
+        JwtCache.initNewCache(jwtStorageService, jwtService.getJwtConf().isRevocationBloomFilter());
     }
     
     @Override
@@ -136,7 +158,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Override
     public void configure(AuthenticationManagerBuilder auth) throws Exception {
         configureInMemory(auth);
-        auth.userDetailsService(localDetailsMapper);
+        auth.authenticationProvider(
+            new LocalAuthenticationProvider(localDetailsMapper, passwordEncoder, storageService));
         configureLdap(auth);
     }
 
@@ -146,16 +169,19 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
      * @param auth - Current builder which is configure with inMemory authentication
      */
     public void configureInMemory(AuthenticationManagerBuilder auth) throws Exception {
-        if (inMemoryEnabled) {
-            if (inMemoryPassword.isEmpty()) {
+        if (memoryUserRegistry.isEnabled()) {
+            if (memoryUserRegistry.getUsernames().isEmpty()) {
                 throw new Exception("Set recovery.password or disable the account");
             }
-            auth.userDetailsService(memoryDetailsService);
+            var memoryProvider = new DaoAuthenticationProvider();
+            memoryProvider.setUserDetailsService(memoryDetailsService);
+            memoryProvider.setPasswordEncoder(passwordEncoder);
+            auth.authenticationProvider(memoryProvider);
         }
     }
 
     /**
-     * Configures LDAP as login provider.
+     * Configures LDAP as login provider. Successful binds are cached when <code>ldap.cache.ttl-seconds</code> is set.
      * 
      * @param auth
      * @throws Exception 
@@ -163,6 +189,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     public void configureLdap(AuthenticationManagerBuilder auth) throws Exception {
         if (ldapEnabled) {
             var ldapMapper = new SparkyLdapUserDetailsMapper(storageService);
+            AuthenticationProvider ldapProvider;
             if (ldapAd) {
                 ActiveDirectoryLdapAuthenticationProvider adProvider = 
                         new ActiveDirectoryLdapAuthenticationProvider(ldapFullDomain, ldapUrls);
@@ -172,21 +199,51 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 if (ldapUserDnPattern != null && ldapUserDnPattern.trim().length() > 0) {
                     adProvider.setSearchFilter(ldapUserDnPattern);
                 }
-                auth.authenticationProvider(adProvider);
+                ldapProvider = adProvider;
                 auth.eraseCredentials(false);
             } else {
-                auth.ldapAuthentication()
-                    .contextSource()
-                    .url(ldapUrls + ldapBaseDn)
-                    .managerDn(ldapSecurityPrincipal)
-                    .managerPassword(ldapPrincipalPassword)
-                    .and()
-                    .userDnPatterns(ldapUserDnPattern)
-                    .userDetailsContextMapper(ldapMapper);
+                var contextSource = ldapContextSource();
+                var authenticator = new BindAuthenticator(contextSource);
+                authenticator.setUserDnPatterns(new String[] {ldapUserDnPattern});
+                var bindProvider = new LdapAuthenticationProvider(authenticator,
+                    new DefaultLdapAuthoritiesPopulator(contextSource, ""));
+                bindProvider.setUserDetailsContextMapper(ldapMapper);
+                ldapProvider = bindProvider;
             }
+            if (ldapBindCache.isEnabled()) {
+                ldapProvider = new CachingLdapAuthenticationProvider(ldapProvider, ldapBindCache, storageService);
+            }
+            auth.authenticationProvider(ldapProvider);
         }
     }
 
+    /**
+     * Defines the pooled connections of the LDAP login. Not used for active directory, which binds every login
+     * with the credentials of the user.
+     * 
+     * @return Context source with a pool for the manager connections
+     */
+    @Bean
+    @ConditionalOnExpression("${ldap.enabled:false} and !${ldap.ad:false}")
+    public PooledLdapContextSource ldapContextSource() {
+        return new PooledLdapContextSource(ldapUrls + ldapBaseDn, ldapSecurityPrincipal, ldapPrincipalPassword,
+            ldapSettings.getPool());
+    }
+
+    /**
+     * Defines the background synchronization of the directory (<code>ldap.sync.enabled</code>). It searches with the
+     * credentials of the manager, so it isn't available for active directory.
+     * 
+     * @param ldapContextSource - Manager connections, the sync uses an own connection outside of the pool
+     * @return Scheduled synchronization job
+     */
+    @Bean
+    @ConditionalOnExpression("${ldap.enabled:false} and !${ldap.ad:false} and ${ldap.sync.enabled:false}")
+    public LdapDirectorySync ldapDirectorySync(PooledLdapContextSource ldapContextSource) {
+        return new LdapDirectorySync(ldapContextSource.getUnpooledContextSource(), storageService,
+            ldapSettings.getSync());
+    }
+
     @Bean("authenticationManager")
     @Override
     public AuthenticationManager authenticationManagerBean() throws Exception {
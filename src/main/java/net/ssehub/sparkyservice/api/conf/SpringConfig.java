@@ -2,19 +2,26 @@ package net.ssehub.sparkyservice.api.conf;
 
 import javax.validation.Validator;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import net.ssehub.sparkyservice.api.auth.BoundedPasswordEncoder;
+import net.ssehub.sparkyservice.api.auth.CalibratedBCryptPasswordEncoder;
+import net.ssehub.sparkyservice.api.auth.LoginThrottle;
+import net.ssehub.sparkyservice.api.auth.PasswordHashing;
+import net.ssehub.sparkyservice.api.auth.TokenBucketLimiter;
 import net.ssehub.sparkyservice.api.routing.ZuulAuthorizationFilter;
 import net.ssehub.sparkyservice.api.user.extraction.SimpleExtractionImpl;
 import net.ssehub.sparkyservice.api.user.extraction.UserExtractionService;
+import net.ssehub.sparkyservice.api.user.storage.CachingUserStorageService;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageImpl;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
 
@@ -29,13 +36,53 @@ public class SpringConfig {
     public static final String LOCKED_JWT_BEAN = "lockedJwtToken";
 
     /**
-     * Defines the PasswordEncoder bean.
+     * Defines the PasswordEncoder bean. The hashes are computed on a dedicated pool, logins are rejected when too
+     * many of them wait for a hash. The encoder is also used for all local passwords, see {@link PasswordHashing}.
      * 
-     * @return Using BCryptPasswordEncoder
+     * @param threads - Number of parallel hashes, <code>0</code> uses the number of processors
+     * @param queueSize - Number of hashes which may wait for a thread
+     * @param strength - BCrypt strength, <code>0</code> calibrates the strength to <code>targetMillis</code>.
+     *        Clusters with nodes of different sizes should set it, so all nodes hash with the same strength.
+     * @param targetMillis - Time of one hash on the current hardware
+     * @param minStrength - Lowest strength which is chosen by the calibration
+     * @return Using {@link PasswordHashing#createEncoder(int, int)} on a {@link BoundedPasswordEncoder}; a calibrated
+     *         strength tolerates hashes one step weaker
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(@Value("${password.hashing.threads:0}") int threads,
+        @Value("${password.hashing.queue-size:64}") int queueSize,
+        @Value("${password.hashing.strength:0}") int strength,
+        @Value("${password.hashing.target-ms:250}") long targetMillis,
+        @Value("${password.hashing.min-strength:10}") int minStrength) {
+        PasswordEncoder encoder;
+        if (strength > 0) {
+            encoder = PasswordHashing.createEncoder(strength);
+        } else {
+            int calibrated = CalibratedBCryptPasswordEncoder.calibrate(targetMillis, minStrength);
+            encoder = PasswordHashing.createEncoder(calibrated, CalibratedBCryptPasswordEncoder.CALIBRATION_TOLERANCE);
+        }
+        return new BoundedPasswordEncoder(encoder, threads, queueSize);
+    }
+
+    /**
+     * Defines the LoginThrottle bean, which limits the password attempts per username and per client IP.
+     * A capacity of <code>0</code> disables the corresponding limit.
+     * 
+     * @param userCapacity - Attempts per username which are allowed at once
+     * @param userRefill - Attempts per username which are added per minute
+     * @param ipCapacity - Attempts per client IP which are allowed at once
+     * @param ipRefill - Attempts per client IP which are added per minute
+     * @param maxEntries - Upper limit of usernames and of IPs held in memory
+     * @return Using {@link TokenBucketLimiter} for both limits
+     */
+    @Bean
+    public LoginThrottle loginThrottle(@Value("${login.throttle.user.capacity:10}") int userCapacity,
+        @Value("${login.throttle.user.refill-per-minute:5}") int userRefill,
+        @Value("${login.throttle.ip.capacity:100}") int ipCapacity,
+        @Value("${login.throttle.ip.refill-per-minute:60}") int ipRefill,
+        @Value("${login.throttle.max-entries:100000}") int maxEntries) {
+        return new LoginThrottle(new TokenBucketLimiter(userCapacity, userRefill, maxEntries),
+            new TokenBucketLimiter(ipCapacity, ipRefill, maxEntries));
     }
 
     /**
@@ -87,13 +134,18 @@ public class SpringConfig {
     }
 
     /**
-     * Defines the IUserService bean.
+     * Defines the IUserService bean. Users which are searched by name and realm are cached for a short time.
      * 
-     * @return Using {@link UserStorageImpl}
+     * @param storage - The storage (without cache)
+     * @param ttlSeconds - Time a user is cached, <code>0</code> disables the cache
+     * @param maxSize - Maximum number of cached users
+     * @return Using {@link CachingUserStorageService} in front of {@link UserStorageImpl}
      */
     @Bean
     @Primary
-    public UserStorageService iUserService() {
-        return new UserStorageImpl();
+    public CachingUserStorageService iUserService(@Qualifier("userStorageImpl") UserStorageService storage,
+        @Value("${user.cache.ttl-seconds:30}") long ttlSeconds,
+        @Value("${user.cache.max-size:10000}") int maxSize) {
+        return new CachingUserStorageService(storage, ttlSeconds, maxSize);
     }
 }
@@ -1,13 +1,19 @@
 package net.ssehub.sparkyservice.api.jpa.token;
 
+import java.util.Date;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
@@ -21,7 +27,7 @@ import net.ssehub.sparkyservice.api.user.UserRole;
  * @author marcel
  */
 @Entity
-@Table(name = "jwt_issued_token")
+@Table(name = "jwt_issued_token", indexes = @Index(name = "jwt_issued_token_user_idx", columnList = "id"))
 @ParametersAreNonnullByDefault
 public class JpaJwtToken {
 
@@ -36,6 +42,11 @@ public class JpaJwtToken {
     @Column
     private boolean locked;
 
+    @Column
+    @Temporal(TemporalType.TIMESTAMP)
+    @Nullable
+    private Date expirationDate;
+
     @ManyToOne
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JoinColumn(name = "id")
@@ -69,6 +80,20 @@ public class JpaJwtToken {
         this.user = user;
     }
 
+    /**
+     * A jwt token with JPA annotations and its expiration date. It can be saved to a storage.
+     * 
+     * @param jti Unique identifier / primary key
+     * @param remainingRefreshes
+     * @param locked Decides if the token is valid for auth or not
+     * @param user The user the token is associated to
+     * @param expirationDate The time the token expires; <code>null</code> when unknown
+     */
+    public JpaJwtToken(String jti, int remainingRefreshes, boolean locked, User user, @Nullable Date expirationDate) {
+        this(jti, remainingRefreshes, locked, user);
+        setExpirationDate(expirationDate);
+    }
+
     /**
      * Identifies the JWT token. 
      * 
@@ -102,6 +127,26 @@ public class JpaJwtToken {
     }
 
 
+    /**
+     * The time the token expires. 
+     * 
+     * @return Copy of the expiration date; <code>null</code> for tokens which were stored without one
+     */
+    @Nullable
+    public Date getExpirationDate() {
+        Date date = expirationDate;
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    /**
+     * See {@link #getExpirationDate()}.
+     * 
+     * @param expirationDate
+     */
+    public void setExpirationDate(@Nullable Date expirationDate) {
+        this.expirationDate = expirationDate == null ? null : new Date(expirationDate.getTime());
+    }
+
     public User getUser() {
         return user;
     }
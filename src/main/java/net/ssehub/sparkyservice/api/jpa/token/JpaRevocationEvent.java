@@ -0,0 +1,160 @@
+package net.ssehub.sparkyservice.api.jpa.token;
+
+import java.util.Date;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import net.ssehub.sparkyservice.api.auth.storage.TokenExpiration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+
+/**
+ * Entry of the revocation feed: Every lock of a token adds one event, every increased token generation of a user
+ * (see {@link #isGenerationChange()}) as well. The version is taken from a sequence, so it increases with every event
+ * and nodes can read the events which are new to them.
+ * 
+ * @author marcel
+ */
+@Entity
+@Table(name = "jwt_revocation_event")
+@ParametersAreNonnullByDefault
+public class JpaRevocationEvent implements TokenExpiration {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "jwt_revocation_seq")
+    @SequenceGenerator(name = "jwt_revocation_seq", sequenceName = "jwt_revocation_seq", allocationSize = 1)
+    private long version;
+
+    @Column(length = 50)
+    @Nullable
+    private String jti;
+
+    @Column(length = 50)
+    @Nullable
+    private String userName;
+
+    @Column
+    @Enumerated(EnumType.STRING)
+    @Nullable
+    private UserRealm realm;
+
+    @Column(columnDefinition = "integer default 0 not null")
+    private int tokenGeneration;
+
+    @Column
+    @Temporal(TemporalType.TIMESTAMP)
+    @Nullable
+    private Date expirationDate;
+
+    /**
+     * Constructor needed for Hibernate/Spring Data to initialize an empty copy.
+     */
+    @SuppressWarnings("unused")
+    private JpaRevocationEvent() {
+        jti = "UNKWN";
+    }
+
+    /**
+     * Event for a locked token. The version is set when the event is saved.
+     * 
+     * @param jti - Identifier of the locked token
+     * @param expirationDate - The time the token expires; <code>null</code> when unknown
+     */
+    public JpaRevocationEvent(String jti, @Nullable Date expirationDate) {
+        this.jti = jti;
+        this.expirationDate = expirationDate == null ? null : new Date(expirationDate.getTime());
+    }
+
+    /**
+     * Event for an increased token generation of a user. The version is set when the event is saved.
+     * 
+     * @param userName - Name of the user
+     * @param realm - Realm of the user
+     * @param tokenGeneration - The new generation
+     * @param expirationDate - The time when the event can be removed
+     */
+    public JpaRevocationEvent(String userName, UserRealm realm, int tokenGeneration, Date expirationDate) {
+        this.userName = userName;
+        this.realm = realm;
+        this.tokenGeneration = tokenGeneration;
+        this.expirationDate = new Date(expirationDate.getTime());
+    }
+
+    /**
+     * Checks if this event increased the token generation of a user instead of locking a single token.
+     * 
+     * @return <code>true</code> when {@link #getUserName()} and {@link #getRealm()} are present
+     */
+    public boolean isGenerationChange() {
+        return userName != null && realm != null;
+    }
+
+    /**
+     * Name of the user whose token generation was increased.
+     * 
+     * @return Username; <code>null</code> for locked tokens
+     */
+    @Nullable
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Realm of the user whose token generation was increased.
+     * 
+     * @return Realm; <code>null</code> for locked tokens
+     */
+    @Nullable
+    public UserRealm getRealm() {
+        return realm;
+    }
+
+    /**
+     * The increased token generation.
+     * 
+     * @return Generation; <code>0</code> for locked tokens
+     */
+    public int getTokenGeneration() {
+        return tokenGeneration;
+    }
+
+    /**
+     * Position of this event in the feed.
+     * 
+     * @return Version; <code>0</code> when the event isn't saved yet
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return JTI of the locked token; empty for generation changes
+     */
+    @Override
+    @Nonnull
+    public String getJti() {
+        String value = jti;
+        return value == null ? "" : value;
+    }
+
+    @Override
+    @Nullable
+    public Date getExpirationDate() {
+        Date date = expirationDate;
+        return date == null ? null : new Date(date.getTime());
+    }
+}
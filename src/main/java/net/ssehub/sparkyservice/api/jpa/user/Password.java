@@ -108,6 +108,15 @@ public class Password {
         return this.passwordString;
     }
 
+    /**
+     * Sets the primary key of a password which was inserted without JPA.
+     * 
+     * @param passwordId - Generated key of the stored row
+     */
+    public void setPasswordId(int passwordId) {
+        this.passwordId = passwordId;
+    }
+
     /**
      * Checks object fields for equality (not just the reference).
      */
@@ -5,9 +5,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.OneToOne;
-import javax.persistence.PrimaryKeyJoinColumn;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
@@ -34,8 +33,11 @@ public class PersonalSettings {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int configurationId;
 
-    @OneToOne
-    @PrimaryKeyJoinColumn
+    /*
+     * Not mapped: The settings have their own IDs, a join over the primary key would load the user with the same ID
+     * (and its settings and so on) instead of the owner.
+     */
+    @Transient
     private User user; 
 
     @Column
@@ -1,6 +1,10 @@
 package net.ssehub.sparkyservice.api.jpa.user;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.Base64;
 import java.util.Optional;
 
 import javax.annotation.Nonnull;
@@ -77,6 +81,20 @@ public class User {
     @Convert(converter = LocalDateAttributeConverter.class)
     protected LocalDate expirationTime;
 
+    /**
+     * Increased to invalidate all JWT tokens of the user at once. Only changed with bulk updates, so saving a user 
+     * object never resets it.
+     */
+    @Column(insertable = false, updatable = false, columnDefinition = "integer default 0 not null")
+    protected int tokenGeneration;
+
+    /**
+     * Hash of the attributes which were last taken from the realm of the user (see {@link #hashRealmAttributes()}).
+     */
+    @Nullable
+    @Column(length = 64)
+    protected String attributesHash;
+
     /**
      * Default constructor used by hibernate.
      */
@@ -119,6 +137,8 @@ public class User {
         this.fullName = user.fullName;
         this.profileConfiguration = user.profileConfiguration;
         this.expirationTime = user.expirationTime;
+        this.tokenGeneration = user.tokenGeneration;
+        this.attributesHash = user.attributesHash;
     }
 
     /**
@@ -306,4 +326,49 @@ public class User {
     public UserRole getRole() {
         return role;
     }
+
+    /**
+     * The current token generation. JWT tokens with an older generation are rejected.
+     * 
+     * @return Token generation as it was loaded
+     */
+    public int getTokenGeneration() {
+        return tokenGeneration;
+    }
+
+    /**
+     * Hash of the realm attributes as they were stored the last time.
+     * 
+     * @return Stored hash or <code>null</code> if the attributes weren't hashed yet
+     */
+    @Nullable
+    public String getAttributesHash() {
+        return attributesHash;
+    }
+
+    /**
+     * Sets the hash of the realm attributes which are stored with this user.
+     * 
+     * @param attributesHash - Value of {@link #hashRealmAttributes()}
+     */
+    public void setAttributesHash(@Nullable String attributesHash) {
+        this.attributesHash = attributesHash;
+    }
+
+    /**
+     * Hashes the attributes which the realm of the user provides (like an LDAP server): the full name and the
+     * expiration date. Two users with the same hash don't differ in these attributes.
+     * 
+     * @return SHA-256 digest of the attributes (base64 encoded)
+     */
+    @Nonnull
+    public String hashRealmAttributes() {
+        String attributes = fullName + "\n" + expirationTime;
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(attributes.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not supported by this JVM", e);
+        }
+    }
 }
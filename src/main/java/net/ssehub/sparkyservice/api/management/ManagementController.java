@@ -0,0 +1,62 @@
+package net.ssehub.sparkyservice.api.management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
+import net.ssehub.sparkyservice.api.conf.ControllerPath;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides operational information about the running service.
+ * 
+ * @author marcel
+ */
+@RestController
+@Tag(name = "management-controller", description = "Controller for operational information")
+public class ManagementController {
+
+    @Autowired(required = false)
+    private List<MetricsProvider> metricsProviders = new ArrayList<>();
+
+    /**
+     * Lists the current values of all {@link MetricsProvider}.
+     * 
+     * @return Metrics grouped by {@link MetricsProvider#getMetricsGroup()}
+     */
+    @Operation(summary = "Current runtime metrics", security = { @SecurityRequirement(name = "bearer-key") })
+    @GetMapping(ControllerPath.MANAGEMENT_METRICS)
+    @Secured(UserRole.FullName.ADMIN)
+    public Map<String, Map<String, Number>> getMetrics() {
+        var metrics = new TreeMap<String, Map<String, Number>>();
+        for (var provider : metricsProviders) {
+            metrics.computeIfAbsent(provider.getMetricsGroup(), g -> new TreeMap<>()).putAll(provider.getMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Readiness check: The service is ready when the locked JWT tokens are loaded. Until then, requests with JWT tokens
+     * are rejected.
+     * 
+     * @return 204 when ready, 503 while starting
+     */
+    @Operation(summary = "Checks if the service is ready to authorize requests")
+    @GetMapping(ControllerPath.MANAGEMENT_READY)
+    public ResponseEntity<Void> isReady() {
+        HttpStatus status = JwtCache.getInstance().isReady() ? HttpStatus.NO_CONTENT : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).build();
+    }
+}
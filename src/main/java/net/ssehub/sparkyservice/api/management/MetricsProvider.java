@@ -0,0 +1,28 @@
+package net.ssehub.sparkyservice.api.management;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A component which provides runtime metrics (like counters or sizes). Every bean which implements this interface is 
+ * listed by {@link ManagementController}.
+ * 
+ * @author marcel
+ */
+public interface MetricsProvider {
+
+    /**
+     * Name of the group which holds the provided metrics.
+     * 
+     * @return Group name like "jwt"
+     */
+    @Nonnull String getMetricsGroup();
+
+    /**
+     * Snapshot of the current metrics values.
+     * 
+     * @return Metrics name as key and current value
+     */
+    @Nonnull Map<String, Number> getMetrics();
+}
@@ -1,7 +1,5 @@
 package net.ssehub.sparkyservice.api.user;
 
-import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
-
 import java.time.LocalDate;
 import java.util.Optional;
 
@@ -15,6 +13,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import net.ssehub.sparkyservice.api.auth.PasswordHashing;
 import net.ssehub.sparkyservice.api.jpa.user.Password;
 import net.ssehub.sparkyservice.api.jpa.user.PersonalSettings;
 import net.ssehub.sparkyservice.api.jpa.user.User;
@@ -36,7 +35,7 @@ public class LocalUserDetails extends AbstractSparkyUser implements SparkyUser {
 
     private final Logger log = LoggerFactory.getLogger(this.getClass().getName());
     private Password passwordEntity;
-    private @Nullable  PasswordEncoder encoder;
+    private transient @Nullable PasswordEncoder encoder;
 
     /**
      * Default constructor only used for testing purposes.
@@ -114,54 +113,66 @@ public class LocalUserDetails extends AbstractSparkyUser implements SparkyUser {
     }
 
     /**
-     * Encodes a raw string to bcrypt hash sets the local password entity.
+     * Encodes a raw string with the current algorithm of {@link #getEncoder()} and sets the local password entity.
      * 
      * @param rawPassword
      * @return the hashed value - never null but may be empty
+     * @throws net.ssehub.sparkyservice.api.auth.PasswordHashingRejectedException When too many hashes are waiting
      */
     public Password encodeAndSetPassword(String rawPassword) {
-        final Password passwordEntity = new Password(encode(rawPassword), DEFAULT_ALGO);
+        final Password passwordEntity = PasswordHashing.encode(getEncoder(), rawPassword);
         this.passwordEntity = passwordEntity;
         return passwordEntity;
     }
 
     /**
-     * Encodes a string to hashed password using the default algorithm.
+     * Hashes the password again when the stored hash uses an outdated algorithm or strength. Must only be called
+     * with the correct password (after a successful login).
      * 
-     * @param rawPassword
-     *                    - Plain password as string
-     * @return Encoded password
+     * @param rawPassword - The (already checked) plain text password
+     * @return <code>true</code> if the password entity was replaced and the user should be saved
      */
-    private @Nonnull String encode(String rawPassword) {
-        final String encodedPass = getEncoder().encode(rawPassword);
-        final String nonNullPass = Optional.ofNullable(encodedPass).orElseThrow(
-            () -> new RuntimeException("BCryptPasswordEncoder returned null - this should not happen"));
-        return notNull(nonNullPass);
-    }
-
-    /**
-     * Returns the (probably encoded password) of the user. For more information use {@link #getPasswordEntity()}.
-     * @return password of the user
-     */
-    @Override
-    public @Nonnull String getPassword() {
-        return getPasswordEntity().getPasswordString();
+    public boolean rehashIfOutdated(String rawPassword) {
+        boolean outdated = PasswordHashing.needsRehash(getEncoder(), getPasswordEntity());
+        if (outdated) {
+            log.debug("Rehash outdated password of {}@LOCAL", getUsername());
+            encodeAndSetPassword(rawPassword);
+        }
+        return outdated;
     }
 
     /**
-     * Returns springs default {@link BCryptPasswordEncoder}.
+     * Returns the encoder for the password of this user. Without {@link #setEncoder(PasswordEncoder)}, this is
+     * {@link PasswordHashing#defaultEncoder()}.
      * 
-     * @return default instance of {@link BCryptPasswordEncoder}
+     * @return Encoder for <code>{algorithm}hash</code> values
      */
     public @Nonnull PasswordEncoder getEncoder() {
         PasswordEncoder encoder2 = encoder;
         if (encoder2 == null) {
-            encoder2 = new BCryptPasswordEncoder();
-            encoder = encoder2;
+            encoder2 = PasswordHashing.defaultEncoder();
         }
         return encoder2;
     }
 
+    /**
+     * Sets the encoder which hashes and checks the password of this user (usually the configured bean).
+     * 
+     * @param encoder - Encoder for <code>{algorithm}hash</code> values
+     */
+    public void setEncoder(PasswordEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Returns the (probably encoded password) of the user. For more information use {@link #getPasswordEntity()}.
+     * @return password of the user
+     */
+    @Override
+    public @Nonnull String getPassword() {
+        return getPasswordEntity().getPasswordString();
+    }
+
     @Override
     public boolean isAccountNonLocked() {
         return isEnabled();
@@ -184,7 +195,7 @@ public class LocalUserDetails extends AbstractSparkyUser implements SparkyUser {
         var jpaUser = new User(
             getUsername(), UserRealm.LOCAL, isEnabled(), getRole()
         );
-        jpaUser.setPasswordEntity(new Password(getPassword()));
+        jpaUser.setPasswordEntity(new Password(getPasswordEntity()));
         jpaUser.setProfileConfiguration(new PersonalSettings(getSettings()));
         jpaUser.setExpirationDate(getExpireDate());
         jpaUser.setId(super.databaseId);
@@ -216,9 +227,10 @@ public class LocalUserDetails extends AbstractSparkyUser implements SparkyUser {
      * 
      * @param oldPassword
      * @param newPassword
+     * @throws net.ssehub.sparkyservice.api.auth.PasswordHashingRejectedException When too many hashes are waiting
      */
     public void defaultUpdatePassword(@Nullable String oldPassword, String newPassword) {
-        if (getEncoder().matches(oldPassword, getPassword())) {
+        if (PasswordHashing.matches(getEncoder(), oldPassword, getPasswordEntity())) {
             encodeAndSetPassword(newPassword);
         } else {
             log.debug("Password for user {} not changed because they old password didn't matched.", getUsername());
@@ -4,6 +4,7 @@ import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
 import javax.annotation.Nonnull;
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
@@ -11,6 +12,7 @@ import javax.validation.constraints.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.annotation.Secured;
@@ -32,6 +34,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import net.ssehub.sparkyservice.api.auth.PasswordHashingRejectedException;
 import net.ssehub.sparkyservice.api.conf.ControllerPath;
 import net.ssehub.sparkyservice.api.user.dto.ErrorDto;
 import net.ssehub.sparkyservice.api.user.dto.UserDto;
@@ -231,6 +234,23 @@ public class UserController {
         return new ErrorDtoBuilder().newError(null, HttpStatus.CONFLICT, servletContext.getContextPath()).build();
     }
 
+    /**
+     * Exception handler for password changes which are rejected because too many hashes are waiting. Return status is
+     * 503 SERVICE UNAVAILABLE with a Retry-After header.
+     * 
+     * @param ex
+     * @param response - Receives the Retry-After header
+     * @return ErrorDto with all collectable information
+     */
+    @ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ErrorDto handlePasswordHashingRejectedException(PasswordHashingRejectedException ex,
+        HttpServletResponse response) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+        return new ErrorDtoBuilder().newError(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE,
+                servletContext.getContextPath()).build();
+    }
+
     /**
      * Exception handler for editiation problems. Return status is 400 BAD REQUEST. 
      * 
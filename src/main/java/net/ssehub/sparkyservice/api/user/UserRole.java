@@ -2,8 +2,9 @@ package net.ssehub.sparkyservice.api.user;
 
 import static net.ssehub.sparkyservice.api.util.NullHelpers.*;
 
-import java.util.ArrayList;
-import java.util.function.Predicate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -13,7 +14,6 @@ import org.springframework.security.core.GrantedAuthority;
 import net.ssehub.sparkyservice.api.user.modification.AdminUserModificationImpl;
 import net.ssehub.sparkyservice.api.user.modification.DefaultUserModificationImpl;
 import net.ssehub.sparkyservice.api.user.modification.UserModificationService;
-import net.ssehub.sparkyservice.api.util.EnumUtil;
 import net.ssehub.sparkyservice.api.util.NonNullByDefault;
 
 /**
@@ -54,6 +54,18 @@ public enum UserRole implements GrantedAuthority {
         }
     };
 
+    /**
+     * All valid inputs of {@link #getEnum(String)} in upper case.
+     */
+    private static final Map<String, UserRole> LOOKUP = new HashMap<>();
+
+    static {
+        for (UserRole role : values()) {
+            LOOKUP.put(role.name().toUpperCase(Locale.ROOT), role);
+            LOOKUP.put(role.authority.toUpperCase(Locale.ROOT), role);
+        }
+    }
+
     private @Nonnull final String authority;
 
     /**
@@ -95,13 +107,17 @@ public enum UserRole implements GrantedAuthority {
      * @return the string as enumCan't get an instance of UserRole of this string.
      */
     public static @Nonnull UserRole getEnum(@Nullable String value) {
-        var strategyList = new ArrayList<Predicate<UserRole>>();
-        strategyList.add(e -> e.getRoleValue().equalsIgnoreCase(value));
-        strategyList.add(e -> e.name().equalsIgnoreCase(value));
-        
-        var returnValue = EnumUtil.<UserRole>castFromArray(values(), strategyList).orElseThrow(
-            () -> new IllegalArgumentException("Can't get an instance of UserRole of this string."));
-        return notNull(returnValue);
+        UserRole returnValue = null;
+        if (value != null) {
+            returnValue = LOOKUP.get(value);
+            if (returnValue == null) {
+                returnValue = LOOKUP.get(value.toUpperCase(Locale.ROOT));
+            }
+        }
+        if (returnValue == null) {
+            throw new IllegalArgumentException("Can't get an instance of UserRole of this string.");
+        }
+        return returnValue;
     } 
 
     /**
@@ -1,6 +1,7 @@
 package net.ssehub.sparkyservice.api.user;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
@@ -10,8 +11,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
 import net.ssehub.sparkyservice.api.user.dto.UserDto;
 import net.ssehub.sparkyservice.api.user.extraction.UserExtractionService;
 import net.ssehub.sparkyservice.api.user.modification.UserEditException;
@@ -34,13 +37,22 @@ public class UserService {
     @Autowired
     private UserExtractionService transformerService;
 
+    @Autowired
+    private JwtTokenService jwtTokenService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     /**
      * Modify values of a user specified by a DTO. User can only edit himself or needs to be an admin in order to modify
-     * other user values. Authorization information will be extracted from authentication context. 
+     * other user values. Authorization information will be extracted from authentication context. <br>
+     * When the role or the password of the user changed, all JWT tokens of the user are invalidated. New local
+     * passwords are hashed with the configured {@link PasswordEncoder}.
      * 
      * @param userDto
      * @param auth
      * @return Modified user representation
+     * @throws net.ssehub.sparkyservice.api.auth.PasswordHashingRejectedException When too many hashes are waiting
      */
     public UserDto modifyUser(@Nonnull UserDto userDto, @Nonnull Authentication auth) {
         SparkyUser authenticatedUser = transformerService.extract(auth);
@@ -48,8 +60,16 @@ public class UserService {
                 && user.getRealm().equals(userDto.realm);
         if (authenticatedUser.getRole() == UserRole.ADMIN || selfEdit.test(authenticatedUser)) {
             SparkyUser targetUser = storageService.findUserByNameAndRealm(userDto.username, userDto.realm);
+            UserRole oldRole = targetUser.getRole();
+            String oldPassword = targetUser.getPassword();
+            if (targetUser instanceof LocalUserDetails) {
+                ((LocalUserDetails) targetUser).setEncoder(passwordEncoder);
+            }
             authenticatedUser.getRole().getPermissionTool().update(targetUser, userDto);
             storageService.commit(targetUser);
+            if (oldRole != targetUser.getRole() || !Objects.equals(oldPassword, targetUser.getPassword())) {
+                jwtTokenService.invalidateAllFrom(targetUser);
+            }
             var editedUser = storageService.refresh(targetUser);
             return editedUser.ownDto();
         } else {
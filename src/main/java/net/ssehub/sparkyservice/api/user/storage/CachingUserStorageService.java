@@ -0,0 +1,435 @@
+package net.ssehub.sparkyservice.api.user.storage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import net.ssehub.sparkyservice.api.jpa.user.Password;
+import net.ssehub.sparkyservice.api.jpa.user.PersonalSettings;
+import net.ssehub.sparkyservice.api.jpa.user.User;
+import net.ssehub.sparkyservice.api.management.MetricsProvider;
+import net.ssehub.sparkyservice.api.user.LocalUserDetails;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+
+/**
+ * Read-through cache for {@link #findUserByNameAndRealm(String, UserRealm)} in front of another storage service.
+ * Users are cached by realm and lowercase username (like the storage searches them) for a short time. All other
+ * searches go to the storage. <br>
+ * The cache holds a copy of the stored values; each call gets its own user object, so callers can change and commit
+ * it like an uncached one. Writes of this service (commit, upsert, delete) remove the user from the cache before they
+ * return. Writes of other instances aren't seen until the TTL expired. <br>
+ * Concurrent misses for the same user wait for a single query. A query which overlaps a write isn't cached. <br>
+ * The cache is disabled when <code>user.cache.ttl-seconds</code> is <code>0</code>.
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+public class CachingUserStorageService implements UserStorageService, MetricsProvider {
+
+    /**
+     * Identifies a cached user.
+     */
+    private static final class Key {
+        private final UserRealm realm;
+        private final String username;
+
+        /**
+         * Key of a user.
+         *
+         * @param realm
+         * @param username - Is converted to lowercase
+         */
+        private Key(UserRealm realm, String username) {
+            this.realm = realm;
+            this.username = username.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            boolean equal = this == obj;
+            if (!equal && obj instanceof Key) {
+                var other = (Key) obj;
+                equal = realm == other.realm && username.equals(other.username);
+            }
+            return equal;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(realm, username);
+        }
+    }
+
+    /**
+     * A cached user.
+     */
+    private static final class Entry {
+        private final User snapshot;
+        private final long expiresAt;
+
+        /**
+         * Cached user.
+         *
+         * @param snapshot - Copy of the stored values, must not be changed
+         * @param expiresAt - Expiration time in milliseconds
+         */
+        private Entry(User snapshot, long expiresAt) {
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @Nonnull
+    private final UserStorageService delegate;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private final Map<Key, CompletableFuture<User>> loading = new ConcurrentHashMap<>();
+
+    @Nonnull
+    private final LongSupplier clock;
+
+    private final long ttlMillis;
+
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Cache with the system clock.
+     *
+     * @param delegate - Storage which is queried on misses and receives all writes
+     * @param ttlSeconds - Time a user is cached, <code>0</code> disables the cache
+     * @param maxSize - Maximum number of cached users
+     */
+    public CachingUserStorageService(UserStorageService delegate, long ttlSeconds, int maxSize) {
+        this(delegate, ttlSeconds, maxSize, System::currentTimeMillis);
+    }
+
+    /**
+     * Cache with its own clock.
+     *
+     * @param delegate - Storage which is queried on misses and receives all writes
+     * @param ttlSeconds - Time a user is cached, <code>0</code> disables the cache
+     * @param maxSize - Maximum number of cached users
+     * @param clock - Current time in milliseconds
+     */
+    CachingUserStorageService(UserStorageService delegate, long ttlSeconds, int maxSize, LongSupplier clock) {
+        this.delegate = delegate;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, ttlSeconds));
+        this.maxSize = maxSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Whether users are cached at all.
+     *
+     * @return <code>true</code> if the TTL is positive
+     */
+    public boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    /**
+     * {@inheritDoc} The user is taken from the cache if possible.
+     */
+    @Override
+    @Nonnull
+    public SparkyUser findUserByNameAndRealm(@Nullable String username, @Nullable UserRealm realm)
+        throws UserNotFoundException {
+        if (!isEnabled() || username == null || realm == null) {
+            return delegate.findUserByNameAndRealm(username, realm);
+        }
+        var key = new Key(realm, username);
+        Entry entry = entries.get(key);
+        SparkyUser user;
+        if (entry != null && entry.expiresAt > clock.getAsLong()) {
+            hits.increment();
+            user = toUser(entry.snapshot);
+        } else {
+            misses.increment();
+            user = load(key, username, realm);
+        }
+        return user;
+    }
+
+    /**
+     * Queries the storage for a missing user. When the same user is already queried, the result of that query is
+     * used.
+     *
+     * @param key
+     * @param username
+     * @param realm
+     * @return The stored user
+     * @throws UserNotFoundException
+     */
+    @Nonnull
+    private SparkyUser load(Key key, String username, UserRealm realm) throws UserNotFoundException {
+        var future = new CompletableFuture<User>();
+        var running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return awaitLoad(running, username, realm);
+        }
+        try {
+            loads.increment();
+            SparkyUser user;
+            try {
+                user = delegate.findUserByNameAndRealm(username, realm);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                throw e;
+            }
+            User snapshot = snapshotOf(user);
+            future.complete(snapshot);
+            if (snapshot != null) {
+                store(key, future, snapshot);
+            }
+            return user;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Waits for the query of another thread.
+     *
+     * @param running - Result of the other query
+     * @param username
+     * @param realm
+     * @return A copy of the result
+     * @throws UserNotFoundException
+     */
+    @Nonnull
+    private SparkyUser awaitLoad(CompletableFuture<User> running, String username, UserRealm realm)
+        throws UserNotFoundException {
+        User snapshot;
+        try {
+            snapshot = running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return snapshot != null ? toUser(snapshot) : delegate.findUserByNameAndRealm(username, realm);
+    }
+
+    /**
+     * Caches a loaded user, unless the user was invalidated while it was loaded or the cache is full.
+     *
+     * @param key
+     * @param future - Query which loaded the user
+     * @param snapshot - Loaded values
+     */
+    private void store(Key key, CompletableFuture<User> future, User snapshot) {
+        long now = clock.getAsLong();
+        if (entries.size() >= maxSize) {
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+        if (entries.size() < maxSize || entries.containsKey(key)) {
+            // atomic with the removal of invalidate(Key), which removes the query first
+            entries.compute(key, (k, old) -> loading.get(k) == future ? new Entry(snapshot, now + ttlMillis) : old);
+        }
+    }
+
+    /**
+     * Creates a copy of the stored values of a user.
+     *
+     * @param user - Loaded from the storage
+     * @return Values which can't be changed by the user, <code>null</code> if the user can't be stored
+     */
+    @Nullable
+    private static User snapshotOf(SparkyUser user) {
+        User snapshot;
+        try {
+            snapshot = user.getJpa();
+        } catch (NoTransactionUnitException e) {
+            snapshot = null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Creates a new user object from cached values.
+     *
+     * @param snapshot
+     * @return User which doesn't share any objects with the cache
+     */
+    @Nonnull
+    private static SparkyUser toUser(User snapshot) {
+        var copy = new User(snapshot);
+        copy.setProfileConfiguration(new PersonalSettings(snapshot.getProfileConfiguration()));
+        Password password = snapshot.getPasswordEntity();
+        if (password != null) {
+            copy.setPasswordEntity(new Password(password));
+        }
+        return UserStorageImpl.transformUser(copy);
+    }
+
+    /**
+     * Removes a user from the cache. A running query of the user won't be cached.
+     *
+     * @param username
+     * @param realm
+     */
+    private void invalidate(@Nullable String username, @Nullable UserRealm realm) {
+        if (username != null && realm != null) {
+            var key = new Key(realm, username);
+            loading.remove(key);
+            entries.remove(key);
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * {@inheritDoc} The user is removed from the cache afterwards.
+     */
+    @Override
+    public <T extends SparkyUser> void commit(@Nonnull T user) {
+        try {
+            delegate.commit(user);
+        } finally {
+            invalidate(user.getUsername(), user.getRealm());
+        }
+    }
+
+    /**
+     * {@inheritDoc} The user is removed from the cache afterwards.
+     */
+    @Override
+    @Nonnull
+    public SparkyUser upsert(@Nonnull SparkyUser user) {
+        try {
+            return delegate.upsert(user);
+        } finally {
+            invalidate(user.getUsername(), user.getRealm());
+        }
+    }
+
+    /**
+     * {@inheritDoc} The users are removed from the cache afterwards.
+     */
+    @Override
+    public int upsertAll(@Nonnull Collection<? extends SparkyUser> users) {
+        try {
+            return delegate.upsertAll(users);
+        } finally {
+            users.forEach(user -> invalidate(user.getUsername(), user.getRealm()));
+        }
+    }
+
+    @Override
+    @Nonnull
+    public LocalUserDetails addUser(@Nonnull String username) {
+        try {
+            return delegate.addUser(username);
+        } finally {
+            invalidate(username, UserRealm.LOCAL);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public SparkyUser findUserById(int id) throws UserNotFoundException {
+        return delegate.findUserById(id);
+    }
+
+    @Override
+    @Nonnull
+    public List<SparkyUser> findUsersByUsername(@Nullable String username) throws UserNotFoundException {
+        return delegate.findUsersByUsername(username);
+    }
+
+    @Override
+    @Nonnull
+    public List<SparkyUser> findUsersByUsernames(Collection<String> usernames) {
+        return delegate.findUsersByUsernames(usernames);
+    }
+
+    @Override
+    @Nonnull
+    public List<SparkyUser> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public boolean isUserInStorage(@Nullable SparkyUser user) {
+        return delegate.isUserInStorage(user);
+    }
+
+    /**
+     * {@inheritDoc} The user is removed from the cache afterwards.
+     */
+    @Override
+    public void deleteUser(@Nullable SparkyUser user) {
+        try {
+            delegate.deleteUser(user);
+        } finally {
+            if (user != null) {
+                invalidate(user.getUsername(), user.getRealm());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc} The user is removed from the cache afterwards.
+     */
+    @Override
+    public void deleteUser(String username, UserRealm realm) {
+        try {
+            delegate.deleteUser(username, realm);
+        } finally {
+            invalidate(username, realm);
+        }
+    }
+
+    @Override
+    public List<SparkyUser> findAllUsersInRealm(UserRealm realm) {
+        return delegate.findAllUsersInRealm(realm);
+    }
+
+    /**
+     * {@inheritDoc} The user is always loaded from the storage, not from the cache.
+     */
+    @Override
+    @Nonnull
+    public SparkyUser refresh(SparkyUser user) throws UserNotFoundException {
+        invalidate(user.getUsername(), user.getRealm());
+        return findUserByNameAndRealm(user.getUsername(), user.getRealm());
+    }
+
+    @Override
+    @Nonnull
+    public String getMetricsGroup() {
+        return "user";
+    }
+
+    @Override
+    @Nonnull
+    public Map<String, Number> getMetrics() {
+        var metrics = new HashMap<String, Number>();
+        metrics.put("cache.size", entries.size());
+        metrics.put("cache.hits", hits.sum());
+        metrics.put("cache.misses", misses.sum());
+        metrics.put("cache.loads", loads.sum());
+        metrics.put("cache.invalidations", invalidations.sum());
+        return metrics;
+    }
+}
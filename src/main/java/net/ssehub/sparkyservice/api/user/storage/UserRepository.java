@@ -1,8 +1,10 @@
 package net.ssehub.sparkyservice.api.user.storage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -16,10 +18,21 @@ import net.ssehub.sparkyservice.api.user.UserRole;
  * @author marcel
  */
 @Repository
-interface UserRepository extends CrudRepository<User, Integer> {
+interface UserRepository extends CrudRepository<User, Integer>, UserUpsertRepository {
     Optional<User> findByuserNameAndRealm(String username, UserRealm realm);
     Optional<List<User>> findByuserName(String username);
+    Iterable<User> findByuserNameIn(Collection<String> usernames);
     Iterable<User> findAll();
     Iterable<User> findByRealm(UserRealm realm);
     Iterable<User> findByRole(UserRole role);
+
+    /**
+     * Loads the stored hashes of the realm attributes without loading the users.
+     * 
+     * @param realm
+     * @param usernames
+     * @return Pairs of username and hash (which may be <code>null</code>) of the stored users
+     */
+    @Query("select u.userName, u.attributesHash from User u where u.realm = ?1 and u.userName in ?2")
+    List<Object[]> findAttributesHashes(UserRealm realm, Collection<String> usernames);
 }
@@ -3,9 +3,14 @@ package net.ssehub.sparkyservice.api.user.storage;
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -16,6 +21,7 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import net.ssehub.sparkyservice.api.jpa.user.User;
@@ -126,13 +132,82 @@ public class UserStorageImpl implements UserStorageService {
     @Override
     public @Nonnull LocalUserDetails addUser(@Nonnull String username) {
         final var newUser = LocalUserDetails.newLocalUser(username, "", UserRole.DEFAULT);
-        if (isUserInStorage(newUser) ) {
+        try {
+            commit(newUser);
+        } catch (DataIntegrityViolationException e) {
+            // unique username and realm: no lookup before the insert
             throw new DuplicateEntryException(newUser);
         }
-        commit(newUser);
         return newUser;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public @Nonnull SparkyUser upsert(@Nonnull SparkyUser user) {
+        if (user.getRealm() == UserRealm.UNKNOWN || user.getUsername().isBlank()) {
+            throw new IllegalArgumentException("Realm and username must not be blank.");
+        }
+        User jpa = user.getJpa();
+        String attributesHash = jpa.hashRealmAttributes();
+        Optional<User> stored = repository.findByuserNameAndRealm(jpa.getUserName(), jpa.getRealm());
+        if (stored.isPresent() && attributesHash.equals(stored.get().getAttributesHash())) {
+            return transformUser(notNull(stored.get()));
+        }
+        jpa.setAttributesHash(attributesHash);
+        log.debug("Upsert user {}@{}", jpa.getUserName(), jpa.getRealm());
+        Optional<User> inserted = repository.upsert(jpa);
+        SparkyUser persisted;
+        if (inserted.isPresent()) {
+            persisted = transformUser(notNull(inserted.get()));
+        } else if (stored.isPresent()) {
+            // the upsert only changed the realm attributes of the stored user
+            User updated = notNull(stored.get());
+            updated.setFullName(jpa.getFullName());
+            updated.setExpirationDate(jpa.getExpirationDate());
+            updated.setAttributesHash(attributesHash);
+            persisted = transformUser(updated);
+        } else {
+            // inserted by a concurrent upsert after the lookup
+            persisted = findUserByNameAndRealm(jpa.getUserName(), jpa.getRealm());
+        }
+        return persisted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int upsertAll(@Nonnull Collection<? extends SparkyUser> users) {
+        Map<UserRealm, List<User>> byRealm = new EnumMap<>(UserRealm.class);
+        for (SparkyUser user : users) {
+            if (user.getRealm() == UserRealm.UNKNOWN || user.getUsername().isBlank()) {
+                throw new IllegalArgumentException("Realm and username must not be blank.");
+            }
+            byRealm.computeIfAbsent(user.getRealm(), realm -> new ArrayList<>()).add(user.getJpa());
+        }
+        int written = 0;
+        for (var realmUsers : byRealm.entrySet()) {
+            List<User> jpaUsers = realmUsers.getValue();
+            Set<String> names = jpaUsers.stream().map(User::getUserName).collect(Collectors.toSet());
+            Map<String, String> storedHashes = new HashMap<>();
+            repository.findAttributesHashes(realmUsers.getKey(), names)
+                .forEach(row -> storedHashes.put((String) row[0], (String) row[1]));
+            List<User> changed = new ArrayList<>();
+            for (User jpa : jpaUsers) {
+                String attributesHash = jpa.hashRealmAttributes();
+                if (!attributesHash.equals(storedHashes.get(jpa.getUserName()))) {
+                    jpa.setAttributesHash(attributesHash);
+                    changed.add(jpa);
+                }
+            }
+            repository.upsertAll(changed);
+            written += changed.size();
+        }
+        return written;
+    }
+
     /**
      * {@inheritDoc}.
      */
@@ -148,6 +223,24 @@ public class UserStorageImpl implements UserStorageService {
             );
     }
 
+    /**
+     * {@inheritDoc}.
+     */
+    @Override
+    public @Nonnull List<SparkyUser> findUsersByUsernames(Collection<String> usernames) {
+        Set<String> validNames = usernames.stream()
+            .map(UserStorageImpl::validateUsername)
+            .flatMap(Optional::stream)
+            .collect(Collectors.toSet());
+        List<SparkyUser> users;
+        if (validNames.isEmpty()) {
+            users = new ArrayList<>();
+        } else {
+            users = fromIterableToUserList(repository.findByuserNameIn(validNames));
+        }
+        return users;
+    }
+
     /**
      * {@inheritDoc}.
      */
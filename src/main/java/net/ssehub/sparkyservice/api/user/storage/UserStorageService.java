@@ -1,5 +1,6 @@
 package net.ssehub.sparkyservice.api.user.storage;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -30,6 +31,27 @@ public interface UserStorageService {
      */
     <T extends SparkyUser> void commit(@Nonnull T user);
 
+    /**
+     * Inserts the user or updates the stored user with the same name and realm with one statement, so concurrent
+     * calls for a new user don't fail. An existing user only gets the attributes of its realm (full name and
+     * expiration date); role, active state, password and settings are kept. Nothing is written when these attributes
+     * didn't change since they were stored the last time.
+     * 
+     * @param user - Holds the attributes from its realm (must hold username and realm)
+     * @return The persisted user
+     */
+    @Nonnull
+    SparkyUser upsert(@Nonnull SparkyUser user);
+
+    /**
+     * Upserts many users like {@link #upsert(SparkyUser)} with JDBC batches (one per realm). Only users whose realm
+     * attributes changed since they were stored the last time are written.
+     * 
+     * @param users - Hold the attributes from their realms
+     * @return Number of written (inserted or updated) users
+     */
+    int upsertAll(@Nonnull Collection<? extends SparkyUser> users);
+
     /**
      * Creates a new entry in the storage for the given user.
      * 
@@ -62,6 +84,15 @@ public interface UserStorageService {
     @Nonnull
     List<SparkyUser> findUsersByUsername(@Nullable String username) throws UserNotFoundException;
 
+    /**
+     * Searches a data storage for all users with one of the given usernames with a single query.
+     * 
+     * @param usernames
+     * @return All users (of any realm) with one of the usernames; may be empty
+     */
+    @Nonnull
+    List<SparkyUser> findUsersByUsernames(Collection<String> usernames);
+
     /**
      * Finds a specific user by name and realm.
      * 
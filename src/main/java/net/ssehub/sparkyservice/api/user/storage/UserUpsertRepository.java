@@ -0,0 +1,33 @@
+package net.ssehub.sparkyservice.api.user.storage;
+
+import java.util.List;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import net.ssehub.sparkyservice.api.jpa.user.User;
+
+/**
+ * Provides a native upsert of {@link User} which doesn't need to look up the user first.
+ *
+ * @author marcel
+ */
+interface UserUpsertRepository {
+
+    /**
+     * Inserts the user or updates the stored user with the same name and realm in a single statement. An existing
+     * user only gets the attributes of its realm (full name, expiration date and their hash). Role, active state,
+     * password and settings of the given user are only stored when the user is new.
+     * 
+     * @param user - The user to store; gets the ids of the inserted rows when it is new
+     * @return The given user when it was inserted; empty when a stored user was updated
+     */
+    @Nonnull Optional<User> upsert(@Nonnull User user);
+
+    /**
+     * Upserts users of the same realm like {@link #upsert(User)} with JDBC batches.
+     * 
+     * @param users - Users of one realm
+     */
+    void upsertAll(@Nonnull List<User> users);
+}
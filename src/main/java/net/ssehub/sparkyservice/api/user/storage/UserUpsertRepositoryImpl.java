@@ -0,0 +1,269 @@
+package net.ssehub.sparkyservice.api.user.storage;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.ssehub.sparkyservice.api.jpa.user.Password;
+import net.ssehub.sparkyservice.api.jpa.user.PersonalSettings;
+import net.ssehub.sparkyservice.api.jpa.user.User;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+
+/**
+ * Implements {@link UserUpsertRepository} with native SQL. PostgreSQL uses <code>INSERT ... ON CONFLICT</code> which
+ * returns the persisted row; other databases (like the H2 database of the tests) use a standard <code>MERGE</code>
+ * and look up the id afterwards. <br>
+ * A new user is inserted without settings and password. They are added with batched follow-up statements, so every
+ * stored user has settings like the users which were saved through JPA. When concurrent upserts insert the same user,
+ * only the settings of the first one are referenced; the others are deleted again.
+ *
+ * @author marcel
+ */
+@ParametersAreNonnullByDefault
+class UserUpsertRepositoryImpl implements UserUpsertRepository {
+
+    static final String UPSERT_POSTGRES = "insert into user_stored "
+        + "(id, user_name, realm, role, is_active, full_name, expiration_time, attributes_hash) "
+        + "values (nextval('hibernate_sequence'), ?, ?, ?, ?, ?, ?, ?) "
+        + "on conflict (user_name, realm) do update set full_name = excluded.full_name, "
+        + "expiration_time = excluded.expiration_time, attributes_hash = excluded.attributes_hash";
+
+    static final String RETURNING_ROW = " returning id, profile_configuration_configuration_id";
+
+    static final String UPSERT_MERGE = "merge into user_stored t using (select "
+        + "cast(? as varchar(50)) as user_name, cast(? as varchar(255)) as realm, cast(? as varchar(255)) as role, "
+        + "cast(? as boolean) as is_active, cast(? as varchar(255)) as full_name, "
+        + "cast(? as date) as expiration_time, cast(? as varchar(64)) as attributes_hash) s "
+        + "on (t.user_name = s.user_name and t.realm = s.realm) "
+        + "when matched then update set full_name = s.full_name, expiration_time = s.expiration_time, "
+        + "attributes_hash = s.attributes_hash "
+        + "when not matched then insert "
+        + "(id, user_name, realm, role, is_active, full_name, expiration_time, attributes_hash) "
+        + "values (next value for hibernate_sequence, s.user_name, s.realm, s.role, s.is_active, s.full_name, "
+        + "s.expiration_time, s.attributes_hash)";
+
+    static final String SELECT_ROW = "select id, profile_configuration_configuration_id from user_stored "
+        + "where user_name = ? and realm = ?";
+
+    static final String SELECT_INCOMPLETE = "select id, user_name from user_stored where realm = :realm "
+        + "and user_name in (:names) and profile_configuration_configuration_id is null";
+
+    static final String INSERT_SETTINGS = "insert into user_configuration "
+        + "(email_address, email_receive, content, wants_ai) values (?, ?, ?, ?)";
+
+    static final String INSERT_PASSWORD = "insert into user_local_password (password_string, hash_algorithm) "
+        + "values (?, ?)";
+
+    static final String UPDATE_REFERENCES = "update user_stored set profile_configuration_configuration_id = ?, "
+        + "password_entity_password_id = ? where id = ? and profile_configuration_configuration_id is null";
+
+    static final String DELETE_SETTINGS = "delete from user_configuration where configuration_id = ?";
+
+    static final String DELETE_PASSWORD = "delete from user_local_password where password_id = ?";
+
+    private static final int[] UPSERT_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.BOOLEAN,
+        Types.VARCHAR, Types.DATE, Types.VARCHAR};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Nullable
+    private volatile Boolean postgres;
+
+    /**
+     * Upserts through the given connection.
+     * 
+     * @param jdbcTemplate - Connection to the user tables
+     */
+    UserUpsertRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> upsert(User user) {
+        Object[] args = toArguments(user);
+        Map<String, Object> row;
+        if (isPostgres()) {
+            row = jdbcTemplate.queryForMap(UPSERT_POSTGRES + RETURNING_ROW, args, UPSERT_TYPES);
+        } else {
+            jdbcTemplate.update(UPSERT_MERGE, args, UPSERT_TYPES);
+            row = jdbcTemplate.queryForMap(SELECT_ROW, user.getUserName(), user.getRealm().name());
+        }
+        int id = ((Number) row.get("id")).intValue();
+        Optional<User> inserted = Optional.empty();
+        if (row.get("profile_configuration_configuration_id") == null 
+                && completeInserts(List.of(id), List.of(user)) == 1) {
+            inserted = Optional.of(user);
+        }
+        return inserted;
+    }
+
+    @Override
+    @Transactional
+    public void upsertAll(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        UserRealm realm = users.get(0).getRealm();
+        Map<String, User> byName = new HashMap<>();
+        for (User user : users) {
+            if (user.getRealm() != realm) {
+                throw new IllegalArgumentException("All users of a batch must be in the realm " + realm);
+            }
+            byName.put(user.getUserName(), user);
+        }
+        List<Object[]> args = users.stream().map(UserUpsertRepositoryImpl::toArguments).collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(isPostgres() ? UPSERT_POSTGRES : UPSERT_MERGE, args, UPSERT_TYPES);
+
+        var ids = new ArrayList<Integer>();
+        var inserted = new ArrayList<User>();
+        var parameters = new MapSqlParameterSource("realm", realm.name()).addValue("names", byName.keySet());
+        new NamedParameterJdbcTemplate(jdbcTemplate).query(SELECT_INCOMPLETE, parameters, rs -> {
+            ids.add(rs.getInt("id"));
+            inserted.add(byName.get(rs.getString("user_name")));
+        });
+        if (!ids.isEmpty()) {
+            completeInserts(ids, inserted);
+        }
+    }
+
+    /**
+     * The values of the upsert statements.
+     * 
+     * @param user
+     * @return Arguments matching {@link #UPSERT_TYPES}
+     */
+    private static Object[] toArguments(User user) {
+        return new Object[] {user.getUserName(), user.getRealm().name(), user.getRole().name(), user.isActive(),
+            user.getFullName(), user.getExpirationDate().map(Date::valueOf).orElse(null), user.getAttributesHash()};
+    }
+
+    /**
+     * Stores the settings and the passwords of users which were just inserted by an upsert. Users which got their 
+     * settings from a concurrent upsert in the meantime keep them; the rows inserted for them here are deleted. The
+     * completed users get the ids of their rows.
+     * 
+     * @param ids - Ids of the inserted users
+     * @param users - Provide settings and passwords, same order as the ids
+     * @return Number of completed users
+     */
+    private int completeInserts(List<Integer> ids, List<User> users) {
+        List<Object[]> settingsRows = new ArrayList<>();
+        List<Object[]> passwordRows = new ArrayList<>();
+        for (User user : users) {
+            PersonalSettings settings = user.getProfileConfiguration();
+            settingsRows.add(new Object[] {settings.getEmail_address(), settings.isEmail_receive(),
+                settings.getPayload(), settings.isWantsAi()});
+            Password password = user.getPasswordEntity();
+            if (password != null) {
+                passwordRows.add(new Object[] {password.getPasswordString(), password.getHashAlgorithm()});
+            }
+        }
+        List<Number> settingsIds = insertAll(INSERT_SETTINGS, "configuration_id", settingsRows);
+        Iterator<Number> passwordIds = insertAll(INSERT_PASSWORD, "password_id", passwordRows).iterator();
+        List<Object[]> references = new ArrayList<>();
+        List<Number> userPasswordIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Number passwordId = users.get(i).getPasswordEntity() != null ? passwordIds.next() : null;
+            userPasswordIds.add(passwordId);
+            references.add(new Object[] {settingsIds.get(i), passwordId, ids.get(i)});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_REFERENCES, references, new int[] {Types.INTEGER, 
+            Types.INTEGER, Types.INTEGER});
+
+        int completed = 0;
+        List<Object[]> orphanSettings = new ArrayList<>();
+        List<Object[]> orphanPasswords = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            User user = users.get(i);
+            Number passwordId = userPasswordIds.get(i);
+            if (updated[i] == 0) {
+                orphanSettings.add(new Object[] {settingsIds.get(i)});
+                if (passwordId != null) {
+                    orphanPasswords.add(new Object[] {passwordId});
+                }
+            } else {
+                user.setId(ids.get(i));
+                user.getProfileConfiguration().setConfigurationId(settingsIds.get(i).intValue());
+                Password password = user.getPasswordEntity();
+                if (password != null && passwordId != null) {
+                    password.setPasswordId(passwordId.intValue());
+                }
+                completed++;
+            }
+        }
+        if (!orphanSettings.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SETTINGS, orphanSettings);
+        }
+        if (!orphanPasswords.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_PASSWORD, orphanPasswords);
+        }
+        return completed;
+    }
+
+    /**
+     * Inserts rows with one batch and returns their generated keys.
+     * 
+     * @param sql - Insert statement
+     * @param keyColumn - Name of the generated column
+     * @param rows - Values of the statement for each row
+     * @return Generated keys in the order of the rows
+     */
+    private List<Number> insertAll(String sql, String keyColumn, List<Object[]> rows) {
+        List<Number> keys = new ArrayList<>();
+        if (!rows.isEmpty()) {
+            jdbcTemplate.execute(con -> con.prepareStatement(sql, new String[] {keyColumn}), 
+                (PreparedStatementCallback<Void>) statement -> {
+                    for (Object[] row : rows) {
+                        for (int i = 0; i < row.length; i++) {
+                            statement.setObject(i + 1, row[i]);
+                        }
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    try (ResultSet generated = statement.getGeneratedKeys()) {
+                        while (generated.next()) {
+                            keys.add((Number) generated.getObject(1));
+                        }
+                    }
+                    return null;
+                });
+        }
+        if (keys.size() != rows.size()) {
+            throw new IllegalStateException("Expected " + rows.size() + " generated keys but got " + keys.size());
+        }
+        return keys;
+    }
+
+    /**
+     * Whether the database is PostgreSQL. Checked once with the first upsert.
+     * 
+     * @return <code>true</code> if <code>ON CONFLICT</code> can be used
+     */
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            result = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> "PostgreSQL".equals(
+                con.getMetaData().getDatabaseProductName()));
+            postgres = result;
+        }
+        return result;
+    }
+}
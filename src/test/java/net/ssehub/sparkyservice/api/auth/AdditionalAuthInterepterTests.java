@@ -13,6 +13,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
 import net.ssehub.sparkyservice.api.auth.storage.JwtRepository;
 import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
 import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
@@ -48,10 +49,11 @@ public class AdditionalAuthInterepterTests {
     }
 
     /**
-     * Setup method creates a JWT token
+     * Setup method creates a JWT token (with a new cache, not the one of another test).
      */
     @BeforeEach
     public void setUpConfValues() {
+        JwtCache.initNewCache();
         var user = UserRealm.LDAP.getUserFactory().create(USER_NAME, null, UserRole.ADMIN, true);
         this.jwtToken = jwtTokenService.createFor(user);
     }
@@ -0,0 +1,106 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenReadException;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.extraction.UserExtractionService;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Provides unit tests for the introspection helpers of {@link AuthenticationService}.
+ * 
+ * @author marcel
+ */
+public class AuthenticationServiceTests {
+
+    private JwtSettings jwtConf;
+
+    private JwtTokenService jwtService;
+
+    private AuthenticationService authService;
+
+    private SparkysAuthPrincipal principal;
+
+    private JwtToken createToken(long validMillis) {
+        var expDate = new Date(System.currentTimeMillis() + validMillis);
+        return new JwtToken(notNull(UUID.randomUUID()), expDate, principal, UserRole.DEFAULT);
+    }
+
+    /**
+     * Creates the service with a new token cache.
+     * 
+     * @throws JwtTokenReadException
+     */
+    @BeforeEach
+    public void setup() throws JwtTokenReadException {
+        JwtCache.initNewCache();
+        jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+        jwtService = new JwtTokenService(jwtConf);
+        authService = new AuthenticationService(jwtService, notNull(mock(UserExtractionService.class)), 
+            notNull(mock(UserStorageService.class)));
+        var user = UserRealm.LDAP.getUserFactory().create("testuser", null, UserRole.DEFAULT, true);
+        principal = jwtService.readJwtToken(jwtService.createFor(user)).getUserInfo();
+    }
+
+    @Test
+    @DisplayName("Introspection responses aren't cached longer than the token or the budget allow")
+    public void introspectionMaxAgeTest() {
+        jwtConf.setIntrospectionMaxAge(300);
+        long shortLived = authService.getIntrospectionMaxAge(createToken(60_000));
+        long longLived = authService.getIntrospectionMaxAge(createToken(3_600_000));
+        long expired = authService.getIntrospectionMaxAge(createToken(-60_000));
+        assertAll(
+            () -> assertTrue(shortLived > 55 && shortLived <= 60, "Max age exceeds token lifetime: " + shortLived),
+            () -> assertEquals(300, longLived),
+            () -> assertEquals(0, expired)
+        );
+    }
+
+    @Test
+    @DisplayName("Introspection responses aren't cached by default")
+    public void introspectionMaxAgeDefaultTest() {
+        assertEquals(0, authService.getIntrospectionMaxAge(createToken(60_000)));
+    }
+
+    @Test
+    @DisplayName("ETag changes when the returned information changes")
+    public void introspectionTagTest() {
+        JwtToken token = createToken(60_000);
+        var body = new AuthenticationInfoDto();
+        body.user.username = "testuser";
+        body.user.fullName = "Test User";
+        body.user.expirationDate = LocalDate.now().plusDays(1);
+        String firstTag = authService.createIntrospectionTag(token, body);
+        String sameTag = authService.createIntrospectionTag(token, body);
+        body.user.fullName = "Renamed User";
+        String renamedTag = authService.createIntrospectionTag(token, body);
+        String otherTokenTag = authService.createIntrospectionTag(createToken(60_000), body);
+        assertAll(
+            () -> assertEquals(firstTag, sameTag),
+            () -> assertNotEquals(firstTag, renamedTag),
+            () -> assertNotEquals(renamedTag, otherTokenTag),
+            () -> assertTrue(firstTag.startsWith("\"" + token.getJti()) && firstTag.endsWith("\""),
+                "Tag must be quoted and start with the JTI")
+        );
+    }
+}
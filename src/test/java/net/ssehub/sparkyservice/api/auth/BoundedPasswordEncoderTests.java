@@ -0,0 +1,84 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Provides tests for {@link BoundedPasswordEncoder}.
+ *
+ * @author marcel
+ */
+public class BoundedPasswordEncoderTests {
+
+    /**
+     * Encoder which blocks every hash until it is released.
+     */
+    private static class BlockingEncoder implements PasswordEncoder {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+
+    @Test
+    @DisplayName("Hashes of the delegate are returned")
+    public void delegationTest() {
+        var encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 2);
+        String hash = encoder.encode("password");
+        assertAll(
+            () -> assertTrue(encoder.matches("password", hash)),
+            () -> assertFalse(encoder.matches("wrong", hash)),
+            () -> assertEquals(3L, encoder.getMetrics().get("hashing.count"))
+        );
+        encoder.destroy();
+    }
+
+    @Test
+    @DisplayName("Hashes are rejected when the thread and the queue are occupied")
+    public void rejectionTest() throws Exception {
+        var delegate = new BlockingEncoder();
+        var encoder = new BoundedPasswordEncoder(delegate, 1, 1);
+        var running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(delegate.started.await(10, TimeUnit.SECONDS));
+        var queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        while (encoder.getMetrics().get("hashing.queue.depth").intValue() == 0) {
+            Thread.sleep(1);
+        }
+        var exception = assertThrows(PasswordHashingRejectedException.class, () -> encoder.encode("third"));
+        delegate.release.countDown();
+        assertAll(
+            () -> assertTrue(exception.getRetryAfterSeconds() >= 1),
+            () -> assertEquals("first", running.get(10, TimeUnit.SECONDS)),
+            () -> assertEquals("second", queued.get(10, TimeUnit.SECONDS)),
+            () -> assertEquals(1L, encoder.getMetrics().get("hashing.rejected"))
+        );
+        encoder.destroy();
+    }
+}
@@ -0,0 +1,54 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Provides tests for {@link CalibratedBCryptPasswordEncoder}.
+ *
+ * @author marcel
+ */
+public class CalibratedBCryptPasswordEncoderTests {
+
+    @Test
+    @DisplayName("The calibration never goes below the minimum strength")
+    public void calibrateMinimumTest() {
+        assertEquals(5, CalibratedBCryptPasswordEncoder.calibrate(0, 5));
+    }
+
+    @Test
+    @DisplayName("The calibration chooses a higher strength for a higher target")
+    public void calibrateTargetTest() {
+        int strength = CalibratedBCryptPasswordEncoder.calibrate(1_000, 4);
+        assertTrue(strength > 4, "A hash with strength 5 should be faster than one second");
+    }
+
+    @Test
+    @DisplayName("Only weaker hashes are outdated")
+    public void upgradeEncodingTest() {
+        var encoder = new CalibratedBCryptPasswordEncoder(5);
+        assertAll(
+            () -> assertFalse(encoder.upgradeEncoding(encoder.encode("password"))),
+            () -> assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password"))),
+            () -> assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password"))),
+            () -> assertFalse(encoder.upgradeEncoding("no hash")),
+            () -> assertFalse(encoder.upgradeEncoding(null))
+        );
+    }
+
+    @Test
+    @DisplayName("Hashes within the tolerance of a calibrated strength are up to date")
+    public void upgradeEncodingToleranceTest() {
+        var encoder = new CalibratedBCryptPasswordEncoder(6, CalibratedBCryptPasswordEncoder.CALIBRATION_TOLERANCE);
+        assertAll(
+            () -> assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("password"))),
+            () -> assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")))
+        );
+    }
+}
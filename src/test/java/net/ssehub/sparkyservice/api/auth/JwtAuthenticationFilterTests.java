@@ -0,0 +1,125 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.util.DateUtil;
+
+/**
+ * Provides tests for the login of {@link JwtAuthenticationFilter}.
+ *
+ * @author marcel
+ */
+public class JwtAuthenticationFilterTests {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final AtomicInteger authentications = new AtomicInteger();
+
+    private JwtTokenService jwtService;
+
+    private SparkyUser user;
+
+    private JwtAuthenticationFilter filter;
+
+    /**
+     * Creates a filter whose authentication manager accepts every password of {@link #user}.
+     */
+    @BeforeEach
+    public void setup() {
+        JwtCache.initNewCache();
+        jwtService = new JwtTokenService(UnitTestDataConfiguration.sampleJwtConf());
+        user = UserRealm.LDAP.getUserFactory().create("testuser", null, UserRole.DEFAULT, true);
+        var throttle = new LoginThrottle(new TokenBucketLimiter(1, 1, 100), new TokenBucketLimiter(0, 1, 100));
+        filter = new JwtAuthenticationFilter(authentication -> {
+            authentications.incrementAndGet();
+            return new UsernamePasswordAuthenticationToken(user, authentication.getCredentials(),
+                user.getAuthorities());
+        }, jwtService, objectMapper, throttle);
+    }
+
+    /**
+     * Creates a login request.
+     *
+     * @return Request with the credentials of {@link #user} as JSON body
+     */
+    private static MockHttpServletRequest createRequest() {
+        var request = new MockHttpServletRequest("POST", "/api/v1/authenticate");
+        request.setContentType("application/json");
+        request.setContent("{\"username\":\"testuser\",\"password\":\"pw\"}".getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    @Test
+    @DisplayName("The response holds the issued token with its expiration date")
+    public void loginResponseTest() throws Exception {
+        var request = createRequest();
+        var response = new MockHttpServletResponse();
+        var authentication = filter.attemptAuthentication(request, response);
+        filter.successfulAuthentication(request, response, null, authentication);
+
+        var info = objectMapper.readValue(response.getContentAsByteArray(), AuthenticationInfoDto.class);
+        var token = jwtService.readJwtToken(info.token.token);
+        assertAll(
+            () -> assertEquals("testuser", info.user.username),
+            () -> assertEquals(DateUtil.toString(token.getExpirationDate()), info.token.expiration),
+            () -> assertEquals(jwtService.getJwtConf().getPrefix() + " " + info.token.token,
+                response.getHeader(jwtService.getJwtConf().getHeader())),
+            () -> assertEquals("application/json;charset=UTF-8", response.getContentType().replace(" ", ""))
+        );
+    }
+
+    @Test
+    @DisplayName("Throttled logins are answered with 429 without checking the password")
+    public void throttledLoginTest() {
+        var first = filter.attemptAuthentication(createRequest(), new MockHttpServletResponse());
+        var response = new MockHttpServletResponse();
+        var second = filter.attemptAuthentication(createRequest(), response);
+        assertAll(
+            () -> assertNotNull(first),
+            () -> assertNull(second),
+            () -> assertEquals(1, authentications.get()),
+            () -> assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus()),
+            () -> assertEquals("60", response.getHeader(HttpHeaders.RETRY_AFTER))
+        );
+    }
+
+    @Test
+    @DisplayName("Logins rejected by the hashing pool are answered with 503 like other requests")
+    public void hashingRejectedLoginTest() {
+        var throttle = new LoginThrottle(new TokenBucketLimiter(1, 1, 100), new TokenBucketLimiter(0, 1, 100));
+        var overloaded = new JwtAuthenticationFilter(authentication -> {
+            throw new PasswordHashingRejectedException(2);
+        }, jwtService, objectMapper, throttle);
+        var response = new MockHttpServletResponse();
+        var result = overloaded.attemptAuthentication(createRequest(), response);
+        assertAll(
+            () -> assertNull(result),
+            () -> assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus()),
+            () -> assertEquals("2", response.getHeader(HttpHeaders.RETRY_AFTER))
+        );
+    }
+}
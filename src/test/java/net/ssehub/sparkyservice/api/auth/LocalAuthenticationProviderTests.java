@@ -0,0 +1,126 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.ssehub.sparkyservice.api.jpa.user.Password;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.LocalUserDetails;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Test class for {@link LocalAuthenticationProvider}.
+ *
+ * @author marcel
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {UnitTestDataConfiguration.class})
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class LocalAuthenticationProviderTests {
+
+    private static final String USER_NAME = "TESTNAME";
+
+    private static final String PASSWORD = "secret";
+
+    /**
+     * Label which previous versions stored for all BCrypt hashes (see <code>Password.DEFAULT_HASH_ALGORITHM</code>).
+     */
+    private static final String STORED_LEGACY_ALGORITHM = "PLAIN";
+
+    @Autowired
+    private LocalLoginDetailsMapper mapper;
+
+    @Autowired
+    private UserStorageService storageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalAuthenticationProvider provider;
+
+    /**
+     * Stores a local user and creates the provider with the default encoder.
+     */
+    @BeforeEach
+    public void setup() {
+        storageService.commit(LocalUserDetails.newLocalUser(USER_NAME, PASSWORD, UserRole.DEFAULT));
+        provider = new LocalAuthenticationProvider(mapper, PasswordHashing.defaultEncoder(), storageService);
+    }
+
+    /**
+     * Loads the stored password of the test user.
+     *
+     * @return Password entity from the database
+     */
+    private Password storedPassword() {
+        var user = (LocalUserDetails) storageService.findUserByNameAndRealm(USER_NAME, UserRealm.LOCAL);
+        return user.getPasswordEntity();
+    }
+
+    @Test
+    @DisplayName("Passwords with an outdated algorithm are rehashed after a login")
+    public void legacyAlgorithmRehashTest() {
+        jdbcTemplate.update("update user_local_password set hash_algorithm = ?", STORED_LEGACY_ALGORITHM);
+        String legacyHash = storedPassword().getPasswordString();
+        provider.authenticate(new UsernamePasswordAuthenticationToken(USER_NAME, PASSWORD));
+        Password rehashed = storedPassword();
+        assertAll(
+            () -> assertEquals(LocalUserDetails.DEFAULT_ALGO, rehashed.getHashAlgorithm()),
+            () -> assertNotEquals(legacyHash, rehashed.getPasswordString()),
+            () -> assertTrue(PasswordHashing.matches(PasswordHashing.defaultEncoder(), PASSWORD, rehashed))
+        );
+    }
+
+    @Test
+    @DisplayName("Passwords with a weaker strength are rehashed after a login")
+    public void strengthRehashTest() {
+        jdbcTemplate.update("update user_local_password set password_string = ?",
+            new BCryptPasswordEncoder(4).encode(PASSWORD));
+        provider = new LocalAuthenticationProvider(mapper, PasswordHashing.createEncoder(5), storageService);
+        provider.authenticate(new UsernamePasswordAuthenticationToken(USER_NAME, PASSWORD));
+        assertTrue(storedPassword().getPasswordString().startsWith("$2a$05$"));
+    }
+
+    @Test
+    @DisplayName("Passwords with a stronger strength aren't rehashed after a login")
+    public void strongerHashTest() {
+        String storedHash = storedPassword().getPasswordString();
+        provider = new LocalAuthenticationProvider(mapper, PasswordHashing.createEncoder(4), storageService);
+        provider.authenticate(new UsernamePasswordAuthenticationToken(USER_NAME, PASSWORD));
+        assertEquals(storedHash, storedPassword().getPasswordString());
+    }
+
+    @Test
+    @DisplayName("Wrong passwords are rejected and not rehashed")
+    public void wrongPasswordTest() {
+        jdbcTemplate.update("update user_local_password set hash_algorithm = ?", STORED_LEGACY_ALGORITHM);
+        assertThrows(BadCredentialsException.class,
+            () -> provider.authenticate(new UsernamePasswordAuthenticationToken(USER_NAME, "wrong")));
+        assertEquals(STORED_LEGACY_ALGORITHM,
+            jdbcTemplate.queryForObject("select hash_algorithm from user_local_password", String.class));
+    }
+}
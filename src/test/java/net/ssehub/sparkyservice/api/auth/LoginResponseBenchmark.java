@@ -0,0 +1,137 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenReadException;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.dto.CredentialsDto;
+import net.ssehub.sparkyservice.api.util.DateUtil;
+
+/**
+ * JMH comparison of the response of a successful login. <code>loginReparse</code> is the former way: a new
+ * {@link ObjectMapper} for the credentials, parsing and verifying the new token again for its expiration date and
+ * writing the response through an intermediate string. <code>loginFilter</code> runs the
+ * {@link JwtAuthenticationFilter}, which reuses the issued token and shared readers and writers. <br>
+ * The credentials aren't checked in both cases. Not part of the test suite, run it with {@link #main(String[])} from
+ * the test classpath; the GC profiler reports the allocated bytes per login (<code>gc.alloc.rate.norm</code>).
+ *
+ * @author marcel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginResponseBenchmark {
+
+    private static final byte[] BODY = "{\"username\":\"testuser\",\"password\":\"password\"}"
+        .getBytes(StandardCharsets.UTF_8);
+
+    private JwtTokenService jwtService;
+    private ObjectMapper springOM;
+    private JwtAuthenticationFilter filter;
+    private SparkyUser user;
+
+    /**
+     * Creates the service, the filter and the user which logs in. Logging is reduced to warnings, otherwise the
+     * console output of the filter is measured.
+     */
+    @Setup
+    public void setup() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        JwtCache.initNewCache();
+        jwtService = new JwtTokenService(UnitTestDataConfiguration.sampleJwtConf());
+        springOM = Jackson2ObjectMapperBuilder.json().build();
+        filter = new JwtAuthenticationFilter(authentication -> authentication, jwtService, springOM,
+            new LoginThrottle(new TokenBucketLimiter(0, 1, 1), new TokenBucketLimiter(0, 1, 1)));
+        user = UserRealm.LDAP.getUserFactory().create("testuser", null, UserRole.DEFAULT, true);
+    }
+
+    /**
+     * Creates a login request.
+     *
+     * @return Request with the credentials as JSON body
+     */
+    private static MockHttpServletRequest createRequest() {
+        var request = new MockHttpServletRequest("POST", "/api/v1/authenticate");
+        request.setContentType("application/json");
+        request.setContent(BODY);
+        return request;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse loginReparse() throws IOException, JwtTokenReadException {
+        var request = createRequest();
+        var response = new MockHttpServletResponse();
+        CredentialsDto cred = new ObjectMapper().readValue(request.getInputStream(), CredentialsDto.class);
+        new UsernamePasswordAuthenticationToken(cred.username.trim(), cred.password);
+        String jwt = jwtService.createFor(user);
+        var authDto = new AuthenticationInfoDto();
+        authDto.token.token = jwt;
+        authDto.token.expiration = DateUtil.toString(jwtService.readJwtToken(jwt).getExpirationDate());
+        authDto.user = user.ownDto();
+        response.addHeader(jwtService.getJwtConf().getHeader(), jwtService.getJwtConf().getPrefix() + " " + jwt);
+        response.setContentType("application/json; charset=UTF-8");
+        try (var responseWriter = response.getWriter()) {
+            responseWriter.write(springOM.writeValueAsString(authDto));
+            responseWriter.flush();
+        }
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse loginFilter() {
+        var request = createRequest();
+        var response = new MockHttpServletResponse();
+        var credentials = JwtAuthenticationFilter.extractCredentialsFromHttpRequest(request);
+        filter.successfulAuthentication(request, response, null,
+            new UsernamePasswordAuthenticationToken(user, credentials.getCredentials()));
+        return response;
+    }
+
+    /**
+     * Runs all benchmarks of this class with the GC profiler.
+     *
+     * @param args - unused
+     * @throws RunnerException
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(LoginResponseBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
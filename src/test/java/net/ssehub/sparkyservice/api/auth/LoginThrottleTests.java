@@ -0,0 +1,52 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Provides tests for {@link LoginThrottle}.
+ *
+ * @author marcel
+ */
+public class LoginThrottleTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final LoginThrottle throttle = new LoginThrottle(new TokenBucketLimiter(2, 1, 100, now::get),
+        new TokenBucketLimiter(5, 1, 100, now::get));
+
+    @Test
+    @DisplayName("Attempts for one username are limited independent of its spelling and the client")
+    public void userLimitTest() {
+        throttle.acquire("gauss", "10.0.0.1");
+        throttle.acquire(" Gauss", "10.0.0.2");
+        var e = assertThrows(LoginThrottledException.class, () -> throttle.acquire("GAUSS", "10.0.0.3"));
+        assertAll(
+            () -> assertEquals(60, e.getRetryAfterSeconds()),
+            () -> assertDoesNotThrow(() -> throttle.acquire("euler", "10.0.0.3")),
+            () -> assertEquals(1L, throttle.getMetrics().get("throttle.rejected.user"))
+        );
+    }
+
+    @Test
+    @DisplayName("Attempts of one client are limited over all usernames")
+    public void ipLimitTest() {
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("user" + i, "10.0.0.1");
+        }
+        assertThrows(LoginThrottledException.class, () -> throttle.acquire("user5", "10.0.0.1"));
+        assertAll(
+            () -> assertDoesNotThrow(() -> throttle.acquire("user5", "10.0.0.2")),
+            () -> assertDoesNotThrow(() -> throttle.acquire(null, "10.0.0.2")),
+            () -> assertEquals(1L, throttle.getMetrics().get("throttle.rejected.ip")),
+            () -> assertEquals(2, throttle.getMetrics().get("throttle.buckets.ip"))
+        );
+    }
+}
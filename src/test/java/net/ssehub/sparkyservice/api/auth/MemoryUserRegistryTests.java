@@ -0,0 +1,111 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.RecoverySettings;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.RecoverySettings.MemoryAccount;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides tests for {@link MemoryUserRegistry}.
+ *
+ * @author marcel
+ */
+public class MemoryUserRegistryTests {
+
+    /**
+     * Encoder which counts the hashes.
+     */
+    private static class CountingEncoder implements PasswordEncoder {
+
+        private final AtomicInteger encodes = new AtomicInteger();
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            encodes.incrementAndGet();
+            return "{test}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(encode(rawPassword));
+        }
+    }
+
+    /**
+     * Creates settings with the recovery account and one service account.
+     *
+     * @return Enabled settings
+     */
+    private static RecoverySettings createSettings() {
+        var settings = new RecoverySettings();
+        settings.setEnabled(true);
+        settings.setUser("admin");
+        settings.setPassword("adminPw");
+        var service = new MemoryAccount();
+        service.setPassword("servicePw");
+        service.setRole(UserRole.SERVICE);
+        settings.getUsers().put("service", service);
+        settings.getUsers().put("noPassword", new MemoryAccount());
+        return settings;
+    }
+
+    @Test
+    @DisplayName("Passwords are hashed once at startup, lookups don't hash")
+    public void hashOnceTest() {
+        var encoder = new CountingEncoder();
+        var registry = new MemoryUserRegistry(createSettings(), encoder);
+        int afterStartup = encoder.encodes.get();
+        for (int i = 0; i < 10; i++) {
+            registry.find("admin");
+            registry.find("unknown");
+        }
+        assertAll(
+            () -> assertEquals(2, afterStartup),
+            () -> assertEquals(2, encoder.encodes.get())
+        );
+    }
+
+    @Test
+    @DisplayName("All configured accounts with a password are found with their role")
+    public void accountsTest() {
+        var registry = new MemoryUserRegistry(createSettings(), new CountingEncoder());
+        var admin = registry.find("admin").orElseThrow();
+        var service = registry.find("service").orElseThrow();
+        assertAll(
+            () -> assertEquals(2, registry.getUsernames().size()),
+            () -> assertEquals(UserRole.ADMIN, admin.getRole()),
+            () -> assertEquals(UserRealm.MEMORY, admin.getRealm()),
+            () -> assertEquals("{test}adminPw", admin.getPassword()),
+            () -> assertEquals(UserRole.SERVICE, service.getRole()),
+            () -> assertTrue(registry.find("noPassword").isEmpty()),
+            () -> assertTrue(registry.find(null).isEmpty()),
+            () -> assertNotSame(admin, registry.find("admin").orElseThrow()),
+            () -> assertThrows(UnsupportedOperationException.class, () -> registry.getUsernames().add("other"))
+        );
+    }
+
+    @Test
+    @DisplayName("Disabled memory logins have no accounts")
+    public void disabledTest() {
+        var settings = createSettings();
+        settings.setEnabled(false);
+        var encoder = new CountingEncoder();
+        var registry = new MemoryUserRegistry(settings, encoder);
+        assertAll(
+            () -> assertTrue(registry.find("admin").isEmpty()),
+            () -> assertEquals(0, encoder.encodes.get())
+        );
+    }
+}
@@ -0,0 +1,86 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import net.ssehub.sparkyservice.api.jpa.user.Password;
+import net.ssehub.sparkyservice.api.user.LocalUserDetails;
+
+/**
+ * Provides tests for {@link PasswordHashing}.
+ *
+ * @author marcel
+ */
+public class PasswordHashingTests {
+
+    private final PasswordEncoder encoder = PasswordHashing.defaultEncoder();
+
+    @Test
+    @DisplayName("New hashes are stored with the default algorithm and without prefix")
+    public void encodeTest() {
+        Password password = PasswordHashing.encode(encoder, "secret");
+        assertAll(
+            () -> assertEquals(LocalUserDetails.DEFAULT_ALGO, password.getHashAlgorithm()),
+            () -> assertTrue(new BCryptPasswordEncoder().matches("secret", password.getPasswordString())),
+            () -> assertTrue(PasswordHashing.matches(encoder, "secret", password)),
+            () -> assertFalse(PasswordHashing.matches(encoder, "wrong", password)),
+            () -> assertFalse(PasswordHashing.matches(encoder, null, password)),
+            () -> assertFalse(PasswordHashing.needsRehash(encoder, password))
+        );
+    }
+
+    @Test
+    @DisplayName("BCrypt hashes with the legacy label are accepted and outdated")
+    public void legacyAlgorithmTest() {
+        var password = new Password(new BCryptPasswordEncoder().encode("secret"), PasswordHashing.LEGACY_ALGORITHM);
+        assertAll(
+            () -> assertTrue(PasswordHashing.matches(encoder, "secret", password)),
+            () -> assertTrue(PasswordHashing.needsRehash(encoder, password))
+        );
+    }
+
+    @Test
+    @DisplayName("BCrypt hashes with the upper case label of the previous versions are accepted")
+    public void legacyUpperCaseAlgorithmTest() {
+        var password = new Password(new BCryptPasswordEncoder().encode("secret"), "PLAIN");
+        assertAll(
+            () -> assertTrue(PasswordHashing.matches(encoder, "secret", password)),
+            () -> assertFalse(PasswordHashing.matches(encoder, "wrong", password)),
+            () -> assertTrue(PasswordHashing.needsRehash(encoder, password))
+        );
+    }
+
+    @Test
+    @DisplayName("Hashes with a weaker strength are outdated, stronger ones aren't")
+    public void strengthTest() {
+        Password password = PasswordHashing.encode(encoder, "secret");
+        var weakEncoder = PasswordHashing.createEncoder(4);
+        Password weakPassword = PasswordHashing.encode(weakEncoder, "secret");
+        assertAll(
+            () -> assertTrue(PasswordHashing.matches(weakEncoder, "secret", password)),
+            () -> assertFalse(PasswordHashing.needsRehash(weakEncoder, password)),
+            () -> assertFalse(PasswordHashing.needsRehash(weakEncoder, weakPassword)),
+            () -> assertTrue(PasswordHashing.needsRehash(encoder, weakPassword))
+        );
+    }
+
+    @Test
+    @DisplayName("Encoded values are split into the algorithm and the hash")
+    public void conversionTest() {
+        var password = PasswordHashing.toPassword("{bcryptpasswordencoder}$2a$04$hash");
+        assertAll(
+            () -> assertEquals("bcryptpasswordencoder", password.getHashAlgorithm()),
+            () -> assertEquals("$2a$04$hash", password.getPasswordString()),
+            () -> assertEquals("{bcryptpasswordencoder}$2a$04$hash", PasswordHashing.toEncoded(password)),
+            () -> assertThrows(IllegalArgumentException.class, () -> PasswordHashing.toPassword("$2a$04$hash"))
+        );
+    }
+}
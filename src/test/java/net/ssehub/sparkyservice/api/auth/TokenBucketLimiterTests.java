@@ -0,0 +1,130 @@
+package net.ssehub.sparkyservice.api.auth;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Provides tests for {@link TokenBucketLimiter}.
+ *
+ * @author marcel
+ */
+public class TokenBucketLimiterTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    @DisplayName("Requests above the capacity are rejected until a token is refilled")
+    public void capacityTest() {
+        var limiter = new TokenBucketLimiter(3, 6, 100, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("gauss"), "Request " + i + " rejected");
+        }
+        long wait = limiter.tryAcquire("gauss");
+        long otherKey = limiter.tryAcquire("euler");
+        now.addAndGet(wait);
+        assertAll(
+            () -> assertEquals(10_000, wait, "6 tokens per minute"),
+            () -> assertEquals(0, otherKey),
+            () -> assertEquals(0, limiter.tryAcquire("gauss"))
+        );
+    }
+
+    @Test
+    @DisplayName("Buckets are removed once they are full again")
+    public void expireIdleTest() {
+        var limiter = new TokenBucketLimiter(2, 60, 100, now::get);
+        limiter.tryAcquire("gauss");
+        limiter.tryAcquire("euler");
+        limiter.tryAcquire("euler");
+        now.addAndGet(1_000);
+        limiter.expireIdle();
+        int afterOneSecond = limiter.size();
+        now.addAndGet(1_000);
+        limiter.expireIdle();
+        assertAll(
+            () -> assertEquals(1, afterOneSecond),
+            () -> assertEquals(0, limiter.size())
+        );
+    }
+
+    @Test
+    @DisplayName("The number of buckets is bounded, further keys are still limited")
+    public void boundedSizeTest() {
+        var limiter = new TokenBucketLimiter(1, 1, 64, now::get);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(0, limiter.tryAcquire("user" + i));
+        }
+        assertAll(
+            () -> assertTrue(limiter.size() <= 64, "Size: " + limiter.size()),
+            () -> assertEquals(1_000 - limiter.size(), limiter.getUntracked()),
+            () -> assertTrue(limiter.tryAcquire("user999") > 0, "New key isn't limited")
+        );
+    }
+
+    @Test
+    @DisplayName("Full stripes drop the least recently used bucket")
+    public void leastRecentlyUsedTest() {
+        // two buckets per stripe: a key which is used between all others is never the least recently used one
+        var limiter = new TokenBucketLimiter(1, 1, 128, now::get);
+        limiter.tryAcquire("gauss");
+        boolean limited = true;
+        for (int i = 0; i < 1_000; i++) {
+            limited &= limiter.tryAcquire("gauss") > 0;
+            limiter.tryAcquire("user" + i);
+        }
+        final boolean alwaysLimited = limited;
+        assertAll(
+            () -> assertTrue(alwaysLimited, "Bucket of an active key was dropped"),
+            () -> assertTrue(limiter.getUntracked() > 0, "No bucket was dropped")
+        );
+    }
+
+    @Test
+    @DisplayName("Concurrent requests don't take more tokens than available")
+    public void concurrentTest() throws Exception {
+        var limiter = new TokenBucketLimiter(100, 1, 100, now::get);
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 8; t++) {
+                Callable<Integer> worker = () -> {
+                    int acquired = 0;
+                    for (int i = 0; i < 100; i++) {
+                        if (limiter.tryAcquire("gauss") == 0) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                };
+                results.add(executor.submit(worker));
+            }
+            int acquired = 0;
+            for (var result : results) {
+                acquired += result.get();
+            }
+            assertEquals(100, acquired);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A capacity of 0 disables the limiter")
+    public void disabledTest() {
+        var limiter = new TokenBucketLimiter(0, 1, 100, now::get);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("gauss"));
+        }
+        assertEquals(0, limiter.size());
+    }
+}
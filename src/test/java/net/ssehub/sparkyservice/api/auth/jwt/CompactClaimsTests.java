@@ -0,0 +1,61 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides unit tests for {@link CompactClaims}.
+ *
+ * @author marcel
+ */
+public class CompactClaimsTests {
+
+    @Test
+    @DisplayName("Role bitmask round trip")
+    public void rolesTest() {
+        var roles = List.of(UserRole.ADMIN, UserRole.SERVICE);
+        int mask = CompactClaims.encodeRoles(notNull(roles));
+        assertAll(
+            () -> assertEquals(roles, CompactClaims.decodeRoles(mask)),
+            () -> assertSame(CompactClaims.decodeRoles(mask), CompactClaims.decodeRoles(mask), "Not a table lookup"),
+            () -> assertThrows(IllegalArgumentException.class, () -> CompactClaims.decodeRoles(1 << 10))
+        );
+    }
+
+    @ParameterizedTest
+    @EnumSource(UserRealm.class)
+    @DisplayName("Realm code round trip")
+    public void realmTest(UserRealm realm) {
+        String code = CompactClaims.encodeRealm(notNull(realm));
+        assertAll(
+            () -> assertEquals(1, code.length()),
+            () -> assertEquals(realm, CompactClaims.decodeRealm(code))
+        );
+    }
+
+    @Test
+    @DisplayName("JTI is decoded from compact and UUID format")
+    public void jtiTest() {
+        UUID jti = notNull(UUID.randomUUID());
+        String compact = CompactClaims.encodeJti(jti);
+        assertAll(
+            () -> assertEquals(22, compact.length()),
+            () -> assertEquals(jti, CompactClaims.decodeJti(compact)),
+            () -> assertEquals(jti, CompactClaims.decodeJti(notNull(jti.toString())))
+        );
+    }
+}
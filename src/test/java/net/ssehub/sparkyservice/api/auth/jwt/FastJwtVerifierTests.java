@@ -0,0 +1,135 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides unit tests for {@link FastJwtVerifier} (through {@link JwtCodec}).
+ *
+ * @author marcel
+ */
+public class FastJwtVerifierTests {
+
+    private JwtSettings jwtConf;
+
+    private JwtCodec codec;
+
+    private FastJwtVerifier verifier;
+
+    private static JwtToken createToken(long validMillis, UserRole... roles) {
+        var principal = new AuthPrincipalImpl(UserRealm.LDAP, "testuser");
+        var expDate = new Date(System.currentTimeMillis() + validMillis);
+        return new JwtToken(notNull(UUID.randomUUID()), expDate, principal, notNull(List.of(roles)));
+    }
+
+    /**
+     * Creates a codec and a verifier with the same keys.
+     */
+    @BeforeEach
+    public void setup() {
+        jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+        codec = new JwtCodec(jwtConf);
+        verifier = new FastJwtVerifier(kid -> Keys.hmacShaKeyFor(JwtAuthTools.secretBytes(jwtConf.getSecret())));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    @DisplayName("Self issued tokens are decoded like the jjwt parser does")
+    public void sameResultAsParserTest(boolean compact) {
+        jwtConf.setCompactClaims(compact);
+        String token = new JwtCodec(jwtConf).encode(createToken(60_000, UserRole.DEFAULT, UserRole.SERVICE)
+            .withTokenGeneration(3));
+        JwtToken fast = verifier.verify(token);
+        JwtToken parsed = codec.decodeWithParser(token);
+        assertNotNull(fast, "Self issued token wasn't handled");
+        assertAll(
+            () -> assertEquals(parsed.getJti(), fast.getJti()),
+            () -> assertEquals(parsed.getExpirationDate(), fast.getExpirationDate()),
+            () -> assertEquals(parsed.getUserInfo().getName(), fast.getUserInfo().getName()),
+            () -> assertEquals(parsed.getUserInfo().getRealm(), fast.getUserInfo().getRealm()),
+            () -> assertEquals(parsed.getTokenPermissionRoles(), fast.getTokenPermissionRoles()),
+            () -> assertEquals(3, fast.getTokenGeneration()),
+            () -> assertEquals(3, parsed.getTokenGeneration())
+        );
+    }
+
+    @Test
+    @DisplayName("Expired tokens are rejected before the signature is checked")
+    public void expiredTest() {
+        String token = codec.encode(createToken(-5_000, UserRole.DEFAULT));
+        String forged = token.substring(0, token.lastIndexOf('.') + 1) + "AAAA";
+        assertAll(
+            () -> assertThrows(ExpiredJwtException.class, () -> verifier.verify(token)),
+            () -> assertThrows(ExpiredJwtException.class, () -> verifier.verify(forged))
+        );
+    }
+
+    @Test
+    @DisplayName("Modified tokens are rejected")
+    public void modifiedTokenTest() {
+        String token = codec.encode(createToken(60_000, UserRole.DEFAULT));
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        String adminPayload = payload.replace("\"DEFAULT\"", "\"ADMIN\"");
+        String forged = parts[0] + "." + Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(adminPayload.getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+        assertThrows(SignatureException.class, () -> verifier.verify(forged));
+    }
+
+    @Test
+    @DisplayName("Tokens of other issuers or algorithms are left to jjwt")
+    public void fallbackTest() {
+        var keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        String rsaToken = Jwts.builder().setSubject("a").signWith(keyPair.getPrivate()).compact();
+        String unknownClaim = Jwts.builder().setSubject("a").claim("nbf", 1).claim("rol", List.of("ADMIN"))
+            .signWith(Keys.hmacShaKeyFor(JwtAuthTools.secretBytes(jwtConf.getSecret())), SignatureAlgorithm.HS512).compact();
+        assertAll(
+            () -> assertNull(verifier.verify(rsaToken)),
+            () -> assertNull(verifier.verify(unknownClaim)),
+            () -> assertNull(verifier.verify("abc")),
+            () -> assertNull(verifier.verify("a.b.c.d")),
+            () -> assertNull(verifier.verify("!!.??.##"))
+        );
+    }
+
+    @Test
+    @DisplayName("Codec uses the key ring for tokens with a key id")
+    public void keyIdTest() {
+        codec.addKey("k1", notNull(Base64.getEncoder().encodeToString(
+            Keys.secretKeyFor(SignatureAlgorithm.HS512).getEncoded())));
+        codec.setActiveKey("k1");
+        JwtToken original = createToken(60_000, UserRole.ADMIN);
+        String token = codec.encode(original);
+        codec.setActiveKey(null);
+        assertAll(
+            () -> assertEquals(original.getJti(), codec.decode(token).getJti()),
+            () -> assertThrows(SignatureException.class, () -> verifier.verify(token))
+        );
+    }
+}
@@ -3,6 +3,7 @@ package net.ssehub.sparkyservice.api.auth.jwt;
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import java.time.LocalDate;
@@ -83,4 +84,14 @@ public class JwtAuthToolsTest {
         );
     }
 
+    /**
+     * Tests that non-ASCII secrets result in the same key as in {@link JwtCodec}, independent of the default charset.
+     */
+    @Test
+    @DisplayName("Tokens of non-ASCII secrets are accepted by the codec")
+    public void nonAsciiSecretTest() {
+        ReflectionTestUtils.setField(confValues, "secret", confValues.getSecret() + "\u00e4\u00df");
+        String jwtString = JwtAuthTools.encode(testToken, confValues);
+        assertEquals(testToken.getJti(), new JwtCodec(confValues).decode(jwtString).getJti());
+    }
 }
@@ -0,0 +1,97 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.util.DateUtil;
+
+/**
+ * JMH comparison between the static methods of {@link JwtAuthTools} and the precomputed {@link JwtCodec}.
+ * <code>decodeCodec</code> uses the {@link FastJwtVerifier}, <code>decodeCodecParser</code> the jjwt parser of the
+ * codec. Not part of the test suite, run it with {@link #main(String[])} from the test classpath 
+ * (add <code>-prof gc</code> to the JMH arguments for allocation rates).
+ *
+ * @author marcel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtCodecBenchmark {
+
+    private JwtSettings jwtConf;
+    private JwtCodec codec;
+    private JwtToken token;
+    private String encoded;
+
+    /**
+     * Creates the configuration, codec and a token which is decoded in every iteration.
+     */
+    @Setup
+    public void setup() {
+        jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+        codec = new JwtCodec(jwtConf);
+        var principal = new AuthPrincipalImpl(UserRealm.LOCAL, "testuser");
+        var expDate = DateUtil.toUtilDate(LocalDate.now().plusDays(10));
+        token = new JwtToken(notNull(UUID.randomUUID()), expDate, principal, UserRole.ADMIN);
+        encoded = codec.encode(token);
+    }
+
+    @Benchmark
+    public String encodeStatic() {
+        return JwtAuthTools.encode(token, jwtConf);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return codec.encode(token);
+    }
+
+    @Benchmark
+    public JwtToken decodeStatic() {
+        return JwtAuthTools.decodeAndExtract(encoded, jwtConf.getSecret());
+    }
+
+    @Benchmark
+    public JwtToken decodeCodec() {
+        return codec.decode(encoded);
+    }
+
+    @Benchmark
+    public JwtToken decodeCodecParser() {
+        return codec.decodeWithParser(encoded);
+    }
+
+    /**
+     * Runs all benchmarks of this class.
+     *
+     * @param args - unused
+     * @throws RunnerException
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,210 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.util.DateUtil;
+
+/**
+ * Provides unit tests for {@link JwtCodec}.
+ *
+ * @author marcel
+ */
+public class JwtCodecTests {
+
+    private JwtToken testToken;
+
+    private JwtSettings jwtConf;
+
+    private static String randomSecret() {
+        var secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        return notNull(Base64.getEncoder().encodeToString(secretKey.getEncoded()));
+    }
+
+    /**
+     * Setup a test token and a configuration.
+     */
+    @BeforeEach
+    public void setup() {
+        var principal = new AuthPrincipalImpl(UserRealm.LOCAL, "testuser");
+        var expDate = DateUtil.toUtilDate(LocalDate.now().plusDays(10));
+        testToken = new JwtToken(notNull(UUID.randomUUID()), expDate, principal, UserRole.ADMIN);
+        jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+    }
+
+    @Test
+    @DisplayName("Codec decodes tokens of the static encoder and the other way around")
+    public void compatibleWithJwtAuthToolsTest() {
+        var codec = new JwtCodec(jwtConf);
+        JwtToken decoded = codec.decode(JwtAuthTools.encode(testToken, jwtConf));
+        JwtToken decodedStatic = JwtAuthTools.decodeAndExtract(codec.encode(testToken), jwtConf.getSecret());
+        assertAll(
+            () -> assertEquals(testToken.getJti(), decoded.getJti()),
+            () -> assertEquals(testToken.getUserInfo().getName(), decoded.getUserInfo().getName()),
+            () -> assertEquals(testToken.getJti(), decodedStatic.getJti())
+        );
+    }
+
+    @Test
+    @DisplayName("Leading bearer keyword is ignored")
+    public void bearerPrefixTest() {
+        var codec = new JwtCodec(jwtConf);
+        JwtToken decoded = codec.decode("Bearer " + codec.encode(testToken));
+        assertEquals(testToken.getJti(), decoded.getJti());
+    }
+
+    @Test
+    @DisplayName("Tokens of the old key stay valid after a key rotation")
+    public void rotationTest() {
+        var codec = new JwtCodec(jwtConf);
+        String oldToken = codec.encode(testToken);
+        codec.addKey("k1", randomSecret());
+        codec.setActiveKey("k1");
+        String newToken = codec.encode(testToken);
+        assertAll(
+            () -> assertEquals(testToken.getJti(), codec.decode(oldToken).getJti()),
+            () -> assertEquals(testToken.getJti(), codec.decode(newToken).getJti()),
+            () -> assertThrows(SignatureException.class,
+                () -> JwtAuthTools.decodeAndExtract(newToken, jwtConf.getSecret()), "Token wasn't signed with k1")
+        );
+    }
+
+    @Test
+    @DisplayName("Tokens of a removed key are rejected")
+    public void removedKeyTest() {
+        var codec = new JwtCodec(jwtConf);
+        codec.addKey("k1", randomSecret());
+        codec.setActiveKey("k1");
+        String token = codec.encode(testToken);
+        codec.setActiveKey(null);
+        codec.removeKey("k1");
+        assertThrows(SignatureException.class, () -> codec.decode(token));
+    }
+
+    @Test
+    @DisplayName("Configured keys are used and the active key can't be removed")
+    public void configuredKeysTest() {
+        jwtConf.setKeys(Map.of("k1", randomSecret(), "k2", randomSecret()));
+        jwtConf.setActiveKeyId("k2");
+        var codec = new JwtCodec(jwtConf);
+        String token = codec.encode(testToken);
+        assertAll(
+            () -> assertEquals(testToken.getJti(), codec.decode(token).getJti()),
+            () -> assertEquals("k2", codec.getActiveKeyId()),
+            () -> assertThrows(IllegalArgumentException.class, () -> codec.removeKey("k2"))
+        );
+    }
+
+    @Test
+    @DisplayName("Unknown active key is rejected")
+    public void unknownActiveKeyTest() {
+        var codec = new JwtCodec(jwtConf);
+        assertThrows(IllegalArgumentException.class, () -> codec.setActiveKey("unknown"));
+    }
+
+    @Test
+    @DisplayName("RS256 tokens can be verified with the published key set only")
+    public void rs256JwksTest() throws Exception {
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        jwtConf.setAlgorithm("RS256");
+        jwtConf.setPrivateKey(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+        jwtConf.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        var codec = new JwtCodec(jwtConf);
+        String token = codec.encode(testToken);
+
+        Map<String, String> jwk = codec.getJsonWebKeySet().keys.get(0);
+        var publicKey = KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+            new BigInteger(1, Base64.getUrlDecoder().decode(jwk.get("n"))),
+            new BigInteger(1, Base64.getUrlDecoder().decode(jwk.get("e")))));
+        var claims = Jwts.parser().setSigningKey(publicKey).parseClaimsJws(token);
+        assertAll(
+            () -> assertEquals(1, codec.getJsonWebKeySet().keys.size(), "Only the public key should be published"),
+            () -> assertEquals("RS256", claims.getHeader().getAlgorithm()),
+            () -> assertEquals(jwk.get("kid"), claims.getHeader().getKeyId()),
+            () -> assertEquals(testToken.getJti().toString(), claims.getBody().getId()),
+            () -> assertEquals(testToken.getJti(), codec.decode(token).getJti())
+        );
+    }
+
+    @Test
+    @DisplayName("ES256 key pairs can be added at runtime and change the key set")
+    public void es256KeyPairTest() {
+        var codec = new JwtCodec(jwtConf);
+        String hmacToken = codec.encode(testToken);
+        String emptyTag = codec.getJsonWebKeySetTag();
+        String kid = codec.addKeyPair(Keys.keyPairFor(SignatureAlgorithm.ES256));
+        codec.setActiveKey(kid);
+        String token = codec.encode(testToken);
+        Map<String, String> jwk = codec.getJsonWebKeySet().keys.get(0);
+        assertAll(
+            () -> assertEquals(testToken.getJti(), codec.decode(token).getJti()),
+            () -> assertEquals(testToken.getJti(), codec.decode(hmacToken).getJti()),
+            () -> assertEquals("EC", jwk.get("kty")),
+            () -> assertEquals("P-256", jwk.get("crv")),
+            () -> assertEquals(kid, jwk.get("kid")),
+            () -> assertNotEquals(emptyTag, codec.getJsonWebKeySetTag())
+        );
+    }
+
+    @Test
+    @DisplayName("Shared secrets are never published")
+    public void noSecretsInKeySetTest() {
+        var codec = new JwtCodec(jwtConf);
+        codec.addKey("k1", randomSecret());
+        assertEquals(0, codec.getJsonWebKeySet().keys.size());
+    }
+
+    @Test
+    @DisplayName("Unsupported algorithms and missing keys are rejected")
+    public void unsupportedAlgorithmTest() {
+        jwtConf.setAlgorithm("EdDSA");
+        assertThrows(IllegalArgumentException.class, () -> new JwtCodec(jwtConf));
+        jwtConf.setAlgorithm("RS256");
+        assertThrows(RuntimeException.class, () -> new JwtCodec(jwtConf));
+    }
+
+    @Test
+    @DisplayName("Compact tokens are smaller and both formats are decoded")
+    public void compactClaimsTest() {
+        var codec = new JwtCodec(jwtConf);
+        String fullToken = codec.encode(testToken);
+        jwtConf.setCompactClaims(true);
+        var compactCodec = new JwtCodec(jwtConf);
+        String compactToken = compactCodec.encode(testToken);
+        JwtToken decoded = compactCodec.decode(compactToken);
+        assertAll(
+            () -> assertTrue(compactToken.length() < fullToken.length(), "Compact token isn't smaller"),
+            () -> assertEquals(testToken.getJti(), decoded.getJti()),
+            () -> assertEquals(UserRealm.LOCAL, decoded.getUserInfo().getRealm()),
+            () -> assertEquals(List.of(UserRole.ADMIN), decoded.getTokenPermissionRoles()),
+            () -> assertEquals(testToken.getJti(), compactCodec.decode(fullToken).getJti()),
+            () -> assertEquals(testToken.getJti(), codec.decode(compactToken).getJti())
+        );
+    }
+}
@@ -4,10 +4,15 @@ import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
 
 import javax.annotation.Nonnull;
@@ -34,6 +39,7 @@ import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
 import net.ssehub.sparkyservice.api.user.LdapUserFactory;
 import net.ssehub.sparkyservice.api.user.SparkyUser;
 import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.extraction.UserExtractionService;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
 
 /**
@@ -55,6 +61,9 @@ public class JwtTokenServiceTests {
 
     @Autowired 
     private UserStorageService userStorageService;
+
+    @Autowired
+    private UserExtractionService userExtractor;
     
     @Nonnull
     private final SparkyUser testUser;
@@ -87,19 +96,59 @@ public class JwtTokenServiceTests {
         );
     }
 
+    @Test
+    @DisplayName("Lock state is checked for already verified tokens")
+    public void disableVerifiedJwtTest() throws JwtTokenReadException {
+        String jwtString = jwtTokenService.createFor(testUser);
+        JwtToken tokenObj = jwtTokenService.readJwtToken(jwtString);
+        jwtTokenService.readJwtToken(jwtString);
+        jwtTokenService.disable(tokenObj.getJti());
+        assertThrows(JwtTokenReadException.class, () -> jwtTokenService.readJwtToken(jwtString));
+    }
+
+    @Test
+    @DisplayName("Already verified tokens are rejected after their signing key was removed")
+    public void removedKeyTest() throws JwtTokenReadException {
+        var codec = jwtTokenService.getCodec();
+        codec.addKey("k1", UnitTestDataConfiguration.sampleJwtConf().getSecret());
+        codec.setActiveKey("k1");
+        String jwtString = jwtTokenService.createFor(testUser);
+        jwtTokenService.readJwtToken(jwtString);
+        codec.setActiveKey(null);
+        codec.removeKey("k1");
+        assertThrows(JwtTokenReadException.class, () -> jwtTokenService.readJwtToken(jwtString));
+    }
+
     @DisplayName("Token locked state matches with state of the token")
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     public void isTokenNonLockedTest(boolean isLocked) {
         var userInfo = new AuthPrincipalImpl(testUser.getRealm(), testUser.getUsername());
         var tokenObj = new JwtToken(notNull(UUID.randomUUID()), 
-                new Date(System.currentTimeMillis()), userInfo, UserRole.ADMIN);
-        tokenObj.setLocked(isLocked);
+                new Date(System.currentTimeMillis() + 60_000), userInfo, UserRole.ADMIN).withLocked(isLocked);
         jwtStorageService.commit(tokenObj);
         JwtCache.getInstance().refreshFromStorage();
         assertEquals(isLocked, !jwtTokenService.isJitNonLocked(tokenObj.getJti()));
     }
 
+    @Test
+    @DisplayName("Expired locked tokens are not loaded from the storage")
+    public void expiredLockedTokenTest() {
+        var userInfo = new AuthPrincipalImpl(testUser.getRealm(), testUser.getUsername());
+        var expired = new JwtToken(notNull(UUID.randomUUID()), 
+                new Date(System.currentTimeMillis() - 1000), userInfo, UserRole.ADMIN).withLocked(true);
+        var valid = new JwtToken(notNull(UUID.randomUUID()), 
+                new Date(System.currentTimeMillis() + 60_000), userInfo, UserRole.ADMIN).withLocked(true);
+        jwtStorageService.commit(expired, valid);
+        JwtCache.getInstance().refreshFromStorage();
+        assertAll(
+            () -> assertEquals(valid.getExpirationDate(), jwtStorageService.findByJti(valid.getJti()).get()
+                .getExpirationDate()),
+            () -> assertTrue(jwtTokenService.isJitNonLocked(expired.getJti())),
+            () -> assertFalse(jwtTokenService.isJitNonLocked(valid.getJti()))
+        );
+    }
+
     @Test
     @DisplayName("Token is not logged when not in database test")
     public void isTokenNonLoggedNonExistingTest() { 
@@ -135,9 +184,120 @@ public class JwtTokenServiceTests {
         }
         jwtTokenService.disableAllFrom(testUserDb);
         for (JwtToken jwt : tokenArray) {
-            JwtToken tokenInCache = JwtCache.getInstance().getCachedToken(jwt.getJti()).get();
-            assertTrue(tokenInCache.isLocked(), "JWT of testUser is not locked in cache");
+            assertTrue(JwtCache.getInstance().isLocked(jwt.getJti()), "JWT of testUser is not locked in cache");
+            assertTrue(jwtStorageService.findByJti(jwt.getJti()).get().isLocked(), "JWT is not locked in storage");
         }
     }
 
+    @Test
+    @DisplayName("Disable all JWT from a user doesn't lock tokens of other users")
+    public void disableJwtTokenFromUserOnlyTest() throws JwtTokenReadException {
+        SparkyUser otherUser = new LdapUserFactory().create("otherUser", null, UserRole.DEFAULT, true);
+        userStorageService.commit(otherUser);
+        JwtToken ownToken = jwtTokenService.readJwtToken(jwtTokenService.createFor(testUser));
+        JwtToken otherToken = jwtTokenService.readJwtToken(jwtTokenService.createFor(otherUser));
+        jwtTokenService.disableAllFrom(testUser);
+        assertAll(
+            () -> assertTrue(JwtCache.getInstance().isLocked(ownToken.getJti())),
+            () -> assertTrue(jwtStorageService.findByJti(ownToken.getJti()).get().isLocked()),
+            () -> assertFalse(JwtCache.getInstance().isLocked(otherToken.getJti())),
+            () -> assertFalse(jwtStorageService.findByJti(otherToken.getJti()).get().isLocked())
+        );
+    }
+
+    @Test
+    @DisplayName("Increasing the token generation rejects all earlier tokens of the user")
+    public void invalidateAllFromTest() throws JwtTokenReadException {
+        SparkyUser otherUser = new LdapUserFactory().create("otherUser", null, UserRole.DEFAULT, true);
+        userStorageService.commit(otherUser);
+        String oldToken = jwtTokenService.createFor(testUser);
+        String otherToken = jwtTokenService.createFor(otherUser);
+        jwtTokenService.invalidateAllFrom(testUser);
+        String newToken = jwtTokenService.createFor(testUser);
+        assertAll(
+            () -> assertThrows(JwtTokenReadException.class, () -> jwtTokenService.readJwtToken(oldToken)),
+            () -> assertEquals(TokenStatus.LOCKED, 
+                jwtTokenService.verifyAll(notNull(List.of(oldToken))).get(0).getStatus()),
+            () -> assertEquals(1, jwtTokenService.readJwtToken(newToken).getTokenGeneration()),
+            () -> assertNotNull(jwtTokenService.readJwtToken(otherToken))
+        );
+    }
+
+    @Test
+    @DisplayName("Refresh creates a new token with one refresh less")
+    public void refreshTest() throws JwtTokenReadException {
+        var jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+        String jwtString = jwtTokenService.createFor(testUser);
+        JwtToken oldToken = jwtTokenService.readJwtToken(jwtString);
+        JwtToken newToken = jwtTokenService.readJwtToken(jwtTokenService.refresh(jwtString, userExtractor));
+        JwtToken newCached = jwtStorageService.findByJti(newToken.getJti()).get();
+        assertAll(
+            () -> assertNotEquals(oldToken.getJti(), newToken.getJti()),
+            () -> assertEquals(testUser.getUsername(), newToken.getUserInfo().getName()),
+            () -> assertEquals(jwtConf.getMaxRefreshes() - 1, newCached.getRemainingRefreshes()),
+            () -> assertTrue(jwtTokenService.isJitNonLocked(oldToken.getJti()), "Old token must stay valid")
+        );
+    }
+
+    @Test
+    @DisplayName("A token can only be refreshed once")
+    public void refreshTwiceTest() throws JwtTokenReadException {
+        String jwtString = jwtTokenService.createFor(testUser);
+        jwtTokenService.refresh(jwtString, userExtractor);
+        assertThrows(JwtTokenReadException.class, () -> jwtTokenService.refresh(jwtString, userExtractor));
+    }
+
+    @Test
+    @DisplayName("Locked tokens can't be refreshed")
+    public void refreshLockedTest() throws JwtTokenReadException {
+        String jwtString = jwtTokenService.createFor(testUser);
+        jwtTokenService.disable(jwtTokenService.readJwtToken(jwtString).getJti());
+        assertThrows(JwtTokenReadException.class, () -> jwtTokenService.refresh(jwtString, userExtractor));
+    }
+
+    @Test
+    @DisplayName("Tokens without remaining refreshes can't be refreshed")
+    public void refreshExhaustedTest() {
+        var jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+        jwtConf.setMaxRefreshes(0);
+        jwtTokenService = new JwtTokenService(jwtConf);
+        String jwtString = jwtTokenService.createFor(testUser);
+        assertThrows(JwtTokenReadException.class, () -> jwtTokenService.refresh(jwtString, userExtractor));
+    }
+
+    @Test
+    @DisplayName("Tokens of disabled users can't be refreshed")
+    public void refreshDisabledUserTest() {
+        String jwtString = jwtTokenService.createFor(testUser);
+        var dbUser = userStorageService.refresh(testUser);
+        dbUser.setEnabled(false);
+        userStorageService.commit(dbUser);
+        assertThrows(JwtTokenReadException.class, () -> jwtTokenService.refresh(jwtString, userExtractor));
+    }
+
+    @Test
+    @DisplayName("Batch verification reports the status of each token")
+    public void verifyAllTest() throws JwtTokenReadException {
+        String validToken = jwtTokenService.createFor(testUser);
+        String lockedToken = jwtTokenService.createFor(testUser);
+        jwtTokenService.disable(jwtTokenService.readJwtToken(lockedToken).getJti());
+        var userInfo = new AuthPrincipalImpl(testUser.getRealm(), testUser.getUsername());
+        String expiredToken = jwtTokenService.getCodec().encode(new JwtToken(notNull(UUID.randomUUID()), 
+            new Date(System.currentTimeMillis() - 5_000), userInfo, UserRole.ADMIN));
+        var foreignCodec = new JwtCodec(UnitTestDataConfiguration.sampleJwtConf());
+        String foreignToken = foreignCodec.encode(new JwtToken(notNull(UUID.randomUUID()), 
+            new Date(System.currentTimeMillis() + 60_000), userInfo, UserRole.ADMIN));
+
+        var results = jwtTokenService.verifyAll(
+            notNull(Arrays.asList(validToken, lockedToken, expiredToken, foreignToken, "abc", null)));
+        assertAll(
+            () -> assertEquals(TokenStatus.VALID, results.get(0).getStatus()),
+            () -> assertEquals(testUser.getUsername(), results.get(0).getToken().get().getUserInfo().getName()),
+            () -> assertEquals(TokenStatus.LOCKED, results.get(1).getStatus()),
+            () -> assertEquals(TokenStatus.EXPIRED, results.get(2).getStatus()),
+            () -> assertEquals(TokenStatus.INVALID_SIGNATURE, results.get(3).getStatus()),
+            () -> assertEquals(TokenStatus.INVALID, results.get(4).getStatus()),
+            () -> assertEquals(TokenStatus.INVALID, results.get(5).getStatus())
+        );
+    }
 }
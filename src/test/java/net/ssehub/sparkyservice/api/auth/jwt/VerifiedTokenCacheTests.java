@@ -0,0 +1,117 @@
+package net.ssehub.sparkyservice.api.auth.jwt;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides unit tests for {@link VerifiedTokenCache}.
+ *
+ * @author marcel
+ */
+public class VerifiedTokenCacheTests {
+
+    private static JwtToken createToken(long validMillis) {
+        var principal = new AuthPrincipalImpl(UserRealm.LOCAL, "testuser");
+        var expDate = new Date(System.currentTimeMillis() + validMillis);
+        return new JwtToken(notNull(UUID.randomUUID()), expDate, principal, UserRole.DEFAULT);
+    }
+
+    @Test
+    @DisplayName("Cached token is found and counted as hit")
+    public void cacheHitTest() {
+        var cache = new VerifiedTokenCache(10);
+        var token = createToken(60_000);
+        String key = VerifiedTokenCache.digest("header.payload.signature");
+        cache.put(key, token);
+        var cached = cache.get(key);
+        assertAll(
+            () -> assertTrue(cached.isPresent(), "Token not cached"),
+            () -> assertEquals(token.getJti(), cached.get().getJti()),
+            () -> assertEquals(1, cache.getHitCount()),
+            () -> assertEquals(0, cache.getMissCount())
+        );
+    }
+
+    @Test
+    @DisplayName("Tokens which were verified with another version of the keys are dropped")
+    public void keyVersionTest() {
+        var cache = new VerifiedTokenCache(10);
+        String key = VerifiedTokenCache.digest("header.payload.signature");
+        cache.put(key, createToken(60_000), 1);
+        assertAll(
+            () -> assertTrue(cache.get(key, 1).isPresent(), "Token not cached"),
+            () -> assertFalse(cache.get(key, 2).isPresent(), "Token of old keys returned"),
+            () -> assertFalse(cache.get(key, 1).isPresent(), "Outdated token not removed")
+        );
+    }
+
+    @Test
+    @DisplayName("Unknown token is counted as miss")
+    public void cacheMissTest() {
+        var cache = new VerifiedTokenCache(10);
+        assertAll(
+            () -> assertFalse(cache.get(VerifiedTokenCache.digest("unknown")).isPresent()),
+            () -> assertEquals(0, cache.getHitCount()),
+            () -> assertEquals(1, cache.getMissCount())
+        );
+    }
+
+    @Test
+    @DisplayName("Expired tokens are dropped from the cache")
+    public void expiredTokenTest() {
+        var cache = new VerifiedTokenCache(10);
+        String key = VerifiedTokenCache.digest("expired");
+        cache.put(key, createToken(-1));
+        assertAll(
+            () -> assertFalse(cache.get(key).isPresent(), "Expired token was returned"),
+            () -> assertEquals(0, cache.size())
+        );
+    }
+
+    @Test
+    @DisplayName("Cache never grows beyond its maximum size")
+    public void boundedSizeTest() {
+        var cache = new VerifiedTokenCache(20);
+        for (int i = 0; i < 100; i++) {
+            cache.put(VerifiedTokenCache.digest("token" + i), createToken(60_000));
+        }
+        assertTrue(cache.size() <= 20, "Cache size is " + cache.size());
+    }
+
+    @Test
+    @DisplayName("Tokens are immutable and shared without copies")
+    public void sharedTokenTest() {
+        var cache = new VerifiedTokenCache(10);
+        String key = VerifiedTokenCache.digest("shared");
+        JwtToken token = createToken(60_000);
+        cache.put(key, token);
+        token.withLocked(true);
+        assertAll(
+            () -> assertSame(token, cache.get(key).get()),
+            () -> assertFalse(cache.get(key).get().isLocked())
+        );
+    }
+
+    @Test
+    @DisplayName("Different tokens have different keys")
+    public void digestTest() {
+        assertAll(
+            () -> assertEquals(VerifiedTokenCache.digest("a.b.c"), VerifiedTokenCache.digest("a.b.c")),
+            () -> assertNotEquals(VerifiedTokenCache.digest("a.b.c"), VerifiedTokenCache.digest("a.b.d"))
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import net.ssehub.sparkyservice.api.auth.BoundedPasswordEncoder;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
+
+/**
+ * Provides tests for {@link LdapBindCache}.
+ *
+ * @author marcel
+ */
+public class LdapBindCacheTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final BoundedPasswordEncoder pool = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 10);
+
+    /**
+     * Stops the hashing pool.
+     */
+    @AfterEach
+    public void tearDown() {
+        pool.destroy();
+    }
+
+    /**
+     * Creates a cache with the test clock.
+     *
+     * @param ttlSeconds
+     * @param maxSize
+     * @return New cache
+     */
+    private LdapBindCache createCache(long ttlSeconds, int maxSize) {
+        return createCache(ttlSeconds, maxSize, pool);
+    }
+
+    /**
+     * Creates a cache with the test clock and its own hashing pool.
+     *
+     * @param ttlSeconds
+     * @param maxSize
+     * @param hashingPool - Computes the verifiers
+     * @return New cache
+     */
+    private LdapBindCache createCache(long ttlSeconds, int maxSize, BoundedPasswordEncoder hashingPool) {
+        var settings = new LdapSettings.BindCache();
+        settings.setTtlSeconds(ttlSeconds);
+        settings.setMaxSize(maxSize);
+        settings.setStrength(4);
+        return new LdapBindCache(settings, hashingPool, now::get);
+    }
+
+    @Test
+    @DisplayName("Only the cached password of the user matches")
+    public void matchesTest() {
+        var cache = createCache(60, 10);
+        cache.put("gauss", "password");
+        assertAll(
+            () -> assertTrue(cache.matches("gauss", "password")),
+            () -> assertFalse(cache.matches("gauss", "wrong")),
+            () -> assertFalse(cache.matches("gauss", null)),
+            () -> assertFalse(cache.matches("euler", "password")),
+            () -> assertEquals(1L, cache.getMetrics().get("cache.hits")),
+            () -> assertEquals(3L, pool.getMetrics().get("hashing.count"), "Verifiers must use the shared pool")
+        );
+    }
+
+    @Test
+    @DisplayName("Binds expire after the TTL and can be evicted")
+    public void expirationTest() {
+        var cache = createCache(60, 10);
+        cache.put("gauss", "password");
+        cache.put("euler", "password");
+        cache.evict("euler");
+        now.addAndGet(61_000);
+        assertAll(
+            () -> assertFalse(cache.matches("gauss", "password")),
+            () -> assertFalse(cache.matches("euler", "password"))
+        );
+    }
+
+    @Test
+    @DisplayName("A full cache replaces expired binds and caches nothing else")
+    public void maxSizeTest() {
+        var cache = createCache(60, 1);
+        cache.put("gauss", "password");
+        cache.put("euler", "password");
+        boolean secondCached = cache.matches("euler", "password");
+        now.addAndGet(61_000);
+        cache.put("euler", "password");
+        assertAll(
+            () -> assertFalse(secondCached),
+            () -> assertTrue(cache.matches("euler", "password")),
+            () -> assertEquals(1, cache.getMetrics().get("cache.size"))
+        );
+    }
+
+    @Test
+    @DisplayName("Nothing is cached without a TTL")
+    public void disabledTest() {
+        var cache = createCache(0, 10);
+        cache.put("gauss", "password");
+        assertAll(
+            () -> assertFalse(cache.isEnabled()),
+            () -> assertFalse(cache.matches("gauss", "password"))
+        );
+    }
+
+    @Test
+    @DisplayName("A full hashing pool is a cache miss and caches nothing")
+    public void rejectedHashTest() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var blockingPool = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4) {
+
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        }, 1, 1);
+        var cache = createCache(60, 10, blockingPool);
+        cache.put("gauss", "password");
+        var running = CompletableFuture.runAsync(() -> blockingPool.encode("first"));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        var queued = CompletableFuture.runAsync(() -> blockingPool.encode("second"));
+        while (blockingPool.getMetrics().get("hashing.queue.depth").intValue() == 0) {
+            Thread.sleep(1);
+        }
+        boolean hit = cache.matches("gauss", "password");
+        cache.put("euler", "password");
+        release.countDown();
+        running.get(10, TimeUnit.SECONDS);
+        queued.get(10, TimeUnit.SECONDS);
+        assertAll(
+            () -> assertFalse(hit),
+            () -> assertEquals(2L, cache.getMetrics().get("cache.rejected")),
+            () -> assertEquals(1, cache.getMetrics().get("cache.size"))
+        );
+        blockingPool.destroy();
+    }
+}
@@ -0,0 +1,170 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Tests {@link LdapDirectorySync} against an embedded in-memory LDAP server with a large directory.
+ *
+ * @author marcel
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {UnitTestDataConfiguration.class})
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class LdapDirectorySyncTests {
+
+    private static final String BASE_DN = "dc=example,dc=com";
+
+    private static final String PEOPLE_DN = "ou=people," + BASE_DN;
+
+    private static final int USERS = 20_000;
+
+    private static final int PAGE_SIZE = 500;
+
+    @Autowired
+    private UserStorageService storageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private InMemoryDirectoryServer server;
+
+    private PooledLdapContextSource contextSource;
+
+    private LdapDirectorySync sync;
+
+    /**
+     * Starts the LDAP server with {@link #USERS} users.
+     *
+     * @throws Exception
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        var config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials("cn=admin," + BASE_DN, "adminPw");
+        config.setSchema(null);
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: " + BASE_DN, "objectClass: domain", "dc: example");
+        server.add("dn: " + PEOPLE_DN, "objectClass: organizationalUnit", "ou: people");
+        server.add("dn: cn=no-login," + PEOPLE_DN, "objectClass: person", "cn: no-login", "sn: Without uid");
+        for (int i = 0; i < USERS; i++) {
+            server.add(new Entry("uid=user" + i + "," + PEOPLE_DN,
+                new Attribute("objectClass", "person", "inetOrgPerson"),
+                new Attribute("uid", "user" + i),
+                new Attribute("sn", "User"),
+                new Attribute("displayName", "User Number " + i),
+                new Attribute("mail", "user" + i + "@example.com")));
+        }
+        server.startListening();
+        contextSource = new PooledLdapContextSource("ldap://localhost:" + server.getListenPort() + "/" + BASE_DN,
+            "cn=admin," + BASE_DN, "adminPw", new LdapSettings.Pool());
+        var settings = new LdapSettings.Sync();
+        settings.setBase("ou=people");
+        settings.setPageSize(PAGE_SIZE);
+        sync = new LdapDirectorySync(contextSource.getUnpooledContextSource(), storageService, settings);
+    }
+
+    /**
+     * Stops the server and closes the pool.
+     *
+     * @throws Exception
+     */
+    @AfterEach
+    public void shutdown() throws Exception {
+        contextSource.destroy();
+        server.shutDown(true);
+    }
+
+    /**
+     * Counts the stored LDAP users.
+     *
+     * @return Number of users in the LDAP realm
+     */
+    private int countLdapUsers() {
+        return jdbcTemplate.queryForObject("select count(*) from user_stored where realm = ?", Integer.class,
+            UserRealm.LDAP.name());
+    }
+
+    @Test
+    @DisplayName("All users of the directory are stored page by page")
+    public void initialSyncTest() {
+        int written = sync.synchronize();
+        var user = storageService.findUserByNameAndRealm("user42", UserRealm.LDAP);
+        var metrics = sync.getMetrics();
+        assertAll(
+            () -> assertEquals(USERS, written),
+            () -> assertEquals(USERS, countLdapUsers()),
+            () -> assertEquals("User Number 42", user.getFullname()),
+            () -> assertEquals("user42@example.com", user.getSettings().getEmail_address()),
+            () -> assertEquals(UserRole.DEFAULT, user.getRole()),
+            () -> assertEquals(USERS / PAGE_SIZE + 1, metrics.get("sync.checkpoint.pages")),
+            () -> assertEquals(USERS, metrics.get("sync.last.entries")),
+            () -> assertEquals(0, metrics.get("sync.running"))
+        );
+    }
+
+    @Test
+    @DisplayName("Only changed and new users are written again")
+    public void incrementalSyncTest() throws Exception {
+        sync.synchronize();
+        int unchangedWritten = sync.synchronize();
+        server.modify("uid=user7," + PEOPLE_DN, new Modification(ModificationType.REPLACE, "displayName", "Seven"));
+        server.modify("uid=user8," + PEOPLE_DN, new Modification(ModificationType.REPLACE, "displayName", "Eight"));
+        server.add("dn: uid=newcomer," + PEOPLE_DN, "objectClass: person", "uid: newcomer", "sn: New");
+        int changedWritten = sync.synchronize();
+        assertAll(
+            () -> assertEquals(0, unchangedWritten),
+            () -> assertEquals(3, changedWritten),
+            () -> assertEquals(USERS + 1, countLdapUsers()),
+            () -> assertEquals("Seven", storageService.findUserByNameAndRealm("user7", UserRealm.LDAP).getFullname())
+        );
+    }
+
+    @Test
+    @DisplayName("The sync keeps the values which are managed by this service")
+    public void keepsStoredValuesTest() {
+        var stored = storageService.upsert(
+            UserRealm.LDAP.getUserFactory().create("user1", null, UserRole.DEFAULT, true));
+        stored.setRole(UserRole.ADMIN);
+        stored.getSettings().setEmail_address("own@example.com");
+        storageService.commit(stored);
+
+        sync.synchronize();
+        var user = storageService.findUserByNameAndRealm("user1", UserRealm.LDAP);
+        assertAll(
+            () -> assertEquals(UserRole.ADMIN, user.getRole()),
+            () -> assertEquals("own@example.com", user.getSettings().getEmail_address()),
+            () -> assertEquals("User Number 1", user.getFullname())
+        );
+    }
+}
@@ -0,0 +1,193 @@
+package net.ssehub.sparkyservice.api.auth.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.ldap.authentication.BindAuthenticator;
+import org.springframework.security.ldap.authentication.LdapAuthenticationProvider;
+import org.springframework.security.ldap.userdetails.DefaultLdapAuthoritiesPopulator;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+
+import net.ssehub.sparkyservice.api.auth.BoundedPasswordEncoder;
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.LdapSettings;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.LdapUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Tests the LDAP login with {@link PooledLdapContextSource} and {@link CachingLdapAuthenticationProvider} against an
+ * embedded in-memory LDAP server.
+ *
+ * @author marcel
+ */
+@ExtendWith(SpringExtension.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {UnitTestDataConfiguration.class})
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class LdapLoginTests {
+
+    private static final String BASE_DN = "dc=example,dc=com";
+
+    private static final String MANAGER_DN = "cn=admin," + BASE_DN;
+
+    private static final String USER_DN = "uid=gauss," + BASE_DN;
+
+    @Autowired
+    private UserStorageService storageService;
+
+    private InMemoryDirectoryServer server;
+
+    private PooledLdapContextSource contextSource;
+
+    /**
+     * Starts the LDAP server with the user "gauss" and creates a pool for it.
+     *
+     * @throws Exception
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        var config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.addAdditionalBindCredentials(MANAGER_DN, "adminPw");
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", findFreePort()));
+        config.setSchema(null);
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: " + BASE_DN, "objectClass: domain", "dc: example");
+        server.add("dn: " + USER_DN, "objectClass: inetOrgPerson", "uid: gauss", "cn: Carl Friedrich Gauss",
+            "sn: Gauss", "userPassword: password");
+        server.startListening();
+        var poolSettings = new LdapSettings.Pool();
+        poolSettings.setMaxActive(2);
+        contextSource = new PooledLdapContextSource("ldap://localhost:" + server.getListenPort() + "/" + BASE_DN,
+            MANAGER_DN, "adminPw", poolSettings);
+    }
+
+    /**
+     * Stops the server and closes the pool.
+     *
+     * @throws Exception
+     */
+    @AfterEach
+    public void shutdown() throws Exception {
+        contextSource.destroy();
+        server.shutDown(true);
+    }
+
+    /**
+     * Finds a port for the server which stays the same after a restart.
+     *
+     * @return Free local port
+     * @throws IOException
+     */
+    private static int findFreePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Creates a bind provider like the security configuration does.
+     *
+     * @return Provider which binds against the test server
+     */
+    private AuthenticationProvider createLdapProvider() {
+        var authenticator = new BindAuthenticator(contextSource);
+        authenticator.setUserDnPatterns(new String[] {"uid={0}"});
+        var provider = new LdapAuthenticationProvider(authenticator,
+            new DefaultLdapAuthoritiesPopulator(contextSource, ""));
+        provider.setUserDetailsContextMapper(new SparkyLdapUserDetailsMapper(storageService));
+        return provider;
+    }
+
+    /**
+     * Creates a caching provider in front of the bind provider.
+     *
+     * @return Provider with an enabled bind cache
+     */
+    private AuthenticationProvider createCachingProvider() {
+        var cacheSettings = new LdapSettings.BindCache();
+        cacheSettings.setTtlSeconds(60);
+        cacheSettings.setStrength(4);
+        var cache = new LdapBindCache(cacheSettings, new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 10),
+            System::currentTimeMillis);
+        return new CachingLdapAuthenticationProvider(createLdapProvider(), cache, storageService);
+    }
+
+    /**
+     * Logs in the test user.
+     *
+     * @param provider
+     * @param password
+     * @return The authenticated principal
+     */
+    private static Object login(AuthenticationProvider provider, String password) {
+        return provider.authenticate(new UsernamePasswordAuthenticationToken("gauss", password)).getPrincipal();
+    }
+
+    @Test
+    @DisplayName("Logins reuse one pooled connection for their searches")
+    public void pooledLoginTest() {
+        var provider = createLdapProvider();
+        Object principal = login(provider, "password");
+        login(provider, "password");
+        login(provider, "password");
+        assertAll(
+            () -> assertTrue(principal instanceof LdapUser),
+            () -> assertEquals(UserRealm.LDAP, ((LdapUser) principal).getRealm()),
+            () -> assertEquals(0, contextSource.getMetrics().get("pool.active")),
+            () -> assertEquals(1, contextSource.getMetrics().get("pool.idle")),
+            () -> assertThrows(BadCredentialsException.class, () -> login(provider, "wrong"))
+        );
+    }
+
+    @Test
+    @DisplayName("Broken pooled connections are replaced after a server restart")
+    public void validationTest() throws Exception {
+        var provider = createLdapProvider();
+        login(provider, "password");
+        server.shutDown(true);
+        server.startListening();
+        assertTrue(login(provider, "password") instanceof LdapUser);
+    }
+
+    @Test
+    @DisplayName("Repeated logins with the same password don't need the server")
+    public void bindCacheTest() throws Exception {
+        var provider = createCachingProvider();
+        login(provider, "password");
+        server.delete(USER_DN);
+        Object cachedPrincipal = login(provider, "password");
+        assertAll(
+            () -> assertTrue(cachedPrincipal instanceof LdapUser),
+            () -> assertThrows(BadCredentialsException.class, () -> login(provider, "wrong")),
+            () -> assertThrows(BadCredentialsException.class, () -> login(provider, "password"),
+                "A failed login must remove the cached bind")
+        );
+    }
+}
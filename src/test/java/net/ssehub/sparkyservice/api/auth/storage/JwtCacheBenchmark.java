@@ -0,0 +1,142 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH contention benchmark for {@link JwtCache}: 64 request threads check the lock state of tokens while another
+ * thread revokes tokens. Half of the checked tokens are revoked, the storage simulates a database which needs 1 ms 
+ * per write. 
+ * Not part of the test suite, run it with {@link #main(String[])} from the test classpath.
+ *
+ * @author marcel
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtCacheBenchmark {
+
+    private static final int TOKENS = 10_000;
+
+    /**
+     * Storage which only waits instead of writing to a database.
+     */
+    private static class SlowStorage extends JwtStorageService {
+
+        /**
+         * Storage without repositories.
+         */
+        @SuppressWarnings("null")
+        SlowStorage() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public List<TokenExpiration> findLockedExpirations(String afterJti, int pageSize) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<TokenExpiration> findExpirations(Collection<UUID> jtis) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public long findLatestRevocationVersion() {
+            return 0;
+        }
+
+        @Override
+        public List<TokenGeneration> findTokenGenerations() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<TokenExpiration> lock(Collection<UUID> jtis) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            return new ArrayList<>();
+        }
+    }
+
+    @Param({"false", "true"})
+    private boolean bloomFilter;
+
+    private UUID[] jtis;
+
+    /**
+     * Creates the cache and revokes every second token.
+     */
+    @Setup
+    public void setup() {
+        jtis = new UUID[TOKENS];
+        var revoked = new ArrayList<UUID>();
+        for (int i = 0; i < TOKENS; i++) {
+            jtis[i] = UUID.randomUUID();
+            if (i % 2 == 0) {
+                revoked.add(jtis[i]);
+            }
+        }
+        JwtCache.initNewCache(new SlowStorage(), bloomFilter);
+        JwtCache.getInstance().loadFromStorage(JwtCache.DEFAULT_PAGE_SIZE);
+        JwtCache.getInstance().revoke(revoked);
+    }
+
+    /**
+     * Checks the lock state of a random token like every authorized request does.
+     * 
+     * @return Lock state
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(64)
+    public boolean reader() {
+        return JwtCache.getInstance().isLocked(jtis[ThreadLocalRandom.current().nextInt(TOKENS)]);
+    }
+
+    /**
+     * Revokes a new token.
+     */
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void writer() {
+        JwtCache.getInstance().revoke(notNull(List.of(UUID.randomUUID())));
+    }
+
+    /**
+     * Runs all benchmarks of this class.
+     *
+     * @param args - unused
+     * @throws RunnerException
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,133 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
+import net.ssehub.sparkyservice.api.jpa.token.JpaRevocationEvent;
+
+/**
+ * Provides tests for {@link JwtCacheLoader}.
+ *
+ * @author marcel
+ */
+public class JwtCacheLoaderTests {
+
+    private static final int PAGE_SIZE = 2;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private JwtStorageService storage;
+
+    private JwtCacheLoader loader;
+
+    /**
+     * Creates a loader for a storage mock without locked tokens.
+     */
+    @BeforeEach
+    public void setup() {
+        storage = mock(JwtStorageService.class);
+        when(storage.findTokenGenerations()).thenReturn(List.of());
+        when(storage.findLockedExpirations(any(), anyInt())).thenReturn(List.of());
+        JwtCache.initNewCache(storage, false);
+        JwtSettings jwtConf = new JwtSettings();
+        jwtConf.setRevocationPageSize(PAGE_SIZE);
+        loader = new JwtCacheLoader(jwtConf, storage, now::get);
+    }
+
+    /**
+     * Resets the global cache.
+     */
+    @AfterEach
+    public void tearDown() {
+        JwtCache.initNewCache();
+    }
+
+    /**
+     * Creates a revocation of an unexpired token.
+     *
+     * @return Locked token with a random JTI
+     */
+    private static TokenExpiration createLocked() {
+        return new JpaRevocationEvent(UUID.randomUUID().toString(), new Date(System.currentTimeMillis() + 60_000));
+    }
+
+    @Test
+    @DisplayName("A failed startup load is retried by the poll after a delay")
+    public void retryAfterFailureTest() {
+        when(storage.findLatestRevocationVersion()).thenThrow(new IllegalStateException("database down"))
+            .thenReturn(0L);
+        loader.loadRevocations();
+        assertFalse(JwtCache.getInstance().isReady(), "Cache is ready after a failed load");
+        assertEquals(1L, loader.getMetrics().get("revocations.loadFailures"));
+
+        loader.pollRevocations();
+        verify(storage, times(1)).findLatestRevocationVersion();
+        now.addAndGet(1_000);
+        loader.pollRevocations();
+        assertTrue(JwtCache.getInstance().isReady(), "Cache isn't ready after the retry");
+    }
+
+    @Test
+    @DisplayName("The delay between the load attempts doubles with each failure")
+    public void retryBackoffTest() {
+        when(storage.findLatestRevocationVersion()).thenThrow(new IllegalStateException("database down"))
+            .thenThrow(new IllegalStateException("database down"))
+            .thenReturn(0L);
+        loader.loadRevocations();
+        now.addAndGet(1_000);
+        loader.pollRevocations();
+        now.addAndGet(1_000);
+        loader.pollRevocations();
+        verify(storage, times(2)).findLatestRevocationVersion();
+        assertFalse(JwtCache.getInstance().isReady(), "Retried before the doubled delay passed");
+
+        now.addAndGet(1_000);
+        loader.pollRevocations();
+        assertAll(
+            () -> assertTrue(JwtCache.getInstance().isReady(), "Cache isn't ready after the retry"),
+            () -> assertEquals(2L, loader.getMetrics().get("revocations.loadFailures"))
+        );
+    }
+
+    @Test
+    @DisplayName("A load which fails within the pages leaves the cache not ready until the retry read all pages")
+    public void failedPageTest() {
+        TokenExpiration first = createLocked();
+        TokenExpiration second = createLocked();
+        TokenExpiration last = createLocked();
+        when(storage.findLockedExpirations(null, PAGE_SIZE)).thenReturn(List.of(first, second));
+        when(storage.findLockedExpirations(second.getJti(), PAGE_SIZE))
+            .thenThrow(new IllegalStateException("connection lost"))
+            .thenReturn(List.of(last));
+        loader.loadRevocations();
+        assertFalse(JwtCache.getInstance().isReady(), "Cache is ready after a failed page");
+
+        now.addAndGet(1_000);
+        loader.pollRevocations();
+        JwtCache cache = JwtCache.getInstance();
+        assertAll(
+            () -> assertTrue(cache.isReady(), "Cache isn't ready after the retry"),
+            () -> assertTrue(cache.isLocked(UUID.fromString(first.getJti())), "Token of the first page isn't locked"),
+            () -> assertTrue(cache.isLocked(UUID.fromString(last.getJti())), "Token of the last page isn't locked")
+        );
+    }
+}
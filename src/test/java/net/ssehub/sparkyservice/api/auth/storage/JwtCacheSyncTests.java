@@ -0,0 +1,272 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.testconf.JwtTestBeanConf;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.LdapUserFactory;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Tests the propagation of revocations between two {@link JwtCache} instances (nodes) which share one database.
+ *
+ * @author marcel
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {UnitTestDataConfiguration.class, JwtTestBeanConf.class})
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@ExtendWith(SpringExtension.class)
+public class JwtCacheSyncTests {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final long POLL_INTERVAL = 60_000;
+
+    @Autowired
+    private JwtStorageService jwtStorageService;
+
+    @Autowired
+    private UserStorageService userStorageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Nonnull
+    private final SparkyUser testUser;
+
+    private JwtCache nodeA;
+
+    private JwtCache nodeB;
+
+    public JwtCacheSyncTests() {
+        testUser = new LdapUserFactory().create("testUser", null, UserRole.DEFAULT, true);
+    }
+
+    /**
+     * Creates two loaded caches for the same storage. The global cache (used to issue tokens) gets the storage of
+     * this context.
+     */
+    @BeforeEach
+    public void setup() {
+        userStorageService.commit(testUser);
+        JwtCache.initNewCache(jwtStorageService, false);
+        nodeA = JwtCache.create(jwtStorageService, false);
+        nodeB = JwtCache.create(jwtStorageService, true);
+        nodeA.loadFromStorage(PAGE_SIZE);
+        nodeB.loadFromStorage(PAGE_SIZE);
+    }
+
+    /**
+     * Creates a new unlocked token of the test user without storing it.
+     *
+     * @return New token
+     */
+    private JwtToken createToken() {
+        var jwtService = new JwtTokenService(UnitTestDataConfiguration.sampleJwtConf());
+        var userInfo = jwtService.getCodec().decode(jwtService.createFor(testUser)).getUserInfo();
+        return new JwtToken(notNull(UUID.randomUUID()), new Date(System.currentTimeMillis() + 60_000), userInfo,
+            UserRole.DEFAULT);
+    }
+
+    /**
+     * Stores a new unlocked token of the test user.
+     *
+     * @return The stored token
+     */
+    private JwtToken storeToken() {
+        JwtToken token = createToken();
+        jwtStorageService.commit(token);
+        return token;
+    }
+
+    @Test
+    @DisplayName("Tokens locked on one node are locked on the other node after polling")
+    public void propagationTest() {
+        JwtToken token = storeToken();
+        nodeA.revoke(notNull(List.of(token.getJti())));
+        boolean lockedBeforePolling = nodeB.isLocked(token.getJti());
+        int applied = nodeB.pollRevocations(PAGE_SIZE);
+        assertAll(
+            () -> assertTrue(nodeA.isLocked(token.getJti())),
+            () -> assertFalse(lockedBeforePolling),
+            () -> assertEquals(1, applied),
+            () -> assertTrue(nodeB.isLocked(token.getJti())),
+            () -> assertEquals(0, nodeB.pollRevocations(PAGE_SIZE), "Events must only be applied once")
+        );
+    }
+
+    @Test
+    @DisplayName("Revocations of tokens which aren't stored yet reach the other node")
+    public void unstoredTokenPropagationTest() {
+        UUID jti = notNull(UUID.randomUUID());
+        nodeA.revoke(notNull(List.of(jti)));
+        int applied = nodeB.pollRevocations(PAGE_SIZE);
+        assertAll(
+            () -> assertEquals(1, applied),
+            () -> assertTrue(nodeB.isLocked(jti))
+        );
+    }
+
+    @Test
+    @DisplayName("Revocations of tokens stored later are kept until the stored expiration is republished")
+    public void unstoredTokenExpirationTest() {
+        JwtToken token = createToken();
+        nodeA.revoke(notNull(List.of(token.getJti())));
+        nodeB.pollRevocations(PAGE_SIZE);
+        long farFuture = System.currentTimeMillis() + 3_650L * 24 * 3_600_000;
+        int evictedUnconfirmed = nodeB.evictExpired(farFuture);
+        int prunedUnconfirmed = jwtStorageService.deleteExpiredRevocationEvents();
+        jwtStorageService.commitNew(token); // written after the revocation
+        int confirmed = jwtStorageService.confirmRevocationExpirations();
+        nodeB.pollRevocations(PAGE_SIZE);
+        boolean lockedAfterConfirmation = nodeB.isLocked(token.getJti());
+        int evicted = nodeB.evictExpired(token.getExpirationDate().getTime() + 2 * JwtCache.EVICTION_INTERVAL_MS);
+        assertAll(
+            () -> assertEquals(0, evictedUnconfirmed),
+            () -> assertEquals(0, prunedUnconfirmed),
+            () -> assertEquals(1, confirmed),
+            () -> assertEquals(0, jwtStorageService.confirmRevocationExpirations(), "Must be republished once"),
+            () -> assertTrue(jwtStorageService.findByJti(token.getJti()).get().isLocked()),
+            () -> assertTrue(lockedAfterConfirmation),
+            () -> assertEquals(1, evicted)
+        );
+    }
+
+    @Test
+    @DisplayName("The revoking node evicts tokens which weren't stored yet after their stored expiration")
+    public void revokingNodeEvictionTest() {
+        JwtToken token = createToken();
+        var published = jwtStorageService.lock(notNull(List.of(token.getJti())));
+        nodeA.revoke(notNull(List.of(token.getJti())));
+        jwtStorageService.commitNew(token);
+        jwtStorageService.confirmRevocationExpirations();
+        nodeA.pollRevocations(PAGE_SIZE);
+        int evicted = nodeA.evictExpired(token.getExpirationDate().getTime() + 2 * JwtCache.EVICTION_INTERVAL_MS);
+        assertAll(
+            () -> assertEquals(1, published.size(), "Unstored tokens must be returned as well"),
+            () -> assertEquals(token.getJti().toString(), published.get(0).getJti()),
+            () -> assertNull(published.get(0).getExpirationDate()),
+            () -> assertEquals(1, evicted),
+            () -> assertEquals(0, nodeA.getRevocations().size())
+        );
+    }
+
+    @Test
+    @DisplayName("Locked tokens from the storage are loaded, the feed continues after them")
+    public void loadThenPollTest() {
+        JwtToken token = storeToken();
+        nodeA.revoke(notNull(List.of(token.getJti())));
+        JwtCache nodeC = JwtCache.create(jwtStorageService, false);
+        nodeC.loadFromStorage(PAGE_SIZE);
+        assertAll(
+            () -> assertTrue(nodeC.isLocked(token.getJti())),
+            () -> assertEquals(0, nodeC.pollRevocations(PAGE_SIZE))
+        );
+    }
+
+    @Test
+    @DisplayName("Events which are committed after newer events are applied later")
+    public void lateEventTest() {
+        long latest = jwtStorageService.findLatestRevocationVersion();
+        UUID early = notNull(UUID.randomUUID());
+        UUID late = notNull(UUID.randomUUID());
+        insertEvent(latest + 2, early);
+        int firstPoll = nodeB.pollRevocations(PAGE_SIZE);
+        insertEvent(latest + 1, late);
+        int secondPoll = nodeB.pollRevocations(PAGE_SIZE);
+        assertAll(
+            () -> assertEquals(1, firstPoll),
+            () -> assertEquals(1, secondPoll),
+            () -> assertTrue(nodeB.isLocked(early)),
+            () -> assertTrue(nodeB.isLocked(late))
+        );
+    }
+
+    @Test
+    @DisplayName("Increased token generations are known to other and new nodes")
+    public void generationPropagationTest() {
+        int generation = nodeA.invalidateAllFrom(testUser);
+        int beforePolling = nodeB.getTokenGeneration(testUser.getUsername(), testUser.getRealm());
+        nodeB.pollRevocations(PAGE_SIZE);
+        userStorageService.commit(userStorageService.refresh(testUser)); // saving must not reset the generation
+        JwtCache nodeC = JwtCache.create(jwtStorageService, false);
+        nodeC.loadFromStorage(PAGE_SIZE);
+        assertAll(
+            () -> assertEquals(1, generation),
+            () -> assertEquals(0, beforePolling),
+            () -> assertEquals(1, nodeB.getTokenGeneration(testUser.getUsername(), testUser.getRealm())),
+            () -> assertEquals(1, nodeC.getTokenGeneration(testUser.getUsername(), testUser.getRealm())),
+            () -> assertEquals(2, nodeB.invalidateAllFrom(testUser))
+        );
+    }
+
+    @Test
+    @DisplayName("New tokens get the stored generation while versions of the feed are missing")
+    public void generationForNewTokenTest() {
+        insertEvent(jwtStorageService.findLatestRevocationVersion() + 2, notNull(UUID.randomUUID()));
+        nodeB.pollRevocations(PAGE_SIZE);
+        nodeA.invalidateAllFrom(testUser);
+        int forNewToken = nodeB.getTokenGenerationForNewToken(testUser.getUsername(), testUser.getRealm(), 
+            POLL_INTERVAL);
+        var token = new JwtToken(notNull(UUID.randomUUID()), new Date(System.currentTimeMillis() + 60_000),
+            storeToken().getUserInfo(), UserRole.DEFAULT).withTokenGeneration(forNewToken);
+        assertAll(
+            () -> assertEquals(1, forNewToken),
+            () -> assertFalse(nodeB.isOutdated(token)),
+            () -> assertEquals(1, nodeB.getTokenGeneration(testUser.getUsername(), testUser.getRealm()))
+        );
+    }
+
+    @Test
+    @DisplayName("New tokens get the generation of the feed while it is current and the stored one when it is stale")
+    public void generationOfCurrentFeedTest() {
+        nodeA.invalidateAllFrom(testUser);
+        int currentFeed = nodeB.getTokenGenerationForNewToken(testUser.getUsername(), testUser.getRealm(), 
+            POLL_INTERVAL);
+        int staleFeed = nodeB.getTokenGenerationForNewToken(testUser.getUsername(), testUser.getRealm(), -1);
+        assertAll(
+            () -> assertEquals(0, currentFeed, "Generation was read from the storage although the feed is current"),
+            () -> assertEquals(1, staleFeed)
+        );
+    }
+
+    /**
+     * Writes an event with a fixed version, like a transaction which took its version earlier.
+     *
+     * @param version
+     * @param jti
+     */
+    private void insertEvent(long version, UUID jti) {
+        jdbcTemplate.update("insert into jwt_revocation_event (version, jti) values (?, ?)", version, jti.toString());
+    }
+}
@@ -0,0 +1,228 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides unit tests for {@link JwtCache}.
+ * 
+ * @author marcel
+ */
+public class JwtCacheTests {
+
+    private static final int THREADS = 16;
+
+    /**
+     * Storage which only provides locked tokens page by page and counts the queries.
+     */
+    private static class PagedStorage extends JwtStorageService {
+
+        private final List<UUID> locked;
+        private int queries;
+
+        /**
+         * Storage without repositories.
+         * 
+         * @param locked - Locked tokens, sorted by their string representation
+         */
+        @SuppressWarnings("null")
+        PagedStorage(List<UUID> locked) {
+            super(null, null, null, null);
+            this.locked = locked;
+        }
+
+        @Override
+        public List<TokenExpiration> findLockedExpirations(String afterJti, int pageSize) {
+            queries++;
+            String after = afterJti == null ? "" : afterJti;
+            return locked.stream()
+                .map(UUID::toString)
+                .filter(jti -> jti.compareTo(after) > 0)
+                .limit(pageSize)
+                .map(jti -> new TokenExpiration() {
+                    @Override
+                    public String getJti() {
+                        return jti;
+                    }
+
+                    @Override
+                    public Date getExpirationDate() {
+                        return null;
+                    }
+                })
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<TokenExpiration> lock(Collection<UUID> jtis) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<TokenExpiration> findExpirations(Collection<UUID> jtis) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public long findLatestRevocationVersion() {
+            return 0;
+        }
+
+        @Override
+        public List<TokenGeneration> findTokenGenerations() {
+            return new ArrayList<>();
+        }
+    }
+
+    private JwtToken token;
+
+    /**
+     * Creates a cache without storage and a token which can be refreshed 5 times.
+     */
+    @BeforeEach
+    public void setup() {
+        JwtCache.initNewCache();
+        var jwtService = new JwtTokenService(UnitTestDataConfiguration.sampleJwtConf());
+        var user = UserRealm.LDAP.getUserFactory().create("testuser", null, UserRole.DEFAULT, true);
+        var userInfo = jwtService.getCodec().decode(jwtService.createFor(user)).getUserInfo();
+        token = new JwtToken(notNull(UUID.randomUUID()), new Date(System.currentTimeMillis() + 60_000), userInfo, 
+            UserRole.DEFAULT).withRemainingRefreshes(5);
+        JwtCache.initNewCache(notNull(Set.of(token)), null);
+    }
+
+    @Test
+    @DisplayName("Revoked tokens are locked, snapshots are not changed by revocations")
+    public void revokeTest() {
+        RevocationSet before = JwtCache.getInstance().getRevocations();
+        JwtCache.getInstance().revoke(notNull(List.of(token.getJti())));
+        assertAll(
+            () -> assertTrue(JwtCache.getInstance().isLocked(token.getJti())),
+            () -> assertFalse(JwtCache.getInstance().isLocked(UUID.randomUUID())),
+            () -> assertFalse(before.contains(token.getJti())),
+            () -> assertEquals(Set.of(token.getJti()), JwtCache.getInstance().getLockedJits())
+        );
+    }
+
+    @Test
+    @DisplayName("Only locked tokens are kept when the cache is initialized with tokens")
+    public void initLockedOnlyTest() {
+        JwtToken locked = token.withLocked(true);
+        JwtToken other = new JwtToken(notNull(UUID.randomUUID()), token.getExpirationDate(), token.getUserInfo(), 
+            UserRole.DEFAULT);
+        JwtCache.initNewCache(notNull(Set.of(locked, other)), null);
+        assertEquals(Set.of(locked.getJti()), JwtCache.getInstance().getLockedJits());
+    }
+
+    @Test
+    @DisplayName("Refreshes can't be claimed without storage or for revoked tokens")
+    public void claimWithoutStorageTest() {
+        assertTrue(JwtCache.getInstance().claimRefresh(token.getJti()).isEmpty());
+        JwtCache.getInstance().storeAndSave(token.withLocked(true));
+        assertTrue(JwtCache.getInstance().claimRefresh(token.getJti()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Revoked tokens are evicted after they expired")
+    public void evictExpiredTest() {
+        UUID unknownExpiration = notNull(UUID.randomUUID());
+        JwtCache.getInstance().storeAndSave(token.withLocked(true));
+        JwtCache.getInstance().revoke(notNull(List.of(unknownExpiration)));
+        long expiration = token.getExpirationDate().getTime();
+        assertAll(
+            () -> assertEquals(0, JwtCache.getInstance().evictExpired(expiration)),
+            () -> assertTrue(JwtCache.getInstance().isLocked(token.getJti())),
+            () -> assertEquals(1, JwtCache.getInstance().evictExpired(expiration + JwtCache.EVICTION_INTERVAL_MS)),
+            () -> assertFalse(JwtCache.getInstance().isLocked(token.getJti())),
+            () -> assertTrue(JwtCache.getInstance().isLocked(unknownExpiration)),
+            () -> assertEquals(1, JwtCache.getInstance().getEvictionCount())
+        );
+    }
+
+    @Test
+    @DisplayName("Tokens are locked until the locked tokens are loaded page by page")
+    public void loadFromStorageTest() {
+        var locked = new ArrayList<UUID>();
+        for (int i = 0; i < 5; i++) {
+            locked.add(UUID.randomUUID());
+        }
+        locked.sort(Comparator.comparing(UUID::toString));
+        var storage = new PagedStorage(locked);
+        JwtCache.initNewCache(storage, true);
+        boolean lockedBeforeLoading = JwtCache.getInstance().isLocked(token.getJti());
+        JwtCache.getInstance().revoke(notNull(List.of(token.getJti())));
+        int loaded = JwtCache.getInstance().loadFromStorage(2);
+        assertAll(
+            () -> assertTrue(lockedBeforeLoading),
+            () -> assertEquals(5, loaded),
+            () -> assertEquals(3, storage.queries),
+            () -> assertTrue(JwtCache.getInstance().isReady()),
+            () -> assertTrue(JwtCache.getInstance().isLocked(token.getJti()), "Revocation during loading got lost"),
+            () -> assertTrue(locked.stream().allMatch(JwtCache.getInstance()::isLocked)),
+            () -> assertFalse(JwtCache.getInstance().isLocked(UUID.randomUUID()))
+        );
+    }
+
+    @Test
+    @DisplayName("Concurrent revocations don't get lost")
+    public void concurrentRevokeTest() throws Exception {
+        List<Boolean> results = runConcurrently(() -> {
+            UUID jti = notNull(UUID.randomUUID());
+            JwtCache.getInstance().revoke(notNull(List.of(jti)));
+            return JwtCache.getInstance().isLocked(jti);
+        });
+        assertAll(
+            () -> assertTrue(results.stream().allMatch(Boolean::booleanValue)),
+            () -> assertEquals(THREADS, JwtCache.getInstance().getRevocations().size())
+        );
+    }
+
+    /**
+     * Runs the given task on several threads at the same time.
+     * 
+     * @param task
+     * @return Results of all threads
+     * @throws Exception
+     */
+    private static List<Boolean> runConcurrently(Callable<Boolean> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            var results = new ArrayList<Boolean>();
+            for (var future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
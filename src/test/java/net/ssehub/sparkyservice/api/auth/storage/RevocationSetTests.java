@@ -0,0 +1,111 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Provides unit tests for {@link RevocationSet}.
+ *
+ * @author marcel
+ */
+public class RevocationSetTests {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    @DisplayName("Added JTIs are contained, the old set is not changed")
+    public void withTest(boolean bloomFilter) {
+        UUID jti = notNull(UUID.randomUUID());
+        RevocationSet empty = RevocationSet.empty(bloomFilter);
+        RevocationSet revoked = empty.with(notNull(List.of(jti)));
+        assertAll(
+            () -> assertTrue(revoked.contains(jti)),
+            () -> assertEquals(1, revoked.size()),
+            () -> assertFalse(empty.contains(jti)),
+            () -> assertEquals(0, empty.size()),
+            () -> assertEquals(bloomFilter, revoked.hasBloomFilter())
+        );
+    }
+
+    @Test
+    @DisplayName("Adding contained JTIs returns the same set")
+    public void unchangedTest() {
+        UUID jti = notNull(UUID.randomUUID());
+        RevocationSet revoked = RevocationSet.empty(true).with(notNull(List.of(jti)));
+        assertSame(revoked, revoked.with(notNull(List.of(jti))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    @DisplayName("Removed JTIs are not contained anymore, the table shrinks")
+    public void withoutTest(boolean bloomFilter) {
+        var jtis = new ArrayList<UUID>();
+        for (int i = 0; i < 1000; i++) {
+            jtis.add(UUID.randomUUID());
+        }
+        RevocationSet revoked = RevocationSet.empty(bloomFilter).with(jtis);
+        List<UUID> removed = jtis.subList(0, 990);
+        RevocationSet remaining = revoked.without(removed);
+        assertAll(
+            () -> assertEquals(10, remaining.size()),
+            () -> assertEquals(new HashSet<>(jtis.subList(990, 1000)), remaining.toSet()),
+            () -> assertFalse(remaining.contains(jtis.get(0))),
+            () -> assertTrue(revoked.contains(jtis.get(0))),
+            () -> assertSame(remaining, remaining.without(removed))
+        );
+    }
+
+    @Test
+    @DisplayName("The zero UUID can be revoked")
+    public void zeroUuidTest() {
+        UUID zero = new UUID(0, 0);
+        RevocationSet revoked = RevocationSet.empty(false).with(notNull(List.of(zero, zero)));
+        assertAll(
+            () -> assertFalse(RevocationSet.empty(false).contains(zero)),
+            () -> assertTrue(revoked.contains(zero)),
+            () -> assertEquals(1, revoked.size()),
+            () -> assertEquals(Set.of(zero), revoked.toSet()),
+            () -> assertFalse(revoked.without(notNull(List.of(zero))).contains(zero))
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    @DisplayName("Growing sets behave like a HashSet")
+    public void growTest(boolean bloomFilter) {
+        var random = new Random(42);
+        var expected = new HashSet<UUID>();
+        RevocationSet revoked = RevocationSet.empty(bloomFilter);
+        for (int round = 0; round < 50; round++) {
+            var batch = new ArrayList<UUID>();
+            for (int i = 0; i < round * 10; i++) {
+                batch.add(new UUID(random.nextLong(), random.nextLong()));
+            }
+            revoked = revoked.with(batch);
+            expected.addAll(batch);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(revoked.contains(new UUID(random.nextLong(), random.nextLong())));
+        }
+        for (UUID jti : expected) {
+            assertTrue(revoked.contains(jti));
+        }
+        assertEquals(expected.size(), revoked.size());
+        assertEquals(expected, revoked.toSet());
+    }
+}
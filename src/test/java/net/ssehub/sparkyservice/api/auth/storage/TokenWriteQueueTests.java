@@ -0,0 +1,232 @@
+package net.ssehub.sparkyservice.api.auth.storage;
+
+import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.ssehub.sparkyservice.api.auth.SparkysAuthPrincipal;
+import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
+import net.ssehub.sparkyservice.api.testconf.JwtTestBeanConf;
+import net.ssehub.sparkyservice.api.testconf.UnitTestDataConfiguration;
+import net.ssehub.sparkyservice.api.user.LdapUserFactory;
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
+
+/**
+ * Provides tests for {@link TokenWriteQueue} against the test database.
+ *
+ * @author marcel
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ContextConfiguration(classes = {UnitTestDataConfiguration.class, JwtTestBeanConf.class})
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+@ExtendWith(SpringExtension.class)
+public class TokenWriteQueueTests {
+
+    @Autowired
+    private JwtStorageService jwtStorageService;
+
+    @Autowired
+    private UserStorageService userStorageService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Nonnull
+    private final SparkyUser testUser;
+
+    public TokenWriteQueueTests() {
+        testUser = new LdapUserFactory().create("testUser", null, UserRole.DEFAULT, true);
+    }
+
+    /**
+     * Stores the owner of the test tokens.
+     */
+    @BeforeEach
+    public void setup() {
+        userStorageService.commit(testUser);
+    }
+
+    /**
+     * Creates an unlocked token.
+     *
+     * @param username - Owner of the token
+     * @return New token
+     */
+    private static JwtToken createToken(@Nonnull String username) {
+        var principal = new SparkysAuthPrincipal() {
+
+            @Override
+            public @Nonnull String getName() {
+                return username;
+            }
+
+            @Override
+            public @Nonnull UserRealm getRealm() {
+                return UserRealm.LDAP;
+            }
+
+            @Override
+            public @Nonnull String asString() {
+                return username + "@" + UserRealm.LDAP;
+            }
+        };
+        return new JwtToken(notNull(UUID.randomUUID()), new Date(System.currentTimeMillis() + 60_000), principal,
+            UserRole.DEFAULT).withRemainingRefreshes(3);
+    }
+
+    /**
+     * Creates a queue with its own settings.
+     *
+     * @param queueSize
+     * @param batchSize
+     * @return New queue
+     */
+    private TokenWriteQueue createQueue(int queueSize, int batchSize) {
+        var jwtConf = UnitTestDataConfiguration.sampleJwtConf();
+        jwtConf.setWriteQueueSize(queueSize);
+        jwtConf.setWriteBatchSize(batchSize);
+        return new TokenWriteQueue(notNull(jdbcTemplate), jwtConf);
+    }
+
+    /**
+     * Counts the stored tokens which reference the test user.
+     *
+     * @return Number of tokens
+     */
+    private int countTokensOfTestUser() {
+        Integer count = jdbcTemplate.queryForObject("select count(*) from jwt_issued_token t "
+            + "join user_stored u on t.id = u.id where u.user_name = ?", Integer.class, testUser.getUsername());
+        return count == null ? 0 : count;
+    }
+
+    @Test
+    @DisplayName("Queued tokens are found after a flush with their owner")
+    public void flushTest() {
+        var queue = createQueue(100, 10);
+        JwtToken token = createToken(testUser.getUsername());
+        for (int i = 0; i < 25; i++) {
+            queue.add(createToken(testUser.getUsername()));
+        }
+        queue.add(token);
+        queue.flush();
+        assertAll(
+            () -> assertEquals(0, queue.getPendingCount()),
+            () -> assertEquals(26, countTokensOfTestUser()),
+            () -> assertTrue(jwtStorageService.findByJti(token.getJti()).isPresent())
+        );
+        queue.destroy();
+    }
+
+    @Test
+    @DisplayName("Tokens of unknown users aren't stored")
+    public void unknownUserTest() {
+        var queue = createQueue(100, 10);
+        JwtToken token = createToken("unknownUser");
+        queue.add(token);
+        queue.flush();
+        assertAll(
+            () -> assertEquals(0, queue.getPendingCount()),
+            () -> assertTrue(jwtStorageService.findByJti(token.getJti()).isEmpty())
+        );
+        queue.destroy();
+    }
+
+    @Test
+    @DisplayName("Queries of the storage service see queued tokens")
+    public void readYourWritesTest() {
+        JwtToken token = createToken(testUser.getUsername());
+        jwtStorageService.commitNew(token);
+        var stored = jwtStorageService.findByJti(token.getJti());
+        assertAll(
+            () -> assertTrue(stored.isPresent()),
+            () -> assertEquals(3, stored.get().getRemainingRefreshes()),
+            () -> assertTrue(jwtStorageService.claimRefresh(token.getJti(), 3))
+        );
+    }
+
+    @Test
+    @DisplayName("Callers write themselves when the queue is full, nothing is lost on shutdown")
+    public void backpressureTest() {
+        var queue = createQueue(1, 5);
+        for (int i = 0; i < 50; i++) {
+            queue.add(createToken(testUser.getUsername()));
+        }
+        queue.destroy();
+        assertAll(
+            () -> assertEquals(0, queue.getPendingCount()),
+            () -> assertEquals(50, countTokensOfTestUser())
+        );
+    }
+
+    @Test
+    @DisplayName("Tokens of a failing batch are written one by one")
+    public void failedBatchTest() {
+        var failingBatches = new JdbcTemplate(notNull(jdbcTemplate.getDataSource())) {
+
+            @Override
+            public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                    ParameterizedPreparedStatementSetter<T> pss) {
+                throw new TransientDataAccessResourceException("Batch rejected by test");
+            }
+        };
+        var queue = new TokenWriteQueue(failingBatches, UnitTestDataConfiguration.sampleJwtConf());
+        JwtToken token = createToken(testUser.getUsername());
+        queue.add(token);
+        for (int i = 0; i < 4; i++) {
+            queue.add(createToken(testUser.getUsername()));
+        }
+        queue.add(token); // already stored, skipped
+        queue.flush();
+        assertAll(
+            () -> assertEquals(0, queue.getPendingCount()),
+            () -> assertEquals(5, countTokensOfTestUser()),
+            () -> assertEquals(0L, queue.getMetrics().get("writes.failed"))
+        );
+        queue.destroy();
+    }
+
+    @Test
+    @DisplayName("Tokens which were revoked before they were written are stored as locked")
+    public void revokedBeforeWriteTest() {
+        var queue = createQueue(100, 10);
+        JwtToken token = createToken(testUser.getUsername());
+        var locked = jwtStorageService.lock(notNull(List.of(token.getJti())));
+        queue.add(token);
+        queue.flush();
+        var stored = jwtStorageService.findByJti(token.getJti());
+        assertAll(
+            () -> assertTrue(locked.get(0).getExpirationDate() == null, "The expiration isn't known yet"),
+            () -> assertTrue(stored.isPresent()),
+            () -> assertTrue(stored.get().isLocked())
+        );
+        queue.destroy();
+    }
+}
@@ -5,8 +5,6 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-import java.util.Set;
-
 import javax.annotation.Nonnull;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -22,7 +20,6 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
 import net.ssehub.sparkyservice.api.auth.JwtAuthorizationFilter;
-import net.ssehub.sparkyservice.api.auth.jwt.JwtToken;
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
 import net.ssehub.sparkyservice.api.auth.storage.JwtCache;
 import net.ssehub.sparkyservice.api.conf.ConfigurationValues.JwtSettings;
@@ -72,9 +69,7 @@ public class LockedJwtIT extends AbstractContainerTestDatabase {
         assertNotNull(zuulRoutes.getRoutes());
         var user = LocalUserDetails.newLocalUser(USERNAME, "test", UserRole.SERVICE);
         this.jwtString = jwtService.createFor(user);
-        Set<JwtToken> lockedToken = JwtCache.getInstance().getCachedTokens();
-        lockedToken.forEach(t -> t.setLocked(true));
-        JwtCache.initNewCache(lockedToken, null);
+        jwtService.disable(jwtService.getCodec().decode(jwtString).getJti());
         assertFalse(JwtCache.getInstance().getLockedJits().isEmpty(), "Cache with locked JWT shouldn't be empty");
     }
 
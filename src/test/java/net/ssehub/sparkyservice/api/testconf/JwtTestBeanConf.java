@@ -6,10 +6,13 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import net.ssehub.sparkyservice.api.auth.jwt.JwtTokenService;
 import net.ssehub.sparkyservice.api.auth.storage.JwtRepository;
 import net.ssehub.sparkyservice.api.auth.storage.JwtStorageService;
+import net.ssehub.sparkyservice.api.auth.storage.RevocationEventRepository;
+import net.ssehub.sparkyservice.api.auth.storage.TokenWriteQueue;
 import net.ssehub.sparkyservice.api.user.storage.UserStorageService;
 
 /**
@@ -28,12 +31,23 @@ public class JwtTestBeanConf {
 
     @Autowired 
     private UserStorageService userStorageServ;
+
+    @Autowired 
+    private RevocationEventRepository eventRepo;
+
+    @Autowired 
+    private JdbcTemplate jdbcTemplate;
+
+    @Bean
+    public TokenWriteQueue tokenWriteQueue() {
+        return new TokenWriteQueue(notNull(jdbcTemplate), UnitTestDataConfiguration.sampleJwtConf());
+    }
     
     @Bean
     public JwtStorageService storageService() {
         assertNotNull(repo);
         assertNotNull(userStorageServ);
-        return new JwtStorageService(notNull(repo), notNull(userStorageServ));
+        return new JwtStorageService(notNull(repo), notNull(userStorageServ), notNull(eventRepo), tokenWriteQueue());
     }
    
     @Bean
@@ -2,6 +2,7 @@ package net.ssehub.sparkyservice.api.user;
 
 
 import static net.ssehub.sparkyservice.api.util.NullHelpers.notNull;
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -12,6 +13,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import net.ssehub.sparkyservice.api.auth.PasswordHashing;
+import net.ssehub.sparkyservice.api.user.dto.UserDto.ChangePasswordDto;
+
 class LocalUserDetailsTests {
     
     private PasswordEncoder encoder = new BCryptPasswordEncoder(); 
@@ -54,4 +58,18 @@ class LocalUserDetailsTests {
         userDetails.setExpireDate(LocalDate.now().minusDays(1)); // is expired
         assertFalse(userDetails.isAccountNonExpired(), "User should be expired!");
     }
+
+    @Test
+    public void passwordChangeEncoderTest() {
+        var userDetails = LocalUserDetails.newLocalUser("test", "old", UserRole.DEFAULT);
+        userDetails.setEncoder(PasswordHashing.createEncoder(4));
+        var dto = new ChangePasswordDto();
+        dto.oldPassword = "old";
+        dto.newPassword = "new";
+        userDetails.updatePassword(dto, UserRole.DEFAULT);
+        assertAll(
+            () -> assertTrue(userDetails.getPassword().startsWith("$2a$04$"), "Set encoder wasn't used"),
+            () -> assertTrue(encoder.matches("new", userDetails.getPassword()), "Password wasn't changed")
+        );
+    }
 }
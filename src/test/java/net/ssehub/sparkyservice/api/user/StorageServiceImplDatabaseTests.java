@@ -8,12 +8,15 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Set;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
@@ -45,6 +48,9 @@ public class StorageServiceImplDatabaseTests {
     @Autowired
     private UserStorageImpl storageService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private static final String TEST_USER_NAME = "eatk234";
     
     @BeforeEach
@@ -154,4 +160,69 @@ public class StorageServiceImplDatabaseTests {
             () -> assertEquals(newUser.getUsername(), "name", "SparkyUser with wrong name was created")
         );
     }
+
+    /**
+     * Creates an LDAP user like the LDAP login does.
+     * 
+     * @param fullname
+     * @return New LDAP user with an email address
+     */
+    private static SparkyUser createLdapUser(String fullname) {
+        var user = UserRealm.LDAP.getUserFactory().create("gauss", null, UserRole.DEFAULT, true);
+        user.setFullname(fullname);
+        user.setExpireDate(UnitTestDataConfiguration.EXP_DATE);
+        user.getSettings().setEmail_address(UnitTestDataConfiguration.USER_EMAIL);
+        return user;
+    }
+
+    /**
+     * Tests that the upsert of a new user stores the user with its settings.
+     */
+    @Test
+    public void upsertNewUserTest() {
+        SparkyUser persisted = storageService.upsert(createLdapUser("Carl Friedrich Gauss"));
+        SparkyUser loaded = storageService.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        assertAll(
+            () -> assertTrue(persisted instanceof LdapUser),
+            () -> assertEquals(loaded.getJpa().getId(), persisted.getJpa().getId()),
+            () -> assertEquals(loaded.getJpa().getProfileConfiguration().getConfigurationId(), 
+                persisted.getJpa().getProfileConfiguration().getConfigurationId()),
+            () -> assertEquals("Carl Friedrich Gauss", loaded.getFullname()),
+            () -> assertEquals(UnitTestDataConfiguration.EXP_DATE, loaded.getExpireDate().orElse(null)),
+            () -> assertEquals(UnitTestDataConfiguration.USER_EMAIL, loaded.getSettings().getEmail_address()),
+            () -> assertTrue(loaded.isEnabled())
+        );
+    }
+
+    /**
+     * Tests that the upsert of an existing user only changes the attributes of the realm.
+     */
+    @Test
+    public void upsertExistingUserTest() {
+        SparkyUser stored = storageService.upsert(createLdapUser("Gauss"));
+        stored.setRole(UserRole.ADMIN);
+        stored.getSettings().setEmail_address("changed@test");
+        storageService.commit(stored);
+
+        SparkyUser persisted = storageService.upsert(createLdapUser("Carl Friedrich Gauss"));
+        assertAll(
+            () -> assertEquals(stored.getJpa().getId(), persisted.getJpa().getId()),
+            () -> assertEquals("Carl Friedrich Gauss", persisted.getFullname()),
+            () -> assertEquals(UserRole.ADMIN, persisted.getRole()),
+            () -> assertEquals("changed@test", persisted.getSettings().getEmail_address()),
+            () -> assertEquals(2, storageService.findUsersByUsernames(Set.of("gauss", TEST_USER_NAME)).size())
+        );
+    }
+
+    /**
+     * Tests that nothing is written when the realm attributes didn't change since the last upsert.
+     */
+    @Test
+    public void upsertUnchangedUserTest() {
+        storageService.upsert(createLdapUser("Gauss"));
+        jdbcTemplate.update("update user_stored set full_name = ? where user_name = ?", "Written manually", "gauss");
+
+        SparkyUser persisted = storageService.upsert(createLdapUser("Gauss"));
+        assertEquals("Written manually", persisted.getFullname(), "Upsert wrote unchanged attributes");
+    }
 }
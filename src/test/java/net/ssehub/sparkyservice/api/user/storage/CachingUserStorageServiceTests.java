@@ -0,0 +1,171 @@
+package net.ssehub.sparkyservice.api.user.storage;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.ssehub.sparkyservice.api.user.SparkyUser;
+import net.ssehub.sparkyservice.api.user.UserRealm;
+import net.ssehub.sparkyservice.api.user.UserRole;
+
+/**
+ * Provides tests for {@link CachingUserStorageService}.
+ *
+ * @author marcel
+ */
+public class CachingUserStorageServiceTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private UserStorageService delegate;
+
+    private CachingUserStorageService cache;
+
+    /**
+     * Creates a cache in front of a storage mock which knows every LDAP user.
+     */
+    @BeforeEach
+    public void setup() {
+        delegate = mock(UserStorageService.class);
+        when(delegate.findUserByNameAndRealm(anyString(), any())).thenAnswer(
+            invocation -> createUser(invocation.getArgument(0)));
+        cache = new CachingUserStorageService(delegate, 30, 100, now::get);
+    }
+
+    /**
+     * Creates a stored LDAP user.
+     *
+     * @param username
+     * @return User with a database ID and an email address
+     */
+    private static SparkyUser createUser(String username) {
+        var user = UserRealm.LDAP.getUserFactory().create(username.toLowerCase(), null, UserRole.DEFAULT, true);
+        user.setFullname("Carl Friedrich Gauss");
+        user.getSettings().setEmail_address("gauss@example.com");
+        return user;
+    }
+
+    @Test
+    @DisplayName("Repeated searches of a user query the storage once and return independent copies")
+    public void hitTest() {
+        var first = cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        first.setRole(UserRole.ADMIN);
+        first.getSettings().setEmail_address("changed@example.com");
+        var second = cache.findUserByNameAndRealm("Gauss", UserRealm.LDAP);
+        verify(delegate, times(1)).findUserByNameAndRealm(anyString(), any());
+        assertAll(
+            () -> assertNotSame(first, second),
+            () -> assertEquals(UserRole.DEFAULT, second.getRole()),
+            () -> assertEquals("gauss@example.com", second.getSettings().getEmail_address()),
+            () -> assertEquals("Carl Friedrich Gauss", second.getFullname()),
+            () -> assertEquals(1L, cache.getMetrics().get("cache.hits"))
+        );
+    }
+
+    @Test
+    @DisplayName("Writes remove the user from the cache")
+    public void invalidationTest() {
+        var user = cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        cache.commit(user);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        cache.deleteUser("gauss", UserRealm.LDAP);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        cache.upsert(user);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LOCAL);
+        verify(delegate, times(5)).findUserByNameAndRealm(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Users expire after the TTL, unknown users aren't cached")
+    public void expirationTest() {
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        now.addAndGet(31_000);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        when(delegate.findUserByNameAndRealm("euler", UserRealm.LDAP)).thenThrow(new UserNotFoundException("euler"));
+        assertThrows(UserNotFoundException.class, () -> cache.findUserByNameAndRealm("euler", UserRealm.LDAP));
+        assertThrows(UserNotFoundException.class, () -> cache.findUserByNameAndRealm("euler", UserRealm.LDAP));
+        verify(delegate, times(2)).findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        verify(delegate, times(2)).findUserByNameAndRealm("euler", UserRealm.LDAP);
+    }
+
+    @Test
+    @DisplayName("Concurrent misses for the same user run a single query")
+    public void singleFlightTest() throws Exception {
+        var release = new CountDownLatch(1);
+        var queries = new AtomicInteger();
+        when(delegate.findUserByNameAndRealm("gauss", UserRealm.LDAP)).thenAnswer(invocation -> {
+            queries.incrementAndGet();
+            release.await(10, TimeUnit.SECONDS);
+            return createUser("gauss");
+        });
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var results = new ArrayList<Future<SparkyUser>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.findUserByNameAndRealm("gauss", UserRealm.LDAP)));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (var result : results) {
+                assertEquals("gauss", result.get().getUsername());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    @DisplayName("A query which overlaps a write isn't cached")
+    public void writeDuringLoadTest() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(delegate.findUserByNameAndRealm("gauss", UserRealm.LDAP)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return createUser("gauss");
+        });
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var stale = executor.submit(() -> cache.findUserByNameAndRealm("gauss", UserRealm.LDAP));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            cache.commit(createUser("gauss"));
+            release.countDown();
+            stale.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        verify(delegate, times(2)).findUserByNameAndRealm("gauss", UserRealm.LDAP);
+    }
+
+    @Test
+    @DisplayName("A TTL of 0 disables the cache")
+    public void disabledTest() {
+        cache = new CachingUserStorageService(delegate, 0, 100, now::get);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        cache.findUserByNameAndRealm("gauss", UserRealm.LDAP);
+        verify(delegate, times(2)).findUserByNameAndRealm("gauss", UserRealm.LDAP);
+    }
+}
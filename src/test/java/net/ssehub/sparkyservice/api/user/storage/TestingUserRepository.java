@@ -3,11 +3,12 @@ package net.ssehub.sparkyservice.api.user.storage;
 import org.springframework.context.annotation.Primary;
 
 /**
- * Wrapper for {@link UserRepository} to make it available for test cases.
+ * Wrapper for {@link UserRepository} to make it available for test cases. Spring Data only finds the implementation
+ * of {@link UserUpsertRepository} through a direct super interface.
  * 
  * @author marcel
  */
 @Primary
-public interface TestingUserRepository extends UserRepository {
+public interface TestingUserRepository extends UserRepository, UserUpsertRepository {
 
 }
@@ -12,6 +12,7 @@ import static org.mockito.Mockito.when;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -82,6 +83,13 @@ public class UserStorageServiceTests {
         assertEquals(2, userService.findUsersByUsername(USER_NAME).size());
     }
 
+    @Test
+    public void findUsersByUsernamesTest() {
+        when(mockedRepository.findByuserNameIn(Set.of(USER_NAME))).thenReturn(jpaUserList.get());
+        var users = userService.findUsersByUsernames(List.of(USER_NAME.toUpperCase(), USER_NAME));
+        assertEquals(2, users.size());
+    }
+
     @Test
     public void findUserByNameAndRealmTest() throws UserNotFoundException {
         when(mockedRepository.findByuserNameAndRealm(USER_NAME, USER_REALM)).thenReturn(this.jpaUser);